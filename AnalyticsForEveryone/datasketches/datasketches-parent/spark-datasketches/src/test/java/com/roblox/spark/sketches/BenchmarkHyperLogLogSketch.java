@@ -0,0 +1,143 @@
+package com.roblox.spark.sketches;
+
+import com.roblox.spark.sketches.hll.HllSketchConfig;
+import com.roblox.spark.sketches.hll.HyperLogLogSketch;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.TgtHllType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.roblox.spark.sketches.BenchmarkThetaSketch.POSITIONS;
+import static com.roblox.spark.sketches.BenchmarkThetaSketch.SKETCHES;
+
+/**
+ * Measures the {@link HyperLogLogSketch} aggregation buffer of {@code hll_sketch_build} and {@code hll_sketch_merge},
+ * the same way as {@link BenchmarkThetaSketch}: boxed updates against updating an {@link HllSketch} directly,
+ * and merges on the fast path, into a buffer holding only a union, and on the slow path, into a buffer still
+ * holding a sketch.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkHyperLogLogSketch
+{
+    @Param({"10", "12", "14"})
+    private int lgK;
+
+    // The number of distinct values per buffer, from sparse buffers in list or set mode to full HLL arrays
+    @Param({"1000", "1000000"})
+    private int distinct;
+
+    private double[] values;
+    private byte[][] sketches;
+    private HyperLogLogSketch updatedBuffer;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        values = new double[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            values[i] = random.nextInt(distinct);
+        }
+        sketches = new byte[SKETCHES][];
+        for (int i = 0; i < SKETCHES; i++) {
+            HllSketch sketch = new HllSketch(lgK, TgtHllType.HLL_6);
+            for (int position = 0; position < POSITIONS; position++) {
+                sketch.update(random.nextInt(distinct));
+            }
+            sketches[i] = sketch.toCompactByteArray();
+        }
+        updatedBuffer = newBuffer();
+        for (double value : values) {
+            updatedBuffer.update(value);
+        }
+    }
+
+    private HyperLogLogSketch newBuffer()
+    {
+        return HyperLogLogSketch.apply(new HllSketchConfig(lgK, TgtHllType.HLL_6));
+    }
+
+    @Benchmark
+    public Object updateBoxed()
+    {
+        HyperLogLogSketch buffer = newBuffer();
+        for (double value : values) {
+            buffer.update(value);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Object updateTyped()
+    {
+        HllSketch sketch = new HllSketch(lgK, TgtHllType.HLL_6);
+        for (double value : values) {
+            sketch.update(value);
+        }
+        return sketch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SKETCHES)
+    public Object mergeFastPath()
+    {
+        HyperLogLogSketch buffer = newBuffer();
+        for (byte[] sketch : sketches) {
+            buffer = buffer.merge(HyperLogLogSketch.apply(sketch));
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SKETCHES)
+    public void mergeSlowPath(Blackhole blackhole)
+    {
+        for (int i = 0; i < SKETCHES; i++) {
+            HyperLogLogSketch buffer = HyperLogLogSketch.apply(sketches[i]);
+            blackhole.consume(buffer.merge(HyperLogLogSketch.apply(sketches[(i + 1) % SKETCHES])));
+        }
+    }
+
+    @Benchmark
+    public byte[] toByteArray()
+    {
+        return updatedBuffer.toByteArray();
+    }
+
+    @Benchmark
+    public Object apply()
+    {
+        return HyperLogLogSketch.apply(sketches[0]);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkHyperLogLogSketch.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,139 @@
+package com.roblox.spark.sketches;
+
+import com.roblox.spark.sketches.contract.TypedAggregationBuffer;
+import com.roblox.spark.sketches.kll.KarninLangLibertySketch;
+import com.roblox.spark.sketches.kll.KllSketchConfig;
+import org.apache.datasketches.kll.KllDoublesSketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.roblox.spark.sketches.BenchmarkThetaSketch.POSITIONS;
+import static com.roblox.spark.sketches.BenchmarkThetaSketch.SKETCHES;
+
+/**
+ * Measures the {@link KarninLangLibertySketch} aggregation buffer of {@code kll_sketch_build} and
+ * {@code kll_sketch_merge}. Its {@code update(Double)} is specialized, so updates are compared through the generic
+ * {@link TypedAggregationBuffer#update}, which boxes the value, the typed method, and the {@link KllDoublesSketch}
+ * itself. The buffer merges in place, so there is a single merge path, timed per merged buffer.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkKarninLangLibertySketch
+{
+    @Param({"100", "200", "400"})
+    private int k;
+
+    private double[] values;
+    private byte[][] sketches;
+    private KarninLangLibertySketch updatedBuffer;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        values = new double[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            values[i] = random.nextGaussian();
+        }
+        sketches = new byte[SKETCHES][];
+        for (int i = 0; i < SKETCHES; i++) {
+            KllDoublesSketch sketch = KllDoublesSketch.newHeapInstance(k);
+            for (int position = 0; position < POSITIONS; position++) {
+                sketch.update(random.nextGaussian());
+            }
+            sketches[i] = sketch.toByteArray();
+        }
+        updatedBuffer = newBuffer();
+        for (double value : values) {
+            updatedBuffer.update(value);
+        }
+    }
+
+    private KarninLangLibertySketch newBuffer()
+    {
+        return KarninLangLibertySketch.apply(new KllSketchConfig(k));
+    }
+
+    @Benchmark
+    public Object updateBoxed()
+    {
+        KarninLangLibertySketch buffer = newBuffer();
+        TypedAggregationBuffer<KarninLangLibertySketch> genericBuffer = buffer;
+        for (double value : values) {
+            genericBuffer.update(value);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Object updateTyped()
+    {
+        KarninLangLibertySketch buffer = newBuffer();
+        for (double value : values) {
+            buffer.update(value);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Object updateSketch()
+    {
+        KllDoublesSketch sketch = KllDoublesSketch.newHeapInstance(k);
+        for (double value : values) {
+            sketch.update(value);
+        }
+        return sketch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SKETCHES)
+    public Object merge()
+    {
+        KarninLangLibertySketch buffer = newBuffer();
+        for (byte[] sketch : sketches) {
+            buffer = buffer.merge(KarninLangLibertySketch.apply(sketch));
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public byte[] toByteArray()
+    {
+        return updatedBuffer.toByteArray();
+    }
+
+    @Benchmark
+    public Object apply()
+    {
+        return KarninLangLibertySketch.apply(sketches[0]);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkKarninLangLibertySketch.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,150 @@
+package com.roblox.spark.sketches;
+
+import com.roblox.spark.sketches.theta.ThetaSketch;
+import org.apache.datasketches.common.ResizeFactor;
+import org.apache.datasketches.theta.UpdateSketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link ThetaSketch} aggregation buffer of {@code theta_sketch_build} and {@code theta_sketch_merge}.
+ * <p>
+ * Updates go through {@code update(Any)}, which boxes every value, and are compared against updating an equivalent
+ * {@link UpdateSketch} with the primitive value. Merges are timed per merged buffer on both paths of
+ * {@link ThetaSketch#merge}: the fast one, where the buffer only holds a union, as when deserialized buffers are
+ * merged one after the other, and the slow one, where the buffer still holds its update sketch, which is compacted
+ * into a new union, as when the object hash aggregate falls back to sorting.
+ * Run with the GC profiler, which {@link #main} enables, to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkThetaSketch
+{
+    static final int POSITIONS = 10_000;
+    static final int SKETCHES = 100;
+
+    @Param({"1024", "4096", "16384"})
+    private int nomEntries;
+
+    // The number of distinct values per buffer, from exact buffers to ones past their nominal entries
+    @Param({"1000", "1000000"})
+    private int distinct;
+
+    private double[] values;
+    private byte[][] compactSketches;
+    private byte[][] updateSketches;
+    private ThetaSketch updatedBuffer;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        values = new double[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            values[i] = random.nextInt(distinct);
+        }
+        compactSketches = new byte[SKETCHES][];
+        updateSketches = new byte[SKETCHES][];
+        for (int i = 0; i < SKETCHES; i++) {
+            UpdateSketch sketch = newUpdateSketch(nomEntries);
+            for (int position = 0; position < POSITIONS; position++) {
+                sketch.update(random.nextInt(distinct));
+            }
+            compactSketches[i] = sketch.compact().toByteArray();
+            updateSketches[i] = sketch.toByteArray();
+        }
+        updatedBuffer = ThetaSketch.apply(nomEntries);
+        for (double value : values) {
+            updatedBuffer.update(value);
+        }
+    }
+
+    private static UpdateSketch newUpdateSketch(int nomEntries)
+    {
+        // The same configuration as ThetaSketch.apply(nomEntries)
+        return UpdateSketch.builder().setNominalEntries(nomEntries).setResizeFactor(ResizeFactor.X2).build();
+    }
+
+    @Benchmark
+    public Object updateBoxed()
+    {
+        ThetaSketch buffer = ThetaSketch.apply(nomEntries);
+        for (double value : values) {
+            buffer.update(value);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Object updateTyped()
+    {
+        UpdateSketch sketch = newUpdateSketch(nomEntries);
+        for (double value : values) {
+            sketch.update(value);
+        }
+        return sketch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SKETCHES)
+    public Object mergeFastPath()
+    {
+        ThetaSketch buffer = ThetaSketch.apply(nomEntries);
+        for (byte[] sketch : compactSketches) {
+            buffer = buffer.merge(ThetaSketch.apply(sketch, nomEntries));
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SKETCHES)
+    public void mergeSlowPath(Blackhole blackhole)
+    {
+        for (int i = 0; i < SKETCHES; i++) {
+            ThetaSketch buffer = ThetaSketch.apply(updateSketches[i], nomEntries);
+            blackhole.consume(buffer.merge(ThetaSketch.apply(compactSketches[(i + 1) % SKETCHES], nomEntries)));
+        }
+    }
+
+    @Benchmark
+    public byte[] toByteArray()
+    {
+        return updatedBuffer.toByteArray();
+    }
+
+    @Benchmark
+    public Object apply()
+    {
+        return ThetaSketch.apply(compactSketches[0], nomEntries);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkThetaSketch.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
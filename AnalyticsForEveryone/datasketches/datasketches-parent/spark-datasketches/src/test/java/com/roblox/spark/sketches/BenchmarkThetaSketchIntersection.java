@@ -0,0 +1,93 @@
+package com.roblox.spark.sketches;
+
+import com.roblox.spark.sketches.theta.ThetaSketchIntersection;
+import org.apache.datasketches.theta.UpdateSketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.roblox.spark.sketches.BenchmarkThetaSketch.SKETCHES;
+
+/**
+ * Measures {@link ThetaSketchIntersection} the way {@code theta_sketch_intersection} evaluates each row:
+ * both sketches are wrapped, intersected and the result serialized, timed per row.
+ * The nominal entries of the function default to 2^20, which sizes the intersection built for every buffer.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkThetaSketchIntersection
+{
+    @Param({"4096", "1048576"})
+    private int nomEntries;
+
+    // Neighbouring sketches share half of their distinct values
+    @Param({"1000", "100000"})
+    private int distinctPerSketch;
+
+    private byte[][] sketches;
+
+    @Setup
+    public void setup()
+    {
+        sketches = new byte[SKETCHES][];
+        for (int i = 0; i < SKETCHES; i++) {
+            UpdateSketch sketch = UpdateSketch.builder().build();
+            long base = (long) i * distinctPerSketch / 2;
+            for (int value = 0; value < distinctPerSketch; value++) {
+                sketch.update(base + value);
+            }
+            sketches[i] = sketch.compact().toByteArray();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SKETCHES)
+    public void intersect(Blackhole blackhole)
+    {
+        for (int i = 0; i < SKETCHES; i++) {
+            ThetaSketchIntersection left = ThetaSketchIntersection.apply(sketches[i], nomEntries);
+            ThetaSketchIntersection right = ThetaSketchIntersection.apply(sketches[(i + 1) % SKETCHES], nomEntries);
+            blackhole.consume(left.intersect(right).toByteArray());
+        }
+    }
+
+    @Benchmark
+    public Object apply()
+    {
+        return ThetaSketchIntersection.apply(sketches[0], nomEntries);
+    }
+
+    @Benchmark
+    public byte[] toByteArray()
+    {
+        return ThetaSketchIntersection.apply(sketches[0], nomEntries).toByteArray();
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkThetaSketchIntersection.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -54,4 +54,33 @@ class DataGeneratorTest extends SharedSparkSessionSuite {
     groupedDS.show()
   }
 
+  test("Benchmark captures the stage metrics of sketch aggregates") {
+    val parameterValues = Map("theta" -> List(1024), "hll" -> List(10), "kll" -> List(100))
+    val results = SketchAggregationBenchmark.run(spark, rows = 20000, partitions = 4, parameterValues = parameterValues, groups = List(4), runs = 1)
+
+    assert(results.map(_.function).distinct.sorted == List(
+      "hll_sketch_build", "hll_sketch_merge", "kll_sketch_build", "kll_sketch_merge", "theta_sketch_build", "theta_sketch_merge"))
+    assert(results.forall(result => result.shuffleWriteBytes > 0 && result.shuffleReadBytes > 0))
+    // Each task holds at most 4 groups, far below the default fallback threshold of 128
+    assert(results.forall(result => !result.fellBackToSort && result.sortFallbackTasks == 0))
+  }
+
+  test("Benchmark detects the sort fallback of sketch aggregates") {
+    val threshold = "spark.sql.objectHashAggregate.sortBased.fallbackThreshold"
+    val previous = spark.conf.getOption(threshold)
+    // With room for a single group, every partial aggregate of the 4 groups falls back to sorting
+    spark.conf.set(threshold, "1")
+    try {
+      val results = SketchAggregationBenchmark.run(spark, rows = 20000, partitions = 4, parameterValues = Map("theta" -> List(1024)), groups = List(4), runs = 1)
+
+      assert(results.map(_.function).sorted == List("theta_sketch_build", "theta_sketch_merge"))
+      assert(results.forall(result => result.fellBackToSort && result.sortFallbackTasks > 0))
+    } finally {
+      previous match {
+        case Some(value) => spark.conf.set(threshold, value)
+        case None => spark.conf.unset(threshold)
+      }
+    }
+  }
+
 }
@@ -0,0 +1,201 @@
+package com.roblox.spark.sketches
+
+import org.apache.spark.scheduler.{SparkListener, SparkListenerJobEnd, SparkListenerStageCompleted, StageInfo}
+import org.apache.spark.sql.execution.adaptive.AdaptiveSparkPlanHelper
+import org.apache.spark.sql.execution.aggregate.ObjectHashAggregateExec
+import org.apache.spark.sql.functions._
+import org.apache.spark.sql.functions_ex._
+import org.apache.spark.sql.{Column, DataFrame, SparkSession}
+import org.json4s.DefaultFormats
+import org.json4s.jackson.Serialization
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.concurrent.{ConcurrentHashMap, ConcurrentLinkedQueue}
+
+/**
+ * A run of one sketch aggregate over the player data, with the metrics of the stages it ran.
+ * `sortFallbackTasks` counts the tasks in which `ObjectHashAggregateExec` held more groups than
+ * `spark.sql.objectHashAggregate.sortBased.fallbackThreshold` and fell back to sort-based aggregation.
+ */
+case class SketchAggregationResult(function: String, parameter: String, value: Int, groups: Int, run: Int,
+                                   wallMillis: Long, stageMillis: Long, executorRunMillis: Long,
+                                   shuffleWriteBytes: Long, shuffleReadBytes: Long,
+                                   memorySpilledBytes: Long, diskSpilledBytes: Long,
+                                   sortFallbackTasks: Long, fellBackToSort: Boolean)
+
+/**
+ * Collects the stages completed by each run, which it waits for since listener events are delivered asynchronously.
+ */
+class StageMetricsListener extends SparkListener {
+  private val completedStages = new ConcurrentLinkedQueue[StageInfo]()
+  private val endedJobs = ConcurrentHashMap.newKeySet[Int]()
+
+  override def onStageCompleted(stageCompleted: SparkListenerStageCompleted): Unit =
+    completedStages.add(stageCompleted.stageInfo)
+
+  override def onJobEnd(jobEnd: SparkListenerJobEnd): Unit = endedJobs.add(jobEnd.jobId)
+
+  /** Waits for the end of the given jobs, whose stages are all reported before, and returns the completed stages. */
+  def drainStages(jobIds: Seq[Int]): Seq[StageInfo] = {
+    val deadline = System.currentTimeMillis() + 60000
+    while (!jobIds.forall(endedJobs.contains) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10)
+    }
+    Iterator.continually(completedStages.poll()).takeWhile(_ != null).toList
+  }
+}
+
+/**
+ * Measures the sketch build and merge aggregates in local mode over the players of [[PlayerGenerator]],
+ * across the configuration parameter of each sketch and the number of groups, e.g.
+ *
+ * {{{
+ *   java -Dbenchmark.rows=2000000 -Dbenchmark.partitions=8 -Dbenchmark.groups=10,1000,100000 -cp ... com.roblox.spark.sketches.SketchAggregationBenchmark
+ * }}}
+ *
+ * The build aggregates add the players of each group to a sketch. The merge aggregates merge the sketches built
+ * over the grouping columns of the example usage in `DataGeneratorTest` into the same groups.
+ * Every run records its wall time, the time and shuffle and spill bytes of its stages, and whether the object hash
+ * aggregate fell back to sorting. The runs are written as JSON to `benchmark.output`.
+ */
+object SketchAggregationBenchmark extends AdaptiveSparkPlanHelper {
+
+  private val GroupingColumns = List("universe_id", "country", "locale", "age_group", "gender", "platform", "is_new_user")
+
+  private val Sketches: List[(String, String, Int => Column, Int => Column)] = List(
+    ("theta", "nominal_entries",
+      k => theta_sketch_build(col("userkey"), lit(k)), k => theta_sketch_merge(col("sketch"), lit(k))),
+    ("hll", "lg_k",
+      lgK => hll_sketch_build(col("userkey"), lit(lgK)), lgK => hll_sketch_merge(col("sketch"), lit(lgK))),
+    ("kll", "k",
+      k => kll_sketch_build(col("time_spent_secs"), lit(k)), k => kll_sketch_merge(col("sketch"), lit(k)))
+  )
+
+  /** The values of the configuration parameter of each sketch family swept by default. */
+  val DefaultParameterValues: Map[String, List[Int]] = Map(
+    "theta" -> List(1024, 4096, 16384),
+    "hll" -> List(10, 12, 14),
+    "kll" -> List(100, 200, 400)
+  )
+
+  def main(args: Array[String]): Unit = {
+    val rows = Integer.getInteger("benchmark.rows", 1000000)
+    val partitions = Integer.getInteger("benchmark.partitions", 8)
+    val groups = System.getProperty("benchmark.groups", "10,1000,100000").split(",").map(_.trim.toInt).toList
+    val runs = Integer.getInteger("benchmark.runs", 3)
+    val output = new File(System.getProperty("benchmark.output", "target/benchmark-sketch-aggregation.json"))
+
+    val spark = SparkSession
+      .builder()
+      .appName("data-sketches-benchmark")
+      .master("local[*]")
+      .config("spark.driver.bindAddress", "127.0.0.1")
+      .config("spark.ui.enabled", "false")
+      .config("spark.sql.shuffle.partitions", partitions.toString)
+      .getOrCreate()
+    try {
+      val results = run(spark, rows, partitions, DefaultParameterValues, groups, runs)
+      Files.createDirectories(output.getAbsoluteFile.getParentFile.toPath)
+      Files.write(output.toPath, Serialization.writePretty(results)(DefaultFormats).getBytes(StandardCharsets.UTF_8))
+      printResults(results)
+      println(s"Wrote ${results.size} runs to ${output.getAbsolutePath}")
+    } finally {
+      spark.stop()
+    }
+  }
+
+  /**
+   * Runs the aggregates of each sketch family for each of its parameter values and each number of groups.
+   * Families without parameter values are skipped.
+   */
+  def run(spark: SparkSession, rows: Int, partitions: Int, parameterValues: Map[String, List[Int]], groups: List[Int],
+          runs: Int): List[SketchAggregationResult] = {
+    import spark.implicits._
+
+    val rowsPerPartition = math.max(rows / partitions, 1)
+    // Several input partitions, so that the aggregates shuffle as they would on a cluster
+    val players = spark.range(0, partitions, 1, partitions).as[Long]
+      .flatMap(partition => List.tabulate(rowsPerPartition)(i =>
+        PlayerGenerator.createPlayer((partition * rowsPerPartition + i).toInt, "2024-01-01")))
+      .cache()
+    players.count()
+
+    val listener = new StageMetricsListener
+    spark.sparkContext.addSparkListener(listener)
+    try {
+      Sketches.flatMap { case (family, parameter, build, merge) =>
+        parameterValues.getOrElse(family, Nil).flatMap { value =>
+          // The sketches each merge aggregate starts from, built once over the finest groups
+          val sketches = players.groupBy(GroupingColumns.map(col): _*)
+            .agg(build(value) as "sketch")
+            .cache()
+          sketches.count()
+
+          val results = groups.flatMap { groupCount =>
+            val buildQuery = () => players.groupBy(groupKey(groupCount)).agg(build(value) as "sketch")
+            val mergeQuery = () => sketches.groupBy(groupKey(groupCount)).agg(merge(value) as "sketch")
+            List((s"${family}_sketch_build", buildQuery), (s"${family}_sketch_merge", mergeQuery)).flatMap {
+              case (function, query) =>
+                measure(spark, listener, query())
+                (0 until runs).map { run =>
+                  val metrics = measure(spark, listener, query())
+                  metrics.copy(function = function, parameter = parameter, value = value, groups = groupCount, run = run)
+                }
+            }
+          }
+          sketches.unpersist()
+          results
+        }
+      }
+    } finally {
+      spark.sparkContext.removeSparkListener(listener)
+      players.unpersist()
+    }
+  }
+
+  private def groupKey(groups: Int): Column =
+    pmod(xxhash64(GroupingColumns.map(col): _*), lit(groups.toLong)) as "group_id"
+
+  private def measure(spark: SparkSession, listener: StageMetricsListener, query: DataFrame): SketchAggregationResult = {
+    val jobGroup = s"sketch-aggregation-benchmark-${System.nanoTime()}"
+    spark.sparkContext.setJobGroup(jobGroup, "sketch aggregation benchmark")
+    val start = System.nanoTime()
+    try {
+      query.queryExecution.toRdd.foreach(_ => ())
+    } finally {
+      spark.sparkContext.clearJobGroup()
+    }
+    val wallMillis = (System.nanoTime() - start) / 1000000
+    val stages = listener.drainStages(spark.sparkContext.statusTracker.getJobIdsForGroup(jobGroup).toSeq)
+
+    val sortFallbackTasks = collect(query.queryExecution.executedPlan) {
+      case aggregate: ObjectHashAggregateExec => aggregate.metrics("numTasksFallBacked").value
+    }.sum
+    SketchAggregationResult(
+      function = "", parameter = "", value = 0, groups = 0, run = 0,
+      wallMillis = wallMillis,
+      stageMillis = stages.map(stage => stage.completionTime.getOrElse(0L) - stage.submissionTime.getOrElse(0L)).sum,
+      executorRunMillis = stages.map(_.taskMetrics.executorRunTime).sum,
+      shuffleWriteBytes = stages.map(_.taskMetrics.shuffleWriteMetrics.bytesWritten).sum,
+      shuffleReadBytes = stages.map(_.taskMetrics.shuffleReadMetrics.totalBytesRead).sum,
+      memorySpilledBytes = stages.map(_.taskMetrics.memoryBytesSpilled).sum,
+      diskSpilledBytes = stages.map(_.taskMetrics.diskBytesSpilled).sum,
+      sortFallbackTasks = sortFallbackTasks,
+      fellBackToSort = sortFallbackTasks > 0
+    )
+  }
+
+  private def printResults(results: List[SketchAggregationResult]): Unit = {
+    println(f"${"function"}%-18s ${"parameter"}%-22s ${"groups"}%8s ${"wall ms"}%9s ${"stage ms"}%9s " +
+      f"${"shuffle bytes"}%14s ${"spilled bytes"}%14s ${"sort fallback"}%14s")
+    results.groupBy(result => (result.function, result.parameter, result.value, result.groups)).toList
+      .sortBy { case ((function, parameter, value, groups), _) => (function, parameter, value, groups) }
+      .foreach { case ((function, parameter, value, groups), runs) =>
+        val median = runs.sortBy(_.wallMillis).apply(runs.size / 2)
+        println(f"$function%-18s ${s"$parameter=$value"}%-22s $groups%8d ${median.wallMillis}%9d ${median.stageMillis}%9d " +
+          f"${median.shuffleWriteBytes}%14d ${median.memorySpilledBytes + median.diskSpilledBytes}%14d ${median.sortFallbackTasks}%14d")
+      }
+  }
+}
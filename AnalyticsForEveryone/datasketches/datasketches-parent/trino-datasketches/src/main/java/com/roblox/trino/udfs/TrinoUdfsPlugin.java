@@ -1,21 +1,32 @@
 package com.roblox.trino.udfs;
 
 import com.google.common.collect.ImmutableSet;
+import com.roblox.trino.udfs.datasketches.cpc.CpcSketchAggFunction;
+import com.roblox.trino.udfs.datasketches.cpc.CpcSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.cpc.CpcSketchSetFunctions;
 import com.roblox.trino.udfs.datasketches.doubleitems.DoubleItemsSketchAggFunction;
 import com.roblox.trino.udfs.datasketches.doubleitems.DoubleItemsSketchEstimateFunctions;
 import com.roblox.trino.udfs.datasketches.hll.HllSketchAggFunction;
 import com.roblox.trino.udfs.datasketches.hll.HllSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchSetFunctions;
 import com.roblox.trino.udfs.datasketches.klldoubles.KllDoublesSketchAggFunction;
 import com.roblox.trino.udfs.datasketches.klldoubles.KllDoublesSketchEstimateFunctions;
 import com.roblox.trino.udfs.datasketches.kllfloats.KllFloatsSketchAggFunction;
 import com.roblox.trino.udfs.datasketches.kllfloats.KllFloatsSketchEstimateFunctions;
 import com.roblox.trino.udfs.datasketches.longitems.LongItemsSketchAggFunction;
 import com.roblox.trino.udfs.datasketches.longitems.LongItemsSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.req.ReqSketchAggFunction;
+import com.roblox.trino.udfs.datasketches.req.ReqSketchEstimateFunctions;
 import com.roblox.trino.udfs.datasketches.stringitems.StringItemsSketchAggFunction;
 import com.roblox.trino.udfs.datasketches.stringitems.StringItemsSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.theta.ThetaAnotBAggFunction;
+import com.roblox.trino.udfs.datasketches.theta.ThetaIntersectionAggFunction;
 import com.roblox.trino.udfs.datasketches.theta.ThetaSketchAggFunction;
 import com.roblox.trino.udfs.datasketches.theta.ThetaSketchEstimateFunctions;
 import com.roblox.trino.udfs.datasketches.theta.ThetaSketchSetFunctions;
+import com.roblox.trino.udfs.datasketches.tuple.TupleSketchAggFunction;
+import com.roblox.trino.udfs.datasketches.tuple.TupleSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.tuple.TupleSketchSetFunctions;
 import io.trino.spi.Plugin;
 
 import java.util.Set;
@@ -29,19 +40,30 @@ public class TrinoUdfsPlugin
         return ImmutableSet.<Class<?>>builder()
                 .add(HllSketchEstimateFunctions.class)
                 .add(HllSketchAggFunction.class)
+                .add(HllSketchSetFunctions.class)
+                .add(CpcSketchEstimateFunctions.class)
+                .add(CpcSketchAggFunction.class)
+                .add(CpcSketchSetFunctions.class)
                 .add(ThetaSketchEstimateFunctions.class)
                 .add(ThetaSketchAggFunction.class)
                 .add(ThetaSketchSetFunctions.class)
+                .add(ThetaIntersectionAggFunction.class)
+                .add(ThetaAnotBAggFunction.class)
                 .add(KllDoublesSketchAggFunction.class)
                 .add(KllDoublesSketchEstimateFunctions.class)
                 .add(KllFloatsSketchAggFunction.class)
                 .add(KllFloatsSketchEstimateFunctions.class)
+                .add(ReqSketchAggFunction.class)
+                .add(ReqSketchEstimateFunctions.class)
                 .add(StringItemsSketchAggFunction.class)
                 .add(StringItemsSketchEstimateFunctions.class)
                 .add(DoubleItemsSketchEstimateFunctions.class)
                 .add(DoubleItemsSketchAggFunction.class)
                 .add(LongItemsSketchEstimateFunctions.class)
                 .add(LongItemsSketchAggFunction.class)
+                .add(TupleSketchAggFunction.class)
+                .add(TupleSketchEstimateFunctions.class)
+                .add(TupleSketchSetFunctions.class)
                 .build();
     }
 }
@@ -0,0 +1,175 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.airlift.slice.XxHash64;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+
+/**
+ * A bounded cache of decoded sketches, keyed by the contents of their serialized slice.
+ * It is shared by all driver threads of a worker, so cached values must only be read after they are decoded.
+ * <p>
+ * Most scans read a different sketch on every row, so a sketch is only copied and cached the second time its bytes
+ * are seen by the same thread. Until then it is decoded straight from the input slice, as without a cache. Keys are
+ * hashed from the length and the first and last bytes of the slice rather than all of it, and only compared in full
+ * on a hash match.
+ * <p>
+ * An entry weighs the copy of the slice its key holds plus the size given for its value, which must leave out the
+ * bytes of that copy when the value wraps them rather than reading them onto the heap, or they are counted twice.
+ * <p>
+ * The byte budget of each cache is read once from the {@value #MAX_BYTES_PROPERTY} system property, and a budget
+ * of 0 disables caching. Caches created for a family export their statistics through its {@link SketchStats}.
+ */
+public final class SketchCache<T>
+{
+    public static final String MAX_BYTES_PROPERTY = "datasketches.sketch-cache.max-bytes";
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    public static final long MAX_BYTES = Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES);
+
+    private static final int HASHED_BYTES = 64;
+    private static final int RECENT_KEYS = 1024;
+
+    private final long maxBytes;
+    private final Cache<Key, T> cache;
+    private final Decoder<T> decoder;
+    private final ToLongFunction<T> sizeOf;
+    private final LongAdder weight = new LongAdder();
+    // Hashes of the keys each thread missed most recently, indexed by their low bits
+    private final ThreadLocal<long[]> recentKeys = ThreadLocal.withInitial(() -> new long[RECENT_KEYS]);
+
+    public SketchCache(SketchStats stats, Decoder<T> decoder, ToLongFunction<T> sizeOf)
+    {
+        this(MAX_BYTES, decoder, sizeOf);
+        stats.exportCache(this);
+    }
+
+    public SketchCache(long maxBytes, Decoder<T> decoder, ToLongFunction<T> sizeOf)
+    {
+        this.maxBytes = maxBytes;
+        this.decoder = decoder;
+        this.sizeOf = sizeOf;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, T value) -> key.weight)
+                .removalListener((RemovalNotification<Key, T> notification) -> this.weight.add(-notification.getKey().weight))
+                .recordStats()
+                .build();
+    }
+
+    public T get(Slice slice)
+    {
+        return get(slice, 0);
+    }
+
+    public T get(Slice slice, int parameter)
+    {
+        if (this.maxBytes == 0) {
+            return this.decoder.decode(slice, parameter);
+        }
+        long hash = hash(slice, parameter);
+        T value = this.cache.getIfPresent(new Key(slice, parameter, hash));
+        if (value != null) {
+            return value;
+        }
+        long[] recent = this.recentKeys.get();
+        int index = (int) hash & (RECENT_KEYS - 1);
+        if (recent[index] != hash) {
+            recent[index] = hash;
+            return this.decoder.decode(slice, parameter);
+        }
+        // Decode from a private copy so the cached sketch does not keep the whole input block alive
+        Slice copy = Slices.copyOf(slice);
+        value = this.decoder.decode(copy, parameter);
+        Key key = new Key(copy, parameter, hash);
+        // Weigh the entry once, so the weight added here is the one the removal listener subtracts
+        key.weight = (int) Math.min(Integer.MAX_VALUE, key.getRetainedSize() + this.sizeOf.applyAsLong(value));
+        this.weight.add(key.weight);
+        this.cache.put(key, value);
+        return value;
+    }
+
+    public CacheStats getStats()
+    {
+        return this.cache.stats();
+    }
+
+    public long getWeight()
+    {
+        return this.weight.sum();
+    }
+
+    public long getMaxBytes()
+    {
+        return this.maxBytes;
+    }
+
+    public void invalidateAll()
+    {
+        this.cache.invalidateAll();
+    }
+
+    private static long hash(Slice slice, int parameter)
+    {
+        int length = slice.length();
+        long hash = XxHash64.hash(length * 31L + parameter, slice, 0, Math.min(length, HASHED_BYTES));
+        if (length > HASHED_BYTES) {
+            int tail = Math.max(HASHED_BYTES, length - HASHED_BYTES);
+            hash = XxHash64.hash(hash, slice, tail, length - tail);
+        }
+        return hash;
+    }
+
+    public interface Decoder<T>
+    {
+        T decode(Slice slice, int parameter);
+    }
+
+    private static final class Key
+    {
+        private static final int INSTANCE_SIZE = instanceSize(Key.class);
+
+        private final Slice bytes;
+        private final int parameter;
+        private final long hash;
+        private int weight;
+
+        private Key(Slice bytes, int parameter, long hash)
+        {
+            this.bytes = bytes;
+            this.parameter = parameter;
+            this.hash = hash;
+        }
+
+        private long getRetainedSize()
+        {
+            return INSTANCE_SIZE + bytes.getRetainedSize();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && parameter == other.parameter && bytes.equals(other.bytes);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(hash);
+        }
+    }
+}
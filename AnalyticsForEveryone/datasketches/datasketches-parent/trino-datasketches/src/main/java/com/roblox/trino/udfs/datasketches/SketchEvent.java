@@ -0,0 +1,61 @@
+package com.roblox.trino.udfs.datasketches;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event timing one operation on a sketch. Events are only committed for sketches of at least
+ * the {@code minimumSize} setting, see {@link SketchSizeThreshold}.
+ * <p>
+ * Callers get their event from the {@code beginIfEnabled} method of its class, which checks the event type once and
+ * returns null when no recording enables it, so that the operations allocate nothing while events are disabled.
+ */
+@Category({"Trino", "DataSketches"})
+@StackTrace(false)
+public abstract class SketchEvent
+        extends Event
+{
+    @Label("Family")
+    @Description("The sketch family, e.g. theta or kll_doubles")
+    String family;
+
+    @Label("K")
+    @Description("The configured size of the sketch: k, lg_k for HLL and CPC, or the maximum map size for items sketches")
+    int k;
+
+    @Label("Retained Entries")
+    @Description("The entries held by the sketch, or the coupons of HLL and CPC sketches as estimated from their distinct count")
+    long retainedEntries;
+
+    @Label("Size")
+    @Description("The serialized size of the sketch, or its estimated size in memory for merges and union materializations")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Fills in the fields of the event and commits it, which drops it when it is shorter than the threshold
+     * of the recording or smaller than its {@code minimumSize}.
+     */
+    public void commit(String family, int k, long retainedEntries, long bytes)
+    {
+        this.family = family;
+        this.k = k;
+        this.retainedEntries = retainedEntries;
+        this.bytes = bytes;
+        this.commit();
+    }
+
+    @SettingDefinition
+    @Name("minimumSize")
+    @Label("Minimum Size")
+    protected boolean minimumSize(SketchSizeThreshold threshold)
+    {
+        return this.bytes >= threshold.getBytes();
+    }
+}
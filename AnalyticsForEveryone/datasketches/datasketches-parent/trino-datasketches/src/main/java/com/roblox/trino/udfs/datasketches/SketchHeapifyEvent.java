@@ -0,0 +1,28 @@
+package com.roblox.trino.udfs.datasketches;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.roblox.trino.udfs.datasketches.SketchHeapify")
+@Label("Sketch Heapify")
+@Description("A serialized sketch copied onto the heap")
+public final class SketchHeapifyEvent
+        extends SketchEvent
+{
+    private static final EventType TYPE = EventType.getEventType(SketchHeapifyEvent.class);
+
+    /**
+     * Begins an event, or returns null without allocating one when no running recording enables it.
+     */
+    public static SketchHeapifyEvent beginIfEnabled()
+    {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        SketchHeapifyEvent event = new SketchHeapifyEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,28 @@
+package com.roblox.trino.udfs.datasketches;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.roblox.trino.udfs.datasketches.SketchMerge")
+@Label("Sketch Merge")
+@Description("A sketch merged into another, with the fields of the sketch merged in")
+public final class SketchMergeEvent
+        extends SketchEvent
+{
+    private static final EventType TYPE = EventType.getEventType(SketchMergeEvent.class);
+
+    /**
+     * Begins an event, or returns null without allocating one when no running recording enables it.
+     */
+    public static SketchMergeEvent beginIfEnabled()
+    {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        SketchMergeEvent event = new SketchMergeEvent();
+        event.begin();
+        return event;
+    }
+}
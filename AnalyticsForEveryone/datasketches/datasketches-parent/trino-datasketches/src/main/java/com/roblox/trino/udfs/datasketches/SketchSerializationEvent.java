@@ -0,0 +1,28 @@
+package com.roblox.trino.udfs.datasketches;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.roblox.trino.udfs.datasketches.SketchSerialization")
+@Label("Sketch Serialization")
+@Description("An aggregation state serialized as an intermediate sketch")
+public final class SketchSerializationEvent
+        extends SketchEvent
+{
+    private static final EventType TYPE = EventType.getEventType(SketchSerializationEvent.class);
+
+    /**
+     * Begins an event, or returns null without allocating one when no running recording enables it.
+     */
+    public static SketchSerializationEvent beginIfEnabled()
+    {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        SketchSerializationEvent event = new SketchSerializationEvent();
+        event.begin();
+        return event;
+    }
+}
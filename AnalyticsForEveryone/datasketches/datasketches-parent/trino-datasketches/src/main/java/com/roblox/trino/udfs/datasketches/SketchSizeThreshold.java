@@ -0,0 +1,55 @@
+package com.roblox.trino.udfs.datasketches;
+
+import jdk.jfr.SettingControl;
+
+import java.util.Set;
+
+/**
+ * The {@code minimumSize} setting of the {@link SketchEvent}s, in bytes. Recordings default to
+ * {@link #DEFAULT_BYTES}, so the many small sketches of a grouped aggregation are not recorded, and
+ * {@code minimumSize=0} records every operation. When several recordings run, the smallest threshold applies.
+ */
+public final class SketchSizeThreshold
+        extends SettingControl
+{
+    public static final long DEFAULT_BYTES = 16 * 1024;
+
+    private volatile long bytes = DEFAULT_BYTES;
+
+    @Override
+    public String combine(Set<String> values)
+    {
+        return values.stream()
+                .map(SketchSizeThreshold::parse)
+                .min(Long::compare)
+                .map(String::valueOf)
+                .orElse(String.valueOf(DEFAULT_BYTES));
+    }
+
+    @Override
+    public void setValue(String value)
+    {
+        this.bytes = parse(value);
+    }
+
+    @Override
+    public String getValue()
+    {
+        return String.valueOf(this.bytes);
+    }
+
+    public long getBytes()
+    {
+        return this.bytes;
+    }
+
+    private static long parse(String value)
+    {
+        try {
+            return Math.max(Long.parseLong(value.trim()), 0);
+        }
+        catch (NumberFormatException e) {
+            return DEFAULT_BYTES;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.roblox.trino.udfs.datasketches;
+
+import io.airlift.log.Logger;
+import io.airlift.stats.TimeStat;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings of the hot paths of one sketch family, exported to the platform MBean server as
+ * {@code com.roblox.trino.udfs.datasketches:type=SketchStats,name=<family>} once the class is loaded.
+ * <p>
+ * Every operation is counted, with {@link LongAdder}s so driver threads do not contend on them. Recording a time
+ * distribution is synchronized, so only one in {@link #TIMING_SAMPLE_RATE} operations is timed: {@link #startTimer()}
+ * returns {@link #NOT_TIMED} for the others, which the {@code record} methods then only count.
+ * <p>
+ * The families whose scalar functions cache decoded sketches also report the hits, misses, evictions and weight of
+ * their {@link SketchCache}.
+ */
+public final class SketchStats
+{
+    private static final Logger log = Logger.get(SketchStats.class);
+
+    public static final int TIMING_SAMPLE_RATE = 64;
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+
+    public static final SketchStats CPC = create("cpc");
+    public static final SketchStats DOUBLE_ITEMS = create("double_items");
+    public static final SketchStats HLL = create("hll");
+    public static final SketchStats KLL_DOUBLES = create("kll_doubles");
+    public static final SketchStats KLL_FLOATS = create("kll_floats");
+    public static final SketchStats LONG_ITEMS = create("long_items");
+    public static final SketchStats REQ = create("req");
+    public static final SketchStats STRING_ITEMS = create("string_items");
+    public static final SketchStats THETA = create("theta");
+    public static final SketchStats TUPLE = create("tuple");
+
+    private final LongAdder sketchesDeserialized = new LongAdder();
+    private final LongAdder bytesDeserialized = new LongAdder();
+    private final LongAdder deserializeFailures = new LongAdder();
+    private final LongAdder sketchesSerialized = new LongAdder();
+    private final LongAdder bytesSerialized = new LongAdder();
+    private final LongAdder merges = new LongAdder();
+    private final LongAdder unionMaterializations = new LongAdder();
+
+    private final TimeStat deserializeTime = new TimeStat(TimeUnit.MICROSECONDS);
+    private final TimeStat serializeTime = new TimeStat(TimeUnit.MICROSECONDS);
+    private final TimeStat mergeTime = new TimeStat(TimeUnit.MICROSECONDS);
+    private final TimeStat unionMaterializationTime = new TimeStat(TimeUnit.MICROSECONDS);
+
+    private volatile SketchCache<?> cache;
+
+    private SketchStats() {}
+
+    private static SketchStats create(String family)
+    {
+        SketchStats stats = new SketchStats();
+        String name = "com.roblox.trino.udfs.datasketches:type=SketchStats,name=" + family;
+        try {
+            new MBeanExporter(ManagementFactory.getPlatformMBeanServer()).export(name, stats);
+        }
+        catch (RuntimeException e) {
+            // Another instance of the plugin in the same JVM already exported its statistics
+            log.warn(e, "Could not export %s", name);
+        }
+        return stats;
+    }
+
+    public void exportCache(SketchCache<?> cache)
+    {
+        this.cache = cache;
+    }
+
+    public long startTimer()
+    {
+        if (ThreadLocalRandom.current().nextInt(TIMING_SAMPLE_RATE) != 0) {
+            return NOT_TIMED;
+        }
+        return System.nanoTime();
+    }
+
+    public void recordDeserialize(long start, long bytes)
+    {
+        this.sketchesDeserialized.increment();
+        this.bytesDeserialized.add(bytes);
+        addTime(this.deserializeTime, start);
+    }
+
+    public void recordDeserializeFailure()
+    {
+        this.deserializeFailures.increment();
+    }
+
+    public void recordSerialize(long start, long bytes)
+    {
+        this.sketchesSerialized.increment();
+        this.bytesSerialized.add(bytes);
+        addTime(this.serializeTime, start);
+    }
+
+    public void recordMerge(long start)
+    {
+        this.merges.increment();
+        addTime(this.mergeTime, start);
+    }
+
+    public void recordUnionMaterialization(long start)
+    {
+        this.unionMaterializations.increment();
+        addTime(this.unionMaterializationTime, start);
+    }
+
+    private static void addTime(TimeStat stat, long start)
+    {
+        if (start != NOT_TIMED) {
+            stat.addNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Managed
+    public long getSketchesDeserialized()
+    {
+        return this.sketchesDeserialized.sum();
+    }
+
+    @Managed
+    public long getBytesDeserialized()
+    {
+        return this.bytesDeserialized.sum();
+    }
+
+    @Managed
+    public long getDeserializeFailures()
+    {
+        return this.deserializeFailures.sum();
+    }
+
+    @Managed
+    public long getSketchesSerialized()
+    {
+        return this.sketchesSerialized.sum();
+    }
+
+    @Managed
+    public long getBytesSerialized()
+    {
+        return this.bytesSerialized.sum();
+    }
+
+    @Managed
+    public long getMerges()
+    {
+        return this.merges.sum();
+    }
+
+    @Managed
+    public long getUnionMaterializations()
+    {
+        return this.unionMaterializations.sum();
+    }
+
+    @Managed
+    public long getCacheHits()
+    {
+        SketchCache<?> cache = this.cache;
+        return cache == null ? 0 : cache.getStats().hitCount();
+    }
+
+    @Managed
+    public long getCacheMisses()
+    {
+        SketchCache<?> cache = this.cache;
+        return cache == null ? 0 : cache.getStats().missCount();
+    }
+
+    @Managed
+    public long getCacheEvictions()
+    {
+        SketchCache<?> cache = this.cache;
+        return cache == null ? 0 : cache.getStats().evictionCount();
+    }
+
+    @Managed
+    public long getCacheWeightBytes()
+    {
+        SketchCache<?> cache = this.cache;
+        return cache == null ? 0 : cache.getWeight();
+    }
+
+    @Managed
+    public long getCacheMaxBytes()
+    {
+        SketchCache<?> cache = this.cache;
+        return cache == null ? 0 : cache.getMaxBytes();
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getDeserializeTime()
+    {
+        return this.deserializeTime;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getSerializeTime()
+    {
+        return this.serializeTime;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getMergeTime()
+    {
+        return this.mergeTime;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getUnionMaterializationTime()
+    {
+        return this.unionMaterializationTime;
+    }
+}
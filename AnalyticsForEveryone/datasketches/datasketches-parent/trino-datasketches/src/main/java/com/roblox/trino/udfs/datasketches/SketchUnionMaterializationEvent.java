@@ -0,0 +1,28 @@
+package com.roblox.trino.udfs.datasketches;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.roblox.trino.udfs.datasketches.SketchUnionMaterialization")
+@Label("Sketch Union Materialization")
+@Description("The result of a union computed for reading or serialization")
+public final class SketchUnionMaterializationEvent
+        extends SketchEvent
+{
+    private static final EventType TYPE = EventType.getEventType(SketchUnionMaterializationEvent.class);
+
+    /**
+     * Begins an event, or returns null without allocating one when no running recording enables it.
+     */
+    public static SketchUnionMaterializationEvent beginIfEnabled()
+    {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        SketchUnionMaterializationEvent event = new SketchUnionMaterializationEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,25 @@
+package com.roblox.trino.udfs.datasketches;
+
+import io.airlift.slice.Slice;
+import org.apache.datasketches.memory.Memory;
+
+import java.nio.ByteOrder;
+
+public final class SliceMemory
+{
+    private SliceMemory() {}
+
+    /**
+     * Wraps the bytes of a slice as a read-only {@link Memory} without copying them.
+     * Sketches built on top of the returned memory must be heapified before they are updated.
+     */
+    public static Memory wrap(Slice slice)
+    {
+        if (slice.hasByteArray()) {
+            // Memory.wrap(byte[], int, int, ByteOrder) does not honor the offset in datasketches-memory 2.2, so use a region
+            return Memory.wrap(slice.byteArray(), ByteOrder.LITTLE_ENDIAN).region(slice.byteArrayOffset(), slice.length(), ByteOrder.LITTLE_ENDIAN);
+        }
+        // Slices which are not backed by a heap array (e.g. off-heap buffers) fall back to a copy
+        return Memory.wrap(slice.getBytes(), ByteOrder.LITTLE_ENDIAN);
+    }
+}
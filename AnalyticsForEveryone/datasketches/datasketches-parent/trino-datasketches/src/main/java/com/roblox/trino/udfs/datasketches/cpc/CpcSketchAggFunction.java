@@ -0,0 +1,179 @@
+package com.roblox.trino.udfs.datasketches.cpc;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AggregationFunction;
+import io.trino.spi.function.CombineFunction;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
+import io.trino.spi.function.InputFunction;
+import io.trino.spi.function.OutputFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+import io.trino.spi.type.VarbinaryType;
+
+@Description("Create a CPC sketch by aggregating values or CPC sketches")
+@AggregationFunction("cpc_sketch")
+public class CpcSketchAggFunction
+{
+    private CpcSketchAggFunction() {}
+
+    private static void put(CpcSketchState state, Slice value, int lgK)
+    {
+        if (state.getCpcSketchProxy() == null) {
+            state.setCpcSketchProxy(new CpcSketchProxy(lgK));
+        }
+        CpcSketchProxy sketch = state.getCpcSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void put(CpcSketchState state, double value, int lgK)
+    {
+        if (state.getCpcSketchProxy() == null) {
+            state.setCpcSketchProxy(new CpcSketchProxy(lgK));
+        }
+        CpcSketchProxy sketch = state.getCpcSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void put(CpcSketchState state, long value, int lgK)
+    {
+        if (state.getCpcSketchProxy() == null) {
+            state.setCpcSketchProxy(new CpcSketchProxy(lgK));
+        }
+        CpcSketchProxy sketch = state.getCpcSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void mergeSketchToState(CpcSketchState state, CpcSketchProxy otherSketch)
+    {
+        if (state.getCpcSketchProxy() == null) {
+            state.setCpcSketchProxy(new CpcSketchProxy(otherSketch.getLgK()));
+        }
+        CpcSketchProxy sketch = state.getCpcSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.merge(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.merge(otherSketch);
+        }
+    }
+
+    @InputFunction
+    public static void inputString(
+            CpcSketchState state,
+            @SqlType(StandardTypes.VARCHAR) Slice value)
+    {
+        put(state, value, CpcSketchProxy.DEFAULT_LG_K);
+    }
+
+    @InputFunction
+    public static void inputDouble(
+            CpcSketchState state,
+            @SqlType(StandardTypes.DOUBLE) double value)
+    {
+        put(state, value, CpcSketchProxy.DEFAULT_LG_K);
+    }
+
+    @InputFunction
+    public static void inputBigint(
+            CpcSketchState state,
+            @SqlType(StandardTypes.BIGINT) long value)
+    {
+        put(state, value, CpcSketchProxy.DEFAULT_LG_K);
+    }
+
+    @InputFunction
+    public static void inputReal(
+            CpcSketchState state,
+            @SqlType(StandardTypes.REAL) long value)
+    {
+        put(state, Float.intBitsToFloat((int) value), CpcSketchProxy.DEFAULT_LG_K);
+    }
+
+    @InputFunction
+    public static void inputSketch(
+            CpcSketchState state,
+            @SqlType(StandardTypes.VARBINARY) Slice value)
+    {
+        mergeSketchToState(state, new CpcSketchProxy(value));
+    }
+
+    @InputFunction
+    public static void inputStringWithLgK(
+            CpcSketchState state,
+            @SqlType(StandardTypes.VARCHAR) Slice value,
+            @SqlType(StandardTypes.BIGINT) long lgK)
+    {
+        put(state, value, (int) lgK);
+    }
+
+    @InputFunction
+    public static void inputDoubleWithLgK(
+            CpcSketchState state,
+            @SqlType(StandardTypes.DOUBLE) double value,
+            @SqlType(StandardTypes.BIGINT) long lgK)
+    {
+        put(state, value, (int) lgK);
+    }
+
+    @InputFunction
+    public static void inputBigintWithLgK(
+            CpcSketchState state,
+            @SqlType(StandardTypes.BIGINT) long value,
+            @SqlType(StandardTypes.BIGINT) long lgK)
+    {
+        put(state, value, (int) lgK);
+    }
+
+    @InputFunction
+    public static void inputRealWithLgK(
+            CpcSketchState state,
+            @SqlType(StandardTypes.REAL) long value,
+            @SqlType(StandardTypes.BIGINT) long lgK)
+    {
+        put(state, Float.intBitsToFloat((int) value), (int) lgK);
+    }
+
+    @CombineFunction
+    public static void combine(CpcSketchState state, CpcSketchState otherState)
+    {
+        CpcSketchProxy otherSketch = otherState.getCpcSketchProxy();
+        if (otherSketch == null) {
+            return;
+        }
+        mergeSketchToState(state, otherSketch);
+    }
+
+    @OutputFunction(StandardTypes.VARBINARY)
+    public static void output(CpcSketchState state, BlockBuilder out)
+    {
+        if (state.getCpcSketchProxy() == null) {
+            state.setCpcSketchProxy(new CpcSketchProxy());
+        }
+        VarbinaryType.VARBINARY.writeSlice(out, state.getCpcSketchProxy().serialize());
+    }
+}
@@ -0,0 +1,44 @@
+package com.roblox.trino.udfs.datasketches.cpc;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.ScalarFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+
+public class CpcSketchEstimateFunctions
+{
+    private CpcSketchEstimateFunctions() {}
+
+    @Description("Estimate the number of distinct values in a CPC sketch")
+    @ScalarFunction("cpc_count_distinct")
+    @SqlType(StandardTypes.BIGINT)
+    public static long cpcSketchEstimate(
+            @SqlType(StandardTypes.VARBINARY) Slice slice)
+    {
+        CpcSketchProxy sketch = new CpcSketchProxy(slice);
+        return sketch.getEstimate();
+    }
+
+    @Description("Get an upper bound on the number of distinct values in a CPC sketch")
+    @ScalarFunction("cpc_count_distinct_ub")
+    @SqlType(StandardTypes.BIGINT)
+    public static long cpcSketchUpperBound(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BIGINT) long numStdDev)
+    {
+        CpcSketchProxy sketch = new CpcSketchProxy(slice);
+        return sketch.getUpperBound(numStdDev);
+    }
+
+    @Description("Get a lower bound on the number of distinct values in a CPC sketch")
+    @ScalarFunction("cpc_count_distinct_lb")
+    @SqlType(StandardTypes.BIGINT)
+    public static long cpcSketchLowerBound(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BIGINT) long numStdDev)
+    {
+        CpcSketchProxy sketch = new CpcSketchProxy(slice);
+        return sketch.getLowerBound(numStdDev);
+    }
+}
@@ -0,0 +1,218 @@
+package com.roblox.trino.udfs.datasketches.cpc;
+
+import com.roblox.trino.udfs.datasketches.SketchHeapifyEvent;
+import com.roblox.trino.udfs.datasketches.SketchMergeEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SketchUnionMaterializationEvent;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.apache.datasketches.cpc.CpcSketch;
+import org.apache.datasketches.cpc.CpcUnion;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+
+/**
+ * Wraps a CPC sketch, which answers the same distinct count questions as an HLL sketch with a noticeably smaller
+ * serialized form, at the cost of a more expensive (de)serialization.
+ * <p>
+ * CPC sketches can not be read in place, so serialized sketches are always copied onto the heap.
+ * Raw values go to the sketch, and once another sketch is merged in the sketch is folded into a union which
+ * is kept for subsequent merges. Raw values added after that are gathered in a fresh sketch and folded into the
+ * union when a result is needed.
+ */
+public class CpcSketchProxy
+{
+    private static final int INSTANCE_SIZE = instanceSize(CpcSketchProxy.class);
+
+    public static final int DEFAULT_LG_K = CpcSketch.DEFAULT_LG_K;
+
+    private final int lgK;
+    private CpcSketch sketch;
+    private CpcUnion union;
+    // Estimated number of coupons folded into the union, which decides whether it is still sparse
+    private long unionCoupons;
+
+    public CpcSketchProxy()
+    {
+        this(DEFAULT_LG_K);
+    }
+
+    public CpcSketchProxy(int lgK)
+    {
+        this(new CpcSketch(lgK));
+    }
+
+    public CpcSketchProxy(CpcSketch sketch)
+    {
+        this.sketch = sketch;
+        this.lgK = sketch.getLgK();
+    }
+
+    public CpcSketchProxy(Slice slice)
+    {
+        this(heapify(slice));
+    }
+
+    public void put(String item)
+    {
+        this.getUpdateSketch().update(item);
+    }
+
+    /**
+     * Updates the sketch with the UTF-8 bytes of a VARCHAR value, which hash the same as the equivalent String
+     * without decoding it first.
+     */
+    public void put(Slice item)
+    {
+        this.getUpdateSketch().update(item.toByteBuffer());
+    }
+
+    public void put(double item)
+    {
+        this.getUpdateSketch().update(item);
+    }
+
+    public void put(long item)
+    {
+        this.getUpdateSketch().update(item);
+    }
+
+    /**
+     * Merges another sketch into this one. The first merge moves this sketch into a union which is kept for
+     * subsequent merges, so merging n sketches costs n merges rather than n full sketch copies.
+     */
+    public void merge(CpcSketchProxy other)
+    {
+        long start = SketchStats.CPC.startTimer();
+        SketchMergeEvent event = SketchMergeEvent.beginIfEnabled();
+        if (this.union == null) {
+            this.union = new CpcUnion(this.lgK);
+        }
+        this.foldSketchIntoUnion();
+        CpcSketch otherSketch = other.getSketch();
+        this.union.update(otherSketch);
+        this.unionCoupons += getCoupons(otherSketch);
+        SketchStats.CPC.recordMerge(start);
+        if (event != null) {
+            event.commit("cpc", this.lgK, getCoupons(otherSketch), other.getEstimatedSize());
+        }
+    }
+
+    public long getEstimate()
+    {
+        return (long) this.getSketch().getEstimate();
+    }
+
+    public long getUpperBound(long numStdDev)
+    {
+        return (long) this.getSketch().getUpperBound((int) numStdDev);
+    }
+
+    public long getLowerBound(long numStdDev)
+    {
+        return (long) this.getSketch().getLowerBound((int) numStdDev);
+    }
+
+    public Slice serialize()
+    {
+        return Slices.wrappedBuffer(this.getSketch().toByteArray());
+    }
+
+    public CpcSketch getSketch()
+    {
+        if (this.union == null) {
+            return this.sketch;
+        }
+        SketchUnionMaterializationEvent event = SketchUnionMaterializationEvent.beginIfEnabled();
+        this.foldSketchIntoUnion();
+        CpcSketch result = this.union.getResult();
+        if (event != null) {
+            event.commit("cpc", this.lgK, this.unionCoupons, this.getEstimatedSize());
+        }
+        return result;
+    }
+
+    public int getLgK()
+    {
+        return this.lgK;
+    }
+
+    /**
+     * The coupons of the sketch and of the union, as estimated from their distinct counts.
+     */
+    public long getCoupons()
+    {
+        return this.unionCoupons + (this.sketch == null ? 0 : getCoupons(this.sketch));
+    }
+
+    public long getEstimatedSize()
+    {
+        long size = INSTANCE_SIZE;
+        if (this.sketch != null) {
+            size += getEstimatedSize(this.sketch);
+        }
+        if (this.union != null) {
+            // A union gathers the coupons of sparse sketches in a sketch of its own, until they fill 3/32 of the
+            // slots or a sketch past its sparse phase is merged, and from then on keeps one 64 bit row per slot
+            if (this.unionCoupons < (3L << this.lgK) / 32) {
+                size += 2L * Integer.BYTES * this.unionCoupons;
+            }
+            else {
+                size += Long.BYTES << this.lgK;
+            }
+        }
+        return size;
+    }
+
+    private void foldSketchIntoUnion()
+    {
+        if (this.sketch != null) {
+            this.union.update(this.sketch);
+            this.unionCoupons += getCoupons(this.sketch);
+            this.sketch = null;
+        }
+    }
+
+    /**
+     * The number of coupons of a sketch is not exposed, but its estimate is close to it while it is sparse, and is
+     * past the sparse threshold otherwise.
+     */
+    private static long getCoupons(CpcSketch sketch)
+    {
+        return sketch.isEmpty() ? 0 : (long) sketch.getEstimate();
+    }
+
+    private static CpcSketch heapify(Slice slice)
+    {
+        SketchHeapifyEvent event = SketchHeapifyEvent.beginIfEnabled();
+        CpcSketch sketch = CpcSketch.heapify(SliceMemory.wrap(slice));
+        if (event != null) {
+            event.commit("cpc", sketch.getLgK(), getCoupons(sketch), slice.length());
+        }
+        return sketch;
+    }
+
+    /**
+     * The heap footprint of a CPC sketch is not exposed, so it is approximated from its estimate: a sparse sketch
+     * holds a hash table of its coupons, which is later replaced by a window of one byte per slot plus a table of
+     * the coupons outside of it, bounded by the largest compressed size for lgK.
+     */
+    private static long getEstimatedSize(CpcSketch sketch)
+    {
+        if (sketch.isEmpty()) {
+            return 0;
+        }
+        long sparseSize = 2L * Integer.BYTES * getCoupons(sketch);
+        long denseSize = (1L << sketch.getLgK()) + CpcSketch.getMaxSerializedBytes(sketch.getLgK());
+        return Math.min(sparseSize, denseSize);
+    }
+
+    private CpcSketch getUpdateSketch()
+    {
+        if (this.sketch == null) {
+            this.sketch = new CpcSketch(this.lgK);
+        }
+        return this.sketch;
+    }
+}
@@ -0,0 +1,50 @@
+package com.roblox.trino.udfs.datasketches.cpc;
+
+import com.roblox.trino.udfs.datasketches.SliceMemory;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.block.Block;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.ScalarFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+import org.apache.datasketches.cpc.CpcSketch;
+import org.apache.datasketches.cpc.CpcUnion;
+
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+
+public class CpcSketchSetFunctions
+{
+    private CpcSketchSetFunctions() {}
+
+    /**
+     * Feeds every sketch of the array to a single union, so the result is only serialized once.
+     */
+    @Description("Union an array of CPC sketches")
+    @ScalarFunction("cpc_union")
+    @SqlType(StandardTypes.VARBINARY)
+    public static Slice cpcSketchUnionArray(
+            @SqlType("array(varbinary)") Block sketches)
+    {
+        CpcSketch[] heapified = new CpcSketch[sketches.getPositionCount()];
+        // The union shrinks to the smallest lgK it is fed, so it starts from the largest one
+        int lgK = -1;
+        for (int i = 0; i < heapified.length; i++) {
+            if (!sketches.isNull(i)) {
+                heapified[i] = CpcSketch.heapify(SliceMemory.wrap(VARBINARY.getSlice(sketches, i)));
+                lgK = Math.max(lgK, heapified[i].getLgK());
+            }
+        }
+        if (lgK < 0) {
+            return new CpcSketchProxy().serialize();
+        }
+
+        CpcUnion union = new CpcUnion(lgK);
+        for (CpcSketch sketch : heapified) {
+            if (sketch != null) {
+                union.update(sketch);
+            }
+        }
+        return Slices.wrappedBuffer(union.getResult().toByteArray());
+    }
+}
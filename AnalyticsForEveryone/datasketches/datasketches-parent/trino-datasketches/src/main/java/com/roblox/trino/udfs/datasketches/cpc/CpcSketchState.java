@@ -0,0 +1,17 @@
+package com.roblox.trino.udfs.datasketches.cpc;
+
+import io.trino.spi.function.AccumulatorState;
+import io.trino.spi.function.AccumulatorStateMetadata;
+
+@AccumulatorStateMetadata(
+        stateSerializerClass = CpcSketchStateSerializer.class,
+        stateFactoryClass = CpcSketchStateFactory.class)
+public interface CpcSketchState
+        extends AccumulatorState
+{
+    CpcSketchProxy getCpcSketchProxy();
+
+    void setCpcSketchProxy(CpcSketchProxy value);
+
+    void addMemoryUsage(long value);
+}
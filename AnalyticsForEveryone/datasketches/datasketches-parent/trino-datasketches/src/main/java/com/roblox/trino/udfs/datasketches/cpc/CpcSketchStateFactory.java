@@ -0,0 +1,107 @@
+package com.roblox.trino.udfs.datasketches.cpc;
+
+import io.trino.array.ObjectBigArray;
+import io.trino.spi.function.AccumulatorStateFactory;
+import io.trino.spi.function.GroupedAccumulatorState;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+
+public class CpcSketchStateFactory
+        implements AccumulatorStateFactory<CpcSketchState>
+{
+    private static final int SIZE_OF_SINGLE = instanceSize(SingleCpcSketchState.class);
+    private static final int SIZE_OF_GROUPED = instanceSize(GroupedCpcSketchState.class);
+
+    @Override
+    public CpcSketchState createSingleState()
+    {
+        return new SingleCpcSketchState();
+    }
+
+    @Override
+    public CpcSketchState createGroupedState()
+    {
+        return new GroupedCpcSketchState();
+    }
+
+    public static class SingleCpcSketchState
+            implements CpcSketchState
+    {
+        public CpcSketchProxy sketch;
+
+        @Override
+        public CpcSketchProxy getCpcSketchProxy()
+        {
+            return sketch;
+        }
+
+        @Override
+        public void setCpcSketchProxy(CpcSketchProxy value)
+        {
+            this.sketch = value;
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            // The size of a single state is read from its proxy on demand
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            if (sketch == null) {
+                return SIZE_OF_SINGLE;
+            }
+            return sketch.getEstimatedSize() + SIZE_OF_SINGLE;
+        }
+    }
+
+    public static class GroupedCpcSketchState
+            implements GroupedAccumulatorState, CpcSketchState
+    {
+        private final ObjectBigArray<CpcSketchProxy> sketches = new ObjectBigArray<>();
+        private long groupId;
+        private long size;
+
+        @Override
+        public void setGroupId(long groupId)
+        {
+            this.groupId = groupId;
+        }
+
+        @Override
+        public void ensureCapacity(long size)
+        {
+            sketches.ensureCapacity(size);
+        }
+
+        @Override
+        public CpcSketchProxy getCpcSketchProxy()
+        {
+            return sketches.get(groupId);
+        }
+
+        @Override
+        public void setCpcSketchProxy(CpcSketchProxy value)
+        {
+            if (getCpcSketchProxy() != null) {
+                size -= getCpcSketchProxy().getEstimatedSize();
+            }
+            size += value.getEstimatedSize();
+            sketches.set(groupId, value);
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            size += value;
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            return size + sketches.sizeOf() + SIZE_OF_GROUPED;
+        }
+    }
+}
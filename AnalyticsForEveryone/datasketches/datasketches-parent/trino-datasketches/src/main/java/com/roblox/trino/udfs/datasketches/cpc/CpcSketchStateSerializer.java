@@ -0,0 +1,50 @@
+package com.roblox.trino.udfs.datasketches.cpc;
+
+import com.roblox.trino.udfs.datasketches.SketchSerializationEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import io.airlift.slice.Slice;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AccumulatorStateSerializer;
+import io.trino.spi.type.Type;
+import io.trino.spi.type.VarbinaryType;
+
+public class CpcSketchStateSerializer
+        implements AccumulatorStateSerializer<CpcSketchState>
+{
+    @Override
+    public Type getSerializedType()
+    {
+        return VarbinaryType.VARBINARY;
+    }
+
+    @Override
+    public void serialize(CpcSketchState state, BlockBuilder out)
+    {
+        if (state.getCpcSketchProxy() == null) {
+            out.appendNull();
+        }
+        else {
+            CpcSketchProxy sketch = state.getCpcSketchProxy();
+            long start = SketchStats.CPC.startTimer();
+            SketchSerializationEvent event = SketchSerializationEvent.beginIfEnabled();
+            Slice serialized = sketch.serialize();
+            VarbinaryType.VARBINARY.writeSlice(out, serialized);
+            SketchStats.CPC.recordSerialize(start, serialized.length());
+            if (event != null) {
+                event.commit("cpc", sketch.getLgK(), sketch.getCoupons(), serialized.length());
+            }
+        }
+    }
+
+    @Override
+    public void deserialize(Block block, int index, CpcSketchState state)
+    {
+        if (!block.isNull(index)) {
+            Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            long start = SketchStats.CPC.startTimer();
+            state.setCpcSketchProxy(new CpcSketchProxy(slice));
+            SketchStats.CPC.recordDeserialize(start, slice.length());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.AggregationFunction;
 import io.trino.spi.function.CombineFunction;
 import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
 import io.trino.spi.function.InputFunction;
 import io.trino.spi.function.OutputFunction;
 import io.trino.spi.function.SqlType;
@@ -17,13 +18,36 @@ public class DoubleItemsSketchAggFunction
 {
     private DoubleItemsSketchAggFunction() {}
 
+    private static void put(DoubleItemsSketchState state, double value, int maxMapSize)
+    {
+        if (state.getItemsSketchProxy() == null) {
+            state.setItemsSketchProxy(new DoubleItemsSketchProxy(maxMapSize));
+        }
+        DoubleItemsSketchProxy sketch = state.getItemsSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
     private static void mergeSketchToState(DoubleItemsSketchState state, DoubleItemsSketchProxy otherSketch)
     {
         if (state.getItemsSketchProxy() == null) {
             state.setItemsSketchProxy(new DoubleItemsSketchProxy(otherSketch.getMaxMapSize()));
         }
         DoubleItemsSketchProxy sketch = state.getItemsSketchProxy();
-        sketch.merge(otherSketch);
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.merge(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.merge(otherSketch);
+        }
     }
 
     @InputFunction
@@ -31,10 +55,7 @@ public class DoubleItemsSketchAggFunction
             DoubleItemsSketchState state,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        if (state.getItemsSketchProxy() == null) {
-            state.setItemsSketchProxy(new DoubleItemsSketchProxy());
-        }
-        state.getItemsSketchProxy().put(value);
+        put(state, value, DoubleItemsSketchProxy.DEFAULT_MAP_SIZE);
     }
 
     @InputFunction
@@ -42,11 +63,7 @@ public class DoubleItemsSketchAggFunction
             DoubleItemsSketchState state,
             @SqlType(StandardTypes.REAL) long value)
     {
-        if (state.getItemsSketchProxy() == null) {
-            state.setItemsSketchProxy(new DoubleItemsSketchProxy());
-        }
-        double doubleValue = Float.intBitsToFloat((int) value);
-        state.getItemsSketchProxy().put(doubleValue);
+        put(state, Float.intBitsToFloat((int) value), DoubleItemsSketchProxy.DEFAULT_MAP_SIZE);
     }
 
     @InputFunction
@@ -55,10 +72,7 @@ public class DoubleItemsSketchAggFunction
             @SqlType(StandardTypes.DOUBLE) double value,
             @SqlType(StandardTypes.BIGINT) long maxSize)
     {
-        if (state.getItemsSketchProxy() == null) {
-            state.setItemsSketchProxy(new DoubleItemsSketchProxy((int) maxSize));
-        }
-        state.getItemsSketchProxy().put(value);
+        put(state, value, (int) maxSize);
     }
 
     @InputFunction
@@ -67,11 +81,7 @@ public class DoubleItemsSketchAggFunction
             @SqlType(StandardTypes.REAL) long value,
             @SqlType(StandardTypes.BIGINT) long maxSize)
     {
-        if (state.getItemsSketchProxy() == null) {
-            state.setItemsSketchProxy(new DoubleItemsSketchProxy((int) maxSize));
-        }
-        double doubleValue = Float.intBitsToFloat((int) value);
-        state.getItemsSketchProxy().put(doubleValue);
+        put(state, Float.intBitsToFloat((int) value), (int) maxSize);
     }
 
     @InputFunction
@@ -85,7 +95,11 @@ public class DoubleItemsSketchAggFunction
     @CombineFunction
     public static void combine(DoubleItemsSketchState state, DoubleItemsSketchState otherState)
     {
-        mergeSketchToState(state, otherState.getItemsSketchProxy());
+        DoubleItemsSketchProxy otherSketch = otherState.getItemsSketchProxy();
+        if (otherSketch == null) {
+            return;
+        }
+        mergeSketchToState(state, otherSketch);
     }
 
     @OutputFunction(StandardTypes.VARBINARY)
@@ -1,6 +1,9 @@
 package com.roblox.trino.udfs.datasketches.doubleitems;
 
+import com.roblox.trino.udfs.datasketches.SketchCache;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.Description;
@@ -9,10 +12,28 @@ import io.trino.spi.function.SqlType;
 import io.trino.spi.type.BigintType;
 import io.trino.spi.type.DoubleType;
 import io.trino.spi.type.IntegerType;
+import io.trino.spi.type.RowType;
 import io.trino.spi.type.StandardTypes;
+import org.apache.datasketches.frequencies.ItemsSketch.Row;
+
+import java.util.List;
+
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+import static io.trino.spi.type.RowType.field;
 
 public class DoubleItemsSketchEstimateFunctions
 {
+    private static final SketchCache<DoubleItemsSketchProxy> SKETCH_CACHE = new SketchCache<>(
+            SketchStats.DOUBLE_ITEMS,
+            (slice, ignored) -> new DoubleItemsSketchProxy(slice),
+            DoubleItemsSketchProxy::getEstimatedSize);
+    private static final String TOP_ITEMS_TYPE = "array(row(item double, estimate bigint, lower_bound bigint, upper_bound bigint))";
+    private static final RowType TOP_ITEM = RowType.from(List.of(
+            field("item", DoubleType.DOUBLE),
+            field("estimate", BigintType.BIGINT),
+            field("lower_bound", BigintType.BIGINT),
+            field("upper_bound", BigintType.BIGINT)));
+
     private DoubleItemsSketchEstimateFunctions() {}
 
     @Description("Estimate the frequency of an item in a double ItemsSketch")
@@ -22,7 +43,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double item)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimate(item);
     }
 
@@ -33,7 +54,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.REAL) long item)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         double itemDouble = Float.intBitsToFloat((int) item);
         return sketch.getEstimate(itemDouble);
     }
@@ -45,7 +66,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block itemsBlock)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             double item = DoubleType.DOUBLE.getDouble(itemsBlock, i);
@@ -61,7 +82,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(real)") Block itemsBlock)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             long longItem = IntegerType.INTEGER.getLong(itemsBlock, i);
@@ -78,7 +99,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double item)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getUpperBound(item);
     }
 
@@ -89,7 +110,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.REAL) long item)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         double itemDouble = Float.intBitsToFloat((int) item);
         return sketch.getUpperBound(itemDouble);
     }
@@ -101,7 +122,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block itemsBlock)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             double item = DoubleType.DOUBLE.getDouble(itemsBlock, i);
@@ -117,7 +138,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(real)") Block itemsBlock)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             long longItem = IntegerType.INTEGER.getLong(itemsBlock, i);
@@ -134,7 +155,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double item)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getLowerBound(item);
     }
 
@@ -145,7 +166,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.REAL) long item)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         double itemDouble = Float.intBitsToFloat((int) item);
         return sketch.getLowerBound(itemDouble);
     }
@@ -157,7 +178,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block itemsBlock)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             double item = DoubleType.DOUBLE.getDouble(itemsBlock, i);
@@ -173,7 +194,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(real)") Block itemsBlock)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             long longItem = IntegerType.INTEGER.getLong(itemsBlock, i);
@@ -190,7 +211,7 @@ public class DoubleItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BOOLEAN) boolean falsePositives)
     {
-        DoubleItemsSketchProxy sketch = new DoubleItemsSketchProxy(slice);
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         double[] frequentItems = sketch.getFrequentItems(falsePositives);
         BlockBuilder blockBuilder = DoubleType.DOUBLE.createBlockBuilder(null, frequentItems.length);
         for (double frequentItem : frequentItems) {
@@ -198,4 +219,53 @@ public class DoubleItemsSketchEstimateFunctions
         }
         return blockBuilder.build();
     }
+
+    @Description("Get the frequent items in a double ItemsSketch with their estimated frequency and its bounds, most frequent first")
+    @ScalarFunction("double_items_sketch_top_items")
+    @SqlType(TOP_ITEMS_TYPE)
+    public static Block itemsSketchTopItems(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BOOLEAN) boolean falsePositives)
+    {
+        return itemsSketchTopItems(slice, falsePositives, Long.MAX_VALUE, 0);
+    }
+
+    @Description("Get the frequent items in a double ItemsSketch with their estimated frequency and its bounds, most frequent first")
+    @ScalarFunction("double_items_sketch_top_items")
+    @SqlType(TOP_ITEMS_TYPE)
+    public static Block itemsSketchTopItems(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BOOLEAN) boolean falsePositives,
+            @SqlType(StandardTypes.BIGINT) long limit)
+    {
+        return itemsSketchTopItems(slice, falsePositives, limit, 0);
+    }
+
+    @Description("Get the frequent items in a double ItemsSketch with their estimated frequency and its bounds, most frequent first")
+    @ScalarFunction("double_items_sketch_top_items")
+    @SqlType(TOP_ITEMS_TYPE)
+    public static Block itemsSketchTopItems(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BOOLEAN) boolean falsePositives,
+            @SqlType(StandardTypes.BIGINT) long limit,
+            @SqlType(StandardTypes.BIGINT) long threshold)
+    {
+        if (limit < 0) {
+            throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "Limit must not be negative: " + limit);
+        }
+        DoubleItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        Row<Double>[] rows = sketch.getFrequentItemRows(falsePositives, threshold);
+        int count = (int) Math.min(rows.length, limit);
+        BlockBuilder blockBuilder = TOP_ITEM.createBlockBuilder(null, count);
+        for (int i = 0; i < count; i++) {
+            Row<Double> row = rows[i];
+            BlockBuilder entry = blockBuilder.beginBlockEntry();
+            DoubleType.DOUBLE.writeDouble(entry, row.getItem());
+            BigintType.BIGINT.writeLong(entry, row.getEstimate());
+            BigintType.BIGINT.writeLong(entry, row.getLowerBound());
+            BigintType.BIGINT.writeLong(entry, row.getUpperBound());
+            blockBuilder.closeEntry();
+        }
+        return blockBuilder.build();
+    }
 }
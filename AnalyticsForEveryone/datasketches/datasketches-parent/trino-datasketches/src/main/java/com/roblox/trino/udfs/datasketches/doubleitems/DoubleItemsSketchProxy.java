@@ -1,19 +1,30 @@
 package com.roblox.trino.udfs.datasketches.doubleitems;
 
-import io.airlift.slice.BasicSliceInput;
+import com.roblox.trino.udfs.datasketches.SketchHeapifyEvent;
+import com.roblox.trino.udfs.datasketches.SketchMergeEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
 import org.apache.datasketches.common.ArrayOfDoublesSerDe;
 import org.apache.datasketches.frequencies.ErrorType;
 import org.apache.datasketches.frequencies.ItemsSketch;
 import org.apache.datasketches.frequencies.ItemsSketch.Row;
-import org.apache.datasketches.memory.WritableMemory;
+import org.apache.datasketches.memory.Memory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOfLongArray;
+import static io.airlift.slice.SizeOf.sizeOfObjectArray;
+import static io.airlift.slice.SizeOf.sizeOfShortArray;
+
 public class DoubleItemsSketchProxy
 {
+    private static final int INSTANCE_SIZE = instanceSize(DoubleItemsSketchProxy.class) + instanceSize(ItemsSketch.class);
+    private static final int DOUBLE_INSTANCE_SIZE = instanceSize(Double.class);
+
     public static final int DEFAULT_MAP_SIZE = 64;
 
     private final ItemsSketch<Double> sketch;
@@ -30,12 +41,12 @@ public class DoubleItemsSketchProxy
 
     public DoubleItemsSketchProxy(Slice slice)
     {
-        BasicSliceInput input = slice.getInput();
-        int length = (int) input.length();
-        byte[] bytes = new byte[length];
-        input.readBytes(bytes);
-        WritableMemory memory = WritableMemory.writableWrap(bytes);
+        SketchHeapifyEvent event = SketchHeapifyEvent.beginIfEnabled();
+        Memory memory = SliceMemory.wrap(slice);
         this.sketch = ItemsSketch.getInstance(memory, new ArrayOfDoublesSerDe());
+        if (event != null) {
+            event.commit("double_items", this.getMaxMapSize(), this.sketch.getNumActiveItems(), slice.length());
+        }
     }
 
     public void put(double item)
@@ -68,9 +79,25 @@ public class DoubleItemsSketchProxy
         return items;
     }
 
+    /**
+     * Returns the frequent items with their estimated frequency and its bounds in a single pass over the sketch,
+     * sorted by decreasing estimate. An item is kept if the bound selected by the error type is at least the threshold,
+     * which is raised to the maximum error of the sketch when it is lower.
+     */
+    public Row<Double>[] getFrequentItemRows(boolean falsePositives, long threshold)
+    {
+        return this.sketch.getFrequentItems(threshold, falsePositives ? ErrorType.NO_FALSE_NEGATIVES : ErrorType.NO_FALSE_POSITIVES);
+    }
+
     public void merge(DoubleItemsSketchProxy other)
     {
+        long start = SketchStats.DOUBLE_ITEMS.startTimer();
+        SketchMergeEvent event = SketchMergeEvent.beginIfEnabled();
         this.sketch.merge(other.getSketch());
+        SketchStats.DOUBLE_ITEMS.recordMerge(start);
+        if (event != null) {
+            event.commit("double_items", this.getMaxMapSize(), other.sketch.getNumActiveItems(), other.getEstimatedSize());
+        }
     }
 
     public Slice serialize()
@@ -97,7 +124,9 @@ public class DoubleItemsSketchProxy
 
     public long getEstimatedSize()
     {
-        byte[] bytes = this.sketch.toByteArray(new ArrayOfDoublesSerDe());
-        return bytes.length;
+        // The hash map holds an item reference, a long count and a short state per slot, at a load factor of 0.75
+        int mapLength = this.sketch.getCurrentMapCapacity() * 4 / 3;
+        return INSTANCE_SIZE + sizeOfObjectArray(mapLength) + sizeOfLongArray(mapLength) + sizeOfShortArray(mapLength)
+                + (long) this.sketch.getNumActiveItems() * DOUBLE_INSTANCE_SIZE;
     }
 }
@@ -12,4 +12,6 @@ public interface DoubleItemsSketchState
     DoubleItemsSketchProxy getItemsSketchProxy();
 
     void setItemsSketchProxy(DoubleItemsSketchProxy value);
+
+    void addMemoryUsage(long value);
 }
@@ -5,13 +5,12 @@ import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.AggregationFunction;
 import io.trino.spi.function.CombineFunction;
 import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
 import io.trino.spi.function.InputFunction;
 import io.trino.spi.function.OutputFunction;
 import io.trino.spi.function.SqlType;
 import io.trino.spi.type.StandardTypes;
 import io.trino.spi.type.VarbinaryType;
-import org.apache.datasketches.hll.HllSketch;
-import org.apache.datasketches.hll.Union;
 
 @Description("Create an hll sketch by aggregating values or hll sketches")
 @AggregationFunction("hll_sketch")
@@ -19,18 +18,68 @@ public class HllSketchAggFunction
 {
     private HllSketchAggFunction() {}
 
+    private static void put(HllSketchState state, Slice value, int lgK)
+    {
+        if (state.getHllSketchProxy() == null) {
+            state.setHllSketchProxy(new HllSketchProxy(lgK));
+        }
+        HllSketchProxy sketch = state.getHllSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void put(HllSketchState state, double value, int lgK)
+    {
+        if (state.getHllSketchProxy() == null) {
+            state.setHllSketchProxy(new HllSketchProxy(lgK));
+        }
+        HllSketchProxy sketch = state.getHllSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void put(HllSketchState state, long value, int lgK)
+    {
+        if (state.getHllSketchProxy() == null) {
+            state.setHllSketchProxy(new HllSketchProxy(lgK));
+        }
+        HllSketchProxy sketch = state.getHllSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
     private static void mergeSketchToState(HllSketchState state, HllSketchProxy otherSketch)
     {
         if (state.getHllSketchProxy() == null) {
             state.setHllSketchProxy(new HllSketchProxy(otherSketch.getLgK()));
         }
         HllSketchProxy sketch = state.getHllSketchProxy();
-
-        Union union = new Union(sketch.getLgK());
-        union.update(sketch.getSketch());
-        union.update(otherSketch.getSketch());
-        HllSketch unionResult = union.getResult(sketch.getSketch().getTgtHllType());
-        state.setHllSketchProxy(new HllSketchProxy(unionResult));
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.merge(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.merge(otherSketch);
+        }
     }
 
     @InputFunction
@@ -38,10 +87,7 @@ public class HllSketchAggFunction
             HllSketchState state,
             @SqlType(StandardTypes.VARCHAR) Slice value)
     {
-        if (state.getHllSketchProxy() == null) {
-            state.setHllSketchProxy(new HllSketchProxy());
-        }
-        state.getHllSketchProxy().put(value.toStringUtf8());
+        put(state, value, HllSketchProxy.DEFAULT_LG_K);
     }
 
     @InputFunction
@@ -49,10 +95,7 @@ public class HllSketchAggFunction
             HllSketchState state,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        if (state.getHllSketchProxy() == null) {
-            state.setHllSketchProxy(new HllSketchProxy());
-        }
-        state.getHllSketchProxy().put(value);
+        put(state, value, HllSketchProxy.DEFAULT_LG_K);
     }
 
     @InputFunction
@@ -60,10 +103,7 @@ public class HllSketchAggFunction
             HllSketchState state,
             @SqlType(StandardTypes.BIGINT) long value)
     {
-        if (state.getHllSketchProxy() == null) {
-            state.setHllSketchProxy(new HllSketchProxy());
-        }
-        state.getHllSketchProxy().put(value);
+        put(state, value, HllSketchProxy.DEFAULT_LG_K);
     }
 
     @InputFunction
@@ -71,11 +111,7 @@ public class HllSketchAggFunction
             HllSketchState state,
             @SqlType(StandardTypes.REAL) long value)
     {
-        if (state.getHllSketchProxy() == null) {
-            state.setHllSketchProxy(new HllSketchProxy());
-        }
-        double doubleValue = Float.intBitsToFloat((int) value);
-        state.getHllSketchProxy().put(doubleValue);
+        put(state, Float.intBitsToFloat((int) value), HllSketchProxy.DEFAULT_LG_K);
     }
 
     @InputFunction
@@ -92,10 +128,7 @@ public class HllSketchAggFunction
             @SqlType(StandardTypes.VARCHAR) Slice value,
             @SqlType(StandardTypes.BIGINT) long lgK)
     {
-        if (state.getHllSketchProxy() == null) {
-            state.setHllSketchProxy(new HllSketchProxy((int) lgK));
-        }
-        state.getHllSketchProxy().put(value.toStringUtf8());
+        put(state, value, (int) lgK);
     }
 
     @InputFunction
@@ -104,10 +137,7 @@ public class HllSketchAggFunction
             @SqlType(StandardTypes.DOUBLE) double value,
             @SqlType(StandardTypes.BIGINT) long lgK)
     {
-        if (state.getHllSketchProxy() == null) {
-            state.setHllSketchProxy(new HllSketchProxy((int) lgK));
-        }
-        state.getHllSketchProxy().put(value);
+        put(state, value, (int) lgK);
     }
 
     @InputFunction
@@ -116,10 +146,7 @@ public class HllSketchAggFunction
             @SqlType(StandardTypes.BIGINT) long value,
             @SqlType(StandardTypes.BIGINT) long lgK)
     {
-        if (state.getHllSketchProxy() == null) {
-            state.setHllSketchProxy(new HllSketchProxy((int) lgK));
-        }
-        state.getHllSketchProxy().put(value);
+        put(state, value, (int) lgK);
     }
 
     @InputFunction
@@ -128,17 +155,17 @@ public class HllSketchAggFunction
             @SqlType(StandardTypes.REAL) long value,
             @SqlType(StandardTypes.BIGINT) long lgK)
     {
-        if (state.getHllSketchProxy() == null) {
-            state.setHllSketchProxy(new HllSketchProxy((int) lgK));
-        }
-        double doubleValue = Float.intBitsToFloat((int) value);
-        state.getHllSketchProxy().put(doubleValue);
+        put(state, Float.intBitsToFloat((int) value), (int) lgK);
     }
 
     @CombineFunction
     public static void combine(HllSketchState state, HllSketchState otherState)
     {
-        mergeSketchToState(state, otherState.getHllSketchProxy());
+        HllSketchProxy otherSketch = otherState.getHllSketchProxy();
+        if (otherSketch == null) {
+            return;
+        }
+        mergeSketchToState(state, otherSketch);
     }
 
     @OutputFunction(StandardTypes.VARBINARY)
@@ -16,6 +16,9 @@ public class HllSketchEstimateFunctions
     public static long hllSketchEstimate(
             @SqlType(StandardTypes.VARBINARY) Slice slice)
     {
+        if (HllSketchHeader.isReadable(slice)) {
+            return (long) HllSketchHeader.getEstimate(slice);
+        }
         HllSketchProxy sketch = new HllSketchProxy(slice);
         return sketch.getEstimate();
     }
@@ -27,6 +30,9 @@ public class HllSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BIGINT) long numStdDev)
     {
+        if (HllSketchHeader.isReadable(slice)) {
+            return (long) HllSketchHeader.getUpperBound(slice, (int) numStdDev);
+        }
         HllSketchProxy sketch = new HllSketchProxy(slice);
         return sketch.getUpperBound(numStdDev);
     }
@@ -38,6 +44,9 @@ public class HllSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BIGINT) long numStdDev)
     {
+        if (HllSketchHeader.isReadable(slice)) {
+            return (long) HllSketchHeader.getLowerBound(slice, (int) numStdDev);
+        }
         HllSketchProxy sketch = new HllSketchProxy(slice);
         return sketch.getLowerBound(numStdDev);
     }
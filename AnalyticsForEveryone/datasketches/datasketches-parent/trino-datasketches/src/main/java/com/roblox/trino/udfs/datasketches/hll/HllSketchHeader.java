@@ -0,0 +1,85 @@
+package com.roblox.trino.udfs.datasketches.hll;
+
+import io.airlift.slice.Slice;
+import org.apache.datasketches.common.Family;
+import org.apache.datasketches.hll.HllSketch;
+
+/**
+ * Reads the estimate and bounds of a serialized HLL sketch straight from its preamble, without wrapping the sketch.
+ * <p>
+ * Sketches in HLL mode which were only ever updated, and not unioned, keep their estimate in the HIP accumulator
+ * of the preamble, along with the number of registers at the minimum value used by the lower bound.
+ * Sketches in list or set mode, and the out of order ones built by a union, derive their estimate from the
+ * coupons or registers instead, so they go through {@link HllSketchProxy}, which also reports malformed ones.
+ */
+public final class HllSketchHeader
+{
+    // Offsets, flags and modes of the preamble, see org.apache.datasketches.hll.PreambleUtil
+    private static final int PREAMBLE_INTS_BYTE = 0;
+    private static final int SER_VER_BYTE = 1;
+    private static final int FAMILY_BYTE = 2;
+    private static final int LG_K_BYTE = 3;
+    private static final int FLAGS_BYTE = 5;
+    private static final int HLL_CUR_MIN_BYTE = 6;
+    private static final int MODE_BYTE = 7;
+    private static final int HIP_ACCUM_DOUBLE = 8;
+    private static final int CUR_MIN_COUNT_INT = 32;
+    private static final int HLL_BYTE_ARR_START = 40;
+
+    private static final int BIG_ENDIAN_FLAG_MASK = 1;
+    private static final int EMPTY_FLAG_MASK = 4;
+    private static final int OUT_OF_ORDER_FLAG_MASK = 16;
+    private static final int REBUILD_CURMIN_NUM_KXQ_MASK = 32;
+
+    private static final int SER_VER = 1;
+    private static final int HLL_PREAMBLE_INTS = 10;
+    private static final int CUR_MODE_MASK = 3;
+    private static final int CUR_MODE_HLL = 2;
+    private static final int HLL_FAMILY_ID = Family.HLL.getID();
+    // The range of lgK accepted by the library, see org.apache.datasketches.hll.HllUtil
+    private static final int MIN_LG_K = 4;
+    private static final int MAX_LG_K = 21;
+
+    private HllSketchHeader() {}
+
+    /**
+     * Returns whether the estimate and bounds of the sketch can be read from its preamble,
+     * because it is a well formed sketch in HLL mode whose HIP accumulator is valid.
+     */
+    public static boolean isReadable(Slice slice)
+    {
+        if (slice.length() < HLL_BYTE_ARR_START) {
+            return false;
+        }
+        int flags = slice.getByte(FLAGS_BYTE) & 0xFF;
+        int lgK = slice.getByte(LG_K_BYTE);
+        return slice.getByte(PREAMBLE_INTS_BYTE) == HLL_PREAMBLE_INTS
+                && slice.getByte(SER_VER_BYTE) == SER_VER
+                && slice.getByte(FAMILY_BYTE) == HLL_FAMILY_ID
+                && (slice.getByte(MODE_BYTE) & CUR_MODE_MASK) == CUR_MODE_HLL
+                && (flags & (BIG_ENDIAN_FLAG_MASK | EMPTY_FLAG_MASK | OUT_OF_ORDER_FLAG_MASK | REBUILD_CURMIN_NUM_KXQ_MASK)) == 0
+                && lgK >= MIN_LG_K
+                && lgK <= MAX_LG_K;
+    }
+
+    public static double getEstimate(Slice slice)
+    {
+        return slice.getDouble(HIP_ACCUM_DOUBLE);
+    }
+
+    public static double getUpperBound(Slice slice, int numStdDev)
+    {
+        double relativeError = HllSketch.getRelErr(true, false, slice.getByte(LG_K_BYTE), numStdDev);
+        return getEstimate(slice) / (1.0 - relativeError);
+    }
+
+    public static double getLowerBound(Slice slice, int numStdDev)
+    {
+        int lgK = slice.getByte(LG_K_BYTE);
+        int k = 1 << lgK;
+        // Registers still at zero have never been hit, so the others hold at least one distinct value each
+        int nonZeroRegisters = slice.getByte(HLL_CUR_MIN_BYTE) == 0 ? k - slice.getInt(CUR_MIN_COUNT_INT) : k;
+        double relativeError = HllSketch.getRelErr(false, false, lgK, numStdDev);
+        return Math.max(getEstimate(slice) / (1.0 + relativeError), nonZeroRegisters);
+    }
+}
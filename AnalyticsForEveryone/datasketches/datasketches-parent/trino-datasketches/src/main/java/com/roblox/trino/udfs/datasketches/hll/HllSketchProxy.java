@@ -1,80 +1,159 @@
 package com.roblox.trino.udfs.datasketches.hll;
 
-import io.airlift.slice.BasicSliceInput;
+import com.roblox.trino.udfs.datasketches.SketchHeapifyEvent;
+import com.roblox.trino.udfs.datasketches.SketchMergeEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SketchUnionMaterializationEvent;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
+import org.apache.datasketches.hll.BaseHllSketch;
 import org.apache.datasketches.hll.HllSketch;
 import org.apache.datasketches.hll.TgtHllType;
-import org.apache.datasketches.memory.WritableMemory;
+import org.apache.datasketches.hll.Union;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 
+import static io.airlift.slice.SizeOf.instanceSize;
+
 public class HllSketchProxy
 {
+    private static final int INSTANCE_SIZE = instanceSize(HllSketchProxy.class);
+
     public static final int DEFAULT_LG_K = HllSketch.DEFAULT_LG_K;
     public static final TgtHllType DEFAULT_HLL_TYPE = TgtHllType.HLL_6;
 
-    private final HllSketch sketch;
+    private final int lgK;
+    private final TgtHllType tgtHllType;
+    private HllSketch sketch;
+    // Once another sketch is merged in, all updates go to this union and the sketch is only materialized on read
+    private Union union;
 
     public HllSketchProxy()
     {
-        this.sketch = new HllSketch(DEFAULT_LG_K, DEFAULT_HLL_TYPE);
+        this(DEFAULT_LG_K);
     }
 
     public HllSketchProxy(int lgK)
     {
-        this.sketch = new HllSketch(lgK, DEFAULT_HLL_TYPE);
+        this(new HllSketch(lgK, DEFAULT_HLL_TYPE));
     }
 
     public HllSketchProxy(HllSketch sketch)
     {
         this.sketch = sketch;
+        this.lgK = sketch.getLgConfigK();
+        this.tgtHllType = sketch.getTgtHllType();
     }
 
     public HllSketchProxy(Slice slice)
     {
-        BasicSliceInput input = slice.getInput();
-        int length = (int) input.length();
-        byte[] bytes = new byte[length];
-        input.readBytes(bytes);
-        WritableMemory memory = WritableMemory.writableWrap(bytes);
-        this.sketch = HllSketch.wrap(memory);
+        this(HllSketch.wrap(SliceMemory.wrap(slice)));
+    }
+
+    /**
+     * Copies a sketch wrapping serialized bytes onto the heap so it can be updated.
+     * Sketches which are already on the heap are left untouched.
+     */
+    public void heapify()
+    {
+        if (this.sketch != null && this.sketch.isMemory()) {
+            SketchHeapifyEvent event = SketchHeapifyEvent.beginIfEnabled();
+            this.sketch = this.sketch.copy();
+            if (event != null) {
+                event.commit("hll", this.lgK, this.getCoupons(), this.sketch.getCompactSerializationBytes());
+            }
+        }
     }
 
     public void put(String item)
     {
+        if (this.union != null) {
+            this.union.update(item);
+            return;
+        }
+        this.heapify();
         this.sketch.update(item);
     }
 
+    /**
+     * Updates the sketch with the UTF-8 bytes of a VARCHAR value, which hash the same as the equivalent String
+     * without decoding it first.
+     */
+    public void put(Slice item)
+    {
+        if (this.union != null) {
+            this.union.update(item.toByteBuffer());
+            return;
+        }
+        this.heapify();
+        this.sketch.update(item.toByteBuffer());
+    }
+
     public void put(double item)
     {
+        if (this.union != null) {
+            this.union.update(item);
+            return;
+        }
+        this.heapify();
         this.sketch.update(item);
     }
 
     public void put(long item)
     {
+        if (this.union != null) {
+            this.union.update(item);
+            return;
+        }
+        this.heapify();
         this.sketch.update(item);
     }
 
+    /**
+     * Merges another sketch into this one. The first merge moves this sketch into a union which is kept for
+     * subsequent merges, so merging n sketches costs n register merges rather than n full sketch copies.
+     */
+    public void merge(HllSketchProxy other)
+    {
+        long start = SketchStats.HLL.startTimer();
+        SketchMergeEvent event = SketchMergeEvent.beginIfEnabled();
+        if (this.union == null) {
+            this.union = new Union(this.lgK);
+            this.union.update(this.sketch);
+            this.sketch = null;
+        }
+        if (other.union != null) {
+            this.union.update(other.union.getResult(TgtHllType.HLL_8));
+        }
+        else {
+            this.union.update(other.sketch);
+        }
+        SketchStats.HLL.recordMerge(start);
+        if (event != null) {
+            event.commit("hll", this.lgK, other.getCoupons(), other.getEstimatedSize());
+        }
+    }
+
     public long getEstimate()
     {
-        return (long) this.sketch.getEstimate();
+        return (long) this.getEstimator().getEstimate();
     }
 
     public long getUpperBound(long numStdDev)
     {
-        return (long) this.sketch.getUpperBound((int) numStdDev);
+        return (long) this.getEstimator().getUpperBound((int) numStdDev);
     }
 
     public long getLowerBound(long numStdDev)
     {
-        return (long) this.sketch.getLowerBound((int) numStdDev);
+        return (long) this.getEstimator().getLowerBound((int) numStdDev);
     }
 
     public Slice serialize()
     {
-        byte[] bytes = this.sketch.toCompactByteArray();
+        byte[] bytes = this.getSketch().toCompactByteArray();
         try (DynamicSliceOutput output = new DynamicSliceOutput(bytes.length)) {
             output.appendBytes(bytes);
             return output.slice();
@@ -86,16 +165,45 @@ public class HllSketchProxy
 
     public HllSketch getSketch()
     {
+        if (this.union != null) {
+            SketchUnionMaterializationEvent event = SketchUnionMaterializationEvent.beginIfEnabled();
+            HllSketch result = this.union.getResult(this.tgtHllType);
+            if (event != null) {
+                event.commit("hll", this.lgK, this.getCoupons(), this.getEstimatedSize());
+            }
+            return result;
+        }
         return this.sketch;
     }
 
+    /**
+     * The number of coupons of a sketch is not exposed, but its estimate is close to it until most of its slots are
+     * filled.
+     */
+    public long getCoupons()
+    {
+        BaseHllSketch estimator = this.getEstimator();
+        return estimator.isEmpty() ? 0 : (long) estimator.getEstimate();
+    }
+
     public int getLgK()
     {
-        return this.sketch.getLgConfigK();
+        return this.lgK;
     }
 
     public long getEstimatedSize()
     {
-        return this.sketch.getCompactSerializationBytes();
+        if (this.union != null) {
+            return INSTANCE_SIZE + this.union.getUpdatableSerializationBytes();
+        }
+        return INSTANCE_SIZE + this.sketch.getUpdatableSerializationBytes();
+    }
+
+    /**
+     * Estimates are read from the union itself, rather than from a sketch materialized by copying its registers.
+     */
+    private BaseHllSketch getEstimator()
+    {
+        return this.union != null ? this.union : this.sketch;
     }
 }
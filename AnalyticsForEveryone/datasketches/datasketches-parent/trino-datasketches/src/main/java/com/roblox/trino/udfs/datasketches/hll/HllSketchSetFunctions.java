@@ -0,0 +1,56 @@
+package com.roblox.trino.udfs.datasketches.hll;
+
+import com.roblox.trino.udfs.datasketches.SliceMemory;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.block.Block;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.ScalarFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.TgtHllType;
+import org.apache.datasketches.hll.Union;
+
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+
+public class HllSketchSetFunctions
+{
+    private HllSketchSetFunctions() {}
+
+    /**
+     * Feeds every sketch of the array to a single union straight from its serialized bytes, so the sketches are
+     * neither copied onto the heap nor serialized again until the result is.
+     */
+    @Description("Union an array of HLL sketches")
+    @ScalarFunction("hll_union")
+    @SqlType(StandardTypes.VARBINARY)
+    public static Slice hllSketchUnionArray(
+            @SqlType("array(varbinary)") Block sketches)
+    {
+        HllSketch[] wrapped = new HllSketch[sketches.getPositionCount()];
+        // The union is sized for the largest input, so no sketch is downsampled before it has to be
+        int lgK = -1;
+        TgtHllType tgtHllType = HllSketchProxy.DEFAULT_HLL_TYPE;
+        for (int i = 0; i < wrapped.length; i++) {
+            if (!sketches.isNull(i)) {
+                wrapped[i] = HllSketch.wrap(SliceMemory.wrap(VARBINARY.getSlice(sketches, i)));
+                if (lgK < 0) {
+                    tgtHllType = wrapped[i].getTgtHllType();
+                }
+                lgK = Math.max(lgK, wrapped[i].getLgConfigK());
+            }
+        }
+        if (lgK < 0) {
+            return new HllSketchProxy().serialize();
+        }
+
+        Union union = new Union(lgK);
+        for (HllSketch sketch : wrapped) {
+            if (sketch != null) {
+                union.update(sketch);
+            }
+        }
+        return Slices.wrappedBuffer(union.getResult(tgtHllType).toCompactByteArray());
+    }
+}
@@ -12,4 +12,6 @@ public interface HllSketchState
     HllSketchProxy getHllSketchProxy();
 
     void setHllSketchProxy(HllSketchProxy value);
+
+    void addMemoryUsage(long value);
 }
@@ -41,6 +41,12 @@ public class HllSketchStateFactory
             this.sketch = value;
         }
 
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            // The size of a single state is read from its proxy on demand
+        }
+
         @Override
         public long getEstimatedSize()
         {
@@ -86,6 +92,12 @@ public class HllSketchStateFactory
             sketches.set(groupId, value);
         }
 
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            size += value;
+        }
+
         @Override
         public long getEstimatedSize()
         {
@@ -1,5 +1,7 @@
 package com.roblox.trino.udfs.datasketches.hll;
 
+import com.roblox.trino.udfs.datasketches.SketchSerializationEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
@@ -23,7 +25,15 @@ public class HllSketchStateSerializer
             out.appendNull();
         }
         else {
-            VarbinaryType.VARBINARY.writeSlice(out, state.getHllSketchProxy().serialize());
+            HllSketchProxy sketch = state.getHllSketchProxy();
+            long start = SketchStats.HLL.startTimer();
+            SketchSerializationEvent event = SketchSerializationEvent.beginIfEnabled();
+            Slice serialized = sketch.serialize();
+            VarbinaryType.VARBINARY.writeSlice(out, serialized);
+            SketchStats.HLL.recordSerialize(start, serialized.length());
+            if (event != null) {
+                event.commit("hll", sketch.getLgK(), sketch.getCoupons(), serialized.length());
+            }
         }
     }
 
@@ -32,7 +42,9 @@ public class HllSketchStateSerializer
     {
         if (!block.isNull(index)) {
             Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            long start = SketchStats.HLL.startTimer();
             state.setHllSketchProxy(new HllSketchProxy(slice));
+            SketchStats.HLL.recordDeserialize(start, slice.length());
         }
     }
 }
@@ -5,6 +5,7 @@ import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.AggregationFunction;
 import io.trino.spi.function.CombineFunction;
 import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
 import io.trino.spi.function.InputFunction;
 import io.trino.spi.function.OutputFunction;
 import io.trino.spi.function.SqlType;
@@ -17,15 +18,44 @@ public class KllDoublesSketchAggFunction
 {
     private KllDoublesSketchAggFunction() {}
 
+    private static void put(KllDoublesSketchState state, double value, int k)
+    {
+        if (state.getKllSketchProxy() == null) {
+            state.setKllSketchProxy(new KllDoublesSketchProxy(k));
+        }
+        KllDoublesSketchProxy sketch = state.getKllSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void mergeSketchToState(KllDoublesSketchState state, KllDoublesSketchProxy otherSketch)
+    {
+        if (state.getKllSketchProxy() == null) {
+            state.setKllSketchProxy(new KllDoublesSketchProxy(otherSketch.getK()));
+        }
+        KllDoublesSketchProxy sketch = state.getKllSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.union(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.union(otherSketch);
+        }
+    }
+
     @InputFunction
     public static void inputDouble(
             KllDoublesSketchState state,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllDoublesSketchProxy());
-        }
-        state.getKllSketchProxy().put(value);
+        put(state, value, KllDoublesSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -33,10 +63,7 @@ public class KllDoublesSketchAggFunction
             KllDoublesSketchState state,
             @SqlType(StandardTypes.BIGINT) long value)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllDoublesSketchProxy());
-        }
-        state.getKllSketchProxy().put((double) value);
+        put(state, (double) value, KllDoublesSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -44,11 +71,7 @@ public class KllDoublesSketchAggFunction
             KllDoublesSketchState state,
             @SqlType(StandardTypes.REAL) long value)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllDoublesSketchProxy());
-        }
-        double doubleValue = Float.intBitsToFloat((int) value);
-        state.getKllSketchProxy().put(doubleValue);
+        put(state, Float.intBitsToFloat((int) value), KllDoublesSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -57,10 +80,7 @@ public class KllDoublesSketchAggFunction
             @SqlType(StandardTypes.DOUBLE) double value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllDoublesSketchProxy((int) k));
-        }
-        state.getKllSketchProxy().put(value);
+        put(state, value, (int) k);
     }
 
     @InputFunction
@@ -69,10 +89,7 @@ public class KllDoublesSketchAggFunction
             @SqlType(StandardTypes.BIGINT) long value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllDoublesSketchProxy((int) k));
-        }
-        state.getKllSketchProxy().put((double) value);
+        put(state, (double) value, (int) k);
     }
 
     @InputFunction
@@ -81,11 +98,7 @@ public class KllDoublesSketchAggFunction
             @SqlType(StandardTypes.REAL) long value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllDoublesSketchProxy((int) k));
-        }
-        double doubleValue = Float.intBitsToFloat((int) value);
-        state.getKllSketchProxy().put(doubleValue);
+        put(state, Float.intBitsToFloat((int) value), (int) k);
     }
 
     @InputFunction
@@ -93,21 +106,17 @@ public class KllDoublesSketchAggFunction
             KllDoublesSketchState state,
             @SqlType(StandardTypes.VARBINARY) Slice value)
     {
-        KllDoublesSketchProxy otherSketch = new KllDoublesSketchProxy(value);
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllDoublesSketchProxy(otherSketch.getK()));
-        }
-        state.getKllSketchProxy().union(otherSketch);
+        mergeSketchToState(state, new KllDoublesSketchProxy(value));
     }
 
     @CombineFunction
     public static void combine(KllDoublesSketchState state, KllDoublesSketchState otherState)
     {
         KllDoublesSketchProxy otherSketch = otherState.getKllSketchProxy();
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllDoublesSketchProxy(otherSketch.getK()));
+        if (otherSketch == null) {
+            return;
         }
-        state.getKllSketchProxy().union(otherSketch);
+        mergeSketchToState(state, otherSketch);
     }
 
     @OutputFunction(StandardTypes.VARBINARY)
@@ -1,5 +1,7 @@
 package com.roblox.trino.udfs.datasketches.klldoubles;
 
+import com.roblox.trino.udfs.datasketches.SketchCache;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
@@ -12,6 +14,11 @@ import io.trino.spi.type.StandardTypes;
 
 public class KllDoublesSketchEstimateFunctions
 {
+    private static final SketchCache<KllDoublesSketchProxy> SKETCH_CACHE = new SketchCache<>(
+            SketchStats.KLL_DOUBLES,
+            (slice, ignored) -> new KllDoublesSketchProxy(slice),
+            KllDoublesSketchProxy::getCachedSize);
+
     private KllDoublesSketchEstimateFunctions() {}
 
     private static Block arrayToBlock(double[] arr)
@@ -23,6 +30,25 @@ public class KllDoublesSketchEstimateFunctions
         return blockBuilder.build();
     }
 
+    private static double[] blockToDoubleArray(Block block)
+    {
+        double[] values = new double[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = DoubleType.DOUBLE.getDouble(block, i);
+        }
+        return values;
+    }
+
+    private static double[] realBlockToDoubleArray(Block block)
+    {
+        double[] values = new double[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            long value = IntegerType.INTEGER.getLong(block, i);
+            values[i] = Float.intBitsToFloat((int) value);
+        }
+        return values;
+    }
+
     @Description("Estimate the value of a quantile in a KLL doubles sketch")
     @ScalarFunction("kll_doubles_estimate_quantile")
     @SqlType(StandardTypes.DOUBLE)
@@ -30,7 +56,7 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double quantile)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateQuantile(quantile);
     }
 
@@ -41,13 +67,8 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block quantileBlock)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
-        double[] quantiles = new double[quantileBlock.getPositionCount()];
-        for (int i = 0; i < quantiles.length; i++) {
-            double quantile = DoubleType.DOUBLE.getDouble(quantileBlock, i);
-            quantiles[i] = sketch.getEstimateQuantile(quantile);
-        }
-        return arrayToBlock(quantiles);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateQuantiles(blockToDoubleArray(quantileBlock)));
     }
 
     @Description("Estimate the lower bound of a value of a quantile in a KLL doubles sketch")
@@ -57,7 +78,7 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double quantile)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateQuantileLowerBound(quantile);
     }
 
@@ -68,13 +89,8 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block quantileBlock)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
-        double[] quantiles = new double[quantileBlock.getPositionCount()];
-        for (int i = 0; i < quantiles.length; i++) {
-            double quantile = DoubleType.DOUBLE.getDouble(quantileBlock, i);
-            quantiles[i] = sketch.getEstimateQuantileLowerBound(quantile);
-        }
-        return arrayToBlock(quantiles);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateQuantilesLowerBound(blockToDoubleArray(quantileBlock)));
     }
 
     @Description("Estimate the upper bound of a value of a quantile in a KLL doubles sketch")
@@ -84,7 +100,7 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double quantile)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateQuantileUpperBound(quantile);
     }
 
@@ -95,13 +111,8 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block quantileBlock)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
-        double[] quantiles = new double[quantileBlock.getPositionCount()];
-        for (int i = 0; i < quantiles.length; i++) {
-            double quantile = DoubleType.DOUBLE.getDouble(quantileBlock, i);
-            quantiles[i] = sketch.getEstimateQuantileUpperBound(quantile);
-        }
-        return arrayToBlock(quantiles);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateQuantilesUpperBound(blockToDoubleArray(quantileBlock)));
     }
 
     @Description("Estimate the rank of a value in a KLL doubles sketch")
@@ -111,7 +122,7 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateRank(value);
     }
 
@@ -122,7 +133,7 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.REAL) long value)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
         double doubleValue = Float.intBitsToFloat((int) value);
         return sketch.getEstimateRank(doubleValue);
     }
@@ -134,13 +145,8 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block valueBlock)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            double value = DoubleType.DOUBLE.getDouble(valueBlock, i);
-            values[i] = sketch.getEstimateRank(value);
-        }
-        return arrayToBlock(values);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanks(blockToDoubleArray(valueBlock)));
     }
 
     @Description("Estimate the rank of a value in a KLL doubles sketch")
@@ -150,14 +156,8 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(real)") Block valueBlock)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            long longValue = IntegerType.INTEGER.getLong(valueBlock, i);
-            double value = Float.intBitsToFloat((int) longValue);
-            values[i] = sketch.getEstimateRank(value);
-        }
-        return arrayToBlock(values);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanks(realBlockToDoubleArray(valueBlock)));
     }
 
     @Description("Estimate the lower bound of a rank in a KLL doubles sketch")
@@ -167,7 +167,7 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateRankLowerBound(value);
     }
 
@@ -178,7 +178,7 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.REAL) long value)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
         double doubleValue = Float.intBitsToFloat((int) value);
         return sketch.getEstimateRankLowerBound(doubleValue);
     }
@@ -190,13 +190,8 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block valueBlock)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            double value = DoubleType.DOUBLE.getDouble(valueBlock, i);
-            values[i] = sketch.getEstimateRankLowerBound(value);
-        }
-        return arrayToBlock(values);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksLowerBound(blockToDoubleArray(valueBlock)));
     }
 
     @Description("Estimate the lower bound of a rank in a KLL doubles sketch")
@@ -206,14 +201,8 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(real)") Block valueBlock)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            long longValue = IntegerType.INTEGER.getLong(valueBlock, i);
-            double value = Float.intBitsToFloat((int) longValue);
-            values[i] = sketch.getEstimateRankLowerBound(value);
-        }
-        return arrayToBlock(values);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksLowerBound(realBlockToDoubleArray(valueBlock)));
     }
 
     @Description("Estimate the upper bound of a rank in a KLL doubles sketch")
@@ -223,7 +212,7 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateRankUpperBound(value);
     }
 
@@ -234,7 +223,7 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.REAL) long value)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
         double doubleValue = Float.intBitsToFloat((int) value);
         return sketch.getEstimateRankUpperBound(doubleValue);
     }
@@ -246,13 +235,8 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block valueBlock)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            double value = DoubleType.DOUBLE.getDouble(valueBlock, i);
-            values[i] = sketch.getEstimateRankUpperBound(value);
-        }
-        return arrayToBlock(values);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksUpperBound(blockToDoubleArray(valueBlock)));
     }
 
     @Description("Estimate the upper bound of a rank in a KLL doubles sketch")
@@ -262,13 +246,29 @@ public class KllDoublesSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(real)") Block valueBlock)
     {
-        KllDoublesSketchProxy sketch = new KllDoublesSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            long longValue = IntegerType.INTEGER.getLong(valueBlock, i);
-            double value = Float.intBitsToFloat((int) longValue);
-            values[i] = sketch.getEstimateRankUpperBound(value);
-        }
-        return arrayToBlock(values);
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksUpperBound(realBlockToDoubleArray(valueBlock)));
+    }
+
+    @Description("Estimate the cumulative distribution of a KLL doubles sketch at a list of split points")
+    @ScalarFunction("kll_doubles_cdf")
+    @SqlType("array(double)")
+    public static Block kllSketchCdf(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block splitPointBlock)
+    {
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getCDF(blockToDoubleArray(splitPointBlock)));
+    }
+
+    @Description("Estimate the probability mass of the intervals between a list of split points in a KLL doubles sketch")
+    @ScalarFunction("kll_doubles_pmf")
+    @SqlType("array(double)")
+    public static Block kllSketchPmf(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block splitPointBlock)
+    {
+        KllDoublesSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getPMF(blockToDoubleArray(splitPointBlock)));
     }
 }
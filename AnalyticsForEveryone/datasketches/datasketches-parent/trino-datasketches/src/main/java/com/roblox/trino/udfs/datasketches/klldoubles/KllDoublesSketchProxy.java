@@ -1,17 +1,37 @@
 package com.roblox.trino.udfs.datasketches.klldoubles;
 
-import io.airlift.slice.BasicSliceInput;
+import com.roblox.trino.udfs.datasketches.SketchHeapifyEvent;
+import com.roblox.trino.udfs.datasketches.SketchMergeEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
 import org.apache.datasketches.kll.KllDoublesSketch;
-import org.apache.datasketches.memory.WritableMemory;
+import org.apache.datasketches.kll.KllSketch;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.quantilescommon.DoublesSortedView;
+import org.apache.datasketches.quantilescommon.InequalitySearch;
+import org.apache.datasketches.quantilescommon.QuantileSearchCriteria;
+import org.apache.datasketches.quantilescommon.QuantilesUtil;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOf;
 
 public class KllDoublesSketchProxy
 {
-    public final KllDoublesSketch sketch;
+    private static final int INSTANCE_SIZE = instanceSize(KllDoublesSketchProxy.class);
+
+    public static final int DEFAULT_K = KllSketch.DEFAULT_K;
+
+    private KllDoublesSketch sketch;
+    // The serialized bytes wrapped by a read-only sketch, heapified from directly on the first update
+    private Memory memory;
+    // Sorted items and cumulative weights of the sketch, built on the first quantile or rank lookup
+    private volatile SortedItems sortedItems;
 
     public KllDoublesSketchProxy()
     {
@@ -25,54 +45,142 @@ public class KllDoublesSketchProxy
 
     public KllDoublesSketchProxy(Slice slice)
     {
-        BasicSliceInput input = slice.getInput();
-        int length = (int) input.length();
-        byte[] bytes = new byte[length];
-        input.readBytes(bytes);
-        WritableMemory memory = WritableMemory.writableWrap(bytes);
-        this.sketch = KllDoublesSketch.wrap(memory);
+        this.memory = SliceMemory.wrap(slice);
+        this.sketch = KllDoublesSketch.wrap(this.memory);
+    }
+
+    /**
+     * Copies a sketch wrapping serialized bytes onto the heap so it can be updated.
+     * Sketches which are already on the heap are left untouched.
+     */
+    public void heapify()
+    {
+        if (this.sketch.isReadOnly()) {
+            SketchHeapifyEvent event = SketchHeapifyEvent.beginIfEnabled();
+            long bytes = this.memory.getCapacity();
+            this.sketch = KllDoublesSketch.heapify(this.memory);
+            this.memory = null;
+            if (event != null) {
+                event.commit("kll_doubles", this.sketch.getK(), this.sketch.getNumRetained(), bytes);
+            }
+        }
     }
 
     public void put(double item)
     {
+        this.heapify();
         this.sketch.update(item);
+        // Only written once the view was built, so adding a row does not pay for a volatile write
+        if (this.sortedItems != null) {
+            this.sortedItems = null;
+        }
     }
 
     public void union(KllDoublesSketchProxy other)
     {
+        long start = SketchStats.KLL_DOUBLES.startTimer();
+        SketchMergeEvent event = SketchMergeEvent.beginIfEnabled();
+        this.heapify();
         this.sketch.merge(other.sketch);
+        if (this.sortedItems != null) {
+            this.sortedItems = null;
+        }
+        SketchStats.KLL_DOUBLES.recordMerge(start);
+        if (event != null) {
+            event.commit("kll_doubles", this.sketch.getK(), other.sketch.getNumRetained(), other.getEstimatedSize());
+        }
     }
 
+    /**
+     * Single quantiles and ranks are looked up in the same sorted view as arrays of them, rather than in the one the
+     * sketch keeps, so a sketch read both ways only sorts its items once.
+     */
     public double getEstimateQuantile(double quantile)
     {
-        return this.sketch.getQuantile(quantile);
+        return this.getQuantiles(new double[] {quantile}, 0)[0];
     }
 
     public double getEstimateQuantileUpperBound(double quantile)
     {
-        return this.sketch.getQuantileUpperBound(quantile);
+        return this.getQuantiles(new double[] {quantile}, this.sketch.getNormalizedRankError(false))[0];
     }
 
     public double getEstimateQuantileLowerBound(double quantile)
     {
-        return this.sketch.getQuantileLowerBound(quantile);
+        return this.getQuantiles(new double[] {quantile}, -this.sketch.getNormalizedRankError(false))[0];
     }
 
     public double getEstimateRank(double value)
     {
-        return this.sketch.getRank(value);
+        return this.getRanks(new double[] {value}, 0)[0];
     }
 
     public double getEstimateRankUpperBound(double value)
     {
-        double rank = this.getEstimateRank(value);
-        return this.sketch.getRankUpperBound(rank);
+        return this.getRanks(new double[] {value}, this.sketch.getNormalizedRankError(false))[0];
     }
 
     public double getEstimateRankLowerBound(double value)
     {
-        double rank = this.getEstimateRank(value);
-        return this.sketch.getRankLowerBound(rank);
+        return this.getRanks(new double[] {value}, -this.sketch.getNormalizedRankError(false))[0];
+    }
+
+    public double[] getEstimateQuantiles(double[] quantiles)
+    {
+        return this.getQuantiles(quantiles, 0);
+    }
+
+    public double[] getEstimateQuantilesUpperBound(double[] quantiles)
+    {
+        return this.getQuantiles(quantiles, this.sketch.getNormalizedRankError(false));
+    }
+
+    public double[] getEstimateQuantilesLowerBound(double[] quantiles)
+    {
+        return this.getQuantiles(quantiles, -this.sketch.getNormalizedRankError(false));
+    }
+
+    public double[] getEstimateRanks(double[] values)
+    {
+        return this.getRanks(values, 0);
+    }
+
+    public double[] getEstimateRanksUpperBound(double[] values)
+    {
+        return this.getRanks(values, this.sketch.getNormalizedRankError(false));
+    }
+
+    public double[] getEstimateRanksLowerBound(double[] values)
+    {
+        return this.getRanks(values, -this.sketch.getNormalizedRankError(false));
+    }
+
+    /**
+     * Estimates the cumulative distribution at the given split points, which must be unique and increasing.
+     * The result has one more entry than the split points, the last one always being 1.
+     */
+    public double[] getCDF(double[] splitPoints)
+    {
+        if (this.sketch.isEmpty()) {
+            return this.sketch.getCDF(splitPoints);
+        }
+        QuantilesUtil.checkDoublesSplitPointsOrder(splitPoints);
+        // Split points are increasing, so their ranks are found in a single walk over the sorted view
+        double[] cdf = Arrays.copyOf(this.getRanks(splitPoints, 0), splitPoints.length + 1);
+        cdf[splitPoints.length] = 1.0;
+        return cdf;
+    }
+
+    /**
+     * Estimates the probability mass of each interval delimited by the given split points.
+     */
+    public double[] getPMF(double[] splitPoints)
+    {
+        double[] pmf = this.getCDF(splitPoints);
+        for (int i = pmf.length - 1; i > 0; i--) {
+            pmf[i] -= pmf[i - 1];
+        }
+        return pmf;
     }
 
     public Slice serialize()
@@ -92,8 +200,145 @@ public class KllDoublesSketchProxy
         return this.sketch.getK();
     }
 
+    public int getNumRetained()
+    {
+        return this.sketch.getNumRetained();
+    }
+
     public long getEstimatedSize()
     {
-        return this.sketch.getSerializedSizeBytes();
+        long size = INSTANCE_SIZE + this.sketch.getSerializedSizeBytes();
+        SortedItems sortedItems = this.sortedItems;
+        if (sortedItems != null) {
+            size += sizeOf(sortedItems.items) + sizeOf(sortedItems.cumulativeWeights);
+        }
+        return size;
+    }
+
+    /**
+     * The size of a proxy held by the sketch cache, whose key already holds the bytes a read-only sketch wraps.
+     * The cache weighs an entry once, so the sorted items the first lookup builds are counted up front.
+     */
+    public long getCachedSize()
+    {
+        long size = INSTANCE_SIZE + (long) this.sketch.getNumRetained() * (Double.BYTES + Long.BYTES);
+        if (this.memory == null) {
+            size += this.sketch.getSerializedSizeBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Looks up an array of normalized ranks, shifted by the given rank error, in the sorted view.
+     * Each search starts from the previous match while the ranks are ascending, so sorted ranks are resolved in a single walk.
+     */
+    private double[] getQuantiles(double[] quantiles, double rankOffset)
+    {
+        double[] results = new double[quantiles.length];
+        if (this.sketch.isEmpty()) {
+            // Let the sketch raise its usual error for empty sketches
+            for (int i = 0; i < quantiles.length; i++) {
+                results[i] = this.sketch.getQuantile(quantiles[i]);
+            }
+            return results;
+        }
+        SortedItems sortedItems = this.getSortedItems();
+        long n = this.sketch.getN();
+        int last = sortedItems.cumulativeWeights.length - 1;
+        int start = 0;
+        double previousRank = 0;
+        for (int i = 0; i < quantiles.length; i++) {
+            double rank = quantiles[i] + rankOffset;
+            if (rankOffset < 0) {
+                rank = Math.max(0, rank);
+            }
+            else if (rankOffset > 0) {
+                rank = Math.min(1, rank);
+            }
+            QuantilesUtil.checkNormalizedRankBounds(rank);
+            if (!(rank >= previousRank)) {
+                start = 0;
+            }
+            previousRank = rank;
+            double naturalRank = QuantilesUtil.getNaturalRank(rank, n, QuantileSearchCriteria.INCLUSIVE);
+            int index = InequalitySearch.find(sortedItems.cumulativeWeights, start, last, naturalRank, InequalitySearch.GE);
+            start = index == -1 ? last : index;
+            results[i] = sortedItems.items[start];
+        }
+        return results;
+    }
+
+    /**
+     * Looks up the normalized rank of an array of values in the sorted view, shifted by the given rank error.
+     * Each search starts from the previous match while the values are ascending, so sorted values are resolved in a single walk.
+     */
+    private double[] getRanks(double[] values, double rankOffset)
+    {
+        double[] results = new double[values.length];
+        if (this.sketch.isEmpty()) {
+            // Let the sketch raise its usual error for empty sketches
+            for (int i = 0; i < values.length; i++) {
+                results[i] = this.sketch.getRank(values[i]);
+            }
+            return results;
+        }
+        SortedItems sortedItems = this.getSortedItems();
+        double n = this.sketch.getN();
+        int last = sortedItems.items.length - 1;
+        int start = 0;
+        double previousValue = 0;
+        for (int i = 0; i < values.length; i++) {
+            // Comparisons with NaN are false, so a NaN value also restarts the search from the beginning
+            if (i == 0 || !(values[i] >= previousValue)) {
+                start = 0;
+            }
+            previousValue = values[i];
+            int index = InequalitySearch.find(sortedItems.items, start, last, values[i], InequalitySearch.LE);
+            double rank = 0;
+            if (index != -1) {
+                rank = sortedItems.cumulativeWeights[index] / n;
+                start = index;
+            }
+            if (rankOffset < 0) {
+                rank = Math.max(0, rank + rankOffset);
+            }
+            else if (rankOffset > 0) {
+                rank = Math.min(1, rank + rankOffset);
+            }
+            results[i] = rank;
+        }
+        return results;
+    }
+
+    /**
+     * Sorts the items of the sketch on the first lookup. A cached proxy is shared by the driver threads, so the
+     * first of them to look it up builds the view while holding the lock, and the volatile field publishes it.
+     */
+    private SortedItems getSortedItems()
+    {
+        SortedItems sortedItems = this.sortedItems;
+        if (sortedItems == null) {
+            synchronized (this) {
+                sortedItems = this.sortedItems;
+                if (sortedItems == null) {
+                    DoublesSortedView sortedView = this.sketch.getSortedView();
+                    sortedItems = new SortedItems(sortedView.getQuantiles(), sortedView.getCumulativeWeights());
+                    this.sortedItems = sortedItems;
+                }
+            }
+        }
+        return sortedItems;
+    }
+
+    private static final class SortedItems
+    {
+        private final double[] items;
+        private final long[] cumulativeWeights;
+
+        private SortedItems(double[] items, long[] cumulativeWeights)
+        {
+            this.items = items;
+            this.cumulativeWeights = cumulativeWeights;
+        }
     }
 }
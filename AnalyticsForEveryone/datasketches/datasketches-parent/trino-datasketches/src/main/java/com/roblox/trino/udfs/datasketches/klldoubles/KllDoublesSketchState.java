@@ -12,4 +12,6 @@ public interface KllDoublesSketchState
     KllDoublesSketchProxy getKllSketchProxy();
 
     void setKllSketchProxy(KllDoublesSketchProxy value);
+
+    void addMemoryUsage(long value);
 }
@@ -1,5 +1,7 @@
 package com.roblox.trino.udfs.datasketches.klldoubles;
 
+import com.roblox.trino.udfs.datasketches.SketchSerializationEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
@@ -23,7 +25,15 @@ public class KllDoublesSketchStateSerializer
             out.appendNull();
         }
         else {
-            VarbinaryType.VARBINARY.writeSlice(out, state.getKllSketchProxy().serialize());
+            KllDoublesSketchProxy sketch = state.getKllSketchProxy();
+            long start = SketchStats.KLL_DOUBLES.startTimer();
+            SketchSerializationEvent event = SketchSerializationEvent.beginIfEnabled();
+            Slice serialized = sketch.serialize();
+            VarbinaryType.VARBINARY.writeSlice(out, serialized);
+            SketchStats.KLL_DOUBLES.recordSerialize(start, serialized.length());
+            if (event != null) {
+                event.commit("kll_doubles", sketch.getK(), sketch.getNumRetained(), serialized.length());
+            }
         }
     }
 
@@ -32,7 +42,9 @@ public class KllDoublesSketchStateSerializer
     {
         if (!block.isNull(index)) {
             Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            long start = SketchStats.KLL_DOUBLES.startTimer();
             state.setKllSketchProxy(new KllDoublesSketchProxy(slice));
+            SketchStats.KLL_DOUBLES.recordDeserialize(start, slice.length());
         }
     }
 }
@@ -5,6 +5,7 @@ import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.AggregationFunction;
 import io.trino.spi.function.CombineFunction;
 import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
 import io.trino.spi.function.InputFunction;
 import io.trino.spi.function.OutputFunction;
 import io.trino.spi.function.SqlType;
@@ -17,15 +18,44 @@ public class KllFloatsSketchAggFunction
 {
     private KllFloatsSketchAggFunction() {}
 
+    private static void put(KllFloatsSketchState state, float value, int k)
+    {
+        if (state.getKllSketchProxy() == null) {
+            state.setKllSketchProxy(new KllFloatsSketchProxy(k));
+        }
+        KllFloatsSketchProxy sketch = state.getKllSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void mergeSketchToState(KllFloatsSketchState state, KllFloatsSketchProxy otherSketch)
+    {
+        if (state.getKllSketchProxy() == null) {
+            state.setKllSketchProxy(new KllFloatsSketchProxy(otherSketch.getK()));
+        }
+        KllFloatsSketchProxy sketch = state.getKllSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.union(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.union(otherSketch);
+        }
+    }
+
     @InputFunction
     public static void inputDouble(
             KllFloatsSketchState state,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllFloatsSketchProxy());
-        }
-        state.getKllSketchProxy().put((float) value);
+        put(state, (float) value, KllFloatsSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -33,10 +63,7 @@ public class KllFloatsSketchAggFunction
             KllFloatsSketchState state,
             @SqlType(StandardTypes.BIGINT) long value)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllFloatsSketchProxy());
-        }
-        state.getKllSketchProxy().put((float) value);
+        put(state, (float) value, KllFloatsSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -44,11 +71,7 @@ public class KllFloatsSketchAggFunction
             KllFloatsSketchState state,
             @SqlType(StandardTypes.REAL) long value)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllFloatsSketchProxy());
-        }
-        float floatValue = Float.intBitsToFloat((int) value);
-        state.getKllSketchProxy().put(floatValue);
+        put(state, Float.intBitsToFloat((int) value), KllFloatsSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -56,11 +79,7 @@ public class KllFloatsSketchAggFunction
             KllFloatsSketchState state,
             @SqlType(StandardTypes.VARBINARY) Slice value)
     {
-        KllFloatsSketchProxy otherSketch = new KllFloatsSketchProxy(value);
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllFloatsSketchProxy(otherSketch.getK()));
-        }
-        state.getKllSketchProxy().union(otherSketch);
+        mergeSketchToState(state, new KllFloatsSketchProxy(value));
     }
 
     @InputFunction
@@ -69,10 +88,7 @@ public class KllFloatsSketchAggFunction
             @SqlType(StandardTypes.DOUBLE) double value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllFloatsSketchProxy((int) k));
-        }
-        state.getKllSketchProxy().put((float) value);
+        put(state, (float) value, (int) k);
     }
 
     @InputFunction
@@ -81,10 +97,7 @@ public class KllFloatsSketchAggFunction
             @SqlType(StandardTypes.BIGINT) long value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllFloatsSketchProxy((int) k));
-        }
-        state.getKllSketchProxy().put((float) value);
+        put(state, (float) value, (int) k);
     }
 
     @InputFunction
@@ -93,21 +106,17 @@ public class KllFloatsSketchAggFunction
             @SqlType(StandardTypes.REAL) long value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllFloatsSketchProxy((int) k));
-        }
-        float floatValue = Float.intBitsToFloat((int) value);
-        state.getKllSketchProxy().put(floatValue);
+        put(state, Float.intBitsToFloat((int) value), (int) k);
     }
 
     @CombineFunction
     public static void combine(KllFloatsSketchState state, KllFloatsSketchState otherState)
     {
         KllFloatsSketchProxy otherSketch = otherState.getKllSketchProxy();
-        if (state.getKllSketchProxy() == null) {
-            state.setKllSketchProxy(new KllFloatsSketchProxy(otherSketch.getK()));
+        if (otherSketch == null) {
+            return;
         }
-        state.getKllSketchProxy().union(otherSketch);
+        mergeSketchToState(state, otherSketch);
     }
 
     @OutputFunction(StandardTypes.VARBINARY)
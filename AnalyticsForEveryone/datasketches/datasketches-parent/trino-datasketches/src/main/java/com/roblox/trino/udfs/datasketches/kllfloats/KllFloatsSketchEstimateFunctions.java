@@ -1,5 +1,7 @@
 package com.roblox.trino.udfs.datasketches.kllfloats;
 
+import com.roblox.trino.udfs.datasketches.SketchCache;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
@@ -12,6 +14,11 @@ import io.trino.spi.type.StandardTypes;
 
 public class KllFloatsSketchEstimateFunctions
 {
+    private static final SketchCache<KllFloatsSketchProxy> SKETCH_CACHE = new SketchCache<>(
+            SketchStats.KLL_FLOATS,
+            (slice, ignored) -> new KllFloatsSketchProxy(slice),
+            KllFloatsSketchProxy::getCachedSize);
+
     private KllFloatsSketchEstimateFunctions() {}
 
     private static Block arrayToBlock(double[] arr)
@@ -23,6 +30,34 @@ public class KllFloatsSketchEstimateFunctions
         return blockBuilder.build();
     }
 
+    private static double[] blockToDoubleArray(Block block)
+    {
+        double[] values = new double[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = DoubleType.DOUBLE.getDouble(block, i);
+        }
+        return values;
+    }
+
+    private static float[] blockToFloatArray(Block block)
+    {
+        float[] values = new float[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) DoubleType.DOUBLE.getDouble(block, i);
+        }
+        return values;
+    }
+
+    private static float[] realBlockToFloatArray(Block block)
+    {
+        float[] values = new float[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            long value = IntegerType.INTEGER.getLong(block, i);
+            values[i] = Float.intBitsToFloat((int) value);
+        }
+        return values;
+    }
+
     @Description("Estimate the value of a quantile in a KLL floats sketch")
     @ScalarFunction("kll_floats_estimate_quantile")
     @SqlType(StandardTypes.DOUBLE)
@@ -30,7 +65,7 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double quantile)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateQuantile(quantile);
     }
 
@@ -41,13 +76,8 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block quantileBlock)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
-        double[] quantiles = new double[quantileBlock.getPositionCount()];
-        for (int i = 0; i < quantiles.length; i++) {
-            double quantile = DoubleType.DOUBLE.getDouble(quantileBlock, i);
-            quantiles[i] = sketch.getEstimateQuantile(quantile);
-        }
-        return arrayToBlock(quantiles);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateQuantiles(blockToDoubleArray(quantileBlock)));
     }
 
     @Description("Estimate the lower bound of a value of a quantile in a KLL floats sketch")
@@ -57,7 +87,7 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double quantile)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateQuantileLowerBound(quantile);
     }
 
@@ -68,13 +98,8 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block quantileBlock)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
-        double[] quantiles = new double[quantileBlock.getPositionCount()];
-        for (int i = 0; i < quantiles.length; i++) {
-            double quantile = DoubleType.DOUBLE.getDouble(quantileBlock, i);
-            quantiles[i] = sketch.getEstimateQuantileLowerBound(quantile);
-        }
-        return arrayToBlock(quantiles);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateQuantilesLowerBound(blockToDoubleArray(quantileBlock)));
     }
 
     @Description("Estimate the upper bound of a value of a quantile in a KLL floats sketch")
@@ -84,7 +109,7 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double quantile)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateQuantileUpperBound(quantile);
     }
 
@@ -95,13 +120,8 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block quantileBlock)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
-        double[] quantiles = new double[quantileBlock.getPositionCount()];
-        for (int i = 0; i < quantiles.length; i++) {
-            double quantile = DoubleType.DOUBLE.getDouble(quantileBlock, i);
-            quantiles[i] = sketch.getEstimateQuantileUpperBound(quantile);
-        }
-        return arrayToBlock(quantiles);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateQuantilesUpperBound(blockToDoubleArray(quantileBlock)));
     }
 
     @Description("Estimate the rank of a value in a KLL floats sketch")
@@ -111,7 +131,7 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateRank((float) value);
     }
 
@@ -122,7 +142,7 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.REAL) long value)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
         float floatValue = Float.intBitsToFloat((int) value);
         return sketch.getEstimateRank(floatValue);
     }
@@ -134,13 +154,8 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block valueBlock)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            double value = DoubleType.DOUBLE.getDouble(valueBlock, i);
-            values[i] = sketch.getEstimateRank((float) value);
-        }
-        return arrayToBlock(values);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanks(blockToFloatArray(valueBlock)));
     }
 
     @Description("Estimate the rank of a value in a KLL floats sketch")
@@ -150,14 +165,8 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(real)") Block valueBlock)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            long value = IntegerType.INTEGER.getLong(valueBlock, i);
-            float floatValue = Float.intBitsToFloat((int) value);
-            values[i] = sketch.getEstimateRank(floatValue);
-        }
-        return arrayToBlock(values);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanks(realBlockToFloatArray(valueBlock)));
     }
 
     @Description("Estimate the lower bound of a rank in a KLL floats sketch")
@@ -167,7 +176,7 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateRankLowerBound((float) value);
     }
 
@@ -178,7 +187,7 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.REAL) long value)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
         float floatValue = Float.intBitsToFloat((int) value);
         return sketch.getEstimateRankLowerBound(floatValue);
     }
@@ -190,13 +199,8 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block valueBlock)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            double value = DoubleType.DOUBLE.getDouble(valueBlock, i);
-            values[i] = sketch.getEstimateRankLowerBound((float) value);
-        }
-        return arrayToBlock(values);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksLowerBound(blockToFloatArray(valueBlock)));
     }
 
     @Description("Estimate the lower bound of a rank in a KLL floats sketch")
@@ -206,14 +210,8 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(real)") Block valueBlock)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            long value = IntegerType.INTEGER.getLong(valueBlock, i);
-            float floatValue = Float.intBitsToFloat((int) value);
-            values[i] = sketch.getEstimateRankLowerBound(floatValue);
-        }
-        return arrayToBlock(values);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksLowerBound(realBlockToFloatArray(valueBlock)));
     }
 
     @Description("Estimate the upper bound of a rank in a KLL floats sketch")
@@ -223,7 +221,7 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimateRankUpperBound((float) value);
     }
 
@@ -234,7 +232,7 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.REAL) long value)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
         float floatValue = Float.intBitsToFloat((int) value);
         return sketch.getEstimateRankUpperBound(floatValue);
     }
@@ -246,13 +244,8 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(double)") Block valueBlock)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            double value = DoubleType.DOUBLE.getDouble(valueBlock, i);
-            values[i] = sketch.getEstimateRankUpperBound((float) value);
-        }
-        return arrayToBlock(values);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksUpperBound(blockToFloatArray(valueBlock)));
     }
 
     @Description("Estimate the upper bound of a rank in a KLL floats sketch")
@@ -262,13 +255,29 @@ public class KllFloatsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(real)") Block valueBlock)
     {
-        KllFloatsSketchProxy sketch = new KllFloatsSketchProxy(slice);
-        double[] values = new double[valueBlock.getPositionCount()];
-        for (int i = 0; i < values.length; i++) {
-            long value = IntegerType.INTEGER.getLong(valueBlock, i);
-            float floatValue = Float.intBitsToFloat((int) value);
-            values[i] = sketch.getEstimateRankUpperBound(floatValue);
-        }
-        return arrayToBlock(values);
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksUpperBound(realBlockToFloatArray(valueBlock)));
+    }
+
+    @Description("Estimate the cumulative distribution of a KLL floats sketch at a list of split points")
+    @ScalarFunction("kll_floats_cdf")
+    @SqlType("array(double)")
+    public static Block kllSketchCdf(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block splitPointBlock)
+    {
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getCDF(blockToFloatArray(splitPointBlock)));
+    }
+
+    @Description("Estimate the probability mass of the intervals between a list of split points in a KLL floats sketch")
+    @ScalarFunction("kll_floats_pmf")
+    @SqlType("array(double)")
+    public static Block kllSketchPmf(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block splitPointBlock)
+    {
+        KllFloatsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getPMF(blockToFloatArray(splitPointBlock)));
     }
 }
@@ -12,4 +12,6 @@ public interface KllFloatsSketchState
     KllFloatsSketchProxy getKllSketchProxy();
 
     void setKllSketchProxy(KllFloatsSketchProxy value);
+
+    void addMemoryUsage(long value);
 }
@@ -1,5 +1,7 @@
 package com.roblox.trino.udfs.datasketches.kllfloats;
 
+import com.roblox.trino.udfs.datasketches.SketchSerializationEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
@@ -23,7 +25,15 @@ public class KllFloatsSketchStateSerializer
             out.appendNull();
         }
         else {
-            VarbinaryType.VARBINARY.writeSlice(out, state.getKllSketchProxy().serialize());
+            KllFloatsSketchProxy sketch = state.getKllSketchProxy();
+            long start = SketchStats.KLL_FLOATS.startTimer();
+            SketchSerializationEvent event = SketchSerializationEvent.beginIfEnabled();
+            Slice serialized = sketch.serialize();
+            VarbinaryType.VARBINARY.writeSlice(out, serialized);
+            SketchStats.KLL_FLOATS.recordSerialize(start, serialized.length());
+            if (event != null) {
+                event.commit("kll_floats", sketch.getK(), sketch.getNumRetained(), serialized.length());
+            }
         }
     }
 
@@ -32,7 +42,9 @@ public class KllFloatsSketchStateSerializer
     {
         if (!block.isNull(index)) {
             Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            long start = SketchStats.KLL_FLOATS.startTimer();
             state.setKllSketchProxy(new KllFloatsSketchProxy(slice));
+            SketchStats.KLL_FLOATS.recordDeserialize(start, slice.length());
         }
     }
 }
@@ -5,6 +5,7 @@ import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.AggregationFunction;
 import io.trino.spi.function.CombineFunction;
 import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
 import io.trino.spi.function.InputFunction;
 import io.trino.spi.function.OutputFunction;
 import io.trino.spi.function.SqlType;
@@ -17,13 +18,36 @@ public class LongItemsSketchAggFunction
 {
     private LongItemsSketchAggFunction() {}
 
+    private static void put(LongItemsSketchState state, long value, int maxMapSize)
+    {
+        if (state.getItemsSketchProxy() == null) {
+            state.setItemsSketchProxy(new LongItemsSketchProxy(maxMapSize));
+        }
+        LongItemsSketchProxy sketch = state.getItemsSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
     private static void mergeSketchToState(LongItemsSketchState state, LongItemsSketchProxy otherSketch)
     {
         if (state.getItemsSketchProxy() == null) {
             state.setItemsSketchProxy(new LongItemsSketchProxy(otherSketch.getMaxMapSize()));
         }
         LongItemsSketchProxy sketch = state.getItemsSketchProxy();
-        sketch.merge(otherSketch);
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.merge(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.merge(otherSketch);
+        }
     }
 
     @InputFunction
@@ -31,10 +55,7 @@ public class LongItemsSketchAggFunction
             LongItemsSketchState state,
             @SqlType(StandardTypes.BIGINT) long value)
     {
-        if (state.getItemsSketchProxy() == null) {
-            state.setItemsSketchProxy(new LongItemsSketchProxy());
-        }
-        state.getItemsSketchProxy().put(value);
+        put(state, value, LongItemsSketchProxy.DEFAULT_MAP_SIZE);
     }
 
     @InputFunction
@@ -51,10 +72,7 @@ public class LongItemsSketchAggFunction
             @SqlType(StandardTypes.DOUBLE) long value,
             @SqlType(StandardTypes.BIGINT) long maxSize)
     {
-        if (state.getItemsSketchProxy() == null) {
-            state.setItemsSketchProxy(new LongItemsSketchProxy((int) maxSize));
-        }
-        state.getItemsSketchProxy().put(value);
+        put(state, value, (int) maxSize);
     }
 
     @InputFunction
@@ -77,7 +95,11 @@ public class LongItemsSketchAggFunction
     @CombineFunction
     public static void combine(LongItemsSketchState state, LongItemsSketchState otherState)
     {
-        mergeSketchToState(state, otherState.getItemsSketchProxy());
+        LongItemsSketchProxy otherSketch = otherState.getItemsSketchProxy();
+        if (otherSketch == null) {
+            return;
+        }
+        mergeSketchToState(state, otherSketch);
     }
 
     @OutputFunction(StandardTypes.VARBINARY)
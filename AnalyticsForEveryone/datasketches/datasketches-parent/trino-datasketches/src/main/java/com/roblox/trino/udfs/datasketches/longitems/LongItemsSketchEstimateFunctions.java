@@ -1,16 +1,37 @@
 package com.roblox.trino.udfs.datasketches.longitems;
 
+import com.roblox.trino.udfs.datasketches.SketchCache;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.Description;
 import io.trino.spi.function.ScalarFunction;
 import io.trino.spi.function.SqlType;
 import io.trino.spi.type.BigintType;
+import io.trino.spi.type.RowType;
 import io.trino.spi.type.StandardTypes;
+import org.apache.datasketches.frequencies.LongsSketch.Row;
+
+import java.util.List;
+
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+import static io.trino.spi.type.RowType.field;
 
 public class LongItemsSketchEstimateFunctions
 {
+    private static final SketchCache<LongItemsSketchProxy> SKETCH_CACHE = new SketchCache<>(
+            SketchStats.LONG_ITEMS,
+            (slice, ignored) -> new LongItemsSketchProxy(slice),
+            LongItemsSketchProxy::getEstimatedSize);
+    private static final String TOP_ITEMS_TYPE = "array(row(item bigint, estimate bigint, lower_bound bigint, upper_bound bigint))";
+    private static final RowType TOP_ITEM = RowType.from(List.of(
+            field("item", BigintType.BIGINT),
+            field("estimate", BigintType.BIGINT),
+            field("lower_bound", BigintType.BIGINT),
+            field("upper_bound", BigintType.BIGINT)));
+
     private LongItemsSketchEstimateFunctions() {}
 
     @Description("Estimate the frequency of an item in a long ItemsSketch")
@@ -20,7 +41,7 @@ public class LongItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BIGINT) long item)
     {
-        LongItemsSketchProxy sketch = new LongItemsSketchProxy(slice);
+        LongItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getEstimate(item);
     }
 
@@ -31,7 +52,7 @@ public class LongItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(bigint)") Block itemsBlock)
     {
-        LongItemsSketchProxy sketch = new LongItemsSketchProxy(slice);
+        LongItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             long item = BigintType.BIGINT.getLong(itemsBlock, i);
@@ -47,7 +68,7 @@ public class LongItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BIGINT) long item)
     {
-        LongItemsSketchProxy sketch = new LongItemsSketchProxy(slice);
+        LongItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getUpperBound(item);
     }
 
@@ -58,7 +79,7 @@ public class LongItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(bigint)") Block itemsBlock)
     {
-        LongItemsSketchProxy sketch = new LongItemsSketchProxy(slice);
+        LongItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             long item = BigintType.BIGINT.getLong(itemsBlock, i);
@@ -74,7 +95,7 @@ public class LongItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BIGINT) long item)
     {
-        LongItemsSketchProxy sketch = new LongItemsSketchProxy(slice);
+        LongItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         return sketch.getLowerBound(item);
     }
 
@@ -85,7 +106,7 @@ public class LongItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(bigint)") Block itemsBlock)
     {
-        LongItemsSketchProxy sketch = new LongItemsSketchProxy(slice);
+        LongItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             long item = BigintType.BIGINT.getLong(itemsBlock, i);
@@ -101,7 +122,7 @@ public class LongItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BOOLEAN) boolean falsePositives)
     {
-        LongItemsSketchProxy sketch = new LongItemsSketchProxy(slice);
+        LongItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         long[] frequentItems = sketch.getFrequentItems(falsePositives);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, frequentItems.length);
         for (long frequentItem : frequentItems) {
@@ -109,4 +130,53 @@ public class LongItemsSketchEstimateFunctions
         }
         return blockBuilder.build();
     }
+
+    @Description("Get the frequent items in a long ItemsSketch with their estimated frequency and its bounds, most frequent first")
+    @ScalarFunction("long_items_sketch_top_items")
+    @SqlType(TOP_ITEMS_TYPE)
+    public static Block itemsSketchTopItems(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BOOLEAN) boolean falsePositives)
+    {
+        return itemsSketchTopItems(slice, falsePositives, Long.MAX_VALUE, 0);
+    }
+
+    @Description("Get the frequent items in a long ItemsSketch with their estimated frequency and its bounds, most frequent first")
+    @ScalarFunction("long_items_sketch_top_items")
+    @SqlType(TOP_ITEMS_TYPE)
+    public static Block itemsSketchTopItems(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BOOLEAN) boolean falsePositives,
+            @SqlType(StandardTypes.BIGINT) long limit)
+    {
+        return itemsSketchTopItems(slice, falsePositives, limit, 0);
+    }
+
+    @Description("Get the frequent items in a long ItemsSketch with their estimated frequency and its bounds, most frequent first")
+    @ScalarFunction("long_items_sketch_top_items")
+    @SqlType(TOP_ITEMS_TYPE)
+    public static Block itemsSketchTopItems(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BOOLEAN) boolean falsePositives,
+            @SqlType(StandardTypes.BIGINT) long limit,
+            @SqlType(StandardTypes.BIGINT) long threshold)
+    {
+        if (limit < 0) {
+            throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "Limit must not be negative: " + limit);
+        }
+        LongItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        Row[] rows = sketch.getFrequentItemRows(falsePositives, threshold);
+        int count = (int) Math.min(rows.length, limit);
+        BlockBuilder blockBuilder = TOP_ITEM.createBlockBuilder(null, count);
+        for (int i = 0; i < count; i++) {
+            Row row = rows[i];
+            BlockBuilder entry = blockBuilder.beginBlockEntry();
+            BigintType.BIGINT.writeLong(entry, row.getItem());
+            BigintType.BIGINT.writeLong(entry, row.getEstimate());
+            BigintType.BIGINT.writeLong(entry, row.getLowerBound());
+            BigintType.BIGINT.writeLong(entry, row.getUpperBound());
+            blockBuilder.closeEntry();
+        }
+        return blockBuilder.build();
+    }
 }
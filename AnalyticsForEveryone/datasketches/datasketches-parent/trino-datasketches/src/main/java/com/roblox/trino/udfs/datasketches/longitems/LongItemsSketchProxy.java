@@ -1,18 +1,27 @@
 package com.roblox.trino.udfs.datasketches.longitems;
 
-import io.airlift.slice.BasicSliceInput;
+import com.roblox.trino.udfs.datasketches.SketchHeapifyEvent;
+import com.roblox.trino.udfs.datasketches.SketchMergeEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
 import org.apache.datasketches.frequencies.ErrorType;
 import org.apache.datasketches.frequencies.LongsSketch;
 import org.apache.datasketches.frequencies.LongsSketch.Row;
-import org.apache.datasketches.memory.WritableMemory;
+import org.apache.datasketches.memory.Memory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOfLongArray;
+import static io.airlift.slice.SizeOf.sizeOfShortArray;
+
 public class LongItemsSketchProxy
 {
+    private static final int INSTANCE_SIZE = instanceSize(LongItemsSketchProxy.class) + instanceSize(LongsSketch.class);
+
     public static final int DEFAULT_MAP_SIZE = 64;
 
     private final LongsSketch sketch;
@@ -29,12 +38,12 @@ public class LongItemsSketchProxy
 
     public LongItemsSketchProxy(Slice slice)
     {
-        BasicSliceInput input = slice.getInput();
-        int length = (int) input.length();
-        byte[] bytes = new byte[length];
-        input.readBytes(bytes);
-        WritableMemory memory = WritableMemory.writableWrap(bytes);
+        SketchHeapifyEvent event = SketchHeapifyEvent.beginIfEnabled();
+        Memory memory = SliceMemory.wrap(slice);
         this.sketch = LongsSketch.getInstance(memory);
+        if (event != null) {
+            event.commit("long_items", this.getMaxMapSize(), this.sketch.getNumActiveItems(), slice.length());
+        }
     }
 
     public void put(long item)
@@ -67,9 +76,25 @@ public class LongItemsSketchProxy
         return items;
     }
 
+    /**
+     * Returns the frequent items with their estimated frequency and its bounds in a single pass over the sketch,
+     * sorted by decreasing estimate. An item is kept if the bound selected by the error type is at least the threshold,
+     * which is raised to the maximum error of the sketch when it is lower.
+     */
+    public Row[] getFrequentItemRows(boolean falsePositives, long threshold)
+    {
+        return this.sketch.getFrequentItems(threshold, falsePositives ? ErrorType.NO_FALSE_NEGATIVES : ErrorType.NO_FALSE_POSITIVES);
+    }
+
     public void merge(LongItemsSketchProxy other)
     {
+        long start = SketchStats.LONG_ITEMS.startTimer();
+        SketchMergeEvent event = SketchMergeEvent.beginIfEnabled();
         this.sketch.merge(other.getSketch());
+        SketchStats.LONG_ITEMS.recordMerge(start);
+        if (event != null) {
+            event.commit("long_items", this.getMaxMapSize(), other.sketch.getNumActiveItems(), other.getEstimatedSize());
+        }
     }
 
     public Slice serialize()
@@ -96,7 +121,8 @@ public class LongItemsSketchProxy
 
     public long getEstimatedSize()
     {
-        byte[] bytes = this.sketch.toByteArray();
-        return bytes.length;
+        // The hash map holds a long key, a long count and a short state per slot, at a load factor of 0.75
+        int mapLength = this.sketch.getCurrentMapCapacity() * 4 / 3;
+        return INSTANCE_SIZE + 2 * sizeOfLongArray(mapLength) + sizeOfShortArray(mapLength);
     }
 }
@@ -12,4 +12,6 @@ public interface LongItemsSketchState
     LongItemsSketchProxy getItemsSketchProxy();
 
     void setItemsSketchProxy(LongItemsSketchProxy value);
+
+    void addMemoryUsage(long value);
 }
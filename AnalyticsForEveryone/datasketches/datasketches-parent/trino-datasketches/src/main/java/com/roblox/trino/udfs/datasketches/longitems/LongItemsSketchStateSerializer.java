@@ -1,5 +1,7 @@
 package com.roblox.trino.udfs.datasketches.longitems;
 
+import com.roblox.trino.udfs.datasketches.SketchSerializationEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
@@ -23,7 +25,15 @@ public class LongItemsSketchStateSerializer
             out.appendNull();
         }
         else {
-            VarbinaryType.VARBINARY.writeSlice(out, state.getItemsSketchProxy().serialize());
+            LongItemsSketchProxy sketch = state.getItemsSketchProxy();
+            long start = SketchStats.LONG_ITEMS.startTimer();
+            SketchSerializationEvent event = SketchSerializationEvent.beginIfEnabled();
+            Slice serialized = sketch.serialize();
+            VarbinaryType.VARBINARY.writeSlice(out, serialized);
+            SketchStats.LONG_ITEMS.recordSerialize(start, serialized.length());
+            if (event != null) {
+                event.commit("long_items", sketch.getMaxMapSize(), sketch.getSketch().getNumActiveItems(), serialized.length());
+            }
         }
     }
 
@@ -32,7 +42,9 @@ public class LongItemsSketchStateSerializer
     {
         if (!block.isNull(index)) {
             Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            long start = SketchStats.LONG_ITEMS.startTimer();
             state.setItemsSketchProxy(new LongItemsSketchProxy(slice));
+            SketchStats.LONG_ITEMS.recordDeserialize(start, slice.length());
         }
     }
 }
@@ -0,0 +1,160 @@
+package com.roblox.trino.udfs.datasketches.req;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AggregationFunction;
+import io.trino.spi.function.CombineFunction;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
+import io.trino.spi.function.InputFunction;
+import io.trino.spi.function.OutputFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+import io.trino.spi.type.VarbinaryType;
+
+@Description("Create a REQ sketch by aggregating values or REQ sketches")
+@AggregationFunction("req_sketch")
+public class ReqSketchAggFunction
+{
+    private ReqSketchAggFunction() {}
+
+    private static void put(ReqSketchState state, float value, int k, boolean highRankAccuracy)
+    {
+        if (state.getReqSketchProxy() == null) {
+            state.setReqSketchProxy(new ReqSketchProxy(k, highRankAccuracy));
+        }
+        ReqSketchProxy sketch = state.getReqSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void mergeSketchToState(ReqSketchState state, ReqSketchProxy otherSketch)
+    {
+        if (state.getReqSketchProxy() == null) {
+            state.setReqSketchProxy(new ReqSketchProxy(otherSketch.getK(), otherSketch.isHighRankAccuracy()));
+        }
+        ReqSketchProxy sketch = state.getReqSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.union(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.union(otherSketch);
+        }
+    }
+
+    @InputFunction
+    public static void inputDouble(
+            ReqSketchState state,
+            @SqlType(StandardTypes.DOUBLE) double value)
+    {
+        put(state, (float) value, ReqSketchProxy.DEFAULT_K, ReqSketchProxy.DEFAULT_HIGH_RANK_ACCURACY);
+    }
+
+    @InputFunction
+    public static void inputBigint(
+            ReqSketchState state,
+            @SqlType(StandardTypes.BIGINT) long value)
+    {
+        put(state, (float) value, ReqSketchProxy.DEFAULT_K, ReqSketchProxy.DEFAULT_HIGH_RANK_ACCURACY);
+    }
+
+    @InputFunction
+    public static void inputReal(
+            ReqSketchState state,
+            @SqlType(StandardTypes.REAL) long value)
+    {
+        put(state, Float.intBitsToFloat((int) value), ReqSketchProxy.DEFAULT_K, ReqSketchProxy.DEFAULT_HIGH_RANK_ACCURACY);
+    }
+
+    @InputFunction
+    public static void inputSketch(
+            ReqSketchState state,
+            @SqlType(StandardTypes.VARBINARY) Slice value)
+    {
+        mergeSketchToState(state, new ReqSketchProxy(value));
+    }
+
+    @InputFunction
+    public static void inputDoubleWithK(
+            ReqSketchState state,
+            @SqlType(StandardTypes.DOUBLE) double value,
+            @SqlType(StandardTypes.BIGINT) long k)
+    {
+        put(state, (float) value, (int) k, ReqSketchProxy.DEFAULT_HIGH_RANK_ACCURACY);
+    }
+
+    @InputFunction
+    public static void inputBigintWithK(
+            ReqSketchState state,
+            @SqlType(StandardTypes.BIGINT) long value,
+            @SqlType(StandardTypes.BIGINT) long k)
+    {
+        put(state, (float) value, (int) k, ReqSketchProxy.DEFAULT_HIGH_RANK_ACCURACY);
+    }
+
+    @InputFunction
+    public static void inputRealWithK(
+            ReqSketchState state,
+            @SqlType(StandardTypes.REAL) long value,
+            @SqlType(StandardTypes.BIGINT) long k)
+    {
+        put(state, Float.intBitsToFloat((int) value), (int) k, ReqSketchProxy.DEFAULT_HIGH_RANK_ACCURACY);
+    }
+
+    @InputFunction
+    public static void inputDoubleWithKAndMode(
+            ReqSketchState state,
+            @SqlType(StandardTypes.DOUBLE) double value,
+            @SqlType(StandardTypes.BIGINT) long k,
+            @SqlType(StandardTypes.BOOLEAN) boolean highRankAccuracy)
+    {
+        put(state, (float) value, (int) k, highRankAccuracy);
+    }
+
+    @InputFunction
+    public static void inputBigintWithKAndMode(
+            ReqSketchState state,
+            @SqlType(StandardTypes.BIGINT) long value,
+            @SqlType(StandardTypes.BIGINT) long k,
+            @SqlType(StandardTypes.BOOLEAN) boolean highRankAccuracy)
+    {
+        put(state, (float) value, (int) k, highRankAccuracy);
+    }
+
+    @InputFunction
+    public static void inputRealWithKAndMode(
+            ReqSketchState state,
+            @SqlType(StandardTypes.REAL) long value,
+            @SqlType(StandardTypes.BIGINT) long k,
+            @SqlType(StandardTypes.BOOLEAN) boolean highRankAccuracy)
+    {
+        put(state, Float.intBitsToFloat((int) value), (int) k, highRankAccuracy);
+    }
+
+    @CombineFunction
+    public static void combine(ReqSketchState state, ReqSketchState otherState)
+    {
+        ReqSketchProxy otherSketch = otherState.getReqSketchProxy();
+        if (otherSketch == null) {
+            return;
+        }
+        mergeSketchToState(state, otherSketch);
+    }
+
+    @OutputFunction(StandardTypes.VARBINARY)
+    public static void output(ReqSketchState state, BlockBuilder out)
+    {
+        if (state.getReqSketchProxy() == null) {
+            state.setReqSketchProxy(new ReqSketchProxy());
+        }
+        VarbinaryType.VARBINARY.writeSlice(out, state.getReqSketchProxy().serialize());
+    }
+}
@@ -0,0 +1,261 @@
+package com.roblox.trino.udfs.datasketches.req;
+
+import com.roblox.trino.udfs.datasketches.SketchCache;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import io.airlift.slice.Slice;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.ScalarFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.DoubleType;
+import io.trino.spi.type.IntegerType;
+import io.trino.spi.type.StandardTypes;
+
+public class ReqSketchEstimateFunctions
+{
+    private static final SketchCache<ReqSketchProxy> SKETCH_CACHE = new SketchCache<>(
+            SketchStats.REQ,
+            (slice, ignored) -> new ReqSketchProxy(slice),
+            ReqSketchProxy::getCachedSize);
+
+    private ReqSketchEstimateFunctions() {}
+
+    private static Block arrayToBlock(double[] arr)
+    {
+        BlockBuilder blockBuilder = DoubleType.DOUBLE.createBlockBuilder(null, arr.length);
+        for (double d : arr) {
+            DoubleType.DOUBLE.writeDouble(blockBuilder, d);
+        }
+        return blockBuilder.build();
+    }
+
+    private static double[] blockToDoubleArray(Block block)
+    {
+        double[] values = new double[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = DoubleType.DOUBLE.getDouble(block, i);
+        }
+        return values;
+    }
+
+    private static float[] blockToFloatArray(Block block)
+    {
+        float[] values = new float[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) DoubleType.DOUBLE.getDouble(block, i);
+        }
+        return values;
+    }
+
+    private static float[] realBlockToFloatArray(Block block)
+    {
+        float[] values = new float[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            long value = IntegerType.INTEGER.getLong(block, i);
+            values[i] = Float.intBitsToFloat((int) value);
+        }
+        return values;
+    }
+
+    @Description("Estimate the value of a quantile in a REQ sketch")
+    @ScalarFunction("req_estimate_quantile")
+    @SqlType(StandardTypes.DOUBLE)
+    public static double reqSketchEstimateQuantile(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.DOUBLE) double quantile)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return sketch.getEstimateQuantile(quantile);
+    }
+
+    @Description("Estimate the value of a quantile in a REQ sketch")
+    @ScalarFunction("req_estimate_quantile")
+    @SqlType("array(double)")
+    public static Block reqSketchEstimateQuantileList(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block quantileBlock)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateQuantiles(blockToDoubleArray(quantileBlock)));
+    }
+
+    @Description("Estimate the lower bound of a value of a quantile in a REQ sketch")
+    @ScalarFunction("req_estimate_quantile_lb")
+    @SqlType(StandardTypes.DOUBLE)
+    public static double reqSketchEstimateQuantileLowerBound(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.DOUBLE) double quantile)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return sketch.getEstimateQuantileLowerBound(quantile);
+    }
+
+    @Description("Estimate the lower bound of a value of a quantile in a REQ sketch")
+    @ScalarFunction("req_estimate_quantile_lb")
+    @SqlType("array(double)")
+    public static Block reqSketchEstimateQuantileLowerBoundList(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block quantileBlock)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateQuantilesLowerBound(blockToDoubleArray(quantileBlock)));
+    }
+
+    @Description("Estimate the upper bound of a value of a quantile in a REQ sketch")
+    @ScalarFunction("req_estimate_quantile_ub")
+    @SqlType(StandardTypes.DOUBLE)
+    public static double reqSketchEstimateQuantileUpperBound(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.DOUBLE) double quantile)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return sketch.getEstimateQuantileUpperBound(quantile);
+    }
+
+    @Description("Estimate the upper bound of a value of a quantile in a REQ sketch")
+    @ScalarFunction("req_estimate_quantile_ub")
+    @SqlType("array(double)")
+    public static Block reqSketchEstimateQuantileUpperBoundList(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block quantileBlock)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateQuantilesUpperBound(blockToDoubleArray(quantileBlock)));
+    }
+
+    @Description("Estimate the rank of a value in a REQ sketch")
+    @ScalarFunction("req_estimate_rank")
+    @SqlType(StandardTypes.DOUBLE)
+    public static double reqSketchEstimateRank(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.DOUBLE) double value)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return sketch.getEstimateRank((float) value);
+    }
+
+    @Description("Estimate the rank of a value in a REQ sketch")
+    @ScalarFunction("req_estimate_rank")
+    @SqlType(StandardTypes.DOUBLE)
+    public static double reqSketchEstimateRankReal(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.REAL) long value)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        float floatValue = Float.intBitsToFloat((int) value);
+        return sketch.getEstimateRank(floatValue);
+    }
+
+    @Description("Estimate the rank of a value in a REQ sketch")
+    @ScalarFunction("req_estimate_rank")
+    @SqlType("array(double)")
+    public static Block reqSketchEstimateRankList(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block valueBlock)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanks(blockToFloatArray(valueBlock)));
+    }
+
+    @Description("Estimate the rank of a value in a REQ sketch")
+    @ScalarFunction("req_estimate_rank")
+    @SqlType("array(double)")
+    public static Block reqSketchEstimateRankRealList(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(real)") Block valueBlock)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanks(realBlockToFloatArray(valueBlock)));
+    }
+
+    @Description("Estimate the lower bound of a rank in a REQ sketch")
+    @ScalarFunction("req_estimate_rank_lb")
+    @SqlType(StandardTypes.DOUBLE)
+    public static double reqSketchEstimateRankLowerBound(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.DOUBLE) double value)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return sketch.getEstimateRankLowerBound((float) value);
+    }
+
+    @Description("Estimate the lower bound of a rank in a REQ sketch")
+    @ScalarFunction("req_estimate_rank_lb")
+    @SqlType(StandardTypes.DOUBLE)
+    public static double reqSketchEstimateRankLowerBoundReal(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.REAL) long value)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        float floatValue = Float.intBitsToFloat((int) value);
+        return sketch.getEstimateRankLowerBound(floatValue);
+    }
+
+    @Description("Estimate the lower bound of a rank in a REQ sketch")
+    @ScalarFunction("req_estimate_rank_lb")
+    @SqlType("array(double)")
+    public static Block reqSketchEstimateRankLowerBoundList(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block valueBlock)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksLowerBound(blockToFloatArray(valueBlock)));
+    }
+
+    @Description("Estimate the lower bound of a rank in a REQ sketch")
+    @ScalarFunction("req_estimate_rank_lb")
+    @SqlType("array(double)")
+    public static Block reqSketchEstimateRankLowerBoundRealList(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(real)") Block valueBlock)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksLowerBound(realBlockToFloatArray(valueBlock)));
+    }
+
+    @Description("Estimate the upper bound of a rank in a REQ sketch")
+    @ScalarFunction("req_estimate_rank_ub")
+    @SqlType(StandardTypes.DOUBLE)
+    public static double reqSketchEstimateRankUpperBound(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.DOUBLE) double value)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return sketch.getEstimateRankUpperBound((float) value);
+    }
+
+    @Description("Estimate the upper bound of a rank in a REQ sketch")
+    @ScalarFunction("req_estimate_rank_ub")
+    @SqlType(StandardTypes.DOUBLE)
+    public static double reqSketchEstimateRankUpperBoundReal(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.REAL) long value)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        float floatValue = Float.intBitsToFloat((int) value);
+        return sketch.getEstimateRankUpperBound(floatValue);
+    }
+
+    @Description("Estimate the upper bound of a rank in a REQ sketch")
+    @ScalarFunction("req_estimate_rank_ub")
+    @SqlType("array(double)")
+    public static Block reqSketchEstimateRankUpperBoundList(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(double)") Block valueBlock)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksUpperBound(blockToFloatArray(valueBlock)));
+    }
+
+    @Description("Estimate the upper bound of a rank in a REQ sketch")
+    @ScalarFunction("req_estimate_rank_ub")
+    @SqlType("array(double)")
+    public static Block reqSketchEstimateRankUpperBoundRealList(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType("array(real)") Block valueBlock)
+    {
+        ReqSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return arrayToBlock(sketch.getEstimateRanksUpperBound(realBlockToFloatArray(valueBlock)));
+    }
+}
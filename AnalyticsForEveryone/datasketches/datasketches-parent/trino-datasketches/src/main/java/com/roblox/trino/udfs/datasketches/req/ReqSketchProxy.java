@@ -0,0 +1,236 @@
+package com.roblox.trino.udfs.datasketches.req;
+
+import com.roblox.trino.udfs.datasketches.SketchHeapifyEvent;
+import com.roblox.trino.udfs.datasketches.SketchMergeEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.TrinoException;
+import org.apache.datasketches.req.ReqSketch;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+
+/**
+ * Wraps a REQ (relative error quantiles) sketch. Unlike KLL, whose rank error is the same everywhere, the rank error
+ * of a REQ sketch shrinks towards one end of the distribution: towards rank 1 in high rank accuracy mode, which is
+ * the default here as it is the one tail latencies need.
+ * <p>
+ * REQ sketches can not be read in place, so serialized sketches are always copied onto the heap.
+ */
+public class ReqSketchProxy
+{
+    private static final int INSTANCE_SIZE = instanceSize(ReqSketchProxy.class);
+
+    public static final int DEFAULT_K = ReqSketch.builder().getK();
+    public static final boolean DEFAULT_HIGH_RANK_ACCURACY = true;
+
+    private final ReqSketch sketch;
+    // Set once the sketch has sorted its items, on the first quantile or rank lookup
+    private volatile boolean sortedViewBuilt;
+
+    public ReqSketchProxy()
+    {
+        this(DEFAULT_K);
+    }
+
+    public ReqSketchProxy(int k)
+    {
+        this(k, DEFAULT_HIGH_RANK_ACCURACY);
+    }
+
+    public ReqSketchProxy(int k, boolean highRankAccuracy)
+    {
+        this.sketch = ReqSketch.builder()
+                .setK(k)
+                .setHighRankAccuracy(highRankAccuracy)
+                .build();
+    }
+
+    public ReqSketchProxy(Slice slice)
+    {
+        SketchHeapifyEvent event = SketchHeapifyEvent.beginIfEnabled();
+        this.sketch = ReqSketch.heapify(SliceMemory.wrap(slice));
+        if (event != null) {
+            event.commit("req", this.sketch.getK(), this.sketch.getNumRetained(), slice.length());
+        }
+    }
+
+    public void put(float item)
+    {
+        this.sketch.update(item);
+        // Only written once the view was built, so adding a row does not pay for a volatile write
+        if (this.sortedViewBuilt) {
+            this.sortedViewBuilt = false;
+        }
+    }
+
+    public void union(ReqSketchProxy other)
+    {
+        if (other.sketch.getHighRankAccuracyMode() != this.sketch.getHighRankAccuracyMode()) {
+            throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "Cannot merge REQ sketches with different rank accuracy modes");
+        }
+        long start = SketchStats.REQ.startTimer();
+        SketchMergeEvent event = SketchMergeEvent.beginIfEnabled();
+        this.sketch.merge(other.sketch);
+        if (this.sortedViewBuilt) {
+            this.sortedViewBuilt = false;
+        }
+        SketchStats.REQ.recordMerge(start);
+        if (event != null) {
+            event.commit("req", this.sketch.getK(), other.sketch.getNumRetained(), other.getEstimatedSize());
+        }
+    }
+
+    public double getEstimateQuantile(double quantile)
+    {
+        this.buildSortedView();
+        return this.sketch.getQuantile(quantile);
+    }
+
+    /**
+     * The rank bounds of the sketch are not clamped, so they are kept within [0, 1] before looking up a quantile,
+     * as the KLL proxies do.
+     */
+    public double getEstimateQuantileUpperBound(double quantile)
+    {
+        this.buildSortedView();
+        return this.sketch.getQuantile(Math.min(1, this.sketch.getRankUpperBound(quantile)));
+    }
+
+    public double getEstimateQuantileLowerBound(double quantile)
+    {
+        this.buildSortedView();
+        return this.sketch.getQuantile(Math.max(0, this.sketch.getRankLowerBound(quantile)));
+    }
+
+    public double getEstimateRank(float value)
+    {
+        this.buildSortedView();
+        return this.sketch.getRank(value);
+    }
+
+    /**
+     * The rank error of a REQ sketch depends on the rank itself, so bounds are computed from the estimated rank.
+     */
+    public double getEstimateRankUpperBound(float value)
+    {
+        return this.sketch.getRankUpperBound(this.getEstimateRank(value));
+    }
+
+    public double getEstimateRankLowerBound(float value)
+    {
+        return this.sketch.getRankLowerBound(this.getEstimateRank(value));
+    }
+
+    public double[] getEstimateQuantiles(double[] quantiles)
+    {
+        double[] results = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            results[i] = this.getEstimateQuantile(quantiles[i]);
+        }
+        return results;
+    }
+
+    public double[] getEstimateQuantilesUpperBound(double[] quantiles)
+    {
+        double[] results = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            results[i] = this.getEstimateQuantileUpperBound(quantiles[i]);
+        }
+        return results;
+    }
+
+    public double[] getEstimateQuantilesLowerBound(double[] quantiles)
+    {
+        double[] results = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            results[i] = this.getEstimateQuantileLowerBound(quantiles[i]);
+        }
+        return results;
+    }
+
+    public double[] getEstimateRanks(float[] values)
+    {
+        double[] results = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            results[i] = this.getEstimateRank(values[i]);
+        }
+        return results;
+    }
+
+    public double[] getEstimateRanksUpperBound(float[] values)
+    {
+        double[] results = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            results[i] = this.getEstimateRankUpperBound(values[i]);
+        }
+        return results;
+    }
+
+    public double[] getEstimateRanksLowerBound(float[] values)
+    {
+        double[] results = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            results[i] = this.getEstimateRankLowerBound(values[i]);
+        }
+        return results;
+    }
+
+    public Slice serialize()
+    {
+        return Slices.wrappedBuffer(this.sketch.toByteArray());
+    }
+
+    public int getK()
+    {
+        return this.sketch.getK();
+    }
+
+    public int getNumRetained()
+    {
+        return this.sketch.getNumRetained();
+    }
+
+    public boolean isHighRankAccuracy()
+    {
+        return this.sketch.getHighRankAccuracyMode();
+    }
+
+    public long getEstimatedSize()
+    {
+        long size = INSTANCE_SIZE + this.sketch.getSerializedSizeBytes();
+        if (this.sortedViewBuilt) {
+            // The sorted view holds every retained item with its cumulative weight
+            size += (long) this.sketch.getNumRetained() * (Float.BYTES + Long.BYTES);
+        }
+        return size;
+    }
+
+    /**
+     * The size of a proxy held by the sketch cache, which weighs an entry once, so the sorted view the first lookup
+     * builds is counted up front. The sketch is a heap copy of the bytes of the key, which are counted as well.
+     */
+    public long getCachedSize()
+    {
+        return INSTANCE_SIZE + this.sketch.getSerializedSizeBytes() + (long) this.sketch.getNumRetained() * (Float.BYTES + Long.BYTES);
+    }
+
+    /**
+     * Lets the sketch sort its items before the first lookup. A cached proxy is shared by the driver threads, which
+     * would otherwise each build the view the sketch keeps in a plain field, so the first of them builds it while
+     * holding the lock and the volatile flag publishes it to the others.
+     */
+    private void buildSortedView()
+    {
+        if (!this.sortedViewBuilt) {
+            synchronized (this) {
+                if (!this.sortedViewBuilt && !this.sketch.isEmpty()) {
+                    this.sketch.getSortedView();
+                    this.sortedViewBuilt = true;
+                }
+            }
+        }
+    }
+}
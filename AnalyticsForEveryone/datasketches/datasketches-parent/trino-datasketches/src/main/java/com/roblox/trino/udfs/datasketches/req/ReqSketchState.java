@@ -0,0 +1,17 @@
+package com.roblox.trino.udfs.datasketches.req;
+
+import io.trino.spi.function.AccumulatorState;
+import io.trino.spi.function.AccumulatorStateMetadata;
+
+@AccumulatorStateMetadata(
+        stateSerializerClass = ReqSketchStateSerializer.class,
+        stateFactoryClass = ReqSketchStateFactory.class)
+public interface ReqSketchState
+        extends AccumulatorState
+{
+    ReqSketchProxy getReqSketchProxy();
+
+    void setReqSketchProxy(ReqSketchProxy value);
+
+    void addMemoryUsage(long value);
+}
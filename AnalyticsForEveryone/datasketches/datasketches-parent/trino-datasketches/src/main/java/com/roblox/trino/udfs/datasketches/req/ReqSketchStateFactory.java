@@ -0,0 +1,107 @@
+package com.roblox.trino.udfs.datasketches.req;
+
+import io.trino.array.ObjectBigArray;
+import io.trino.spi.function.AccumulatorStateFactory;
+import io.trino.spi.function.GroupedAccumulatorState;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+
+public class ReqSketchStateFactory
+        implements AccumulatorStateFactory<ReqSketchState>
+{
+    private static final int SIZE_OF_SINGLE = instanceSize(SingleReqSketchState.class);
+    private static final int SIZE_OF_GROUPED = instanceSize(GroupedReqSketchState.class);
+
+    @Override
+    public ReqSketchState createSingleState()
+    {
+        return new SingleReqSketchState();
+    }
+
+    @Override
+    public ReqSketchState createGroupedState()
+    {
+        return new GroupedReqSketchState();
+    }
+
+    public static class SingleReqSketchState
+            implements ReqSketchState
+    {
+        public ReqSketchProxy sketch;
+
+        @Override
+        public ReqSketchProxy getReqSketchProxy()
+        {
+            return sketch;
+        }
+
+        @Override
+        public void setReqSketchProxy(ReqSketchProxy value)
+        {
+            this.sketch = value;
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            // The size of a single state is read from its proxy on demand
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            if (sketch == null) {
+                return SIZE_OF_SINGLE;
+            }
+            return sketch.getEstimatedSize() + SIZE_OF_SINGLE;
+        }
+    }
+
+    public static class GroupedReqSketchState
+            implements GroupedAccumulatorState, ReqSketchState
+    {
+        private final ObjectBigArray<ReqSketchProxy> sketches = new ObjectBigArray<>();
+        private long groupId;
+        private long size;
+
+        @Override
+        public void setGroupId(long groupId)
+        {
+            this.groupId = groupId;
+        }
+
+        @Override
+        public void ensureCapacity(long size)
+        {
+            sketches.ensureCapacity(size);
+        }
+
+        @Override
+        public ReqSketchProxy getReqSketchProxy()
+        {
+            return sketches.get(groupId);
+        }
+
+        @Override
+        public void setReqSketchProxy(ReqSketchProxy value)
+        {
+            if (getReqSketchProxy() != null) {
+                size -= getReqSketchProxy().getEstimatedSize();
+            }
+            size += value.getEstimatedSize();
+            sketches.set(groupId, value);
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            size += value;
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            return size + sketches.sizeOf() + SIZE_OF_GROUPED;
+        }
+    }
+}
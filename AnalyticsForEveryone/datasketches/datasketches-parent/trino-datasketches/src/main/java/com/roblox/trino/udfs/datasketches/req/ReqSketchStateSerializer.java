@@ -0,0 +1,50 @@
+package com.roblox.trino.udfs.datasketches.req;
+
+import com.roblox.trino.udfs.datasketches.SketchSerializationEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import io.airlift.slice.Slice;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AccumulatorStateSerializer;
+import io.trino.spi.type.Type;
+import io.trino.spi.type.VarbinaryType;
+
+public class ReqSketchStateSerializer
+        implements AccumulatorStateSerializer<ReqSketchState>
+{
+    @Override
+    public Type getSerializedType()
+    {
+        return VarbinaryType.VARBINARY;
+    }
+
+    @Override
+    public void serialize(ReqSketchState state, BlockBuilder out)
+    {
+        if (state.getReqSketchProxy() == null) {
+            out.appendNull();
+        }
+        else {
+            ReqSketchProxy sketch = state.getReqSketchProxy();
+            long start = SketchStats.REQ.startTimer();
+            SketchSerializationEvent event = SketchSerializationEvent.beginIfEnabled();
+            Slice serialized = sketch.serialize();
+            VarbinaryType.VARBINARY.writeSlice(out, serialized);
+            SketchStats.REQ.recordSerialize(start, serialized.length());
+            if (event != null) {
+                event.commit("req", sketch.getK(), sketch.getNumRetained(), serialized.length());
+            }
+        }
+    }
+
+    @Override
+    public void deserialize(Block block, int index, ReqSketchState state)
+    {
+        if (!block.isNull(index)) {
+            Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            long start = SketchStats.REQ.startTimer();
+            state.setReqSketchProxy(new ReqSketchProxy(slice));
+            SketchStats.REQ.recordDeserialize(start, slice.length());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.roblox.trino.udfs.datasketches.stringitems;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.apache.datasketches.common.ArrayOfItemsSerDe;
+import org.apache.datasketches.common.ArrayOfStringsSerDe;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * Serializes string items with the same layout as {@link ArrayOfStringsSerDe}, a little endian int length followed
+ * by the UTF-8 bytes of each item, so sketches written by either one can be read by the other.
+ * <p>
+ * The bytes of all the items of a sketch are read into a single array, rather than decoded into a String each,
+ * so deserializing a sketch allocates one array plus a small object per item. The items last deserialized are kept,
+ * so a sketch merged into another can move the ones the other one takes into arrays of their own.
+ */
+public class ArrayOfStringItemsSerDe
+        extends ArrayOfItemsSerDe<StringItem>
+{
+    private StringItem[] deserializedItems;
+
+    @Override
+    public byte[] serializeToByteArray(StringItem item)
+    {
+        return this.serializeToByteArray(new StringItem[] {item});
+    }
+
+    @Override
+    public byte[] serializeToByteArray(StringItem[] items)
+    {
+        Slice output = Slices.allocate(this.sizeOf(items));
+        int position = 0;
+        for (StringItem item : items) {
+            output.setInt(position, item.getLength());
+            output.setBytes(position + Integer.BYTES, item.getSlice(), item.getOffset(), item.getLength());
+            position += Integer.BYTES + item.getLength();
+        }
+        return output.byteArray();
+    }
+
+    @Override
+    public StringItem[] deserializeFromMemory(Memory memory, long offsetBytes, int numItems)
+    {
+        byte[] arena = new byte[this.sizeOf(memory, offsetBytes, numItems) - numItems * Integer.BYTES];
+        Slice arenaSlice = Slices.wrappedBuffer(arena);
+        StringItem[] items = new StringItem[numItems];
+        long position = offsetBytes;
+        int arenaOffset = 0;
+        for (int i = 0; i < numItems; i++) {
+            int length = memory.getInt(position);
+            memory.getByteArray(position + Integer.BYTES, arena, arenaOffset, length);
+            items[i] = new StringItem(arenaSlice, arenaOffset, length);
+            position += Integer.BYTES + length;
+            arenaOffset += length;
+        }
+        this.deserializedItems = items;
+        return items;
+    }
+
+    public StringItem[] getDeserializedItems()
+    {
+        return this.deserializedItems;
+    }
+
+    @Override
+    public int sizeOf(StringItem item)
+    {
+        return Integer.BYTES + item.getLength();
+    }
+
+    @Override
+    public int sizeOf(Memory memory, long offsetBytes, int numItems)
+    {
+        long position = offsetBytes;
+        for (int i = 0; i < numItems; i++) {
+            int length = memory.getInt(position);
+            if (length < 0) {
+                throw new IllegalArgumentException("Invalid item length in a string items sketch: " + length);
+            }
+            position += Integer.BYTES + length;
+        }
+        return Math.toIntExact(position - offsetBytes);
+    }
+
+    @Override
+    public String toString(StringItem item)
+    {
+        return String.valueOf(item);
+    }
+
+    @Override
+    public Class<StringItem> getClassOfT()
+    {
+        return StringItem.class;
+    }
+}
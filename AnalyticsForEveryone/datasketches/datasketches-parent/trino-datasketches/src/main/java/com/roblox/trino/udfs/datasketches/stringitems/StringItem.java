@@ -0,0 +1,204 @@
+package com.roblox.trino.udfs.datasketches.stringitems;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An item of a string items sketch: the UTF-8 bytes of a VARCHAR value, compared and hashed by content, so the value
+ * never has to be decoded into a String. The bytes are a region of a slice, which lets the items of a deserialized
+ * sketch share a single array, and lets a probe read a value in place.
+ * <p>
+ * A probe is repointed at each value to look up, so counting an item the sketch holds already does not allocate.
+ * Only the values the sketch does not hold are copied, the sketch keeps a reference to the items it is updated with.
+ * <p>
+ * The hash code is the one of the String the bytes decode to, so items are laid out in the sketch exactly as in an
+ * {@code ItemsSketch<String>}: sketches are serialized the same way, and equal frequencies are listed in the same order.
+ * Malformed UTF-8 is replaced by the encoding of the String it decodes to, with U+FFFD for each malformed sequence, as
+ * {@code ArrayOfStringsSerDe} would write it, so values which decode to the same String are the same item.
+ */
+public final class StringItem
+{
+    static final int INSTANCE_SIZE = instanceSize(StringItem.class);
+
+    private static final long MALFORMED = -1;
+
+    private Slice slice;
+    private int offset;
+    private int length;
+    private int hashCode;
+
+    public StringItem(Slice slice)
+    {
+        this(slice, 0, slice.length());
+    }
+
+    StringItem(Slice slice, int offset, int length)
+    {
+        this.set(slice, offset, length);
+    }
+
+    private StringItem(Slice slice, int offset, int length, int hashCode)
+    {
+        this.slice = slice;
+        this.offset = offset;
+        this.length = length;
+        this.hashCode = hashCode;
+    }
+
+    static StringItem probe()
+    {
+        return new StringItem(Slices.EMPTY_SLICE, 0, 0, 0);
+    }
+
+    void set(Slice slice, int offset, int length)
+    {
+        long hashCode = stringHashCode(slice, offset, length);
+        if (hashCode == MALFORMED) {
+            String value = slice.toString(offset, length, UTF_8);
+            this.slice = Slices.utf8Slice(value);
+            this.offset = 0;
+            this.length = this.slice.length();
+            this.hashCode = value.hashCode();
+            return;
+        }
+        this.slice = slice;
+        this.offset = offset;
+        this.length = length;
+        this.hashCode = (int) hashCode;
+    }
+
+    /**
+     * Drops the reference to the slice the probe was last pointed at, which may be the data of a whole block.
+     */
+    void clear()
+    {
+        this.slice = Slices.EMPTY_SLICE;
+        this.offset = 0;
+        this.length = 0;
+    }
+
+    /**
+     * Copies the bytes of the item into a slice of their own, keeping the hash code already computed.
+     */
+    StringItem copy()
+    {
+        return new StringItem(Slices.copyOf(this.slice, this.offset, this.length), 0, this.length, this.hashCode);
+    }
+
+    /**
+     * Moves the bytes of the item into a slice of their own, so it no longer keeps the array it was read from alive.
+     * The content and hash code do not change, so this can be done while the item is held by a sketch.
+     */
+    void detach()
+    {
+        this.slice = Slices.copyOf(this.slice, this.offset, this.length);
+        this.offset = 0;
+    }
+
+    public Slice getSlice()
+    {
+        return this.slice;
+    }
+
+    public int getOffset()
+    {
+        return this.offset;
+    }
+
+    public int getLength()
+    {
+        return this.length;
+    }
+
+    public Slice getBytes()
+    {
+        return this.slice.slice(this.offset, this.length);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof StringItem)) {
+            return false;
+        }
+        StringItem other = (StringItem) obj;
+        return this.hashCode == other.hashCode && this.slice.equals(this.offset, this.length, other.slice, other.offset, other.length);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.getBytes().toStringUtf8();
+    }
+
+    /**
+     * Computes {@link String#hashCode()} of the UTF-8 bytes while decoding them, without building the String.
+     * Returns {@link #MALFORMED} for malformed sequences, which the String decoder replaces and are rare enough to
+     * go through an actual String.
+     */
+    private static long stringHashCode(Slice slice, int offset, int length)
+    {
+        int hash = 0;
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            int startByte = slice.getByte(position) & 0xFF;
+            if (startByte < 0x80) {
+                hash = 31 * hash + startByte;
+                position++;
+                continue;
+            }
+            int size;
+            int codePoint;
+            if (startByte >= 0xC2 && startByte <= 0xDF) {
+                size = 2;
+                codePoint = startByte & 0x1F;
+            }
+            else if (startByte >= 0xE0 && startByte <= 0xEF) {
+                size = 3;
+                codePoint = startByte & 0x0F;
+            }
+            else if (startByte >= 0xF0 && startByte <= 0xF4) {
+                size = 4;
+                codePoint = startByte & 0x07;
+            }
+            else {
+                return MALFORMED;
+            }
+            if (position + size > end) {
+                return MALFORMED;
+            }
+            for (int i = 1; i < size; i++) {
+                int continuationByte = slice.getByte(position + i) & 0xFF;
+                if ((continuationByte & 0xC0) != 0x80) {
+                    return MALFORMED;
+                }
+                codePoint = (codePoint << 6) | (continuationByte & 0x3F);
+            }
+            // Overlong encodings, surrogates and values past the last code point are malformed as well
+            if ((size == 3 && (codePoint < 0x800 || Character.isSurrogate((char) codePoint))) || (size == 4 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT))) {
+                return MALFORMED;
+            }
+            if (Character.isBmpCodePoint(codePoint)) {
+                hash = 31 * hash + codePoint;
+            }
+            else {
+                hash = 31 * (31 * hash + Character.highSurrogate(codePoint)) + Character.lowSurrogate(codePoint);
+            }
+            position += size;
+        }
+        return hash & 0xFFFFFFFFL;
+    }
+}
@@ -5,6 +5,7 @@ import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.AggregationFunction;
 import io.trino.spi.function.CombineFunction;
 import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
 import io.trino.spi.function.InputFunction;
 import io.trino.spi.function.OutputFunction;
 import io.trino.spi.function.SqlType;
@@ -17,13 +18,36 @@ public class StringItemsSketchAggFunction
 {
     private StringItemsSketchAggFunction() {}
 
+    private static void put(StringItemsSketchState state, Slice value, int maxMapSize)
+    {
+        if (state.getItemsSketchProxy() == null) {
+            state.setItemsSketchProxy(new StringItemsSketchProxy(maxMapSize));
+        }
+        StringItemsSketchProxy sketch = state.getItemsSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
     private static void mergeSketchToState(StringItemsSketchState state, StringItemsSketchProxy otherSketch)
     {
         if (state.getItemsSketchProxy() == null) {
             state.setItemsSketchProxy(new StringItemsSketchProxy(otherSketch.getMaxMapSize()));
         }
         StringItemsSketchProxy sketch = state.getItemsSketchProxy();
-        sketch.merge(otherSketch);
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.merge(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.merge(otherSketch);
+        }
     }
 
     @InputFunction
@@ -31,10 +55,7 @@ public class StringItemsSketchAggFunction
             StringItemsSketchState state,
             @SqlType(StandardTypes.VARCHAR) Slice value)
     {
-        if (state.getItemsSketchProxy() == null) {
-            state.setItemsSketchProxy(new StringItemsSketchProxy());
-        }
-        state.getItemsSketchProxy().put(value.toStringUtf8());
+        put(state, value, StringItemsSketchProxy.DEFAULT_MAP_SIZE);
     }
 
     @InputFunction
@@ -43,10 +64,7 @@ public class StringItemsSketchAggFunction
             @SqlType(StandardTypes.VARCHAR) Slice value,
             @SqlType(StandardTypes.BIGINT) long maxSize)
     {
-        if (state.getItemsSketchProxy() == null) {
-            state.setItemsSketchProxy(new StringItemsSketchProxy((int) maxSize));
-        }
-        state.getItemsSketchProxy().put(value.toStringUtf8());
+        put(state, value, (int) maxSize);
     }
 
     @InputFunction
@@ -60,7 +78,11 @@ public class StringItemsSketchAggFunction
     @CombineFunction
     public static void combine(StringItemsSketchState state, StringItemsSketchState otherState)
     {
-        mergeSketchToState(state, otherState.getItemsSketchProxy());
+        StringItemsSketchProxy otherSketch = otherState.getItemsSketchProxy();
+        if (otherSketch == null) {
+            return;
+        }
+        mergeSketchToState(state, otherSketch);
     }
 
     @OutputFunction(StandardTypes.VARBINARY)
@@ -1,19 +1,38 @@
 package com.roblox.trino.udfs.datasketches.stringitems;
 
+import com.roblox.trino.udfs.datasketches.SketchCache;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.Description;
 import io.trino.spi.function.ScalarFunction;
 import io.trino.spi.function.SqlType;
 import io.trino.spi.type.BigintType;
+import io.trino.spi.type.RowType;
 import io.trino.spi.type.StandardTypes;
 import io.trino.spi.type.VarcharType;
+import org.apache.datasketches.frequencies.ItemsSketch.Row;
 
-import static io.airlift.slice.Slices.utf8Slice;
+import java.util.List;
+
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+import static io.trino.spi.type.RowType.field;
 
 public class StringItemsSketchEstimateFunctions
 {
+    private static final SketchCache<StringItemsSketchProxy> SKETCH_CACHE = new SketchCache<>(
+            SketchStats.STRING_ITEMS,
+            (slice, ignored) -> new StringItemsSketchProxy(slice),
+            StringItemsSketchProxy::getEstimatedSize);
+    private static final String TOP_ITEMS_TYPE = "array(row(item varchar, estimate bigint, lower_bound bigint, upper_bound bigint))";
+    private static final RowType TOP_ITEM = RowType.from(List.of(
+            field("item", VarcharType.VARCHAR),
+            field("estimate", BigintType.BIGINT),
+            field("lower_bound", BigintType.BIGINT),
+            field("upper_bound", BigintType.BIGINT)));
+
     private StringItemsSketchEstimateFunctions() {}
 
     @Description("Estimate the frequency of an item in a String ItemsSketch")
@@ -23,9 +42,8 @@ public class StringItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.VARCHAR) Slice itemSlice)
     {
-        StringItemsSketchProxy sketch = new StringItemsSketchProxy(slice);
-        String item = itemSlice.toStringUtf8();
-        return sketch.getEstimate(item);
+        StringItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return sketch.getEstimate(itemSlice);
     }
 
     @Description("Estimate the frequency of an item in a String ItemsSketch")
@@ -35,12 +53,11 @@ public class StringItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(varchar)") Block itemsBlock)
     {
-        StringItemsSketchProxy sketch = new StringItemsSketchProxy(slice);
+        StringItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             Slice itemSlice = itemsBlock.getSlice(i, 0, itemsBlock.getSliceLength(i));
-            String item = itemSlice.toStringUtf8();
-            BigintType.BIGINT.writeLong(blockBuilder, sketch.getEstimate(item));
+            BigintType.BIGINT.writeLong(blockBuilder, sketch.getEstimate(itemSlice));
         }
         return blockBuilder.build();
     }
@@ -52,9 +69,8 @@ public class StringItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.VARCHAR) Slice itemSlice)
     {
-        StringItemsSketchProxy sketch = new StringItemsSketchProxy(slice);
-        String item = itemSlice.toStringUtf8();
-        return sketch.getUpperBound(item);
+        StringItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return sketch.getUpperBound(itemSlice);
     }
 
     @Description("Get an upper bound on the frequency of an item in a String ItemsSketch")
@@ -64,12 +80,11 @@ public class StringItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(varchar)") Block itemsBlock)
     {
-        StringItemsSketchProxy sketch = new StringItemsSketchProxy(slice);
+        StringItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             Slice itemSlice = itemsBlock.getSlice(i, 0, itemsBlock.getSliceLength(i));
-            String item = itemSlice.toStringUtf8();
-            BigintType.BIGINT.writeLong(blockBuilder, sketch.getUpperBound(item));
+            BigintType.BIGINT.writeLong(blockBuilder, sketch.getUpperBound(itemSlice));
         }
         return blockBuilder.build();
     }
@@ -81,9 +96,8 @@ public class StringItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.VARCHAR) Slice itemSlice)
     {
-        StringItemsSketchProxy sketch = new StringItemsSketchProxy(slice);
-        String item = itemSlice.toStringUtf8();
-        return sketch.getLowerBound(item);
+        StringItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        return sketch.getLowerBound(itemSlice);
     }
 
     @Description("Get a lower bound on the frequency of an item in a String ItemsSketch")
@@ -93,12 +107,11 @@ public class StringItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType("array(varchar)") Block itemsBlock)
     {
-        StringItemsSketchProxy sketch = new StringItemsSketchProxy(slice);
+        StringItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
         BlockBuilder blockBuilder = BigintType.BIGINT.createBlockBuilder(null, itemsBlock.getPositionCount());
         for (int i = 0; i < itemsBlock.getPositionCount(); i++) {
             Slice itemSlice = itemsBlock.getSlice(i, 0, itemsBlock.getSliceLength(i));
-            String item = itemSlice.toStringUtf8();
-            BigintType.BIGINT.writeLong(blockBuilder, sketch.getLowerBound(item));
+            BigintType.BIGINT.writeLong(blockBuilder, sketch.getLowerBound(itemSlice));
         }
         return blockBuilder.build();
     }
@@ -110,11 +123,60 @@ public class StringItemsSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BOOLEAN) boolean falsePositives)
     {
-        StringItemsSketchProxy sketch = new StringItemsSketchProxy(slice);
-        String[] frequentItems = sketch.getFrequentItems(falsePositives);
+        StringItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        StringItem[] frequentItems = sketch.getFrequentItems(falsePositives);
         BlockBuilder blockBuilder = VarcharType.VARCHAR.createBlockBuilder(null, frequentItems.length);
-        for (String frequentItem : frequentItems) {
-            VarcharType.VARCHAR.writeSlice(blockBuilder, utf8Slice(frequentItem));
+        for (StringItem frequentItem : frequentItems) {
+            VarcharType.VARCHAR.writeSlice(blockBuilder, frequentItem.getSlice(), frequentItem.getOffset(), frequentItem.getLength());
+        }
+        return blockBuilder.build();
+    }
+
+    @Description("Get the frequent items in a String ItemsSketch with their estimated frequency and its bounds, most frequent first")
+    @ScalarFunction("string_items_sketch_top_items")
+    @SqlType(TOP_ITEMS_TYPE)
+    public static Block itemsSketchTopItems(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BOOLEAN) boolean falsePositives)
+    {
+        return itemsSketchTopItems(slice, falsePositives, Long.MAX_VALUE, 0);
+    }
+
+    @Description("Get the frequent items in a String ItemsSketch with their estimated frequency and its bounds, most frequent first")
+    @ScalarFunction("string_items_sketch_top_items")
+    @SqlType(TOP_ITEMS_TYPE)
+    public static Block itemsSketchTopItems(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BOOLEAN) boolean falsePositives,
+            @SqlType(StandardTypes.BIGINT) long limit)
+    {
+        return itemsSketchTopItems(slice, falsePositives, limit, 0);
+    }
+
+    @Description("Get the frequent items in a String ItemsSketch with their estimated frequency and its bounds, most frequent first")
+    @ScalarFunction("string_items_sketch_top_items")
+    @SqlType(TOP_ITEMS_TYPE)
+    public static Block itemsSketchTopItems(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BOOLEAN) boolean falsePositives,
+            @SqlType(StandardTypes.BIGINT) long limit,
+            @SqlType(StandardTypes.BIGINT) long threshold)
+    {
+        if (limit < 0) {
+            throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "Limit must not be negative: " + limit);
+        }
+        StringItemsSketchProxy sketch = SKETCH_CACHE.get(slice);
+        Row<StringItem>[] rows = sketch.getFrequentItemRows(falsePositives, threshold);
+        int count = (int) Math.min(rows.length, limit);
+        BlockBuilder blockBuilder = TOP_ITEM.createBlockBuilder(null, count);
+        for (int i = 0; i < count; i++) {
+            Row<StringItem> row = rows[i];
+            BlockBuilder entry = blockBuilder.beginBlockEntry();
+            VarcharType.VARCHAR.writeSlice(entry, row.getItem().getSlice(), row.getItem().getOffset(), row.getItem().getLength());
+            BigintType.BIGINT.writeLong(entry, row.getEstimate());
+            BigintType.BIGINT.writeLong(entry, row.getLowerBound());
+            BigintType.BIGINT.writeLong(entry, row.getUpperBound());
+            blockBuilder.closeEntry();
         }
         return blockBuilder.build();
     }
@@ -1,91 +1,152 @@
 package com.roblox.trino.udfs.datasketches.stringitems;
 
-import io.airlift.slice.BasicSliceInput;
-import io.airlift.slice.DynamicSliceOutput;
+import com.roblox.trino.udfs.datasketches.SketchHeapifyEvent;
+import com.roblox.trino.udfs.datasketches.SketchMergeEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
 import io.airlift.slice.Slice;
-import org.apache.datasketches.common.ArrayOfStringsSerDe;
+import io.airlift.slice.Slices;
 import org.apache.datasketches.frequencies.ErrorType;
 import org.apache.datasketches.frequencies.ItemsSketch;
 import org.apache.datasketches.frequencies.ItemsSketch.Row;
-import org.apache.datasketches.memory.WritableMemory;
-
-import java.io.IOException;
-import java.io.UncheckedIOException;
-
+import org.apache.datasketches.memory.Memory;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOfByteArray;
+import static io.airlift.slice.SizeOf.sizeOfLongArray;
+import static io.airlift.slice.SizeOf.sizeOfObjectArray;
+import static io.airlift.slice.SizeOf.sizeOfShortArray;
+
+/**
+ * Wraps a frequent items sketch of VARCHAR values which keeps their UTF-8 bytes, see {@link StringItem}, so values
+ * are never decoded into Strings. The serialized form is the one of an {@code ItemsSketch<String>},
+ * see {@link ArrayOfStringItemsSerDe}.
+ * <p>
+ * The items of a deserialized sketch share a single array, which stays alive as long as one of them is held.
+ * A sketch it is merged into copies the items it does not hold yet, as when it is updated, so that it does not keep
+ * the whole array alive for each item it takes.
+ */
 public class StringItemsSketchProxy
 {
+    private static final int INSTANCE_SIZE = instanceSize(StringItemsSketchProxy.class) + instanceSize(ItemsSketch.class) + StringItem.INSTANCE_SIZE;
+    private static final int ITEM_SIZE = StringItem.INSTANCE_SIZE + instanceSize(Slice.class);
+    private static final ArrayOfStringItemsSerDe SERDE = new ArrayOfStringItemsSerDe();
+
     public static final int DEFAULT_MAP_SIZE = 64;
 
-    private final ItemsSketch<String> sketch;
+    private final ItemsSketch<StringItem> sketch;
+    // Repointed at each value added to the sketch, so values the sketch holds already are counted without a copy
+    private final StringItem probe = StringItem.probe();
+    // The items read when the sketch was deserialized, which share a single array, or null
+    private final StringItem[] deserializedItems;
+    // Running totals of the items seen, used to estimate the average size of the items held by the sketch
+    private long itemCount;
+    private long itemBytes;
 
     public StringItemsSketchProxy()
     {
         this.sketch = new ItemsSketch<>(DEFAULT_MAP_SIZE);
+        this.deserializedItems = null;
     }
 
     public StringItemsSketchProxy(int mapSize)
     {
         this.sketch = new ItemsSketch<>(mapSize);
+        this.deserializedItems = null;
     }
 
     public StringItemsSketchProxy(Slice slice)
     {
-        BasicSliceInput input = slice.getInput();
-        int length = (int) input.length();
-        byte[] bytes = new byte[length];
-        input.readBytes(bytes);
-        WritableMemory memory = WritableMemory.writableWrap(bytes);
-        this.sketch = ItemsSketch.getInstance(memory, new ArrayOfStringsSerDe());
+        SketchHeapifyEvent event = SketchHeapifyEvent.beginIfEnabled();
+        Memory memory = SliceMemory.wrap(slice);
+        ArrayOfStringItemsSerDe serDe = new ArrayOfStringItemsSerDe();
+        this.sketch = ItemsSketch.getInstance(memory, serDe);
+        this.deserializedItems = serDe.getDeserializedItems();
+        if (event != null) {
+            event.commit("string_items", this.getMaxMapSize(), this.sketch.getNumActiveItems(), slice.length());
+        }
+        this.itemCount = this.sketch.getNumActiveItems();
+        this.itemBytes = slice.length();
     }
 
-    public void put(String item)
+    /**
+     * Counts a value through the probe. The sketch keeps a reference to the items it does not hold yet,
+     * so those are copied first, while the others are counted against the copy the sketch already holds.
+     */
+    public void put(Slice item)
     {
-        this.sketch.update(item);
+        this.probe.set(item, 0, item.length());
+        StringItem stringItem = this.probe;
+        if (this.sketch.getEstimate(stringItem) == 0) {
+            stringItem = stringItem.copy();
+        }
+        this.sketch.update(stringItem);
+        this.probe.clear();
+        this.itemCount++;
+        this.itemBytes += stringItem.getLength();
     }
 
-    public long getEstimate(String item)
+    public long getEstimate(Slice item)
     {
-        return this.sketch.getEstimate(item);
+        return this.sketch.getEstimate(new StringItem(item));
     }
 
-    public long getLowerBound(String item)
+    public long getLowerBound(Slice item)
     {
-        return this.sketch.getLowerBound(item);
+        return this.sketch.getLowerBound(new StringItem(item));
     }
 
-    public long getUpperBound(String item)
+    public long getUpperBound(Slice item)
     {
-        return this.sketch.getUpperBound(item);
+        return this.sketch.getUpperBound(new StringItem(item));
     }
 
-    public String[] getFrequentItems(boolean falsePositives)
+    public StringItem[] getFrequentItems(boolean falsePositives)
     {
-        Row<String>[] results = this.sketch.getFrequentItems(falsePositives ? ErrorType.NO_FALSE_NEGATIVES : ErrorType.NO_FALSE_POSITIVES);
-        String[] items = new String[results.length];
+        Row<StringItem>[] results = this.sketch.getFrequentItems(falsePositives ? ErrorType.NO_FALSE_NEGATIVES : ErrorType.NO_FALSE_POSITIVES);
+        StringItem[] items = new StringItem[results.length];
         for (int i = 0; i < results.length; i++) {
             items[i] = results[i].getItem();
         }
         return items;
     }
 
+    /**
+     * Returns the frequent items with their estimated frequency and its bounds in a single pass over the sketch,
+     * sorted by decreasing estimate. An item is kept if the bound selected by the error type is at least the threshold,
+     * which is raised to the maximum error of the sketch when it is lower.
+     */
+    public Row<StringItem>[] getFrequentItemRows(boolean falsePositives, long threshold)
+    {
+        return this.sketch.getFrequentItems(threshold, falsePositives ? ErrorType.NO_FALSE_NEGATIVES : ErrorType.NO_FALSE_POSITIVES);
+    }
+
     public void merge(StringItemsSketchProxy other)
     {
+        long start = SketchStats.STRING_ITEMS.startTimer();
+        SketchMergeEvent event = SketchMergeEvent.beginIfEnabled();
+        if (other.deserializedItems != null) {
+            for (StringItem item : other.deserializedItems) {
+                if (this.sketch.getEstimate(item) == 0) {
+                    item.detach();
+                }
+            }
+        }
         this.sketch.merge(other.getSketch());
+        this.itemCount += other.itemCount;
+        this.itemBytes += other.itemBytes;
+        SketchStats.STRING_ITEMS.recordMerge(start);
+        if (event != null) {
+            event.commit("string_items", this.getMaxMapSize(), other.sketch.getNumActiveItems(), other.getEstimatedSize());
+        }
     }
 
     public Slice serialize()
     {
-        byte[] bytes = this.sketch.toByteArray(new ArrayOfStringsSerDe());
-        try (DynamicSliceOutput output = new DynamicSliceOutput(bytes.length)) {
-            output.appendBytes(bytes);
-            return output.slice();
-        }
-        catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        return Slices.wrappedBuffer(this.sketch.toByteArray(SERDE));
     }
 
-    public ItemsSketch<String> getSketch()
+    public ItemsSketch<StringItem> getSketch()
     {
         return this.sketch;
     }
@@ -97,7 +158,12 @@ public class StringItemsSketchProxy
 
     public long getEstimatedSize()
     {
-        byte[] bytes = this.sketch.toByteArray(new ArrayOfStringsSerDe());
-        return bytes.length;
+        // The hash map holds an item reference, a long count and a short state per slot, at a load factor of 0.75
+        int mapLength = this.sketch.getCurrentMapCapacity() * 4 / 3;
+        long size = INSTANCE_SIZE + sizeOfObjectArray(mapLength) + sizeOfLongArray(mapLength) + sizeOfShortArray(mapLength);
+        if (this.itemCount > 0) {
+            size += this.sketch.getNumActiveItems() * (ITEM_SIZE + sizeOfByteArray((int) (this.itemBytes / this.itemCount)));
+        }
+        return size;
     }
 }
@@ -12,4 +12,6 @@ public interface StringItemsSketchState
     StringItemsSketchProxy getItemsSketchProxy();
 
     void setItemsSketchProxy(StringItemsSketchProxy value);
+
+    void addMemoryUsage(long value);
 }
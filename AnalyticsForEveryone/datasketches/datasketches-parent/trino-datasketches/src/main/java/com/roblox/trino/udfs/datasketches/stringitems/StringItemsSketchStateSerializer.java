@@ -1,5 +1,7 @@
 package com.roblox.trino.udfs.datasketches.stringitems;
 
+import com.roblox.trino.udfs.datasketches.SketchSerializationEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
 import io.trino.spi.block.Block;
 import io.trino.spi.block.BlockBuilder;
@@ -23,7 +25,15 @@ public class StringItemsSketchStateSerializer
             out.appendNull();
         }
         else {
-            VarbinaryType.VARBINARY.writeSlice(out, state.getItemsSketchProxy().serialize());
+            StringItemsSketchProxy sketch = state.getItemsSketchProxy();
+            long start = SketchStats.STRING_ITEMS.startTimer();
+            SketchSerializationEvent event = SketchSerializationEvent.beginIfEnabled();
+            Slice serialized = sketch.serialize();
+            VarbinaryType.VARBINARY.writeSlice(out, serialized);
+            SketchStats.STRING_ITEMS.recordSerialize(start, serialized.length());
+            if (event != null) {
+                event.commit("string_items", sketch.getMaxMapSize(), sketch.getSketch().getNumActiveItems(), serialized.length());
+            }
         }
     }
 
@@ -32,7 +42,9 @@ public class StringItemsSketchStateSerializer
     {
         if (!block.isNull(index)) {
             Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            long start = SketchStats.STRING_ITEMS.startTimer();
             state.setItemsSketchProxy(new StringItemsSketchProxy(slice));
+            SketchStats.STRING_ITEMS.recordDeserialize(start, slice.length());
         }
     }
 }
@@ -0,0 +1,73 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AggregationFunction;
+import io.trino.spi.function.CombineFunction;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
+import io.trino.spi.function.InputFunction;
+import io.trino.spi.function.OutputFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+import io.trino.spi.type.VarbinaryType;
+
+@Description("Remove every theta sketch b from the theta sketch a, which must be the same for every row of a group")
+@AggregationFunction("theta_anotb")
+public class ThetaAnotBAggFunction
+{
+    private ThetaAnotBAggFunction() {}
+
+    @InputFunction
+    public static void inputSketches(
+            ThetaAnotBState state,
+            @SqlType(StandardTypes.VARBINARY) Slice a,
+            @SqlType(StandardTypes.VARBINARY) Slice b)
+    {
+        if (state.getThetaAnotBProxy() == null) {
+            state.setThetaAnotBProxy(new ThetaAnotBProxy(a));
+        }
+        ThetaAnotBProxy difference = state.getThetaAnotBProxy();
+        difference.checkA(a);
+        if (state instanceof GroupedAccumulatorState) {
+            long size = difference.getEstimatedSize();
+            difference.notB(b);
+            state.addMemoryUsage(difference.getEstimatedSize() - size);
+        }
+        else {
+            difference.notB(b);
+        }
+    }
+
+    @CombineFunction
+    public static void combine(ThetaAnotBState state, ThetaAnotBState otherState)
+    {
+        ThetaAnotBProxy otherDifference = otherState.getThetaAnotBProxy();
+        if (otherDifference == null) {
+            return;
+        }
+        if (state.getThetaAnotBProxy() == null) {
+            state.setThetaAnotBProxy(new ThetaAnotBProxy(otherDifference.getA(), otherDifference.serialize()));
+            return;
+        }
+        ThetaAnotBProxy difference = state.getThetaAnotBProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = difference.getEstimatedSize();
+            difference.merge(otherDifference);
+            state.addMemoryUsage(difference.getEstimatedSize() - size);
+        }
+        else {
+            difference.merge(otherDifference);
+        }
+    }
+
+    @OutputFunction(StandardTypes.VARBINARY)
+    public static void output(ThetaAnotBState state, BlockBuilder out)
+    {
+        if (state.getThetaAnotBProxy() == null) {
+            out.appendNull();
+            return;
+        }
+        VarbinaryType.VARBINARY.writeSlice(out, state.getThetaAnotBProxy().serialize());
+    }
+}
@@ -0,0 +1,104 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import com.roblox.trino.udfs.datasketches.SliceMemory;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.TrinoException;
+import org.apache.datasketches.theta.AnotB;
+import org.apache.datasketches.theta.CompactSketch;
+import org.apache.datasketches.theta.Intersection;
+import org.apache.datasketches.theta.SetOperation;
+import org.apache.datasketches.theta.Sketch;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOfLongArray;
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+
+/**
+ * Removes theta sketches one at a time from a fixed sketch A, keeping only the running difference rather than
+ * the removed sketches.
+ * <p>
+ * Every partial difference starts from the same A, so two of them are combined by intersecting them:
+ * (A - X) ∩ (A - Y) = A - (X ∪ Y).
+ */
+public class ThetaAnotBProxy
+{
+    private static final int INSTANCE_SIZE = instanceSize(ThetaAnotBProxy.class);
+
+    // The serialized A sketch, kept to check every input and partial difference subtracts from the same sketch
+    private final Slice a;
+    private final AnotB anotB = SetOperation.builder().buildANotB();
+    // The running difference, replaced by a smaller one by every subtraction
+    private CompactSketch result;
+
+    public ThetaAnotBProxy(Slice a)
+    {
+        this(Slices.copyOf(a), a);
+    }
+
+    /**
+     * Restores a partial difference from its A sketch and the result of the subtractions made so far.
+     */
+    public ThetaAnotBProxy(Slice a, Slice result)
+    {
+        this.a = a;
+        this.result = Sketch.heapify(SliceMemory.wrap(result)).compact();
+    }
+
+    public void checkA(Slice a)
+    {
+        if (!this.isA(a)) {
+            throw differentA();
+        }
+    }
+
+    public void notB(Slice b)
+    {
+        this.result = this.anotB.aNotB(this.result, Sketch.wrap(SliceMemory.wrap(b)), false, null);
+    }
+
+    public void merge(ThetaAnotBProxy other)
+    {
+        this.checkA(other.a);
+        Intersection intersection = SetOperation.builder().buildIntersection();
+        intersection.intersect(this.result);
+        intersection.intersect(other.result);
+        this.result = intersection.getResult(false, null);
+    }
+
+    public Slice getA()
+    {
+        return this.a;
+    }
+
+    public Sketch getSketch()
+    {
+        return this.result;
+    }
+
+    public Slice serialize()
+    {
+        return Slices.wrappedBuffer(this.result.toByteArray());
+    }
+
+    public long getEstimatedSize()
+    {
+        // The difference is held as an array of the entries left from A
+        return INSTANCE_SIZE + this.a.getRetainedSize() + sizeOfLongArray(this.result.getRetainedEntries(true));
+    }
+
+    private boolean isA(Slice a)
+    {
+        // A partial difference started from another one shares its A, which then needs no compare
+        if (a.length() == this.a.length() && a.hasByteArray() && this.a.hasByteArray()
+                && a.byteArray() == this.a.byteArray() && a.byteArrayOffset() == this.a.byteArrayOffset()) {
+            return true;
+        }
+        return a.equals(this.a);
+    }
+
+    private static TrinoException differentA()
+    {
+        return new TrinoException(INVALID_FUNCTION_ARGUMENT, "The first sketch of theta_anotb must be the same for every row of a group");
+    }
+}
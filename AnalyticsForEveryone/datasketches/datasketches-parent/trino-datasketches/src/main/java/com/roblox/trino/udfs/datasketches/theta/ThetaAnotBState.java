@@ -0,0 +1,17 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import io.trino.spi.function.AccumulatorState;
+import io.trino.spi.function.AccumulatorStateMetadata;
+
+@AccumulatorStateMetadata(
+        stateSerializerClass = ThetaAnotBStateSerializer.class,
+        stateFactoryClass = ThetaAnotBStateFactory.class)
+public interface ThetaAnotBState
+        extends AccumulatorState
+{
+    ThetaAnotBProxy getThetaAnotBProxy();
+
+    void setThetaAnotBProxy(ThetaAnotBProxy value);
+
+    void addMemoryUsage(long value);
+}
@@ -0,0 +1,107 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import io.trino.array.ObjectBigArray;
+import io.trino.spi.function.AccumulatorStateFactory;
+import io.trino.spi.function.GroupedAccumulatorState;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+
+public class ThetaAnotBStateFactory
+        implements AccumulatorStateFactory<ThetaAnotBState>
+{
+    private static final int SIZE_OF_SINGLE = instanceSize(SingleThetaAnotBState.class);
+    private static final int SIZE_OF_GROUPED = instanceSize(GroupedThetaAnotBState.class);
+
+    @Override
+    public ThetaAnotBState createSingleState()
+    {
+        return new SingleThetaAnotBState();
+    }
+
+    @Override
+    public ThetaAnotBState createGroupedState()
+    {
+        return new GroupedThetaAnotBState();
+    }
+
+    public static class SingleThetaAnotBState
+            implements ThetaAnotBState
+    {
+        public ThetaAnotBProxy difference;
+
+        @Override
+        public ThetaAnotBProxy getThetaAnotBProxy()
+        {
+            return difference;
+        }
+
+        @Override
+        public void setThetaAnotBProxy(ThetaAnotBProxy value)
+        {
+            this.difference = value;
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            // The size of a single state is read from its proxy on demand
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            if (difference == null) {
+                return SIZE_OF_SINGLE;
+            }
+            return difference.getEstimatedSize() + SIZE_OF_SINGLE;
+        }
+    }
+
+    public static class GroupedThetaAnotBState
+            implements GroupedAccumulatorState, ThetaAnotBState
+    {
+        private final ObjectBigArray<ThetaAnotBProxy> differences = new ObjectBigArray<>();
+        private long groupId;
+        private long size;
+
+        @Override
+        public void setGroupId(long groupId)
+        {
+            this.groupId = groupId;
+        }
+
+        @Override
+        public void ensureCapacity(long size)
+        {
+            differences.ensureCapacity(size);
+        }
+
+        @Override
+        public ThetaAnotBProxy getThetaAnotBProxy()
+        {
+            return differences.get(groupId);
+        }
+
+        @Override
+        public void setThetaAnotBProxy(ThetaAnotBProxy value)
+        {
+            if (getThetaAnotBProxy() != null) {
+                size -= getThetaAnotBProxy().getEstimatedSize();
+            }
+            size += value.getEstimatedSize();
+            differences.set(groupId, value);
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            size += value;
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            return size + differences.sizeOf() + SIZE_OF_GROUPED;
+        }
+    }
+}
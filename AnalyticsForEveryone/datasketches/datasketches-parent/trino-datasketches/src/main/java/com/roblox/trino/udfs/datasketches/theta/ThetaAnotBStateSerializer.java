@@ -0,0 +1,63 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import io.airlift.slice.BasicSliceInput;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.TrinoException;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AccumulatorStateSerializer;
+import io.trino.spi.type.Type;
+import io.trino.spi.type.VarbinaryType;
+
+import static io.trino.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+
+public class ThetaAnotBStateSerializer
+        implements AccumulatorStateSerializer<ThetaAnotBState>
+{
+    @Override
+    public Type getSerializedType()
+    {
+        return VarbinaryType.VARBINARY;
+    }
+
+    @Override
+    public void serialize(ThetaAnotBState state, BlockBuilder out)
+    {
+        if (state.getThetaAnotBProxy() == null) {
+            out.appendNull();
+        }
+        else {
+            ThetaAnotBProxy difference = state.getThetaAnotBProxy();
+            Slice result = difference.serialize();
+            DynamicSliceOutput sliceOutput = new DynamicSliceOutput(Integer.BYTES + difference.getA().length() + result.length());
+
+            sliceOutput.appendInt(difference.getA().length());
+            sliceOutput.appendBytes(difference.getA());
+            sliceOutput.appendBytes(result);
+
+            VarbinaryType.VARBINARY.writeSlice(out, sliceOutput.slice());
+        }
+    }
+
+    @Override
+    public void deserialize(Block block, int index, ThetaAnotBState state)
+    {
+        if (!block.isNull(index)) {
+            Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            BasicSliceInput input = slice.getInput();
+            // The slice will contain the length of the A sketch, the A sketch, then the difference computed so far
+            try {
+                int length = input.readInt();
+                Slice a = Slices.copyOf(input.readSlice(length));
+                Slice result = input.readSlice((int) input.available());
+                state.setThetaAnotBProxy(new ThetaAnotBProxy(a, result));
+            }
+            catch (RuntimeException e) {
+                // Dropping a partial state would silently leave its rows out of the result, so fail the query instead
+                throw new TrinoException(GENERIC_INTERNAL_ERROR, "Error reading Theta A-not-B bytes", e);
+            }
+        }
+    }
+}
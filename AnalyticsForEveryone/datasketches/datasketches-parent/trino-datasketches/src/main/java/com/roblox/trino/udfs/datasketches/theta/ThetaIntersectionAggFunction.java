@@ -0,0 +1,71 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AggregationFunction;
+import io.trino.spi.function.CombineFunction;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
+import io.trino.spi.function.InputFunction;
+import io.trino.spi.function.OutputFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+import io.trino.spi.type.VarbinaryType;
+
+@Description("Intersect theta sketches")
+@AggregationFunction("theta_intersection_agg")
+public class ThetaIntersectionAggFunction
+{
+    private ThetaIntersectionAggFunction() {}
+
+    @InputFunction
+    public static void inputSketch(
+            ThetaIntersectionState state,
+            @SqlType(StandardTypes.VARBINARY) Slice value)
+    {
+        if (state.getThetaIntersectionProxy() == null) {
+            state.setThetaIntersectionProxy(new ThetaIntersectionProxy());
+        }
+        ThetaIntersectionProxy intersection = state.getThetaIntersectionProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = intersection.getEstimatedSize();
+            intersection.intersect(value);
+            state.addMemoryUsage(intersection.getEstimatedSize() - size);
+        }
+        else {
+            intersection.intersect(value);
+        }
+    }
+
+    @CombineFunction
+    public static void combine(ThetaIntersectionState state, ThetaIntersectionState otherState)
+    {
+        ThetaIntersectionProxy otherIntersection = otherState.getThetaIntersectionProxy();
+        if (otherIntersection == null) {
+            return;
+        }
+        if (state.getThetaIntersectionProxy() == null) {
+            state.setThetaIntersectionProxy(new ThetaIntersectionProxy());
+        }
+        ThetaIntersectionProxy intersection = state.getThetaIntersectionProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = intersection.getEstimatedSize();
+            intersection.intersect(otherIntersection);
+            state.addMemoryUsage(intersection.getEstimatedSize() - size);
+        }
+        else {
+            intersection.intersect(otherIntersection);
+        }
+    }
+
+    @OutputFunction(StandardTypes.VARBINARY)
+    public static void output(ThetaIntersectionState state, BlockBuilder out)
+    {
+        // Without any input sketch there is no set to intersect, so the result is null
+        if (state.getThetaIntersectionProxy() == null || !state.getThetaIntersectionProxy().hasResult()) {
+            out.appendNull();
+            return;
+        }
+        VarbinaryType.VARBINARY.writeSlice(out, state.getThetaIntersectionProxy().serialize());
+    }
+}
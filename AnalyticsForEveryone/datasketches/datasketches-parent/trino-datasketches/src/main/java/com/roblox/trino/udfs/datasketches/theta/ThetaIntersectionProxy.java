@@ -0,0 +1,80 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import com.roblox.trino.udfs.datasketches.SliceMemory;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.apache.datasketches.theta.Intersection;
+import org.apache.datasketches.theta.SetOperation;
+import org.apache.datasketches.theta.Sketch;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOfLongArray;
+
+/**
+ * Intersects theta sketches one at a time, keeping only the running intersection rather than the input sketches.
+ */
+public class ThetaIntersectionProxy
+{
+    private static final int INSTANCE_SIZE = instanceSize(ThetaIntersectionProxy.class);
+
+    private final Intersection intersection = SetOperation.builder().buildIntersection();
+    // The intersection never retains more entries than its smallest input, or -1 before the first input
+    private int maxRetainedEntries = -1;
+
+    public ThetaIntersectionProxy() {}
+
+    public ThetaIntersectionProxy(Slice slice)
+    {
+        this.intersect(slice);
+    }
+
+    /**
+     * Intersects with a serialized sketch. Its entries are read straight from the bytes, only the ones which are
+     * also in the running intersection are kept.
+     */
+    public void intersect(Slice slice)
+    {
+        this.intersect(Sketch.wrap(SliceMemory.wrap(slice)));
+    }
+
+    public void intersect(ThetaIntersectionProxy other)
+    {
+        // An intersection without any input stands for every possible entry, so it leaves this one unchanged
+        if (other.hasResult()) {
+            this.intersect(other.intersection.getResult());
+        }
+    }
+
+    public boolean hasResult()
+    {
+        return this.intersection.hasResult();
+    }
+
+    public Sketch getSketch()
+    {
+        return this.intersection.getResult();
+    }
+
+    public Slice serialize()
+    {
+        return Slices.wrappedBuffer(this.intersection.getResult().toByteArray());
+    }
+
+    public long getEstimatedSize()
+    {
+        if (this.maxRetainedEntries < 0) {
+            return INSTANCE_SIZE;
+        }
+        // The hash table of the intersection is at most twice as large as the entries it retains
+        return INSTANCE_SIZE + sizeOfLongArray(2 * this.maxRetainedEntries);
+    }
+
+    private void intersect(Sketch sketch)
+    {
+        this.intersection.intersect(sketch);
+        int retainedEntries = sketch.getRetainedEntries(true);
+        if (this.maxRetainedEntries < 0 || retainedEntries < this.maxRetainedEntries) {
+            this.maxRetainedEntries = retainedEntries;
+        }
+    }
+}
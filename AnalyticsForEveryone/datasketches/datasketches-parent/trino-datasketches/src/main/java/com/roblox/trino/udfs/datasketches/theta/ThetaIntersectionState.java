@@ -0,0 +1,17 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import io.trino.spi.function.AccumulatorState;
+import io.trino.spi.function.AccumulatorStateMetadata;
+
+@AccumulatorStateMetadata(
+        stateSerializerClass = ThetaIntersectionStateSerializer.class,
+        stateFactoryClass = ThetaIntersectionStateFactory.class)
+public interface ThetaIntersectionState
+        extends AccumulatorState
+{
+    ThetaIntersectionProxy getThetaIntersectionProxy();
+
+    void setThetaIntersectionProxy(ThetaIntersectionProxy value);
+
+    void addMemoryUsage(long value);
+}
@@ -0,0 +1,107 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import io.trino.array.ObjectBigArray;
+import io.trino.spi.function.AccumulatorStateFactory;
+import io.trino.spi.function.GroupedAccumulatorState;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+
+public class ThetaIntersectionStateFactory
+        implements AccumulatorStateFactory<ThetaIntersectionState>
+{
+    private static final int SIZE_OF_SINGLE = instanceSize(SingleThetaIntersectionState.class);
+    private static final int SIZE_OF_GROUPED = instanceSize(GroupedThetaIntersectionState.class);
+
+    @Override
+    public ThetaIntersectionState createSingleState()
+    {
+        return new SingleThetaIntersectionState();
+    }
+
+    @Override
+    public ThetaIntersectionState createGroupedState()
+    {
+        return new GroupedThetaIntersectionState();
+    }
+
+    public static class SingleThetaIntersectionState
+            implements ThetaIntersectionState
+    {
+        public ThetaIntersectionProxy intersection;
+
+        @Override
+        public ThetaIntersectionProxy getThetaIntersectionProxy()
+        {
+            return intersection;
+        }
+
+        @Override
+        public void setThetaIntersectionProxy(ThetaIntersectionProxy value)
+        {
+            this.intersection = value;
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            // The size of a single state is read from its proxy on demand
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            if (intersection == null) {
+                return SIZE_OF_SINGLE;
+            }
+            return intersection.getEstimatedSize() + SIZE_OF_SINGLE;
+        }
+    }
+
+    public static class GroupedThetaIntersectionState
+            implements GroupedAccumulatorState, ThetaIntersectionState
+    {
+        private final ObjectBigArray<ThetaIntersectionProxy> intersections = new ObjectBigArray<>();
+        private long groupId;
+        private long size;
+
+        @Override
+        public void setGroupId(long groupId)
+        {
+            this.groupId = groupId;
+        }
+
+        @Override
+        public void ensureCapacity(long size)
+        {
+            intersections.ensureCapacity(size);
+        }
+
+        @Override
+        public ThetaIntersectionProxy getThetaIntersectionProxy()
+        {
+            return intersections.get(groupId);
+        }
+
+        @Override
+        public void setThetaIntersectionProxy(ThetaIntersectionProxy value)
+        {
+            if (getThetaIntersectionProxy() != null) {
+                size -= getThetaIntersectionProxy().getEstimatedSize();
+            }
+            size += value.getEstimatedSize();
+            intersections.set(groupId, value);
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            size += value;
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            return size + intersections.sizeOf() + SIZE_OF_GROUPED;
+        }
+    }
+}
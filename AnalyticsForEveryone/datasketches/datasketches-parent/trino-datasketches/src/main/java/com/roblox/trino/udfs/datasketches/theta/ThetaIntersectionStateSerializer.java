@@ -0,0 +1,47 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AccumulatorStateSerializer;
+import io.trino.spi.type.Type;
+import io.trino.spi.type.VarbinaryType;
+
+import static io.trino.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+
+public class ThetaIntersectionStateSerializer
+        implements AccumulatorStateSerializer<ThetaIntersectionState>
+{
+    @Override
+    public Type getSerializedType()
+    {
+        return VarbinaryType.VARBINARY;
+    }
+
+    @Override
+    public void serialize(ThetaIntersectionState state, BlockBuilder out)
+    {
+        if (state.getThetaIntersectionProxy() == null || !state.getThetaIntersectionProxy().hasResult()) {
+            out.appendNull();
+        }
+        else {
+            VarbinaryType.VARBINARY.writeSlice(out, state.getThetaIntersectionProxy().serialize());
+        }
+    }
+
+    @Override
+    public void deserialize(Block block, int index, ThetaIntersectionState state)
+    {
+        if (!block.isNull(index)) {
+            Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            try {
+                state.setThetaIntersectionProxy(new ThetaIntersectionProxy(slice));
+            }
+            catch (RuntimeException e) {
+                // Dropping a partial state would silently leave its rows out of the result, so fail the query instead
+                throw new TrinoException(GENERIC_INTERNAL_ERROR, "Error reading Theta intersection bytes", e);
+            }
+        }
+    }
+}
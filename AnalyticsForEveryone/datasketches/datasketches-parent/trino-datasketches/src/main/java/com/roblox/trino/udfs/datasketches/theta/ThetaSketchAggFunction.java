@@ -5,6 +5,7 @@ import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.AggregationFunction;
 import io.trino.spi.function.CombineFunction;
 import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
 import io.trino.spi.function.InputFunction;
 import io.trino.spi.function.OutputFunction;
 import io.trino.spi.function.SqlType;
@@ -17,12 +18,69 @@ public class ThetaSketchAggFunction
 {
     private ThetaSketchAggFunction() {}
 
-    private static ThetaSketchProxy getOrCreateSketchProxy(ThetaSketchState state, int k)
+    private static void put(ThetaSketchState state, Slice value, int k)
     {
         if (state.getThetaSketchProxy() == null) {
             state.setThetaSketchProxy(new ThetaSketchProxy(k));
         }
-        return state.getThetaSketchProxy();
+        ThetaSketchProxy sketch = state.getThetaSketchProxy();
+        // A single state reads its size from the proxy when asked, so only grouped states track it per row
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void put(ThetaSketchState state, double value, int k)
+    {
+        if (state.getThetaSketchProxy() == null) {
+            state.setThetaSketchProxy(new ThetaSketchProxy(k));
+        }
+        ThetaSketchProxy sketch = state.getThetaSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void put(ThetaSketchState state, long value, int k)
+    {
+        if (state.getThetaSketchProxy() == null) {
+            state.setThetaSketchProxy(new ThetaSketchProxy(k));
+        }
+        ThetaSketchProxy sketch = state.getThetaSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(value);
+        }
+    }
+
+    private static void mergeSketchToState(ThetaSketchState state, ThetaSketchProxy otherSketch)
+    {
+        if (state.getThetaSketchProxy() == null) {
+            state.setThetaSketchProxy(new ThetaSketchProxy(otherSketch.getK()));
+        }
+        ThetaSketchProxy sketch = state.getThetaSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.union(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.union(otherSketch);
+        }
     }
 
     @InputFunction
@@ -30,10 +88,7 @@ public class ThetaSketchAggFunction
             ThetaSketchState state,
             @SqlType(StandardTypes.VARCHAR) Slice value)
     {
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy());
-        }
-        state.getThetaSketchProxy().put(value.toStringUtf8());
+        put(state, value, ThetaSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -41,10 +96,7 @@ public class ThetaSketchAggFunction
             ThetaSketchState state,
             @SqlType(StandardTypes.DOUBLE) double value)
     {
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy());
-        }
-        state.getThetaSketchProxy().put(value);
+        put(state, value, ThetaSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -52,10 +104,7 @@ public class ThetaSketchAggFunction
             ThetaSketchState state,
             @SqlType(StandardTypes.BIGINT) long value)
     {
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy());
-        }
-        state.getThetaSketchProxy().put(value);
+        put(state, value, ThetaSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -63,11 +112,7 @@ public class ThetaSketchAggFunction
             ThetaSketchState state,
             @SqlType(StandardTypes.REAL) long value)
     {
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy());
-        }
-        float floatValue = Float.intBitsToFloat((int) value);
-        state.getThetaSketchProxy().put(floatValue);
+        put(state, Float.intBitsToFloat((int) value), ThetaSketchProxy.DEFAULT_K);
     }
 
     @InputFunction
@@ -75,11 +120,7 @@ public class ThetaSketchAggFunction
             ThetaSketchState state,
             @SqlType(StandardTypes.VARBINARY) Slice value)
     {
-        ThetaSketchProxy other = new ThetaSketchProxy(value, ThetaSketchProxy.DEFAULT_K);
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy(other.getK()));
-        }
-        state.getThetaSketchProxy().union(other);
+        mergeSketchToState(state, new ThetaSketchProxy(value, ThetaSketchProxy.DEFAULT_K));
     }
 
     @InputFunction
@@ -88,10 +129,7 @@ public class ThetaSketchAggFunction
             @SqlType(StandardTypes.VARCHAR) Slice value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy((int) k));
-        }
-        state.getThetaSketchProxy().put(value.toStringUtf8());
+        put(state, value, (int) k);
     }
 
     @InputFunction
@@ -100,10 +138,7 @@ public class ThetaSketchAggFunction
             @SqlType(StandardTypes.DOUBLE) double value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy((int) k));
-        }
-        state.getThetaSketchProxy().put(value);
+        put(state, value, (int) k);
     }
 
     @InputFunction
@@ -112,10 +147,7 @@ public class ThetaSketchAggFunction
             @SqlType(StandardTypes.BIGINT) long value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy((int) k));
-        }
-        state.getThetaSketchProxy().put(value);
+        put(state, value, (int) k);
     }
 
     @InputFunction
@@ -124,11 +156,7 @@ public class ThetaSketchAggFunction
             @SqlType(StandardTypes.REAL) long value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy((int) k));
-        }
-        float floatValue = Float.intBitsToFloat((int) value);
-        state.getThetaSketchProxy().put(floatValue);
+        put(state, Float.intBitsToFloat((int) value), (int) k);
     }
 
     @InputFunction
@@ -137,21 +165,17 @@ public class ThetaSketchAggFunction
             @SqlType(StandardTypes.VARBINARY) Slice value,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        ThetaSketchProxy other = new ThetaSketchProxy(value, (int) k);
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy(other.getK()));
-        }
-        state.getThetaSketchProxy().union(other);
+        mergeSketchToState(state, new ThetaSketchProxy(value, (int) k));
     }
 
     @CombineFunction
     public static void combine(ThetaSketchState state, ThetaSketchState otherState)
     {
         ThetaSketchProxy otherSketch = otherState.getThetaSketchProxy();
-        if (state.getThetaSketchProxy() == null) {
-            state.setThetaSketchProxy(new ThetaSketchProxy(otherSketch.getK()));
+        if (otherSketch == null) {
+            return;
         }
-        state.getThetaSketchProxy().union(otherSketch);
+        mergeSketchToState(state, otherSketch);
     }
 
     @OutputFunction(StandardTypes.VARBINARY)
@@ -1,13 +1,23 @@
 package com.roblox.trino.udfs.datasketches.theta;
 
+import com.roblox.trino.udfs.datasketches.SketchCache;
+import com.roblox.trino.udfs.datasketches.SketchStats;
 import io.airlift.slice.Slice;
 import io.trino.spi.function.Description;
 import io.trino.spi.function.ScalarFunction;
 import io.trino.spi.function.SqlType;
 import io.trino.spi.type.StandardTypes;
+import org.apache.datasketches.theta.Sketch;
 
 public class ThetaSketchEstimateFunctions
 {
+    // Caches the compact result of unioning the input with a given k, which is immutable and safe to share
+    private static final SketchCache<Sketch> SKETCH_CACHE = new SketchCache<>(
+            SketchStats.THETA,
+            (slice, k) -> new ThetaSketchProxy(slice, k).getSketch(),
+            // A sketch which fits in k entries wraps the bytes of the key, only the result of a union is on the heap
+            sketch -> sketch.hasMemory() ? 0 : sketch.getCurrentBytes());
+
     private ThetaSketchEstimateFunctions() {}
 
     @Description("Estimate the number of distinct values in a theta sketch")
@@ -16,8 +26,7 @@ public class ThetaSketchEstimateFunctions
     public static long thetaSketchEstimate(
             @SqlType(StandardTypes.VARBINARY) Slice slice)
     {
-        ThetaSketchProxy sketch = new ThetaSketchProxy(slice, ThetaSketchProxy.DEFAULT_K);
-        return sketch.getEstimate();
+        return estimate(slice, ThetaSketchProxy.DEFAULT_K);
     }
 
     @Description("Estimate the number of distinct values in a theta sketch, with a provided k")
@@ -27,8 +36,7 @@ public class ThetaSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        ThetaSketchProxy sketch = new ThetaSketchProxy(slice, (int) k);
-        return sketch.getEstimate();
+        return estimate(slice, (int) k);
     }
 
     @Description("Get an upper bound on the number of distinct values in a theta sketch")
@@ -38,8 +46,7 @@ public class ThetaSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BIGINT) long numStdDev)
     {
-        ThetaSketchProxy sketch = new ThetaSketchProxy(slice, ThetaSketchProxy.DEFAULT_K);
-        return sketch.getUpperBound(numStdDev);
+        return upperBound(slice, (int) numStdDev, ThetaSketchProxy.DEFAULT_K);
     }
 
     @Description("Get an upper bound on the number of distinct values in a theta sketch, with a provided k")
@@ -50,8 +57,7 @@ public class ThetaSketchEstimateFunctions
             @SqlType(StandardTypes.BIGINT) long numStdDev,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        ThetaSketchProxy sketch = new ThetaSketchProxy(slice, (int) k);
-        return sketch.getUpperBound(numStdDev);
+        return upperBound(slice, (int) numStdDev, (int) k);
     }
 
     @Description("Get a lower bound on the number of distinct values in a theta sketch")
@@ -61,8 +67,7 @@ public class ThetaSketchEstimateFunctions
             @SqlType(StandardTypes.VARBINARY) Slice slice,
             @SqlType(StandardTypes.BIGINT) long numStdDev)
     {
-        ThetaSketchProxy sketch = new ThetaSketchProxy(slice, ThetaSketchProxy.DEFAULT_K);
-        return sketch.getLowerBound(numStdDev);
+        return lowerBound(slice, (int) numStdDev, ThetaSketchProxy.DEFAULT_K);
     }
 
     @Description("Get a lower bound on the number of distinct values in a theta sketch, with a provided k")
@@ -73,7 +78,31 @@ public class ThetaSketchEstimateFunctions
             @SqlType(StandardTypes.BIGINT) long numStdDev,
             @SqlType(StandardTypes.BIGINT) long k)
     {
-        ThetaSketchProxy sketch = new ThetaSketchProxy(slice, (int) k);
-        return sketch.getLowerBound(numStdDev);
+        return lowerBound(slice, (int) numStdDev, (int) k);
+    }
+
+    // Compact sketches within k are read from their preamble, rather than looked up in the cache by their contents
+    private static long estimate(Slice slice, int k)
+    {
+        if (ThetaSketchHeader.isReadable(slice, k)) {
+            return (long) ThetaSketchHeader.getEstimate(slice);
+        }
+        return (long) SKETCH_CACHE.get(slice, k).getEstimate();
+    }
+
+    private static long upperBound(Slice slice, int numStdDev, int k)
+    {
+        if (ThetaSketchHeader.isReadable(slice, k)) {
+            return (long) ThetaSketchHeader.getUpperBound(slice, numStdDev);
+        }
+        return (long) SKETCH_CACHE.get(slice, k).getUpperBound(numStdDev);
+    }
+
+    private static long lowerBound(Slice slice, int numStdDev, int k)
+    {
+        if (ThetaSketchHeader.isReadable(slice, k)) {
+            return (long) ThetaSketchHeader.getLowerBound(slice, numStdDev);
+        }
+        return (long) SKETCH_CACHE.get(slice, k).getLowerBound(numStdDev);
     }
 }
@@ -0,0 +1,122 @@
+package com.roblox.trino.udfs.datasketches.theta;
+
+import io.airlift.slice.Slice;
+import org.apache.datasketches.common.Family;
+import org.apache.datasketches.thetacommon.BinomialBoundsN;
+import org.apache.datasketches.thetacommon.ThetaUtil;
+
+/**
+ * Reads the estimate and bounds of a serialized compact theta sketch straight from its preamble, which holds
+ * the number of retained entries and theta, without wrapping or decoding the sketch.
+ * <p>
+ * Only compact sketches of the current serialization version, built with the default seed, are read this way.
+ * Their estimate is the one of the union with k the estimate functions would otherwise compute, as long as they
+ * retain at most k entries. Any other input goes through {@link ThetaSketchProxy}, which also reports malformed ones.
+ */
+public final class ThetaSketchHeader
+{
+    // Offsets and flags of the preamble, see org.apache.datasketches.theta.PreambleUtil
+    private static final int PREAMBLE_LONGS_BYTE = 0;
+    private static final int SER_VER_BYTE = 1;
+    private static final int FAMILY_BYTE = 2;
+    private static final int FLAGS_BYTE = 5;
+    private static final int SEED_HASH_SHORT = 6;
+    private static final int RETAINED_ENTRIES_INT = 8;
+    private static final int THETA_LONG = 16;
+
+    private static final int BIG_ENDIAN_FLAG_MASK = 1;
+    private static final int EMPTY_FLAG_MASK = 4;
+    private static final int COMPACT_FLAG_MASK = 8;
+    private static final int SINGLE_ITEM_FLAG_MASK = 32;
+
+    private static final int SER_VER = 3;
+    private static final int COMPACT_FAMILY_ID = Family.COMPACT.getID();
+    private static final short DEFAULT_SEED_HASH = ThetaUtil.computeSeedHash(ThetaUtil.DEFAULT_UPDATE_SEED);
+    private static final double LONG_MAX_VALUE_AS_DOUBLE = Long.MAX_VALUE;
+
+    private ThetaSketchHeader() {}
+
+    /**
+     * Returns whether the estimate and bounds of the sketch can be read from its preamble,
+     * because it is a well formed compact sketch which a union with k would leave untouched.
+     */
+    public static boolean isReadable(Slice slice, int k)
+    {
+        if (slice.length() < Long.BYTES) {
+            return false;
+        }
+        int preambleLongs = slice.getByte(PREAMBLE_LONGS_BYTE) & 0x3F;
+        int flags = slice.getByte(FLAGS_BYTE) & 0xFF;
+        if (slice.getByte(SER_VER_BYTE) != SER_VER
+                || slice.getByte(FAMILY_BYTE) != COMPACT_FAMILY_ID
+                || (flags & (BIG_ENDIAN_FLAG_MASK | COMPACT_FLAG_MASK)) != COMPACT_FLAG_MASK
+                || preambleLongs < 1 || preambleLongs > 3
+                || slice.length() < preambleLongs * Long.BYTES) {
+            return false;
+        }
+        if ((flags & EMPTY_FLAG_MASK) != 0) {
+            return true;
+        }
+        if (slice.getShort(SEED_HASH_SHORT) != DEFAULT_SEED_HASH) {
+            return false;
+        }
+        if (preambleLongs == 1 && (flags & SINGLE_ITEM_FLAG_MASK) == 0) {
+            return false;
+        }
+        int retainedEntries = getRetainedEntries(slice);
+        return getThetaLong(slice) > 0
+                && retainedEntries >= 0
+                && retainedEntries <= k
+                && slice.length() >= (preambleLongs + (long) retainedEntries) * Long.BYTES;
+    }
+
+    public static double getEstimate(Slice slice)
+    {
+        return getRetainedEntries(slice) * (LONG_MAX_VALUE_AS_DOUBLE / getThetaLong(slice));
+    }
+
+    public static double getUpperBound(Slice slice, int numStdDev)
+    {
+        if (!isEstimationMode(slice)) {
+            return getRetainedEntries(slice);
+        }
+        return BinomialBoundsN.getUpperBound(getRetainedEntries(slice), getThetaLong(slice) / LONG_MAX_VALUE_AS_DOUBLE, numStdDev, false);
+    }
+
+    public static double getLowerBound(Slice slice, int numStdDev)
+    {
+        if (!isEstimationMode(slice)) {
+            return getRetainedEntries(slice);
+        }
+        return BinomialBoundsN.getLowerBound(getRetainedEntries(slice), getThetaLong(slice) / LONG_MAX_VALUE_AS_DOUBLE, numStdDev, false);
+    }
+
+    private static boolean isEstimationMode(Slice slice)
+    {
+        return getThetaLong(slice) < Long.MAX_VALUE && !isEmpty(slice);
+    }
+
+    private static boolean isEmpty(Slice slice)
+    {
+        return (slice.getByte(FLAGS_BYTE) & EMPTY_FLAG_MASK) != 0;
+    }
+
+    private static int getRetainedEntries(Slice slice)
+    {
+        if (isEmpty(slice)) {
+            return 0;
+        }
+        int preambleLongs = slice.getByte(PREAMBLE_LONGS_BYTE) & 0x3F;
+        if (preambleLongs == 1) {
+            // A single item sketch, as the empty ones are handled above
+            return 1;
+        }
+        return slice.getInt(RETAINED_ENTRIES_INT);
+    }
+
+    private static long getThetaLong(Slice slice)
+    {
+        int preambleLongs = slice.getByte(PREAMBLE_LONGS_BYTE) & 0x3F;
+        return preambleLongs < 3 ? Long.MAX_VALUE : slice.getLong(THETA_LONG);
+    }
+}
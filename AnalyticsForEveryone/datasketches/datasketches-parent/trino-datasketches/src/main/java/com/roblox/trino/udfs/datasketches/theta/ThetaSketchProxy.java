@@ -1,9 +1,13 @@
 package com.roblox.trino.udfs.datasketches.theta;
 
-import io.airlift.slice.BasicSliceInput;
+import com.roblox.trino.udfs.datasketches.SketchMergeEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SketchUnionMaterializationEvent;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
-import org.apache.datasketches.memory.WritableMemory;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.theta.CompactSketch;
 import org.apache.datasketches.theta.SetOperation;
 import org.apache.datasketches.theta.Sketch;
 import org.apache.datasketches.theta.Union;
@@ -12,60 +16,106 @@ import org.apache.datasketches.theta.UpdateSketch;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 
+import static io.airlift.slice.SizeOf.instanceSize;
+
+/**
+ * Wraps a theta sketch which can be fed with raw values, with other sketches, or both.
+ * <p>
+ * The update sketch and the union are only allocated once they are needed:
+ * <ul>
+ *     <li>{@link Mode#UPDATE}: only raw values were added, the result is the compacted update sketch.</li>
+ *     <li>{@link Mode#UNION}: only sketches were added. A single input sketch is kept as is until a second one arrives.</li>
+ *     <li>{@link Mode#MIXED}: both were added, the update sketch is folded into the union when a result is needed.</li>
+ * </ul>
+ * The compact result of the union is kept until the next value or sketch is added, so that the output and the
+ * serialization of the same state only materialize it once.
+ */
 public class ThetaSketchProxy
 {
-    private final UpdateSketch sketch;
-    private final Union union;
-    private final int k;
+    private static final int INSTANCE_SIZE = instanceSize(ThetaSketchProxy.class);
+    private static final CompactSketch EMPTY_SKETCH = UpdateSketch.builder().build().compact();
 
     public static final int DEFAULT_K = 1 << UpdateSketch.builder().getLgNominalEntries();
 
+    enum Mode
+    {
+        EMPTY,
+        UPDATE,
+        UNION,
+        MIXED,
+    }
+
+    private final int k;
+    private Mode mode = Mode.EMPTY;
+    private UpdateSketch sketch;
+    private Union union;
+    // A single input sketch which has not been unioned with anything yet
+    private Sketch input;
+    // The last result of the union, until the next value or sketch is added
+    private CompactSketch unionResult;
+
     public ThetaSketchProxy()
     {
-        this.sketch = UpdateSketch.builder().build();
-        this.union = SetOperation.builder().buildUnion();
-        this.k = DEFAULT_K;
+        this(DEFAULT_K);
     }
 
     public ThetaSketchProxy(int k)
     {
-        this.sketch = UpdateSketch.builder().setNominalEntries(k).build();
-        this.union = SetOperation.builder().setNominalEntries(k).buildUnion();
         this.k = k;
     }
 
     public ThetaSketchProxy(Slice slice, int k)
     {
-        BasicSliceInput input = slice.getInput();
-        int length = (int) input.length();
-        byte[] bytes = new byte[length];
-        input.readBytes(bytes);
-        WritableMemory memory = WritableMemory.writableWrap(bytes);
-
-        this.sketch = UpdateSketch.builder().setNominalEntries(k).build();
-        this.union = SetOperation.builder().setNominalEntries(k).buildUnion();
-        this.union.union(Sketch.wrap(memory));
+        Memory memory = SliceMemory.wrap(slice);
         this.k = k;
+        this.input = Sketch.wrap(memory);
+        this.mode = Mode.UNION;
     }
 
     public void put(String item)
     {
-        this.sketch.update(item);
+        this.getUpdateSketch().update(item);
+    }
+
+    /**
+     * Updates the sketch with the UTF-8 bytes of a VARCHAR value, which hash the same as the equivalent String
+     * without decoding it first.
+     */
+    public void put(Slice item)
+    {
+        this.getUpdateSketch().update(item.toByteBuffer());
     }
 
     public void put(double item)
     {
-        this.sketch.update(item);
+        this.getUpdateSketch().update(item);
     }
 
     public void put(long item)
     {
-        this.sketch.update(item);
+        this.getUpdateSketch().update(item);
     }
 
     public void union(ThetaSketchProxy other)
     {
-        this.union.union(other.getSketch());
+        if (other.mode == Mode.EMPTY) {
+            return;
+        }
+        Sketch otherSketch = other.mode == Mode.UNION && other.input != null ? other.input : other.getSketch();
+        if (this.mode == Mode.EMPTY) {
+            // Keep a heap copy of sketches wrapping input bytes, so this proxy does not retain the input block
+            this.input = otherSketch.hasMemory() ? otherSketch.compact(true, null) : otherSketch;
+            this.mode = Mode.UNION;
+            return;
+        }
+        long start = SketchStats.THETA.startTimer();
+        SketchMergeEvent event = SketchMergeEvent.beginIfEnabled();
+        this.unionResult = null;
+        this.getUnion().union(otherSketch);
+        SketchStats.THETA.recordMerge(start);
+        if (event != null) {
+            event.commit("theta", this.k, otherSketch.getRetainedEntries(true), other.getEstimatedSize());
+        }
     }
 
     public long getEstimate()
@@ -97,9 +147,23 @@ public class ThetaSketchProxy
 
     public Sketch getSketch()
     {
-        this.union.union(this.sketch);
-        this.sketch.reset();
-        return this.union.getResult();
+        switch (this.mode) {
+            case EMPTY:
+                return EMPTY_SKETCH;
+            case UPDATE:
+                // Rebuilding trims the sketch down to k entries, as a union would, without allocating one
+                return this.sketch.rebuild().compact();
+            case UNION:
+                if (this.input != null) {
+                    if (this.input.getRetainedEntries(true) <= this.k) {
+                        return this.input;
+                    }
+                    this.getUnion();
+                }
+                return this.materializeUnion();
+            default:
+                return this.materializeUnion();
+        }
     }
 
     public int getK()
@@ -109,6 +173,72 @@ public class ThetaSketchProxy
 
     public long getEstimatedSize()
     {
-        return this.sketch.getCompactBytes();
+        long size = INSTANCE_SIZE;
+        if (this.sketch != null) {
+            size += this.sketch.getCurrentBytes();
+        }
+        if (this.union != null) {
+            size += this.union.getCurrentBytes();
+        }
+        if (this.input != null) {
+            size += this.input.getCurrentBytes();
+        }
+        if (this.unionResult != null) {
+            size += this.unionResult.getCurrentBytes();
+        }
+        return size;
+    }
+
+    private CompactSketch materializeUnion()
+    {
+        if (this.unionResult != null) {
+            return this.unionResult;
+        }
+        long start = SketchStats.THETA.startTimer();
+        SketchUnionMaterializationEvent event = SketchUnionMaterializationEvent.beginIfEnabled();
+        if (this.mode == Mode.MIXED) {
+            this.union.union(this.sketch);
+            this.sketch.reset();
+        }
+        this.unionResult = this.union.getResult();
+        SketchStats.THETA.recordUnionMaterialization(start);
+        if (event != null) {
+            event.commit("theta", this.k, this.unionResult.getRetainedEntries(), this.getEstimatedSize());
+        }
+        return this.unionResult;
+    }
+
+    private UpdateSketch getUpdateSketch()
+    {
+        this.unionResult = null;
+        if (this.sketch == null) {
+            this.sketch = UpdateSketch.builder().setNominalEntries(this.k).build();
+        }
+        if (this.mode == Mode.EMPTY) {
+            this.mode = Mode.UPDATE;
+        }
+        else if (this.mode == Mode.UNION) {
+            this.getUnion();
+            this.mode = Mode.MIXED;
+        }
+        return this.sketch;
+    }
+
+    private Union getUnion()
+    {
+        if (this.union == null) {
+            this.union = SetOperation.builder().setNominalEntries(this.k).buildUnion();
+        }
+        if (this.input != null) {
+            this.union.union(this.input);
+            this.input = null;
+        }
+        if (this.mode == Mode.UPDATE) {
+            this.mode = Mode.MIXED;
+        }
+        else if (this.mode == Mode.EMPTY) {
+            this.mode = Mode.UNION;
+        }
+        return this.union;
     }
 }
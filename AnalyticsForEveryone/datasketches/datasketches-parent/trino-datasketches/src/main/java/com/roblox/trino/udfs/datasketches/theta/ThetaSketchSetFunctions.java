@@ -1,13 +1,21 @@
 package com.roblox.trino.udfs.datasketches.theta;
 
+import com.roblox.trino.udfs.datasketches.SliceMemory;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.block.Block;
 import io.trino.spi.function.Description;
 import io.trino.spi.function.ScalarFunction;
+import io.trino.spi.function.SqlNullable;
 import io.trino.spi.function.SqlType;
 import io.trino.spi.type.StandardTypes;
 import org.apache.datasketches.theta.Intersection;
 import org.apache.datasketches.theta.SetOperation;
+import org.apache.datasketches.theta.Sketch;
+import org.apache.datasketches.theta.Union;
+
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
 
 public class ThetaSketchSetFunctions
 {
@@ -40,6 +48,25 @@ public class ThetaSketchSetFunctions
         return sketch1.serialize();
     }
 
+    @Description("Union an array of theta sketches")
+    @ScalarFunction("theta_union")
+    @SqlType(StandardTypes.VARBINARY)
+    public static Slice thetaSketchUnionArray(
+            @SqlType("array(varbinary)") Block sketches)
+    {
+        return unionSketches(sketches, ThetaSketchProxy.DEFAULT_K);
+    }
+
+    @Description("Union an array of theta sketches with a provided k")
+    @ScalarFunction("theta_union")
+    @SqlType(StandardTypes.VARBINARY)
+    public static Slice thetaSketchUnionArrayWithK(
+            @SqlType("array(varbinary)") Block sketches,
+            @SqlType(StandardTypes.BIGINT) long k)
+    {
+        return unionSketches(sketches, (int) k);
+    }
+
     @Description("Intersect two theta sketches")
     @ScalarFunction("theta_intersection")
     @SqlType(StandardTypes.VARBINARY)
@@ -75,4 +102,39 @@ public class ThetaSketchSetFunctions
         output.appendBytes(bytes);
         return output.slice();
     }
+
+    @Description("Intersect an array of theta sketches")
+    @ScalarFunction("theta_intersection")
+    @SqlType(StandardTypes.VARBINARY)
+    @SqlNullable
+    public static Slice thetaSketchIntersectionArray(
+            @SqlType("array(varbinary)") Block sketches)
+    {
+        Intersection intersection = SetOperation.builder().buildIntersection();
+        for (int i = 0; i < sketches.getPositionCount(); i++) {
+            if (!sketches.isNull(i)) {
+                intersection.intersect(Sketch.wrap(SliceMemory.wrap(VARBINARY.getSlice(sketches, i))));
+            }
+        }
+        // Without any sketch there is no set to intersect
+        if (!intersection.hasResult()) {
+            return null;
+        }
+        return Slices.wrappedBuffer(intersection.getResult().toByteArray());
+    }
+
+    /**
+     * Feeds every sketch of the array to a single union straight from its serialized bytes, so the sketches are
+     * neither copied onto the heap nor serialized again until the result is.
+     */
+    private static Slice unionSketches(Block sketches, int k)
+    {
+        Union union = SetOperation.builder().setNominalEntries(k).buildUnion();
+        for (int i = 0; i < sketches.getPositionCount(); i++) {
+            if (!sketches.isNull(i)) {
+                union.union(SliceMemory.wrap(VARBINARY.getSlice(sketches, i)));
+            }
+        }
+        return Slices.wrappedBuffer(union.getResult().toByteArray());
+    }
 }
@@ -12,4 +12,6 @@ public interface ThetaSketchState
     ThetaSketchProxy getThetaSketchProxy();
 
     void setThetaSketchProxy(ThetaSketchProxy value);
+
+    void addMemoryUsage(long value);
 }
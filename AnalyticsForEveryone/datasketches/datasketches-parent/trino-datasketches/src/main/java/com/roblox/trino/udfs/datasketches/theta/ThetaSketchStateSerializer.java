@@ -1,5 +1,8 @@
 package com.roblox.trino.udfs.datasketches.theta;
 
+import com.roblox.trino.udfs.datasketches.SketchSerializationEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
 import io.airlift.log.Logger;
 import io.airlift.slice.BasicSliceInput;
 import io.airlift.slice.DynamicSliceOutput;
@@ -9,6 +12,7 @@ import io.trino.spi.block.BlockBuilder;
 import io.trino.spi.function.AccumulatorStateSerializer;
 import io.trino.spi.type.Type;
 import io.trino.spi.type.VarbinaryType;
+import org.apache.datasketches.theta.Sketch;
 
 import java.nio.charset.StandardCharsets;
 
@@ -31,12 +35,19 @@ public class ThetaSketchStateSerializer
         }
         else {
             ThetaSketchProxy sketch = state.getThetaSketchProxy();
+            long start = SketchStats.THETA.startTimer();
+            SketchSerializationEvent event = SketchSerializationEvent.beginIfEnabled();
             DynamicSliceOutput sliceOutput = new DynamicSliceOutput(100);
+            Slice serialized = sketch.serialize();
 
             sliceOutput.appendInt(sketch.getK());
-            sliceOutput.appendBytes(sketch.serialize());
+            sliceOutput.appendBytes(serialized);
 
             VarbinaryType.VARBINARY.writeSlice(out, sliceOutput.slice());
+            SketchStats.THETA.recordSerialize(start, sliceOutput.size());
+            if (event != null) {
+                event.commit("theta", sketch.getK(), Sketch.wrap(SliceMemory.wrap(serialized)).getRetainedEntries(true), sliceOutput.size());
+            }
         }
     }
 
@@ -48,11 +59,14 @@ public class ThetaSketchStateSerializer
             BasicSliceInput input = slice.getInput();
             // The slice will contain an integer K followed by a Slice which contains the serialized sketch
             try {
+                long start = SketchStats.THETA.startTimer();
                 int k = input.readInt();
                 Slice serialized = input.readSlice((int) input.length() - Integer.BYTES);
                 state.setThetaSketchProxy(new ThetaSketchProxy(serialized, k));
+                SketchStats.THETA.recordDeserialize(start, slice.length());
             }
             catch (Exception e) {
+                SketchStats.THETA.recordDeserializeFailure();
                 log.error("Error reading Theta sketch bytes, slice: {}", new String(slice.getBytes(), StandardCharsets.UTF_8));
             }
         }
@@ -0,0 +1,194 @@
+package com.roblox.trino.udfs.datasketches.tuple;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AggregationFunction;
+import io.trino.spi.function.CombineFunction;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.GroupedAccumulatorState;
+import io.trino.spi.function.InputFunction;
+import io.trino.spi.function.OutputFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+import io.trino.spi.type.VarbinaryType;
+
+import static io.trino.spi.type.DoubleType.DOUBLE;
+
+@Description("Create a tuple sketch summing metrics per distinct key, by aggregating keys and metrics or tuple sketches")
+@AggregationFunction("tuple_sketch")
+public class TupleSketchAggFunction
+{
+    private TupleSketchAggFunction() {}
+
+    private static double[] blockToDoubleArray(Block block)
+    {
+        // Missing metrics do not add anything to the sums
+        double[] values = new double[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            if (!block.isNull(i)) {
+                values[i] = DOUBLE.getDouble(block, i);
+            }
+        }
+        return values;
+    }
+
+    private static void put(TupleSketchState state, Slice key, double value)
+    {
+        if (state.getTupleSketchProxy() == null) {
+            state.setTupleSketchProxy(new TupleSketchProxy());
+        }
+        TupleSketchProxy sketch = state.getTupleSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(key, value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(key, value);
+        }
+    }
+
+    private static void put(TupleSketchState state, long key, double value)
+    {
+        if (state.getTupleSketchProxy() == null) {
+            state.setTupleSketchProxy(new TupleSketchProxy());
+        }
+        TupleSketchProxy sketch = state.getTupleSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(key, value);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(key, value);
+        }
+    }
+
+    private static void put(TupleSketchState state, Slice key, double[] values)
+    {
+        if (state.getTupleSketchProxy() == null) {
+            state.setTupleSketchProxy(new TupleSketchProxy());
+        }
+        TupleSketchProxy sketch = state.getTupleSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(key, values);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(key, values);
+        }
+    }
+
+    private static void put(TupleSketchState state, long key, double[] values)
+    {
+        if (state.getTupleSketchProxy() == null) {
+            state.setTupleSketchProxy(new TupleSketchProxy());
+        }
+        TupleSketchProxy sketch = state.getTupleSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.put(key, values);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.put(key, values);
+        }
+    }
+
+    private static void mergeSketchToState(TupleSketchState state, Slice otherSketch)
+    {
+        if (state.getTupleSketchProxy() == null) {
+            state.setTupleSketchProxy(new TupleSketchProxy());
+        }
+        TupleSketchProxy sketch = state.getTupleSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.union(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.union(otherSketch);
+        }
+    }
+
+    private static void mergeSketchToState(TupleSketchState state, TupleSketchProxy otherSketch)
+    {
+        if (state.getTupleSketchProxy() == null) {
+            state.setTupleSketchProxy(new TupleSketchProxy(otherSketch.getK()));
+        }
+        TupleSketchProxy sketch = state.getTupleSketchProxy();
+        if (state instanceof GroupedAccumulatorState) {
+            long size = sketch.getEstimatedSize();
+            sketch.union(otherSketch);
+            state.addMemoryUsage(sketch.getEstimatedSize() - size);
+        }
+        else {
+            sketch.union(otherSketch);
+        }
+    }
+
+    @InputFunction
+    public static void inputString(
+            TupleSketchState state,
+            @SqlType(StandardTypes.VARCHAR) Slice key,
+            @SqlType(StandardTypes.DOUBLE) double value)
+    {
+        put(state, key, value);
+    }
+
+    @InputFunction
+    public static void inputBigint(
+            TupleSketchState state,
+            @SqlType(StandardTypes.BIGINT) long key,
+            @SqlType(StandardTypes.DOUBLE) double value)
+    {
+        put(state, key, value);
+    }
+
+    @InputFunction
+    public static void inputStringArray(
+            TupleSketchState state,
+            @SqlType(StandardTypes.VARCHAR) Slice key,
+            @SqlType("array(double)") Block values)
+    {
+        put(state, key, blockToDoubleArray(values));
+    }
+
+    @InputFunction
+    public static void inputBigintArray(
+            TupleSketchState state,
+            @SqlType(StandardTypes.BIGINT) long key,
+            @SqlType("array(double)") Block values)
+    {
+        put(state, key, blockToDoubleArray(values));
+    }
+
+    @InputFunction
+    public static void inputSketch(
+            TupleSketchState state,
+            @SqlType(StandardTypes.VARBINARY) Slice value)
+    {
+        mergeSketchToState(state, value);
+    }
+
+    @CombineFunction
+    public static void combine(TupleSketchState state, TupleSketchState otherState)
+    {
+        TupleSketchProxy otherSketch = otherState.getTupleSketchProxy();
+        if (otherSketch == null) {
+            return;
+        }
+        mergeSketchToState(state, otherSketch);
+    }
+
+    @OutputFunction(StandardTypes.VARBINARY)
+    public static void output(TupleSketchState state, BlockBuilder out)
+    {
+        if (state.getTupleSketchProxy() == null) {
+            state.setTupleSketchProxy(new TupleSketchProxy());
+        }
+        VarbinaryType.VARBINARY.writeSlice(out, state.getTupleSketchProxy().serialize());
+    }
+}
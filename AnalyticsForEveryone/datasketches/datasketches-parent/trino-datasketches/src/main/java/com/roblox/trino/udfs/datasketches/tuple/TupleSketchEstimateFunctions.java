@@ -0,0 +1,59 @@
+package com.roblox.trino.udfs.datasketches.tuple;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.ScalarFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+
+import static io.trino.spi.type.DoubleType.DOUBLE;
+
+public class TupleSketchEstimateFunctions
+{
+    private TupleSketchEstimateFunctions() {}
+
+    @Description("Estimate the number of distinct keys in a tuple sketch")
+    @ScalarFunction("tuple_count_distinct")
+    @SqlType(StandardTypes.BIGINT)
+    public static long tupleSketchEstimate(
+            @SqlType(StandardTypes.VARBINARY) Slice slice)
+    {
+        return (long) TupleSketchProxy.wrap(slice).getEstimate();
+    }
+
+    @Description("Get an upper bound on the number of distinct keys in a tuple sketch")
+    @ScalarFunction("tuple_count_distinct_ub")
+    @SqlType(StandardTypes.BIGINT)
+    public static long tupleSketchUpperBound(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BIGINT) long numStdDev)
+    {
+        return (long) TupleSketchProxy.wrap(slice).getUpperBound((int) numStdDev);
+    }
+
+    @Description("Get a lower bound on the number of distinct keys in a tuple sketch")
+    @ScalarFunction("tuple_count_distinct_lb")
+    @SqlType(StandardTypes.BIGINT)
+    public static long tupleSketchLowerBound(
+            @SqlType(StandardTypes.VARBINARY) Slice slice,
+            @SqlType(StandardTypes.BIGINT) long numStdDev)
+    {
+        return (long) TupleSketchProxy.wrap(slice).getLowerBound((int) numStdDev);
+    }
+
+    @Description("Estimate the sum of each metric over all the distinct keys in a tuple sketch")
+    @ScalarFunction("tuple_sum")
+    @SqlType("array(double)")
+    public static Block tupleSketchSum(
+            @SqlType(StandardTypes.VARBINARY) Slice slice)
+    {
+        double[] sums = TupleSketchProxy.getSumEstimates(TupleSketchProxy.wrap(slice));
+        BlockBuilder blockBuilder = DOUBLE.createBlockBuilder(null, sums.length);
+        for (double sum : sums) {
+            DOUBLE.writeDouble(blockBuilder, sum);
+        }
+        return blockBuilder.build();
+    }
+}
@@ -0,0 +1,245 @@
+package com.roblox.trino.udfs.datasketches.tuple;
+
+import com.roblox.trino.udfs.datasketches.SketchMergeEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import com.roblox.trino.udfs.datasketches.SketchUnionMaterializationEvent;
+import com.roblox.trino.udfs.datasketches.SliceMemory;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.TrinoException;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesCompactSketch;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesSetOperationBuilder;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesSketch;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesSketchIterator;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesSketches;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesUnion;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesUpdatableSketch;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesUpdatableSketchBuilder;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOfDoubleArray;
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+
+/**
+ * Wraps a tuple sketch which keeps an array of metrics for each distinct key, summing the metrics of repeated keys.
+ * <p>
+ * The number of metrics is fixed by the first key or sketch added. Keys are added to an update sketch, other
+ * sketches to a union, and both are only allocated once they are needed.
+ */
+public class TupleSketchProxy
+{
+    private static final int INSTANCE_SIZE = instanceSize(TupleSketchProxy.class);
+
+    public static final int DEFAULT_K = ArrayOfDoublesSetOperationBuilder.DEFAULT_NOMINAL_ENTRIES;
+
+    private final int k;
+    private int numValues;
+    private ArrayOfDoublesUpdatableSketch sketch;
+    private ArrayOfDoublesUnion union;
+    // Upper bound of the entries held by the union, which never keeps more than 2k of them
+    private long unionEntries;
+    // Reused to pass a single metric to the update sketch, which copies the values it is given
+    private double[] values;
+
+    public TupleSketchProxy()
+    {
+        this(DEFAULT_K);
+    }
+
+    public TupleSketchProxy(int k)
+    {
+        this.k = k;
+    }
+
+    public TupleSketchProxy(Slice slice, int k)
+    {
+        this(k);
+        this.union(slice);
+    }
+
+    public void put(long key, double value)
+    {
+        this.getUpdateSketch(1).update(key, this.singleValue(value));
+    }
+
+    public void put(long key, double[] values)
+    {
+        this.getUpdateSketch(values.length).update(key, values);
+    }
+
+    /**
+     * Adds the UTF-8 bytes of a VARCHAR key, which hash the same as the equivalent String without decoding it first.
+     */
+    public void put(Slice key, double value)
+    {
+        this.getUpdateSketch(1).update(key.toByteBuffer(), this.singleValue(value));
+    }
+
+    public void put(Slice key, double[] values)
+    {
+        this.getUpdateSketch(values.length).update(key.toByteBuffer(), values);
+    }
+
+    /**
+     * Unions a serialized sketch, reading its entries straight from the bytes.
+     */
+    public void union(Slice slice)
+    {
+        this.union(wrap(slice));
+    }
+
+    public void union(TupleSketchProxy other)
+    {
+        if (other.numValues == 0) {
+            return;
+        }
+        long start = SketchStats.TUPLE.startTimer();
+        SketchMergeEvent event = SketchMergeEvent.beginIfEnabled();
+        ArrayOfDoublesSketch otherSketch = other.getSketch();
+        this.union(otherSketch);
+        SketchStats.TUPLE.recordMerge(start);
+        if (event != null) {
+            event.commit("tuple", this.k, otherSketch.getRetainedEntries(), other.getEstimatedSize());
+        }
+    }
+
+    public int getK()
+    {
+        return this.k;
+    }
+
+    public int getNumValues()
+    {
+        return this.numValues;
+    }
+
+    public long getEstimate()
+    {
+        return (long) this.getSketch().getEstimate();
+    }
+
+    /**
+     * Estimates the sum of each metric over all the distinct keys, scaling the sums of the retained keys up by theta.
+     */
+    public double[] getSumEstimates()
+    {
+        return getSumEstimates(this.getSketch());
+    }
+
+    public static double[] getSumEstimates(ArrayOfDoublesSketch sketch)
+    {
+        double[] sums = new double[sketch.getNumValues()];
+        ArrayOfDoublesSketchIterator iterator = sketch.iterator();
+        while (iterator.next()) {
+            double[] values = iterator.getValues();
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += values[i];
+            }
+        }
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] /= sketch.getTheta();
+        }
+        return sums;
+    }
+
+    /**
+     * Wraps a serialized sketch without copying it, for estimates which only read it once.
+     */
+    public static ArrayOfDoublesSketch wrap(Slice slice)
+    {
+        return ArrayOfDoublesSketches.wrapSketch(SliceMemory.wrap(slice));
+    }
+
+    public Slice serialize()
+    {
+        return Slices.wrappedBuffer(this.getSketch().toByteArray());
+    }
+
+    public ArrayOfDoublesCompactSketch getSketch()
+    {
+        if (this.numValues == 0) {
+            return new ArrayOfDoublesUpdatableSketchBuilder().setNominalEntries(this.k).build().compact();
+        }
+        if (this.union == null) {
+            return this.sketch.compact();
+        }
+        SketchUnionMaterializationEvent event = SketchUnionMaterializationEvent.beginIfEnabled();
+        if (this.sketch != null && !this.sketch.isEmpty()) {
+            this.union.union(this.sketch);
+            this.unionEntries += this.sketch.getRetainedEntries();
+            this.sketch.reset();
+        }
+        ArrayOfDoublesCompactSketch result = this.union.getResult();
+        if (event != null) {
+            event.commit("tuple", this.k, result.getRetainedEntries(), this.getEstimatedSize());
+        }
+        return result;
+    }
+
+    public long getEstimatedSize()
+    {
+        long size = INSTANCE_SIZE;
+        if (this.sketch != null) {
+            size += this.sketch.getCurrentBytes();
+        }
+        if (this.union != null) {
+            // Each entry is a hash and its metrics, in a hash table which is at most twice as large as its entries
+            size += 2 * Math.min(this.unionEntries, 2L * this.k) * (Long.BYTES + (long) Double.BYTES * this.numValues);
+        }
+        if (this.values != null) {
+            size += sizeOfDoubleArray(this.values.length);
+        }
+        return size;
+    }
+
+    private void union(ArrayOfDoublesSketch other)
+    {
+        // An empty sketch carries no metrics, so it should not fix the number of metrics of this one
+        if (other.isEmpty()) {
+            return;
+        }
+        this.checkNumValues(other.getNumValues());
+        if (this.union == null) {
+            this.union = new ArrayOfDoublesSetOperationBuilder()
+                    .setNominalEntries(this.k)
+                    .setNumberOfValues(this.numValues)
+                    .buildUnion();
+        }
+        this.union.union(other);
+        this.unionEntries += other.getRetainedEntries();
+    }
+
+    private ArrayOfDoublesUpdatableSketch getUpdateSketch(int numValues)
+    {
+        this.checkNumValues(numValues);
+        if (this.sketch == null) {
+            this.sketch = new ArrayOfDoublesUpdatableSketchBuilder()
+                    .setNominalEntries(this.k)
+                    .setNumberOfValues(this.numValues)
+                    .build();
+        }
+        return this.sketch;
+    }
+
+    private void checkNumValues(int numValues)
+    {
+        if (this.numValues == 0) {
+            if (numValues == 0) {
+                throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "A tuple sketch needs at least one metric");
+            }
+            this.numValues = numValues;
+        }
+        else if (this.numValues != numValues) {
+            throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "Cannot combine tuple sketches with " + this.numValues + " and " + numValues + " metrics");
+        }
+    }
+
+    private double[] singleValue(double value)
+    {
+        if (this.values == null) {
+            this.values = new double[1];
+        }
+        this.values[0] = value;
+        return this.values;
+    }
+}
@@ -0,0 +1,116 @@
+package com.roblox.trino.udfs.datasketches.tuple;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.TrinoException;
+import io.trino.spi.block.Block;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.ScalarFunction;
+import io.trino.spi.function.SqlNullable;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesCombiner;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesIntersection;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesSetOperationBuilder;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesSketch;
+
+import java.util.Arrays;
+
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+
+public class TupleSketchSetFunctions
+{
+    // Keys found in every sketch of an intersection keep the sum of their metrics, as they do in a union
+    private static final ArrayOfDoublesCombiner SUM_COMBINER = (a, b) -> {
+        double[] sums = new double[a.length];
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = a[i] + b[i];
+        }
+        return sums;
+    };
+
+    private TupleSketchSetFunctions() {}
+
+    @Description("Union two tuple sketches")
+    @ScalarFunction("tuple_union")
+    @SqlType(StandardTypes.VARBINARY)
+    public static Slice tupleSketchUnion(
+            @SqlType(StandardTypes.VARBINARY) Slice slice1,
+            @SqlType(StandardTypes.VARBINARY) Slice slice2)
+    {
+        TupleSketchProxy sketch = new TupleSketchProxy(slice1, TupleSketchProxy.DEFAULT_K);
+        sketch.union(slice2);
+        return sketch.serialize();
+    }
+
+    @Description("Union an array of tuple sketches")
+    @ScalarFunction("tuple_union")
+    @SqlType(StandardTypes.VARBINARY)
+    public static Slice tupleSketchUnionArray(
+            @SqlType("array(varbinary)") Block sketches)
+    {
+        TupleSketchProxy sketch = new TupleSketchProxy();
+        for (int i = 0; i < sketches.getPositionCount(); i++) {
+            if (!sketches.isNull(i)) {
+                sketch.union(VARBINARY.getSlice(sketches, i));
+            }
+        }
+        return sketch.serialize();
+    }
+
+    @Description("Intersect two tuple sketches")
+    @ScalarFunction("tuple_intersection")
+    @SqlType(StandardTypes.VARBINARY)
+    public static Slice tupleSketchIntersection(
+            @SqlType(StandardTypes.VARBINARY) Slice slice1,
+            @SqlType(StandardTypes.VARBINARY) Slice slice2)
+    {
+        return intersectSketches(new Slice[] {slice1, slice2});
+    }
+
+    @Description("Intersect an array of tuple sketches")
+    @ScalarFunction("tuple_intersection")
+    @SqlType(StandardTypes.VARBINARY)
+    @SqlNullable
+    public static Slice tupleSketchIntersectionArray(
+            @SqlType("array(varbinary)") Block sketches)
+    {
+        int count = 0;
+        Slice[] slices = new Slice[sketches.getPositionCount()];
+        for (int i = 0; i < slices.length; i++) {
+            if (!sketches.isNull(i)) {
+                slices[count++] = VARBINARY.getSlice(sketches, i);
+            }
+        }
+        // Without any sketch there is no set to intersect
+        if (count == 0) {
+            return null;
+        }
+        return intersectSketches(count == slices.length ? slices : Arrays.copyOf(slices, count));
+    }
+
+    private static Slice intersectSketches(Slice[] slices)
+    {
+        ArrayOfDoublesIntersection intersection = null;
+        int numValues = 0;
+        for (Slice slice : slices) {
+            ArrayOfDoublesSketch sketch = TupleSketchProxy.wrap(slice);
+            if (sketch.isEmpty()) {
+                // Nothing is left once a set is intersected with an empty one
+                return new TupleSketchProxy().serialize();
+            }
+            if (intersection == null) {
+                numValues = sketch.getNumValues();
+                intersection = new ArrayOfDoublesSetOperationBuilder()
+                        .setNumberOfValues(numValues)
+                        .buildIntersection();
+            }
+            else if (sketch.getNumValues() != numValues) {
+                throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "Cannot combine tuple sketches with " + numValues + " and " + sketch.getNumValues() + " metrics");
+            }
+            intersection.intersect(sketch, SUM_COMBINER);
+        }
+        return Slices.wrappedBuffer(intersection.getResult().toByteArray());
+    }
+}
@@ -0,0 +1,17 @@
+package com.roblox.trino.udfs.datasketches.tuple;
+
+import io.trino.spi.function.AccumulatorState;
+import io.trino.spi.function.AccumulatorStateMetadata;
+
+@AccumulatorStateMetadata(
+        stateSerializerClass = TupleSketchStateSerializer.class,
+        stateFactoryClass = TupleSketchStateFactory.class)
+public interface TupleSketchState
+        extends AccumulatorState
+{
+    TupleSketchProxy getTupleSketchProxy();
+
+    void setTupleSketchProxy(TupleSketchProxy value);
+
+    void addMemoryUsage(long value);
+}
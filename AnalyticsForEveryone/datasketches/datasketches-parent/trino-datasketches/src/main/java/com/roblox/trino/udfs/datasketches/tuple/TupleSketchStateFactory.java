@@ -0,0 +1,107 @@
+package com.roblox.trino.udfs.datasketches.tuple;
+
+import io.trino.array.ObjectBigArray;
+import io.trino.spi.function.AccumulatorStateFactory;
+import io.trino.spi.function.GroupedAccumulatorState;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+
+public class TupleSketchStateFactory
+        implements AccumulatorStateFactory<TupleSketchState>
+{
+    private static final int SIZE_OF_SINGLE = instanceSize(SingleTupleSketchState.class);
+    private static final int SIZE_OF_GROUPED = instanceSize(GroupedTupleSketchState.class);
+
+    @Override
+    public TupleSketchState createSingleState()
+    {
+        return new SingleTupleSketchState();
+    }
+
+    @Override
+    public TupleSketchState createGroupedState()
+    {
+        return new GroupedTupleSketchState();
+    }
+
+    public static class SingleTupleSketchState
+            implements TupleSketchState
+    {
+        public TupleSketchProxy sketch;
+
+        @Override
+        public TupleSketchProxy getTupleSketchProxy()
+        {
+            return sketch;
+        }
+
+        @Override
+        public void setTupleSketchProxy(TupleSketchProxy value)
+        {
+            this.sketch = value;
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            // The size of a single state is read from its proxy on demand
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            if (sketch == null) {
+                return SIZE_OF_SINGLE;
+            }
+            return sketch.getEstimatedSize() + SIZE_OF_SINGLE;
+        }
+    }
+
+    public static class GroupedTupleSketchState
+            implements GroupedAccumulatorState, TupleSketchState
+    {
+        private final ObjectBigArray<TupleSketchProxy> sketches = new ObjectBigArray<>();
+        private long groupId;
+        private long size;
+
+        @Override
+        public void setGroupId(long groupId)
+        {
+            this.groupId = groupId;
+        }
+
+        @Override
+        public void ensureCapacity(long size)
+        {
+            sketches.ensureCapacity(size);
+        }
+
+        @Override
+        public TupleSketchProxy getTupleSketchProxy()
+        {
+            return sketches.get(groupId);
+        }
+
+        @Override
+        public void setTupleSketchProxy(TupleSketchProxy value)
+        {
+            if (getTupleSketchProxy() != null) {
+                size -= getTupleSketchProxy().getEstimatedSize();
+            }
+            size += value.getEstimatedSize();
+            sketches.set(groupId, value);
+        }
+
+        @Override
+        public void addMemoryUsage(long value)
+        {
+            size += value;
+        }
+
+        @Override
+        public long getEstimatedSize()
+        {
+            return size + sketches.sizeOf() + SIZE_OF_GROUPED;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.roblox.trino.udfs.datasketches.tuple;
+
+import com.roblox.trino.udfs.datasketches.SketchSerializationEvent;
+import com.roblox.trino.udfs.datasketches.SketchStats;
+import io.airlift.log.Logger;
+import io.airlift.slice.BasicSliceInput;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AccumulatorStateSerializer;
+import io.trino.spi.type.Type;
+import io.trino.spi.type.VarbinaryType;
+
+import java.nio.charset.StandardCharsets;
+
+public class TupleSketchStateSerializer
+        implements AccumulatorStateSerializer<TupleSketchState>
+{
+    private static final Logger log = Logger.get(TupleSketchStateSerializer.class);
+
+    @Override
+    public Type getSerializedType()
+    {
+        return VarbinaryType.VARBINARY;
+    }
+
+    @Override
+    public void serialize(TupleSketchState state, BlockBuilder out)
+    {
+        if (state.getTupleSketchProxy() == null) {
+            out.appendNull();
+        }
+        else {
+            TupleSketchProxy sketch = state.getTupleSketchProxy();
+            long start = SketchStats.TUPLE.startTimer();
+            SketchSerializationEvent event = SketchSerializationEvent.beginIfEnabled();
+            DynamicSliceOutput sliceOutput = new DynamicSliceOutput(100);
+            Slice serialized = sketch.serialize();
+
+            sliceOutput.appendInt(sketch.getK());
+            sliceOutput.appendBytes(serialized);
+
+            VarbinaryType.VARBINARY.writeSlice(out, sliceOutput.slice());
+            SketchStats.TUPLE.recordSerialize(start, sliceOutput.size());
+            if (event != null) {
+                event.commit("tuple", sketch.getK(), TupleSketchProxy.wrap(serialized).getRetainedEntries(), sliceOutput.size());
+            }
+        }
+    }
+
+    @Override
+    public void deserialize(Block block, int index, TupleSketchState state)
+    {
+        if (!block.isNull(index)) {
+            Slice slice = VarbinaryType.VARBINARY.getSlice(block, index);
+            BasicSliceInput input = slice.getInput();
+            // The slice will contain an integer K followed by a Slice which contains the serialized sketch
+            try {
+                long start = SketchStats.TUPLE.startTimer();
+                int k = input.readInt();
+                Slice serialized = input.readSlice((int) input.length() - Integer.BYTES);
+                state.setTupleSketchProxy(new TupleSketchProxy(serialized, k));
+                SketchStats.TUPLE.recordDeserialize(start, slice.length());
+            }
+            catch (Exception e) {
+                SketchStats.TUPLE.recordDeserializeFailure();
+                log.error("Error reading Tuple sketch bytes, slice: {}", new String(slice.getBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.roblox.trino.udfs.datasketches.cpc.CpcSketchProxy;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchProxy;
+import com.roblox.trino.udfs.datasketches.klldoubles.KllDoublesSketchProxy;
+import com.roblox.trino.udfs.datasketches.longitems.LongItemsSketchProxy;
+import com.roblox.trino.udfs.datasketches.req.ReqSketchProxy;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchProxy;
+import com.roblox.trino.udfs.datasketches.tuple.TupleSketchProxy;
+import io.airlift.slice.Slice;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.DoubleToLongFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToDoubleBiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Sweeps the configuration parameter of each sketch family over synthetic data and records how accurate and how costly
+ * every configuration is, to pick the cheapest one which meets an error budget instead of guessing.
+ * <p>
+ * Each trial draws {@code benchmark.partitions} partitions of {@code benchmark.positions} values from one distribution
+ * over {@code benchmark.distinct} values: uniform, Zipf with an exponent of 1.1, or skewed like the columns of the Spark
+ * {@code PlayerGenerator}, which raise a uniform value to a power before scaling it to the range. Every partition is
+ * added a row at a time to its own sketch, as the input functions of the partial aggregations would, and the serialized
+ * sketches are then deserialized and merged into one, whose error is measured against the exact answer:
+ * <ul>
+ * <li>theta, HLL and CPC: the relative error of the distinct count,</li>
+ * <li>tuple: the relative error of the estimated sum of a metric of 1 per row, i.e. of the number of rows, which is
+ * what the sketch adds over theta,</li>
+ * <li>KLL and REQ: the largest rank error of the percentiles 1 to 99, i.e. how far the rank of each estimated quantile
+ * is from the one asked for,</li>
+ * <li>items: the largest error of the estimated frequency of the ten most frequent items, over the number of values.</li>
+ * </ul>
+ * KLL floats and the double and string items are left out: they share the sketches and parameters of KLL doubles and
+ * long items, so they would only repeat those rows.
+ * The report has a row per distribution, family and parameter value with the mean and largest error of the trials,
+ * the serialized size of the merged sketch, and the median number of values added and sketches merged per second.
+ * The throughputs are measured on a single thread after a warmup pass and are only meant to compare configurations.
+ * The cheapest configuration whose largest error is within {@code benchmark.errorBudget} is printed for each family,
+ * for example:
+ * <pre>
+ * java -Dbenchmark.errorBudget=0.02 -Dbenchmark.trials=10 -cp ... com.roblox.trino.udfs.datasketches.BenchmarkAccuracySweep
+ * </pre>
+ */
+public final class BenchmarkAccuracySweep
+{
+    private static final List<String> DISTRIBUTIONS = ImmutableList.of("uniform", "zipf", "skewed_2", "skewed_4");
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final int TOP_ITEMS = 10;
+
+    private final int distinct;
+    private final int partitions;
+    private final int positions;
+
+    private BenchmarkAccuracySweep(int distinct, int partitions, int positions)
+    {
+        this.distinct = distinct;
+        this.partitions = partitions;
+        this.positions = positions;
+    }
+
+    public static void main(String[] args)
+            throws IOException
+    {
+        int distinct = Integer.getInteger("benchmark.distinct", 100_000);
+        int partitions = Integer.getInteger("benchmark.partitions", 16);
+        int positions = Integer.getInteger("benchmark.positions", 65_536);
+        int trials = Integer.getInteger("benchmark.trials", 5);
+        double errorBudget = Double.parseDouble(System.getProperty("benchmark.errorBudget", "0.01"));
+        File output = new File(System.getProperty("benchmark.output", "target/benchmark-accuracy-sweep.json"));
+
+        BenchmarkAccuracySweep sweep = new BenchmarkAccuracySweep(distinct, partitions, positions);
+        List<SweepFamily<Object>> families = sweep.createSweepFamilies();
+
+        // Compile the ingest and merge paths of every family before anything is timed
+        Dataset warmup = sweep.createDataset(DISTRIBUTIONS.get(0), new Random(0));
+        for (SweepFamily<Object> family : families) {
+            for (int parameter : family.parameters) {
+                sweep.runTrial(family, parameter, warmup);
+            }
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String distribution : DISTRIBUTIONS) {
+            List<Dataset> datasets = new ArrayList<>();
+            for (int trial = 0; trial < trials; trial++) {
+                datasets.add(sweep.createDataset(distribution, new Random(trial + 1)));
+            }
+            for (SweepFamily<Object> family : families) {
+                for (int parameter : family.parameters) {
+                    List<TrialResult> trialResults = new ArrayList<>();
+                    for (Dataset dataset : datasets) {
+                        trialResults.add(sweep.runTrial(family, parameter, dataset));
+                    }
+                    results.add(summarize(distribution, family, parameter, trialResults));
+                }
+            }
+        }
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output, results);
+        printResults(results, errorBudget);
+        System.out.println("Wrote " + results.size() + " configurations to " + output.getAbsolutePath());
+    }
+
+    private Dataset createDataset(String distribution, Random random)
+    {
+        long[][] values = new long[this.partitions][this.positions];
+        double[] zipfCumulative = distribution.equals("zipf") ? zipfCumulative(this.distinct) : null;
+        // Most draws cover the same distinct values, so each trial shifts them to hash differently
+        long offset = (long) random.nextInt(1 << 20) * this.distinct;
+        for (long[] partition : values) {
+            for (int position = 0; position < this.positions; position++) {
+                partition[position] = offset + nextValue(distribution, random, zipfCumulative);
+            }
+        }
+        return new Dataset(values, offset);
+    }
+
+    private long nextValue(String distribution, Random random, double[] zipfCumulative)
+    {
+        switch (distribution) {
+            case "uniform":
+                return random.nextInt(this.distinct);
+            case "zipf":
+                int index = Arrays.binarySearch(zipfCumulative, random.nextDouble());
+                return Math.min(index >= 0 ? index : -index - 1, this.distinct - 1);
+            case "skewed_2":
+                // PlayerGenerator.createDistribution(0, distinct) with its default power
+                return (long) Math.floor(Math.pow(random.nextDouble(), 2) * this.distinct);
+            case "skewed_4":
+                // PlayerGenerator.createDistribution(0, distinct, 4), as for the visits of a player
+                return (long) Math.floor(Math.pow(random.nextDouble(), 4) * this.distinct);
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+    }
+
+    private static double[] zipfCumulative(int distinct)
+    {
+        double[] cumulative = new double[distinct];
+        double total = 0;
+        for (int rank = 0; rank < distinct; rank++) {
+            total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < distinct; rank++) {
+            cumulative[rank] /= total;
+        }
+        return cumulative;
+    }
+
+    private TrialResult runTrial(SweepFamily<Object> family, int parameter, Dataset dataset)
+    {
+        Slice[] sketches = new Slice[this.partitions];
+        long ingestNanos = 0;
+        for (int partition = 0; partition < this.partitions; partition++) {
+            long start = System.nanoTime();
+            Object state = family.create.apply(parameter);
+            family.input.accept(state, dataset.values[partition]);
+            ingestNanos += System.nanoTime() - start;
+            sketches[partition] = family.serialize.apply(state);
+        }
+
+        long start = System.nanoTime();
+        Object merged = family.create.apply(parameter);
+        for (Slice sketch : sketches) {
+            family.merge.accept(merged, family.deserialize.apply(sketch, parameter));
+        }
+        Slice serialized = family.serialize.apply(merged);
+        long mergeNanos = System.nanoTime() - start;
+
+        return new TrialResult(
+                family.error.applyAsDouble(family.deserialize.apply(serialized, parameter), dataset),
+                serialized.length(),
+                (double) this.partitions * this.positions / ingestNanos * 1e9,
+                (double) this.partitions / mergeNanos * 1e9);
+    }
+
+    private static Map<String, Object> summarize(String distribution, SweepFamily<Object> family, int parameter, List<TrialResult> trialResults)
+    {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("distribution", distribution);
+        row.put("family", family.name);
+        row.put("parameter", family.parameterName);
+        row.put("value", parameter);
+        row.put("errorMetric", family.errorMetric);
+        row.put("meanError", trialResults.stream().mapToDouble(result -> result.error).average().orElseThrow());
+        row.put("maxError", trialResults.stream().mapToDouble(result -> result.error).max().orElseThrow());
+        row.put("serializedBytes", Math.round(trialResults.stream().mapToInt(result -> result.serializedBytes).average().orElseThrow()));
+        row.put("ingestValuesPerSecond", Math.round(median(trialResults, result -> result.ingestValuesPerSecond)));
+        row.put("mergeSketchesPerSecond", Math.round(median(trialResults, result -> result.mergeSketchesPerSecond)));
+        return row;
+    }
+
+    private static double median(List<TrialResult> trialResults, Function<TrialResult, Double> field)
+    {
+        List<Double> values = trialResults.stream()
+                .map(field)
+                .sorted()
+                .collect(Collectors.toList());
+        return values.get(values.size() / 2);
+    }
+
+    private static void printResults(List<Map<String, Object>> results, double errorBudget)
+    {
+        System.out.printf("%-9s %-11s %-14s %10s %10s %10s %14s %12s%n", "dist", "family", "parameter", "mean err", "max err", "bytes", "ingest/s", "merges/s");
+        for (Map<String, Object> row : results) {
+            System.out.printf(
+                    "%-9s %-11s %-14s %10.5f %10.5f %10d %14d %12d%n",
+                    row.get("distribution"),
+                    row.get("family"),
+                    row.get("parameter") + "=" + row.get("value"),
+                    row.get("meanError"),
+                    row.get("maxError"),
+                    row.get("serializedBytes"),
+                    row.get("ingestValuesPerSecond"),
+                    row.get("mergeSketchesPerSecond"));
+        }
+
+        System.out.printf("%nSmallest configuration with a max error within %s%n", errorBudget);
+        Map<List<Object>, List<Map<String, Object>>> rowsByFamily = results.stream()
+                .collect(Collectors.groupingBy(row -> List.of(row.get("distribution"), row.get("family")), LinkedHashMap::new, Collectors.toList()));
+        rowsByFamily.forEach((key, rows) -> System.out.printf(
+                "%-9s %-11s %s%n",
+                key.get(0),
+                key.get(1),
+                rows.stream()
+                        .filter(row -> (double) row.get("maxError") <= errorBudget)
+                        .min(Comparator.comparingLong(row -> (long) row.get("serializedBytes")))
+                        .map(row -> row.get("parameter") + "=" + row.get("value") + " (" + row.get("serializedBytes") + " bytes)")
+                        .orElse("none")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SweepFamily<Object>> createSweepFamilies()
+    {
+        List<SweepFamily<?>> families = ImmutableList.of(
+                new SweepFamily<>(
+                        "theta",
+                        "k",
+                        new int[] {512, 1024, 2048, 4096, 8192, 16384, 32768, 65536},
+                        "distinct count relative error",
+                        ThetaSketchProxy::new,
+                        (proxy, values) -> {
+                            for (long value : values) {
+                                proxy.put(value);
+                            }
+                        },
+                        ThetaSketchProxy::union,
+                        ThetaSketchProxy::serialize,
+                        ThetaSketchProxy::new,
+                        (proxy, dataset) -> relativeError(proxy.getSketch().getEstimate(), dataset.distinctCount)),
+                new SweepFamily<>(
+                        "hll",
+                        "lg_k",
+                        new int[] {8, 9, 10, 11, 12, 13, 14, 15, 16},
+                        "distinct count relative error",
+                        HllSketchProxy::new,
+                        (proxy, values) -> {
+                            for (long value : values) {
+                                proxy.put(value);
+                            }
+                        },
+                        HllSketchProxy::merge,
+                        HllSketchProxy::serialize,
+                        (slice, lgK) -> new HllSketchProxy(slice),
+                        (proxy, dataset) -> relativeError(proxy.getSketch().getEstimate(), dataset.distinctCount)),
+                new SweepFamily<>(
+                        "cpc",
+                        "lg_k",
+                        new int[] {8, 9, 10, 11, 12, 13, 14, 15, 16},
+                        "distinct count relative error",
+                        CpcSketchProxy::new,
+                        (proxy, values) -> {
+                            for (long value : values) {
+                                proxy.put(value);
+                            }
+                        },
+                        CpcSketchProxy::merge,
+                        CpcSketchProxy::serialize,
+                        (slice, lgK) -> new CpcSketchProxy(slice),
+                        (proxy, dataset) -> relativeError(proxy.getSketch().getEstimate(), dataset.distinctCount)),
+                new SweepFamily<>(
+                        "tuple",
+                        "k",
+                        new int[] {512, 1024, 2048, 4096, 8192, 16384, 32768, 65536},
+                        "metric sum relative error",
+                        TupleSketchProxy::new,
+                        (proxy, values) -> {
+                            for (long value : values) {
+                                proxy.put(value, 1.0);
+                            }
+                        },
+                        TupleSketchProxy::union,
+                        TupleSketchProxy::serialize,
+                        TupleSketchProxy::new,
+                        (proxy, dataset) -> relativeError(proxy.getSumEstimates()[0], dataset.sorted.length)),
+                new SweepFamily<>(
+                        "kll_doubles",
+                        "k",
+                        new int[] {50, 100, 200, 400, 800, 1600},
+                        "max rank error of percentiles",
+                        KllDoublesSketchProxy::new,
+                        (proxy, values) -> {
+                            for (long value : values) {
+                                proxy.put((double) value);
+                            }
+                        },
+                        KllDoublesSketchProxy::union,
+                        KllDoublesSketchProxy::serialize,
+                        (slice, k) -> new KllDoublesSketchProxy(slice),
+                        (proxy, dataset) -> rankError(rank -> (long) proxy.getEstimateQuantile(rank), dataset)),
+                new SweepFamily<>(
+                        "req",
+                        "k",
+                        new int[] {4, 8, 12, 16, 24, 32, 48, 64},
+                        "max rank error of percentiles",
+                        ReqSketchProxy::new,
+                        (proxy, values) -> {
+                            // The offset of a trial is a multiple of the distinct count, taken off so every value stays
+                            // exact as a float
+                            for (long value : values) {
+                                proxy.put((float) (value % this.distinct));
+                            }
+                        },
+                        ReqSketchProxy::union,
+                        ReqSketchProxy::serialize,
+                        (slice, k) -> new ReqSketchProxy(slice),
+                        (proxy, dataset) -> rankError(rank -> dataset.offset + (long) proxy.getEstimateQuantile(rank), dataset)),
+                new SweepFamily<>(
+                        "long_items",
+                        "max_map_size",
+                        new int[] {16, 32, 64, 128, 256, 512, 1024, 2048},
+                        "max top item frequency error over count",
+                        LongItemsSketchProxy::new,
+                        (proxy, values) -> {
+                            for (long value : values) {
+                                proxy.put(value);
+                            }
+                        },
+                        LongItemsSketchProxy::merge,
+                        LongItemsSketchProxy::serialize,
+                        (slice, maxMapSize) -> new LongItemsSketchProxy(slice),
+                        BenchmarkAccuracySweep::frequencyError));
+        return families.stream()
+                .map(family -> (SweepFamily<Object>) family)
+                .collect(Collectors.toList());
+    }
+
+    private static double relativeError(double estimate, long actual)
+    {
+        return Math.abs(estimate - actual) / actual;
+    }
+
+    private static double rankError(DoubleToLongFunction quantiles, Dataset dataset)
+    {
+        long[] sorted = dataset.sorted;
+        double error = 0;
+        for (int percentile = 1; percentile < 100; percentile++) {
+            double rank = percentile / 100.0;
+            long quantile = quantiles.applyAsLong(rank);
+            // The values are integers, so any rank between those of the first and the last occurrence is exact
+            double lowerRank = (double) lowerBound(sorted, quantile) / sorted.length;
+            double upperRank = (double) lowerBound(sorted, quantile + 1) / sorted.length;
+            error = Math.max(error, Math.max(lowerRank - rank, rank - upperRank));
+        }
+        return Math.max(error, 0);
+    }
+
+    private static double frequencyError(LongItemsSketchProxy proxy, Dataset dataset)
+    {
+        double error = 0;
+        for (int i = 0; i < dataset.topItems.length; i++) {
+            error = Math.max(error, Math.abs(proxy.getEstimate(dataset.topItems[i]) - dataset.topCounts[i]));
+        }
+        return error / dataset.sorted.length;
+    }
+
+    private static int lowerBound(long[] sorted, long value)
+    {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The values of a trial, by partition, with the exact answers the estimates are checked against.
+     */
+    private static final class Dataset
+    {
+        private final long[][] values;
+        private final long offset;
+        private final long[] sorted;
+        private final long distinctCount;
+        private final long[] topItems;
+        private final long[] topCounts;
+
+        private Dataset(long[][] values, long offset)
+        {
+            this.values = values;
+            this.offset = offset;
+            this.sorted = Arrays.stream(values).flatMapToLong(Arrays::stream).sorted().toArray();
+            List<long[]> counts = new ArrayList<>();
+            for (int start = 0; start < this.sorted.length; ) {
+                int end = lowerBound(this.sorted, this.sorted[start] + 1);
+                counts.add(new long[] {this.sorted[start], end - start});
+                start = end;
+            }
+            this.distinctCount = counts.size();
+            counts.sort(Comparator.comparingLong((long[] count) -> count[1]).reversed());
+            int topCount = Math.min(TOP_ITEMS, counts.size());
+            this.topItems = new long[topCount];
+            this.topCounts = new long[topCount];
+            for (int i = 0; i < topCount; i++) {
+                this.topItems[i] = counts.get(i)[0];
+                this.topCounts[i] = counts.get(i)[1];
+            }
+        }
+    }
+
+    private static final class TrialResult
+    {
+        private final double error;
+        private final int serializedBytes;
+        private final double ingestValuesPerSecond;
+        private final double mergeSketchesPerSecond;
+
+        private TrialResult(double error, int serializedBytes, double ingestValuesPerSecond, double mergeSketchesPerSecond)
+        {
+            this.error = error;
+            this.serializedBytes = serializedBytes;
+            this.ingestValuesPerSecond = ingestValuesPerSecond;
+            this.mergeSketchesPerSecond = mergeSketchesPerSecond;
+        }
+    }
+
+    /**
+     * The operations of a sketch proxy, as in {@link BenchmarkSketchProxies}, along with the parameter values swept
+     * and how the error of a merged sketch is measured.
+     */
+    private static final class SweepFamily<P>
+    {
+        private final String name;
+        private final String parameterName;
+        private final int[] parameters;
+        private final String errorMetric;
+        private final IntFunction<P> create;
+        private final BiConsumer<P, long[]> input;
+        private final BiConsumer<P, P> merge;
+        private final Function<P, Slice> serialize;
+        private final BiFunction<Slice, Integer, P> deserialize;
+        private final ToDoubleBiFunction<P, Dataset> error;
+
+        private SweepFamily(
+                String name,
+                String parameterName,
+                int[] parameters,
+                String errorMetric,
+                IntFunction<P> create,
+                BiConsumer<P, long[]> input,
+                BiConsumer<P, P> merge,
+                Function<P, Slice> serialize,
+                BiFunction<Slice, Integer, P> deserialize,
+                ToDoubleBiFunction<P, Dataset> error)
+        {
+            this.name = name;
+            this.parameterName = parameterName;
+            this.parameters = parameters;
+            this.errorMetric = errorMetric;
+            this.create = create;
+            this.input = input;
+            this.merge = merge;
+            this.serialize = serialize;
+            this.deserialize = deserialize;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.roblox.trino.udfs.datasketches.cpc.CpcSketchAggFunction;
+import com.roblox.trino.udfs.datasketches.cpc.CpcSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.cpc.CpcSketchStateFactory.SingleCpcSketchState;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchAggFunction;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchStateFactory.SingleHllSketchState;
+import io.airlift.slice.Slices;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import org.apache.datasketches.cpc.CpcSketch;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.TgtHllType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+
+/**
+ * Compares stored HLL and CPC sketches built from the same data: a column of per-dimension sketches is scanned and
+ * either merged into one sketch, as {@code hll_sketch(sketch)} / {@code cpc_sketch(sketch)} would, or estimated one
+ * by one, as {@code hll_count_distinct(sketch)} / {@code cpc_count_distinct(sketch)} would.
+ * <p>
+ * The bytes scanned by each variant, the size of the column, are printed by {@link #main} before the benchmarks run.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OperationsPerInvocation(BenchmarkCpcVsHll.SKETCHES)
+public class BenchmarkCpcVsHll
+{
+    static final int SKETCHES = 1_000;
+
+    @Param({"hll_4", "hll_6", "cpc"})
+    private String family;
+
+    @Param({"11", "12"})
+    private int lgK;
+
+    // Small dimensions keep sparse sketches, large ones fill them up
+    @Param({"100", "10000"})
+    private int distinctPerSketch;
+
+    private Block sketches;
+
+    @Setup
+    public void setup()
+    {
+        sketches = createSketches(family, lgK, distinctPerSketch);
+    }
+
+    /**
+     * One column of serialized sketches, one per dimension value, where neighbouring dimensions share half of their
+     * distinct values.
+     */
+    static Block createSketches(String family, int lgK, int distinctPerSketch)
+    {
+        BlockBuilder blockBuilder = VARBINARY.createBlockBuilder(null, SKETCHES);
+        for (int i = 0; i < SKETCHES; i++) {
+            long base = (long) i * distinctPerSketch / 2;
+            byte[] bytes;
+            if (family.equals("cpc")) {
+                CpcSketch sketch = new CpcSketch(lgK);
+                for (int value = 0; value < distinctPerSketch; value++) {
+                    sketch.update(base + value);
+                }
+                bytes = sketch.toByteArray();
+            }
+            else {
+                HllSketch sketch = new HllSketch(lgK, family.equals("hll_4") ? TgtHllType.HLL_4 : TgtHllType.HLL_6);
+                for (int value = 0; value < distinctPerSketch; value++) {
+                    sketch.update(base + value);
+                }
+                bytes = sketch.toCompactByteArray();
+            }
+            VARBINARY.writeSlice(blockBuilder, Slices.wrappedBuffer(bytes));
+        }
+        return blockBuilder.build();
+    }
+
+    @Benchmark
+    public long merge()
+    {
+        if (family.equals("cpc")) {
+            SingleCpcSketchState state = new SingleCpcSketchState();
+            for (int position = 0; position < SKETCHES; position++) {
+                CpcSketchAggFunction.inputSketch(state, VARBINARY.getSlice(sketches, position));
+            }
+            return state.getCpcSketchProxy().getEstimate();
+        }
+        SingleHllSketchState state = new SingleHllSketchState();
+        for (int position = 0; position < SKETCHES; position++) {
+            HllSketchAggFunction.inputSketch(state, VARBINARY.getSlice(sketches, position));
+        }
+        return state.getHllSketchProxy().getEstimate();
+    }
+
+    @Benchmark
+    public long estimate()
+    {
+        long total = 0;
+        for (int position = 0; position < SKETCHES; position++) {
+            if (family.equals("cpc")) {
+                total += CpcSketchEstimateFunctions.cpcSketchEstimate(VARBINARY.getSlice(sketches, position));
+            }
+            else {
+                total += HllSketchEstimateFunctions.hllSketchEstimate(VARBINARY.getSlice(sketches, position));
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        System.out.printf("%-6s %4s %8s %14s %10s%n", "family", "lgK", "distinct", "bytes scanned", "per sketch");
+        for (String family : new String[] {"hll_4", "hll_6", "cpc"}) {
+            for (int lgK : new int[] {11, 12}) {
+                for (int distinctPerSketch : new int[] {100, 10000}) {
+                    Block sketches = createSketches(family, lgK, distinctPerSketch);
+                    long bytes = 0;
+                    for (int position = 0; position < SKETCHES; position++) {
+                        bytes += sketches.getSliceLength(position);
+                    }
+                    System.out.printf("%-6s %4d %8d %14d %10d%n", family, lgK, distinctPerSketch, bytes, bytes / SKETCHES);
+                }
+            }
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkCpcVsHll.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
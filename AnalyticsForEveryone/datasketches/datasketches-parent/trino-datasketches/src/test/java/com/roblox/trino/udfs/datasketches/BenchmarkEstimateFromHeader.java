@@ -0,0 +1,121 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.roblox.trino.udfs.datasketches.hll.HllSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchProxy;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchProxy;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.TgtHllType;
+import org.apache.datasketches.theta.Sketch;
+import org.apache.datasketches.theta.UpdateSketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-row cost of {@code theta_count_distinct(sketch)} and {@code hll_count_distinct(sketch)} over a
+ * column of stored sketches, reading the estimate from the preamble of each sketch, against the previous path:
+ * looking the theta sketch up in the sketch cache by its contents, or wrapping the HLL sketch.
+ * Run with the GC profiler to compare the allocation per row.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OperationsPerInvocation(BenchmarkEstimateFromHeader.SKETCHES)
+public class BenchmarkEstimateFromHeader
+{
+    static final int SKETCHES = 1_000;
+
+    @Param({"theta", "hll"})
+    private String family;
+
+    // Small dimensions keep exact or sparse sketches, large ones estimate
+    @Param({"100", "100000"})
+    private int distinctPerSketch;
+
+    private Slice[] sketches;
+    private SketchCache<Sketch> thetaCache;
+
+    @Setup
+    public void setup()
+    {
+        sketches = new Slice[SKETCHES];
+        for (int i = 0; i < SKETCHES; i++) {
+            long base = (long) i * distinctPerSketch / 2;
+            if (family.equals("theta")) {
+                UpdateSketch sketch = UpdateSketch.builder().build();
+                for (int value = 0; value < distinctPerSketch; value++) {
+                    sketch.update(base + value);
+                }
+                sketches[i] = Slices.wrappedBuffer(sketch.rebuild().compact().toByteArray());
+            }
+            else {
+                HllSketch sketch = new HllSketch(HllSketch.DEFAULT_LG_K, TgtHllType.HLL_4);
+                for (int value = 0; value < distinctPerSketch; value++) {
+                    sketch.update(base + value);
+                }
+                sketches[i] = Slices.wrappedBuffer(sketch.toCompactByteArray());
+            }
+        }
+        // The same cache as the one theta_count_distinct uses for the sketches it cannot read from the preamble
+        thetaCache = new SketchCache<>(SketchCache.DEFAULT_MAX_BYTES, (slice, k) -> new ThetaSketchProxy(slice, k).getSketch(), sketch -> sketch.hasMemory() ? 0 : sketch.getCurrentBytes());
+    }
+
+    @Benchmark
+    public long header()
+    {
+        long total = 0;
+        for (Slice sketch : sketches) {
+            if (family.equals("theta")) {
+                total += ThetaSketchEstimateFunctions.thetaSketchEstimate(sketch);
+            }
+            else {
+                total += HllSketchEstimateFunctions.hllSketchEstimate(sketch);
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long decode()
+    {
+        long total = 0;
+        for (Slice sketch : sketches) {
+            if (family.equals("theta")) {
+                total += (long) thetaCache.get(sketch, ThetaSketchProxy.DEFAULT_K).getEstimate();
+            }
+            else {
+                total += new HllSketchProxy(sketch).getEstimate();
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkEstimateFromHeader.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,125 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.roblox.trino.udfs.datasketches.klldoubles.KllDoublesSketchProxy;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchProxy;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.apache.datasketches.kll.KllDoublesSketch;
+import org.apache.datasketches.theta.Sketch;
+import org.apache.datasketches.theta.UpdateSketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures the per-row cost of the scalar functions reading stored sketches through the sketch cache, against
+ * decoding each row from its wrapped slice without a cache. With {@code sketches} as large as the column every row
+ * holds a different sketch, as in a scan of stored sketches, and the cache should cost no more than the decoding;
+ * with few sketches the rows repeat, as in a join against a list of quantiles or items, and the cache should win.
+ * Run with the GC profiler to compare the allocation per row.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OperationsPerInvocation(BenchmarkSketchCache.ROWS)
+public class BenchmarkSketchCache
+{
+    static final int ROWS = 10_000;
+
+    @Param({"theta", "kll_doubles"})
+    private String family;
+
+    // The number of different sketches in the column
+    @Param({"10", "10000"})
+    private int sketches;
+
+    private Slice[] rows;
+    private Function<Slice, Object> decoded;
+    private Function<Slice, Object> cached;
+
+    @Setup
+    public void setup()
+    {
+        Slice[] distinct = new Slice[sketches];
+        for (int i = 0; i < sketches; i++) {
+            if (family.equals("theta")) {
+                UpdateSketch sketch = UpdateSketch.builder().build();
+                for (int value = 0; value < 10_000; value++) {
+                    sketch.update((long) i * 5_000 + value);
+                }
+                distinct[i] = Slices.wrappedBuffer(sketch.rebuild().compact().toByteArray());
+            }
+            else {
+                KllDoublesSketch sketch = KllDoublesSketch.newHeapInstance();
+                for (int value = 0; value < 10_000; value++) {
+                    sketch.update(i + value * 0.5);
+                }
+                distinct[i] = Slices.wrappedBuffer(sketch.toByteArray());
+            }
+        }
+        rows = new Slice[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            // Copies, as every row of a block holds its own bytes
+            rows[row] = Slices.copyOf(distinct[row % sketches]);
+        }
+
+        // The same decoders as theta_count_distinct and the kll_doubles estimate functions, followed by their estimate,
+        // as a decoded sketch may defer work to its first read
+        if (family.equals("theta")) {
+            SketchCache.Decoder<Sketch> thetaDecoder = (slice, k) -> new ThetaSketchProxy(slice, k).getSketch();
+            SketchCache<Sketch> cache = new SketchCache<>(SketchCache.DEFAULT_MAX_BYTES, thetaDecoder, sketch -> sketch.hasMemory() ? 0 : sketch.getCurrentBytes());
+            decoded = slice -> thetaDecoder.decode(slice, ThetaSketchProxy.DEFAULT_K).getEstimate();
+            cached = slice -> cache.get(slice, ThetaSketchProxy.DEFAULT_K).getEstimate();
+        }
+        else {
+            SketchCache.Decoder<KllDoublesSketchProxy> kllDecoder = (slice, ignored) -> new KllDoublesSketchProxy(slice);
+            SketchCache<KllDoublesSketchProxy> cache = new SketchCache<>(SketchCache.DEFAULT_MAX_BYTES, kllDecoder, KllDoublesSketchProxy::getCachedSize);
+            decoded = slice -> kllDecoder.decode(slice, 0).getEstimateQuantile(0.5);
+            cached = slice -> cache.get(slice).getEstimateQuantile(0.5);
+        }
+    }
+
+    @Benchmark
+    public void wrap(Blackhole blackhole)
+    {
+        for (Slice row : rows) {
+            blackhole.consume(decoded.apply(row));
+        }
+    }
+
+    @Benchmark
+    public void cache(Blackhole blackhole)
+    {
+        for (Slice row : rows) {
+            blackhole.consume(cached.apply(row));
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkSketchCache.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,316 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.roblox.trino.udfs.datasketches.doubleitems.DoubleItemsSketchProxy;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchProxy;
+import com.roblox.trino.udfs.datasketches.klldoubles.KllDoublesSketchProxy;
+import com.roblox.trino.udfs.datasketches.kllfloats.KllFloatsSketchProxy;
+import com.roblox.trino.udfs.datasketches.longitems.LongItemsSketchProxy;
+import com.roblox.trino.udfs.datasketches.stringitems.StringItemsSketchProxy;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchProxy;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.type.Type;
+import org.apache.datasketches.kll.KllSketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.spi.type.DoubleType.DOUBLE;
+import static io.trino.spi.type.RealType.REAL;
+import static io.trino.spi.type.VarcharType.VARCHAR;
+
+/**
+ * Measures the four steps every aggregation goes through, for each sketch proxy: adding raw values one row at a
+ * time with the same put calls as the input functions, combining the states of several partial aggregations,
+ * serializing and deserializing a state, and estimating from a stored sketch, as the scalar functions do by
+ * deserializing it first.
+ * <p>
+ * The configuration parameter of each family is scaled by {@code 2^scale} around its default: k for theta and KLL,
+ * the map size for the items sketches, and lg_k is shifted by {@code scale} for HLL.
+ * Values are skewed towards the smallest ones, so the items sketches have frequent items to find.
+ * Run with the GC profiler, which {@link #main} enables, to compare the allocation of each step.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkSketchProxies
+{
+    private static final int POSITIONS = 10_000;
+    private static final int SKETCHES = 100;
+
+    @Param({"theta", "hll", "kll_doubles", "kll_floats", "long_items", "double_items", "string_items"})
+    private String family;
+
+    @Param({"-2", "0", "2"})
+    private int scale;
+
+    // The number of distinct values the blocks are drawn from
+    @Param({"1000", "1000000"})
+    private int distinct;
+
+    private ProxyFamily<Object> proxyFamily;
+    private Block[] blocks;
+    private Object[] states;
+    private Slice[] sketches;
+
+    @Setup
+    public void setup()
+    {
+        proxyFamily = createProxyFamily(family, scale);
+        Random random = new Random(42);
+        blocks = new Block[SKETCHES];
+        states = new Object[SKETCHES];
+        sketches = new Slice[SKETCHES];
+        for (int i = 0; i < SKETCHES; i++) {
+            blocks[i] = createBlock(proxyFamily.type, random, distinct);
+            states[i] = proxyFamily.create.get();
+            proxyFamily.input.accept(states[i], blocks[i]);
+            sketches[i] = proxyFamily.serialize.apply(states[i]);
+        }
+    }
+
+    private static Block createBlock(Type type, Random random, int distinct)
+    {
+        BlockBuilder blockBuilder = type.createBlockBuilder(null, POSITIONS);
+        for (int position = 0; position < POSITIONS; position++) {
+            long value = (long) (distinct * Math.pow(random.nextDouble(), 3));
+            if (type.equals(BIGINT)) {
+                BIGINT.writeLong(blockBuilder, value);
+            }
+            else if (type.equals(DOUBLE)) {
+                DOUBLE.writeDouble(blockBuilder, value / 10.0);
+            }
+            else if (type.equals(REAL)) {
+                REAL.writeLong(blockBuilder, Float.floatToIntBits(value / 10.0f));
+            }
+            else {
+                VARCHAR.writeSlice(blockBuilder, Slices.utf8Slice("item-" + value));
+            }
+        }
+        return blockBuilder.build();
+    }
+
+    @Benchmark
+    public Object input()
+    {
+        Object state = proxyFamily.create.get();
+        proxyFamily.input.accept(state, blocks[0]);
+        return state;
+    }
+
+    @Benchmark
+    public Object combine()
+    {
+        Object state = proxyFamily.create.get();
+        for (Object other : states) {
+            proxyFamily.merge.accept(state, other);
+        }
+        return proxyFamily.serialize.apply(state);
+    }
+
+    @Benchmark
+    public Slice serialize()
+    {
+        return proxyFamily.serialize.apply(states[0]);
+    }
+
+    @Benchmark
+    public Object deserialize()
+    {
+        return proxyFamily.deserialize.apply(sketches[0]);
+    }
+
+    @Benchmark
+    public double estimate()
+    {
+        double total = 0;
+        for (Slice sketch : sketches) {
+            total += proxyFamily.estimate.applyAsDouble(proxyFamily.deserialize.apply(sketch));
+        }
+        return total;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ProxyFamily<Object> createProxyFamily(String family, int scale)
+    {
+        ProxyFamily<?> proxyFamily;
+        switch (family) {
+            case "theta":
+                int k = scale(ThetaSketchProxy.DEFAULT_K, scale);
+                proxyFamily = new ProxyFamily<>(
+                        BIGINT,
+                        () -> new ThetaSketchProxy(k),
+                        (proxy, block) -> forEachLong(BIGINT, block, proxy::put),
+                        ThetaSketchProxy::union,
+                        ThetaSketchProxy::serialize,
+                        slice -> new ThetaSketchProxy(slice, k),
+                        ThetaSketchProxy::getEstimate);
+                break;
+            case "hll":
+                int lgK = HllSketchProxy.DEFAULT_LG_K + scale;
+                proxyFamily = new ProxyFamily<>(
+                        BIGINT,
+                        () -> new HllSketchProxy(lgK),
+                        (proxy, block) -> forEachLong(BIGINT, block, proxy::put),
+                        HllSketchProxy::merge,
+                        HllSketchProxy::serialize,
+                        HllSketchProxy::new,
+                        HllSketchProxy::getEstimate);
+                break;
+            case "kll_doubles":
+                proxyFamily = new ProxyFamily<>(
+                        DOUBLE,
+                        () -> new KllDoublesSketchProxy(scale(KllSketch.DEFAULT_K, scale)),
+                        (proxy, block) -> forEachDouble(block, proxy::put),
+                        KllDoublesSketchProxy::union,
+                        KllDoublesSketchProxy::serialize,
+                        KllDoublesSketchProxy::new,
+                        proxy -> proxy.getEstimateQuantile(0.5));
+                break;
+            case "kll_floats":
+                proxyFamily = new ProxyFamily<>(
+                        REAL,
+                        () -> new KllFloatsSketchProxy(scale(KllSketch.DEFAULT_K, scale)),
+                        (proxy, block) -> forEachLong(REAL, block, value -> proxy.put(Float.intBitsToFloat((int) value))),
+                        KllFloatsSketchProxy::union,
+                        KllFloatsSketchProxy::serialize,
+                        KllFloatsSketchProxy::new,
+                        proxy -> proxy.getEstimateQuantile(0.5));
+                break;
+            case "long_items":
+                proxyFamily = new ProxyFamily<>(
+                        BIGINT,
+                        () -> new LongItemsSketchProxy(scale(LongItemsSketchProxy.DEFAULT_MAP_SIZE, scale)),
+                        (proxy, block) -> forEachLong(BIGINT, block, proxy::put),
+                        LongItemsSketchProxy::merge,
+                        LongItemsSketchProxy::serialize,
+                        LongItemsSketchProxy::new,
+                        proxy -> proxy.getFrequentItems(false).length);
+                break;
+            case "double_items":
+                proxyFamily = new ProxyFamily<>(
+                        DOUBLE,
+                        () -> new DoubleItemsSketchProxy(scale(DoubleItemsSketchProxy.DEFAULT_MAP_SIZE, scale)),
+                        (proxy, block) -> forEachDouble(block, proxy::put),
+                        DoubleItemsSketchProxy::merge,
+                        DoubleItemsSketchProxy::serialize,
+                        DoubleItemsSketchProxy::new,
+                        proxy -> proxy.getFrequentItems(false).length);
+                break;
+            case "string_items":
+                proxyFamily = new ProxyFamily<>(
+                        VARCHAR,
+                        () -> new StringItemsSketchProxy(scale(StringItemsSketchProxy.DEFAULT_MAP_SIZE, scale)),
+                        (proxy, block) -> forEachSlice(block, proxy::put),
+                        StringItemsSketchProxy::merge,
+                        StringItemsSketchProxy::serialize,
+                        StringItemsSketchProxy::new,
+                        proxy -> proxy.getFrequentItems(false).length);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown sketch family: " + family);
+        }
+        return (ProxyFamily<Object>) proxyFamily;
+    }
+
+    // Trino calls the input functions once per non-null row, with the value read from the block
+    private static void forEachLong(Type type, Block block, LongConsumer put)
+    {
+        for (int position = 0; position < block.getPositionCount(); position++) {
+            if (!block.isNull(position)) {
+                put.accept(type.getLong(block, position));
+            }
+        }
+    }
+
+    private static void forEachDouble(Block block, DoubleConsumer put)
+    {
+        for (int position = 0; position < block.getPositionCount(); position++) {
+            if (!block.isNull(position)) {
+                put.accept(DOUBLE.getDouble(block, position));
+            }
+        }
+    }
+
+    private static void forEachSlice(Block block, Consumer<Slice> put)
+    {
+        for (int position = 0; position < block.getPositionCount(); position++) {
+            if (!block.isNull(position)) {
+                put.accept(VARCHAR.getSlice(block, position));
+            }
+        }
+    }
+
+    private static int scale(int value, int scale)
+    {
+        return scale >= 0 ? value << scale : value >> -scale;
+    }
+
+    /**
+     * The operations of a sketch proxy, which have the same shape but no common interface.
+     */
+    private static final class ProxyFamily<P>
+    {
+        private final Type type;
+        private final Supplier<P> create;
+        private final BiConsumer<P, Block> input;
+        private final BiConsumer<P, P> merge;
+        private final Function<P, Slice> serialize;
+        private final Function<Slice, P> deserialize;
+        private final ToDoubleFunction<P> estimate;
+
+        private ProxyFamily(
+                Type type,
+                Supplier<P> create,
+                BiConsumer<P, Block> input,
+                BiConsumer<P, P> merge,
+                Function<P, Slice> serialize,
+                Function<Slice, P> deserialize,
+                ToDoubleFunction<P> estimate)
+        {
+            this.type = type;
+            this.create = create;
+            this.input = input;
+            this.merge = merge;
+            this.serialize = serialize;
+            this.deserialize = deserialize;
+            this.estimate = estimate;
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkSketchProxies.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,128 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.roblox.trino.udfs.datasketches.stringitems.StringItemsSketchProxy;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import org.apache.datasketches.common.ArrayOfStringsSerDe;
+import org.apache.datasketches.frequencies.ItemsSketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static io.trino.spi.type.VarcharType.VARCHAR;
+
+/**
+ * Compares the string items sketch keyed by UTF-8 slices against an {@code ItemsSketch<String>}, which decodes
+ * every value into a String, when ingesting a block of values and when merging stored sketches.
+ * Run with the GC profiler to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkStringItems
+{
+    private static final int POSITIONS = 10_000;
+    private static final int SKETCHES = 100;
+
+    // The number of distinct values in a block, from a few hot items to an asset id column
+    @Param({"100", "100000"})
+    private int distinct;
+
+    @Param({"64", "1024"})
+    private int mapSize;
+
+    private Block block;
+    private Slice[] sketches;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        BlockBuilder blockBuilder = VARCHAR.createBlockBuilder(null, POSITIONS);
+        for (int i = 0; i < POSITIONS; i++) {
+            // Skewed towards the smallest ids, so the sketch has frequent items to find
+            int id = (int) (distinct * Math.pow(random.nextDouble(), 3));
+            VARCHAR.writeSlice(blockBuilder, Slices.utf8Slice("rbxassetid://" + (1_000_000_000L + id)));
+        }
+        block = blockBuilder.build();
+
+        sketches = new Slice[SKETCHES];
+        for (int i = 0; i < SKETCHES; i++) {
+            StringItemsSketchProxy sketch = new StringItemsSketchProxy(mapSize);
+            int offset = random.nextInt(POSITIONS / 2);
+            for (int position = offset; position < offset + POSITIONS / 2; position++) {
+                sketch.put(VARCHAR.getSlice(block, position));
+            }
+            sketches[i] = sketch.serialize();
+        }
+    }
+
+    @Benchmark
+    public Object inputStrings()
+    {
+        ItemsSketch<String> sketch = new ItemsSketch<>(mapSize);
+        for (int position = 0; position < POSITIONS; position++) {
+            sketch.update(VARCHAR.getSlice(block, position).toStringUtf8());
+        }
+        return sketch;
+    }
+
+    @Benchmark
+    public Object inputSlices()
+    {
+        StringItemsSketchProxy sketch = new StringItemsSketchProxy(mapSize);
+        for (int position = 0; position < POSITIONS; position++) {
+            sketch.put(VARCHAR.getSlice(block, position));
+        }
+        return sketch;
+    }
+
+    @Benchmark
+    public Object mergeStrings()
+    {
+        ArrayOfStringsSerDe serDe = new ArrayOfStringsSerDe();
+        ItemsSketch<String> union = new ItemsSketch<>(mapSize);
+        for (Slice sketch : sketches) {
+            union.merge(ItemsSketch.getInstance(SliceMemory.wrap(sketch), serDe));
+        }
+        return union.toByteArray(serDe);
+    }
+
+    @Benchmark
+    public Object mergeSlices()
+    {
+        StringItemsSketchProxy union = new StringItemsSketchProxy(mapSize);
+        for (Slice sketch : sketches) {
+            union.merge(new StringItemsSketchProxy(sketch));
+        }
+        return union.serialize();
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkStringItems.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
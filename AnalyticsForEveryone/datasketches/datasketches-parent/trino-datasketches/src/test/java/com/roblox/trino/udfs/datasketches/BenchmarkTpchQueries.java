@@ -0,0 +1,171 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.roblox.trino.udfs.TrinoUdfsPlugin;
+import io.trino.Session;
+import io.trino.execution.QueryManager;
+import io.trino.execution.QueryStats;
+import io.trino.plugin.tpch.TpchPlugin;
+import io.trino.server.BasicQueryInfo;
+import io.trino.spi.QueryId;
+import io.trino.testing.MaterializedResult;
+import io.trino.testing.StandaloneQueryRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.collect.MoreCollectors.onlyElement;
+import static io.trino.testing.TestingSession.testSessionBuilder;
+
+/**
+ * Runs the sketch aggregations over TPC-H tables on a {@link StandaloneQueryRunner}, next to the built-in
+ * approximate aggregation answering the same question, and reports the cost of each query from its query stats:
+ * wall time, CPU time, peak memory and the bytes it outputs, which for the grouped queries is the size of the
+ * sketches they store. {@code approx_most_frequent} has no double variant, so the double items sketch runs alone.
+ * <p>
+ * Every query runs once to warm up, then {@code benchmark.runs} times at each TPC-H schema of {@code benchmark.schemas}.
+ * The runs are written as a JSON array to {@code benchmark.output}, to be compared over time, and the median of each
+ * query is printed. For example:
+ * <pre>
+ * java -Dbenchmark.schemas=tiny,sf1 -Dbenchmark.runs=5 -cp ... com.roblox.trino.udfs.datasketches.BenchmarkTpchQueries
+ * </pre>
+ */
+public final class BenchmarkTpchQueries
+{
+    private static final List<BenchmarkQuery> QUERIES = ImmutableList.of(
+            new BenchmarkQuery("distinct_custkey", "hll", "SELECT hll_count_distinct(hll_sketch(custkey)) FROM orders"),
+            new BenchmarkQuery("distinct_custkey", "theta", "SELECT theta_count_distinct(theta_sketch(custkey)) FROM orders"),
+            new BenchmarkQuery("distinct_custkey", "builtin", "SELECT approx_distinct(custkey) FROM orders"),
+            new BenchmarkQuery("orderkey_sketch_by_shipmode", "hll", "SELECT shipmode, hll_sketch(orderkey) FROM lineitem GROUP BY shipmode"),
+            new BenchmarkQuery("orderkey_sketch_by_shipmode", "theta", "SELECT shipmode, theta_sketch(orderkey) FROM lineitem GROUP BY shipmode"),
+            new BenchmarkQuery("orderkey_sketch_by_shipmode", "builtin", "SELECT shipmode, CAST(approx_set(orderkey) AS VARBINARY) FROM lineitem GROUP BY shipmode"),
+            new BenchmarkQuery("median_extendedprice", "kll_doubles", "SELECT kll_doubles_estimate_quantile(kll_doubles_sketch(extendedprice), 0.5) FROM lineitem"),
+            new BenchmarkQuery("median_extendedprice", "builtin", "SELECT approx_percentile(extendedprice, 0.5) FROM lineitem"),
+            new BenchmarkQuery("extendedprice_sketch_by_shipmode", "kll_doubles", "SELECT shipmode, kll_doubles_sketch(extendedprice) FROM lineitem GROUP BY shipmode"),
+            new BenchmarkQuery("extendedprice_sketch_by_shipmode", "builtin", "SELECT shipmode, CAST(tdigest_agg(extendedprice) AS VARBINARY) FROM lineitem GROUP BY shipmode"),
+            new BenchmarkQuery("frequent_clerks", "string_items", "SELECT string_items_sketch_top_items(string_items_sketch(clerk), true, 10) FROM orders"),
+            new BenchmarkQuery("frequent_clerks", "builtin", "SELECT approx_most_frequent(10, clerk, 64) FROM orders"),
+            new BenchmarkQuery("frequent_partkeys", "long_items", "SELECT long_items_sketch_top_items(long_items_sketch(partkey), true, 10) FROM lineitem"),
+            new BenchmarkQuery("frequent_partkeys", "builtin", "SELECT approx_most_frequent(10, partkey, 64) FROM lineitem"),
+            new BenchmarkQuery("frequent_discounts", "double_items", "SELECT double_items_sketch_top_items(double_items_sketch(discount), true, 10) FROM lineitem"));
+
+    private BenchmarkTpchQueries() {}
+
+    public static void main(String[] args)
+            throws IOException
+    {
+        List<String> schemas = ImmutableList.copyOf(System.getProperty("benchmark.schemas", "tiny,sf1").split(","));
+        int runs = Integer.getInteger("benchmark.runs", 3);
+        File output = new File(System.getProperty("benchmark.output", "target/benchmark-tpch-queries.json"));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        try (StandaloneQueryRunner runner = new StandaloneQueryRunner(testSessionBuilder().build())) {
+            runner.installPlugin(new TrinoUdfsPlugin());
+            runner.installPlugin(new TpchPlugin());
+            runner.createCatalog("tpch", "tpch");
+
+            for (String schema : schemas) {
+                Session session = testSessionBuilder()
+                        .setCatalog("tpch")
+                        .setSchema(schema)
+                        .build();
+                for (BenchmarkQuery query : QUERIES) {
+                    runner.execute(session, query.sql);
+                    for (int run = 0; run < runs; run++) {
+                        results.add(runQuery(runner, session, schema, query, run));
+                    }
+                }
+            }
+        }
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output, results);
+        printMedians(results);
+        System.out.println("Wrote " + results.size() + " runs to " + output.getAbsolutePath());
+    }
+
+    private static Map<String, Object> runQuery(StandaloneQueryRunner runner, Session session, String schema, BenchmarkQuery query, int run)
+    {
+        QueryManager queryManager = runner.getServer().getQueryManager();
+        Set<QueryId> previousQueries = queryManager.getQueries().stream()
+                .map(BasicQueryInfo::getQueryId)
+                .collect(toImmutableSet());
+
+        long start = System.nanoTime();
+        MaterializedResult result = runner.execute(session, query.sql);
+        long wallNanos = System.nanoTime() - start;
+
+        // Queries run one at a time, so the only new query is the one just executed
+        QueryId queryId = queryManager.getQueries().stream()
+                .map(BasicQueryInfo::getQueryId)
+                .filter(id -> !previousQueries.contains(id))
+                .collect(onlyElement());
+        QueryStats stats = queryManager.getFullQueryInfo(queryId).getQueryStats();
+
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("schema", schema);
+        row.put("query", query.name);
+        row.put("family", query.family);
+        row.put("run", run);
+        row.put("wallMillis", TimeUnit.NANOSECONDS.toMillis(wallNanos));
+        row.put("elapsedMillis", stats.getElapsedTime().toMillis());
+        row.put("cpuMillis", stats.getTotalCpuTime().toMillis());
+        row.put("peakUserMemoryBytes", stats.getPeakUserMemoryReservation().toBytes());
+        row.put("peakTotalMemoryBytes", stats.getPeakTotalMemoryReservation().toBytes());
+        row.put("inputRows", stats.getProcessedInputPositions());
+        row.put("outputRows", result.getRowCount());
+        row.put("outputBytes", stats.getOutputDataSize().toBytes());
+        return row;
+    }
+
+    private static void printMedians(List<Map<String, Object>> results)
+    {
+        System.out.printf("%-8s %-34s %-13s %10s %10s %14s %12s%n", "schema", "query", "family", "wall ms", "cpu ms", "peak memory", "output bytes");
+        Map<List<Object>, List<Map<String, Object>>> runsByQuery = results.stream()
+                .collect(Collectors.groupingBy(row -> List.of(row.get("schema"), row.get("query"), row.get("family")), LinkedHashMap::new, Collectors.toList()));
+        runsByQuery.forEach((key, runs) -> System.out.printf(
+                "%-8s %-34s %-13s %10d %10d %14d %12d%n",
+                key.get(0),
+                key.get(1),
+                key.get(2),
+                median(runs, "wallMillis"),
+                median(runs, "cpuMillis"),
+                median(runs, "peakUserMemoryBytes"),
+                median(runs, "outputBytes")));
+    }
+
+    private static long median(List<Map<String, Object>> runs, String field)
+    {
+        List<Long> values = runs.stream()
+                .map(row -> ((Number) row.get(field)).longValue())
+                .sorted()
+                .collect(Collectors.toList());
+        return values.get(values.size() / 2);
+    }
+
+    private static final class BenchmarkQuery
+    {
+        private final String name;
+        private final String family;
+        private final String sql;
+
+        private BenchmarkQuery(String name, String family, String sql)
+        {
+            this.name = name;
+            this.family = family;
+            this.sql = sql;
+        }
+    }
+}
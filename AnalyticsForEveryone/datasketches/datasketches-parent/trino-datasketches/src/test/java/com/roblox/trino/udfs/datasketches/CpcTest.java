@@ -0,0 +1,275 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.roblox.trino.udfs.TrinoUdfsPlugin;
+import com.roblox.trino.udfs.datasketches.cpc.CpcSketchProxy;
+import io.trino.plugin.tpch.TpchPlugin;
+import io.trino.testing.MaterializedResult;
+import io.trino.testing.MaterializedRow;
+import io.trino.testing.QueryFailedException;
+import io.trino.testing.StandaloneQueryRunner;
+import org.apache.datasketches.cpc.CpcSketch;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.parallel.Execution;
+
+import java.util.List;
+
+import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.testing.TestingSession.testSessionBuilder;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
+
+@TestInstance(PER_CLASS)
+@Execution(CONCURRENT)
+public class CpcTest
+{
+    private StandaloneQueryRunner runner;
+
+    @BeforeAll
+    public void init()
+    {
+        runner = new StandaloneQueryRunner(testSessionBuilder().build());
+        runner.installPlugin(new TrinoUdfsPlugin());
+        runner.installPlugin(new TpchPlugin());
+        runner.createCatalog("tpch", "tpch");
+    }
+
+    @AfterAll
+    public void teardown()
+    {
+        runner.close();
+        runner = null;
+    }
+
+    private String arrayToValuesString(Object[] values)
+    {
+        StringBuilder out = new StringBuilder();
+        out.append("(VALUES ");
+        for (int i = 0; i < values.length; i++) {
+            out.append("(").append(values[i]).append(")");
+            if (i < values.length - 1) {
+                out.append(", ");
+            }
+        }
+        out.append(")");
+        return out.toString();
+    }
+
+    private CpcSketch sketchWithValues(int[] values)
+    {
+        return sketchWithValues(values, CpcSketch.DEFAULT_LG_K);
+    }
+
+    private CpcSketch sketchWithValues(int[] values, int lgK)
+    {
+        CpcSketch sketch = new CpcSketch(lgK);
+        for (int value : values) {
+            sketch.update(value);
+        }
+        return sketch;
+    }
+
+    private String sketchToValueString(CpcSketch sketch)
+    {
+        byte[] serialized = sketch.toByteArray();
+        StringBuilder out = new StringBuilder();
+
+        for (byte b : serialized) {
+            out.append(String.format("%02X", b));
+        }
+
+        return "(CAST(X'" + out + "' AS VARBINARY))";
+    }
+
+    @Test
+    public void testOnSmallValues()
+    {
+        String valuesString = arrayToValuesString(new Integer[] {10, 5, 15, 10, 9});
+
+        MaterializedResult output = runner.execute("SELECT cpc_count_distinct(cpc_sketch(x)) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(4, value);
+    }
+
+    @Test
+    public void testOnSmallRealValues()
+    {
+        String valuesString = "(VALUES (REAL '10.0'), (REAL '5.0'), (REAL '15.0'), (REAL '10.0'), (REAL '9.0'))";
+
+        MaterializedResult output = runner.execute("SELECT cpc_count_distinct(cpc_sketch(x)) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(4, value);
+    }
+
+    @Test
+    public void testOnStringValuesMatchesDataSketches()
+    {
+        String[] values = new String[] {"apple", "banana", "", "\u65e5\u672c\u8a9e", "\u00e4\u00f6\u00fc", "apple"};
+        CpcSketch expected = new CpcSketch();
+        StringBuilder valuesString = new StringBuilder("(VALUES ");
+        for (int i = 0; i < values.length; i++) {
+            expected.update(values[i]);
+            valuesString.append(i == 0 ? "" : ", ").append("('").append(values[i]).append("')");
+        }
+        valuesString.append(")");
+
+        MaterializedResult output = runner.execute("SELECT cpc_sketch(x) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        byte[] value = (byte[]) result.get(0).getFields().get(0);
+
+        Assertions.assertArrayEquals(expected.toByteArray(), value);
+    }
+
+    @Test
+    public void testPutAfterMerge()
+    {
+        CpcSketchProxy other = new CpcSketchProxy();
+        for (long i = 0; i < 50; i++) {
+            other.put(i);
+        }
+        CpcSketchProxy sketch = new CpcSketchProxy();
+        sketch.put(100L);
+        sketch.merge(other);
+        sketch.put(101L);
+        sketch.put(0L);
+
+        Assertions.assertEquals(52, sketch.getEstimate());
+        Assertions.assertEquals(52, new CpcSketchProxy(sketch.serialize()).getEstimate());
+    }
+
+    @Test
+    public void testUnionSizeFollowsItsState()
+    {
+        CpcSketchProxy small = new CpcSketchProxy();
+        for (long i = 0; i < 50; i++) {
+            small.put(i);
+        }
+        CpcSketchProxy large = new CpcSketchProxy();
+        for (long i = 0; i < 100_000; i++) {
+            large.put(i);
+        }
+        long denseUnionSize = Long.BYTES << CpcSketchProxy.DEFAULT_LG_K;
+
+        CpcSketchProxy sketch = new CpcSketchProxy();
+        sketch.merge(small);
+        Assertions.assertTrue(sketch.getEstimatedSize() < denseUnionSize);
+        sketch.merge(large);
+        Assertions.assertTrue(sketch.getEstimatedSize() >= denseUnionSize);
+    }
+
+    @Test
+    public void testOnLargeValues()
+    {
+        String query = "WITH data AS (SELECT cpc_sketch(custkey) AS sketch FROM tpch.sf1.orders) " +
+                "SELECT cpc_count_distinct_lb(sketch, 2), cpc_count_distinct_ub(sketch, 2) FROM data";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long lower = (long) result.get(0).getFields().get(0);
+        long upper = (long) result.get(0).getFields().get(1);
+
+        long expected = 100000;
+        Assertions.assertTrue(expected >= lower && expected <= upper);
+    }
+
+    @Test
+    public void testSmallerThanHll()
+    {
+        String query = "SELECT length(cpc_sketch(custkey, 12)), length(hll_sketch(custkey, 12)) FROM tpch.sf1.orders";
+        MaterializedRow result = runner.execute(query).getMaterializedRows().get(0);
+
+        Assertions.assertTrue((long) result.getField(0) < (long) result.getField(1));
+    }
+
+    @Test
+    public void testOnSketchesWithLgK()
+    {
+        CpcSketch sketch1 = sketchWithValues(new int[] {1, 2, 2, 3, 4, 5, 5}, 9);
+        CpcSketch sketch2 = sketchWithValues(new int[] {4, 4, 5, 6, 7, 8, 8}, 9);
+        CpcSketch sketch3 = sketchWithValues(new int[] {9, 10, 10, 10, 11, 12}, 9);
+
+        String valuesString = arrayToValuesString(new String[] {
+                sketchToValueString(sketch1),
+                sketchToValueString(sketch2),
+                sketchToValueString(sketch3)
+        });
+
+        String query = "SELECT cpc_count_distinct(cpc_sketch(x)) FROM " + valuesString + " AS W(x)";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(12, value);
+    }
+
+    @Test
+    public void testUnionArray()
+    {
+        String query = "SELECT cpc_count_distinct(cpc_union(ARRAY[" +
+                sketchToValueString(sketchWithValues(new int[] {1, 2, 2, 3, 4, 5, 5})) + ", " +
+                sketchToValueString(sketchWithValues(new int[] {4, 4, 5, 6, 7, 8, 8}, 9)) + ", " +
+                "NULL, " +
+                sketchToValueString(sketchWithValues(new int[] {9, 10, 10, 10, 11, 12})) + "]))";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(12, value);
+    }
+
+    @Test
+    public void testUnionArrayMatchesAggregation()
+    {
+        String query = "SELECT cpc_count_distinct(cpc_union(array_agg(s))), cpc_count_distinct(cpc_sketch(s)) FROM (" +
+                "SELECT orderpriority, cpc_sketch(custkey) AS s FROM tpch.tiny.orders GROUP BY orderpriority)";
+        MaterializedRow result = runner.execute(query).getMaterializedRows().get(0);
+
+        Assertions.assertEquals(result.getField(1), result.getField(0));
+    }
+
+    @Test
+    public void testUnionEmptyArray()
+    {
+        MaterializedResult output = runner.execute("SELECT cpc_count_distinct(cpc_union(CAST(ARRAY[] AS ARRAY(VARBINARY))))");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(0, value);
+    }
+
+    @Test
+    public void testOnInvalidSketches()
+    {
+        Assertions.assertThrows(QueryFailedException.class, () -> runner.execute(
+                "SELECT cpc_count_distinct(cpc_sketch(x)) FROM (VALUES (X'0102030405060708')) AS W(x)"));
+    }
+
+    @Test
+    public void testGroupBy()
+    {
+        String query = "SELECT orderpriority, cpc_count_distinct(cpc_sketch(orderkey)), count(DISTINCT orderkey) " +
+                "FROM tpch.tiny.orders GROUP BY orderpriority";
+        for (MaterializedRow row : runner.execute(query).getMaterializedRows()) {
+            long estimate = (long) row.getField(1);
+            long actual = (long) row.getField(2);
+            Assertions.assertTrue(Math.abs(estimate - actual) < actual * 0.05);
+        }
+    }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, cpc_count_distinct(cpc_sketch(x)) FROM (VALUES (1, CAST(NULL AS BIGINT)), (2, 1)) AS W(g, x) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(0L, result.get(0).getField(1));
+        Assertions.assertEquals(1L, result.get(1).getField(1));
+    }
+}
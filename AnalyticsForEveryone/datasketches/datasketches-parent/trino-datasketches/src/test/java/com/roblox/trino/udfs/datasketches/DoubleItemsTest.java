@@ -5,6 +5,7 @@ import com.roblox.trino.udfs.datasketches.stringitems.StringItemsSketchProxy;
 import io.trino.plugin.tpch.TpchPlugin;
 import io.trino.testing.MaterializedResult;
 import io.trino.testing.MaterializedRow;
+import io.trino.testing.QueryFailedException;
 import io.trino.testing.StandaloneQueryRunner;
 import org.apache.datasketches.common.ArrayOfDoublesSerDe;
 import org.apache.datasketches.frequencies.ItemsSketch;
@@ -248,4 +249,57 @@ public class DoubleItemsTest
 
         Assertions.assertEquals(5, value);
     }
+
+    @Test
+    public void testTopItems()
+    {
+        ItemsSketch<Double> sketch1 = sketchWithValues(new double[] {0.1, 0.2, 0.2, 0.2, 0.3, 0.4});
+        ItemsSketch<Double> sketch2 = sketchWithValues(new double[] {0.3, 0.4, 0.4, 0.5, 0.6, 0.6});
+        ItemsSketch<Double> sketch3 = sketchWithValues(new double[] {0.7, 0.8, 0.8, 0.8, 0.8, 0.8});
+
+        String valuesString = arrayToValuesString(new String[] {
+                sketchToValueString(sketch1),
+                sketchToValueString(sketch2),
+                sketchToValueString(sketch3)
+        });
+
+        String query = "SELECT double_items_sketch_top_items(sketch, false, 1), double_items_sketch_top_items(sketch, false, 10, 4) " +
+                "FROM (SELECT double_items_sketch(x) AS sketch FROM " + valuesString + " AS W(x))";
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+        List<MaterializedRow> expected = List.of(new MaterializedRow(List.of(0.8, 5L, 5L, 5L)));
+
+        Assertions.assertEquals(expected, result.get(0));
+        Assertions.assertEquals(expected, result.get(1));
+        Assertions.assertThrows(QueryFailedException.class, () -> runner.execute("SELECT double_items_sketch_top_items(double_items_sketch(x), false, -1) FROM " + valuesString + " AS W(x)"));
+    }
+
+    @Test
+    public void testTopItemsMatchesEstimates()
+    {
+        String query = "WITH data AS (SELECT double_items_sketch(CAST(custkey AS DOUBLE)) AS sketch FROM tpch.tiny.orders), " +
+                "top AS (SELECT sketch, double_items_sketch_top_items(sketch, true) AS items FROM data) " +
+                "SELECT cardinality(items) > 0, " +
+                "transform(items, r -> r.item) = double_items_sketch_frequent_items(sketch, true), " +
+                "reverse(array_sort(transform(items, r -> r.estimate))) = transform(items, r -> r.estimate), " +
+                "all_match(items, r -> r.estimate = double_items_sketch_estimate(sketch, r.item) " +
+                "AND r.lower_bound = double_items_sketch_estimate_lb(sketch, r.item) " +
+                "AND r.upper_bound = double_items_sketch_estimate_ub(sketch, r.item)) FROM top";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(true, true, true, true), result);
+    }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, double_items_sketch_estimate(double_items_sketch(x), 1.0) FROM (VALUES (1, CAST(NULL AS DOUBLE)), (2, 1.0)) AS W(g, x) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(0L, result.get(0).getField(1));
+        Assertions.assertEquals(1L, result.get(1).getField(1));
+    }
 }
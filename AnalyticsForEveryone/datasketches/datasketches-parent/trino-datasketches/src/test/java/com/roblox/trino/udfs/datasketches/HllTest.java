@@ -1,12 +1,19 @@
 package com.roblox.trino.udfs.datasketches;
 
 import com.roblox.trino.udfs.TrinoUdfsPlugin;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchHeader;
+import com.roblox.trino.udfs.datasketches.hll.HllSketchProxy;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 import io.trino.plugin.tpch.TpchPlugin;
 import io.trino.testing.MaterializedResult;
 import io.trino.testing.MaterializedRow;
 import io.trino.testing.QueryFailedException;
 import io.trino.testing.StandaloneQueryRunner;
 import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.TgtHllType;
+import org.apache.datasketches.hll.Union;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -16,6 +23,7 @@ import org.junit.jupiter.api.parallel.Execution;
 
 import java.util.List;
 
+import static io.trino.spi.type.BigintType.BIGINT;
 import static io.trino.testing.TestingSession.testSessionBuilder;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
@@ -124,6 +132,43 @@ public class HllTest
         Assertions.assertEquals(4, value);
     }
 
+    @Test
+    public void testEstimateAfterMergeMatchesSketch()
+    {
+        HllSketchProxy other = new HllSketchProxy();
+        for (long i = 0; i < 10_000; i++) {
+            other.put(i);
+        }
+        HllSketchProxy sketch = new HllSketchProxy();
+        sketch.put(-1L);
+        sketch.merge(other);
+        sketch.put(-2L);
+
+        HllSketch materialized = sketch.getSketch();
+        Assertions.assertEquals((long) materialized.getEstimate(), sketch.getEstimate());
+        Assertions.assertEquals((long) materialized.getUpperBound(2), sketch.getUpperBound(2));
+        Assertions.assertEquals((long) materialized.getLowerBound(2), sketch.getLowerBound(2));
+    }
+
+    @Test
+    public void testOnStringValuesMatchesDataSketches()
+    {
+        String[] values = new String[] {"apple", "banana", "", "\u65e5\u672c\u8a9e", "\u00e4\u00f6\u00fc", "apple"};
+        HllSketch expected = new HllSketch(HllSketch.DEFAULT_LG_K, TgtHllType.HLL_6);
+        StringBuilder valuesString = new StringBuilder("(VALUES ");
+        for (int i = 0; i < values.length; i++) {
+            expected.update(values[i]);
+            valuesString.append(i == 0 ? "" : ", ").append("('").append(values[i]).append("')");
+        }
+        valuesString.append(")");
+
+        MaterializedResult output = runner.execute("SELECT hll_sketch(x) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        byte[] value = (byte[]) result.get(0).getFields().get(0);
+
+        Assertions.assertArrayEquals(expected.toCompactByteArray(), value);
+    }
+
     @Test
     public void testOnSmallValuesWithLgK()
     {
@@ -192,6 +237,41 @@ public class HllTest
         Assertions.assertEquals(12, value);
     }
 
+    @Test
+    public void testUnionArray()
+    {
+        String query = "SELECT hll_count_distinct(hll_union(ARRAY[" +
+                sketchToValueString(sketchWithValues(new int[] {1, 2, 2, 3, 4, 5, 5})) + ", " +
+                sketchToValueString(sketchWithValues(new int[] {4, 4, 5, 6, 7, 8, 8}, 9)) + ", " +
+                "NULL, " +
+                sketchToValueString(sketchWithValues(new int[] {9, 10, 10, 10, 11, 12})) + "]))";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(12, value);
+    }
+
+    @Test
+    public void testUnionArrayMatchesAggregation()
+    {
+        String query = "SELECT hll_count_distinct(hll_union(array_agg(s))), hll_count_distinct(hll_sketch(s)) FROM (" +
+                "SELECT orderpriority, hll_sketch(custkey) AS s FROM tpch.tiny.orders GROUP BY orderpriority)";
+        MaterializedRow result = runner.execute(query).getMaterializedRows().get(0);
+
+        Assertions.assertEquals(result.getField(1), result.getField(0));
+    }
+
+    @Test
+    public void testUnionEmptyArray()
+    {
+        MaterializedResult output = runner.execute("SELECT hll_count_distinct(hll_union(CAST(ARRAY[] AS ARRAY(VARBINARY))))");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(0, value);
+    }
+
     @Test
     public void testOnSparkSketches()
     {
@@ -246,4 +326,46 @@ public class HllTest
 
         Assertions.assertEquals(3, value);
     }
+
+    @Test
+    public void testEstimateFromHeaderMatchesSketch()
+    {
+        for (TgtHllType type : TgtHllType.values()) {
+            for (int size : new int[] {0, 1, 10, 5000, 100000}) {
+                HllSketch sketch = new HllSketch(12, type);
+                for (int i = 0; i < size; i++) {
+                    sketch.update(i);
+                }
+                Union union = new Union(12);
+                union.update(sketch);
+                union.update(sketchWithValues(new int[] {-1, -2, -3}));
+                List<Slice> slices = List.of(
+                        Slices.wrappedBuffer(sketch.toCompactByteArray()),
+                        Slices.wrappedBuffer(sketch.toUpdatableByteArray()),
+                        Slices.wrappedBuffer(union.getResult(type).toCompactByteArray()));
+                for (Slice slice : slices) {
+                    HllSketch expected = HllSketch.heapify(slice.getBytes());
+                    Assertions.assertEquals((long) expected.getEstimate(), HllSketchEstimateFunctions.hllSketchEstimate(slice));
+                    for (int numStdDev = 1; numStdDev <= 3; numStdDev++) {
+                        Assertions.assertEquals((long) expected.getUpperBound(numStdDev), HllSketchEstimateFunctions.hllSketchUpperBound(slice, numStdDev));
+                        Assertions.assertEquals((long) expected.getLowerBound(numStdDev), HllSketchEstimateFunctions.hllSketchLowerBound(slice, numStdDev));
+                    }
+                }
+                // Only sketches in HLL mode which were not built by a union are read from the preamble
+                Assertions.assertEquals(size >= 5000, HllSketchHeader.isReadable(slices.get(0)));
+                Assertions.assertEquals(size >= 5000, HllSketchHeader.isReadable(slices.get(1)));
+            }
+        }
+    }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, hll_count_distinct(hll_sketch(x)) FROM (VALUES (1, CAST(NULL AS BIGINT)), (2, 1)) AS W(g, x) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(0L, result.get(0).getField(1));
+        Assertions.assertEquals(1L, result.get(1).getField(1));
+    }
 }
@@ -1,12 +1,15 @@
 package com.roblox.trino.udfs.datasketches;
 
 import com.roblox.trino.udfs.TrinoUdfsPlugin;
+import com.roblox.trino.udfs.datasketches.klldoubles.KllDoublesSketchProxy;
+import io.airlift.slice.Slices;
 import io.trino.plugin.tpch.TpchPlugin;
 import io.trino.testing.MaterializedResult;
 import io.trino.testing.MaterializedRow;
 import io.trino.testing.QueryFailedException;
 import io.trino.testing.StandaloneQueryRunner;
 import org.apache.datasketches.kll.KllDoublesSketch;
+import org.apache.datasketches.memory.Memory;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -17,6 +20,7 @@ import org.junit.jupiter.api.parallel.Execution;
 import java.util.ArrayList;
 import java.util.List;
 
+import static io.trino.spi.type.DoubleType.DOUBLE;
 import static io.trino.testing.TestingSession.testSessionBuilder;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
@@ -170,6 +174,42 @@ public class KllDoublesTest
         }
     }
 
+    @Test
+    public void testQuantileArrayMatchesScalar()
+    {
+        String query = "WITH data AS (SELECT kll_doubles_sketch(custkey) AS sketch, ARRAY[0.9, 0.1, 0.5, 0.5, 0.99, 0.0, 1.0, 0.25] AS q FROM tpch.sf1.orders GROUP BY 2) " +
+                "SELECT kll_doubles_estimate_quantile(sketch, q) = transform(q, x -> kll_doubles_estimate_quantile(sketch, x)), " +
+                "kll_doubles_estimate_quantile_lb(sketch, q) = transform(q, x -> kll_doubles_estimate_quantile_lb(sketch, x)), " +
+                "kll_doubles_estimate_quantile_ub(sketch, q) = transform(q, x -> kll_doubles_estimate_quantile_ub(sketch, x)) FROM data";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(true, true, true), result);
+    }
+
+    @Test
+    public void testScalarLookupsMatchSketch()
+    {
+        KllDoublesSketch expected = KllDoublesSketch.newHeapInstance();
+        for (int i = 0; i < 10_000; i++) {
+            expected.update((i * 7919) % 10_000 * 0.5);
+        }
+        KllDoublesSketchProxy actual = new KllDoublesSketchProxy(Slices.wrappedBuffer(expected.toByteArray()));
+
+        for (double rank : new double[] {0.0, 0.01, 0.25, 0.5, 0.75, 0.99, 1.0}) {
+            Assertions.assertEquals(expected.getQuantile(rank), actual.getEstimateQuantile(rank));
+            Assertions.assertEquals(expected.getQuantileUpperBound(rank), actual.getEstimateQuantileUpperBound(rank));
+            Assertions.assertEquals(expected.getQuantileLowerBound(rank), actual.getEstimateQuantileLowerBound(rank));
+        }
+        for (double value : new double[] {-1.0, 0.0, 1234.5, 2500.0, 4999.5, 6000.0}) {
+            double rank = expected.getRank(value);
+            Assertions.assertEquals(rank, actual.getEstimateRank(value));
+            Assertions.assertEquals(expected.getRankUpperBound(rank), actual.getEstimateRankUpperBound(value));
+            Assertions.assertEquals(expected.getRankLowerBound(rank), actual.getEstimateRankLowerBound(value));
+        }
+    }
+
     @Test
     public void testQuantileOnSketches()
     {
@@ -212,6 +252,24 @@ public class KllDoublesTest
         Assertions.assertEquals(5, value);
     }
 
+    @Test
+    public void testQuantileOnRepeatedSketch()
+    {
+        KllDoublesSketch sketch = sketchWithValues(new double[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+
+        String query = "SELECT q, kll_doubles_estimate_quantile(x, q) FROM " +
+                "(VALUES " + sketchToValueString(sketch) + ") AS W(x) " +
+                "CROSS JOIN UNNEST(ARRAY[0.1, 0.5, 0.9, 0.1, 0.5, 0.9]) AS Q(q) ORDER BY q";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        List<Double> expected = List.of(1.0, 1.0, 5.0, 5.0, 9.0, 9.0);
+
+        Assertions.assertEquals(expected.size(), result.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i), (double) result.get(i).getFields().get(1));
+        }
+    }
+
     @Test
     public void testRankOnSmallValues()
     {
@@ -293,6 +351,49 @@ public class KllDoublesTest
         }
     }
 
+    @Test
+    public void testRankArrayMatchesScalar()
+    {
+        String query = "WITH data AS (SELECT kll_doubles_sketch(custkey) AS sketch, ARRAY[100000, 1, 75000, 75000, 150000, 0, 20000] AS v FROM tpch.sf1.orders GROUP BY 2) " +
+                "SELECT kll_doubles_estimate_rank(sketch, v) = transform(v, x -> kll_doubles_estimate_rank(sketch, x)), " +
+                "kll_doubles_estimate_rank_lb(sketch, v) = transform(v, x -> kll_doubles_estimate_rank_lb(sketch, x)), " +
+                "kll_doubles_estimate_rank_ub(sketch, v) = transform(v, x -> kll_doubles_estimate_rank_ub(sketch, x)) FROM data";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(true, true, true), result);
+    }
+
+    @Test
+    public void testCdfOnSmallValues()
+    {
+        String valuesString = arrayToValuesString(new Integer[] {10, 5, 15, 10, 9});
+
+        MaterializedResult output = runner.execute("SELECT kll_doubles_cdf(kll_doubles_sketch(x), ARRAY[8, 10, 13]) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        ArrayList<Double> value = (ArrayList<Double>) result.get(0).getFields().get(0);
+        ArrayList<Double> expected = new ArrayList<>(List.of(0.2, 0.8, 0.8, 1.0));
+
+        Assertions.assertEquals(expected, value);
+    }
+
+    @Test
+    public void testPmfOnSmallValues()
+    {
+        String valuesString = arrayToValuesString(new Integer[] {10, 5, 15, 10, 9});
+
+        MaterializedResult output = runner.execute("SELECT kll_doubles_pmf(kll_doubles_sketch(x), ARRAY[8, 10, 13]) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        ArrayList<Double> value = (ArrayList<Double>) result.get(0).getFields().get(0);
+        ArrayList<Double> expected = new ArrayList<>(List.of(0.2, 0.6, 0.0, 0.2));
+
+        Assertions.assertEquals(expected.size(), value.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i), value.get(i), 1e-9);
+        }
+    }
+
     @Test
     public void testRankOnSketches()
     {
@@ -389,4 +490,19 @@ public class KllDoublesTest
 
         Assertions.assertEquals(2, value);
     }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, kll_doubles_sketch(x) FROM (VALUES (1, CAST(NULL AS DOUBLE)), (2, 1.0)) AS W(g, x) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        // The group without values gets an empty sketch, which has no quantiles to estimate
+        KllDoublesSketch empty = KllDoublesSketch.heapify(Memory.wrap((byte[]) result.get(0).getField(1)));
+        KllDoublesSketch single = KllDoublesSketch.heapify(Memory.wrap((byte[]) result.get(1).getField(1)));
+        Assertions.assertTrue(empty.isEmpty());
+        Assertions.assertEquals(1, single.getN());
+        Assertions.assertEquals(1.0, single.getMinItem());
+    }
 }
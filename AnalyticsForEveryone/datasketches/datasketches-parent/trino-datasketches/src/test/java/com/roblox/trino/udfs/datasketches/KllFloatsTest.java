@@ -6,6 +6,7 @@ import io.trino.testing.MaterializedResult;
 import io.trino.testing.MaterializedRow;
 import io.trino.testing.StandaloneQueryRunner;
 import org.apache.datasketches.kll.KllFloatsSketch;
+import org.apache.datasketches.memory.Memory;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -169,6 +170,20 @@ public class KllFloatsTest
         }
     }
 
+    @Test
+    public void testQuantileArrayMatchesScalar()
+    {
+        String query = "WITH data AS (SELECT kll_floats_sketch(custkey) AS sketch, ARRAY[0.9, 0.1, 0.5, 0.5, 0.99, 0.0, 1.0, 0.25] AS q FROM tpch.sf1.orders GROUP BY 2) " +
+                "SELECT kll_floats_estimate_quantile(sketch, q) = transform(q, x -> kll_floats_estimate_quantile(sketch, x)), " +
+                "kll_floats_estimate_quantile_lb(sketch, q) = transform(q, x -> kll_floats_estimate_quantile_lb(sketch, x)), " +
+                "kll_floats_estimate_quantile_ub(sketch, q) = transform(q, x -> kll_floats_estimate_quantile_ub(sketch, x)) FROM data";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(true, true, true), result);
+    }
+
     @Test
     public void testQuantileOnSketches()
     {
@@ -292,6 +307,49 @@ public class KllFloatsTest
         }
     }
 
+    @Test
+    public void testRankArrayMatchesScalar()
+    {
+        String query = "WITH data AS (SELECT kll_floats_sketch(custkey) AS sketch, ARRAY[100000, 1, 75000, 75000, 150000, 0, 20000] AS v FROM tpch.sf1.orders GROUP BY 2) " +
+                "SELECT kll_floats_estimate_rank(sketch, v) = transform(v, x -> kll_floats_estimate_rank(sketch, x)), " +
+                "kll_floats_estimate_rank_lb(sketch, v) = transform(v, x -> kll_floats_estimate_rank_lb(sketch, x)), " +
+                "kll_floats_estimate_rank_ub(sketch, v) = transform(v, x -> kll_floats_estimate_rank_ub(sketch, x)) FROM data";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(true, true, true), result);
+    }
+
+    @Test
+    public void testCdfOnSmallValues()
+    {
+        String valuesString = arrayToValuesString(new Integer[] {10, 5, 15, 10, 9});
+
+        MaterializedResult output = runner.execute("SELECT kll_floats_cdf(kll_floats_sketch(x), ARRAY[8, 10, 13]) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        ArrayList<Double> value = (ArrayList<Double>) result.get(0).getFields().get(0);
+        ArrayList<Double> expected = new ArrayList<>(List.of(0.2, 0.8, 0.8, 1.0));
+
+        Assertions.assertEquals(expected, value);
+    }
+
+    @Test
+    public void testPmfOnSmallValues()
+    {
+        String valuesString = arrayToValuesString(new Integer[] {10, 5, 15, 10, 9});
+
+        MaterializedResult output = runner.execute("SELECT kll_floats_pmf(kll_floats_sketch(x), ARRAY[8, 10, 13]) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        ArrayList<Double> value = (ArrayList<Double>) result.get(0).getFields().get(0);
+        ArrayList<Double> expected = new ArrayList<>(List.of(0.2, 0.6, 0.0, 0.2));
+
+        Assertions.assertEquals(expected.size(), value.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i), value.get(i), 1e-9);
+        }
+    }
+
     @Test
     public void testRankOnSketches()
     {
@@ -353,4 +411,19 @@ public class KllFloatsTest
 
         Assertions.assertEquals(2, value);
     }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, kll_floats_sketch(x) FROM (VALUES (1, CAST(NULL AS DOUBLE)), (2, 1.0)) AS W(g, x) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        // The group without values gets an empty sketch, which has no quantiles to estimate
+        KllFloatsSketch empty = KllFloatsSketch.heapify(Memory.wrap((byte[]) result.get(0).getField(1)));
+        KllFloatsSketch single = KllFloatsSketch.heapify(Memory.wrap((byte[]) result.get(1).getField(1)));
+        Assertions.assertTrue(empty.isEmpty());
+        Assertions.assertEquals(1, single.getN());
+        Assertions.assertEquals(1.0f, single.getMinItem());
+    }
 }
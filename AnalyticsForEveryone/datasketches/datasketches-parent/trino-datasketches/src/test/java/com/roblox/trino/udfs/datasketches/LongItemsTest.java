@@ -5,6 +5,7 @@ import com.roblox.trino.udfs.datasketches.stringitems.StringItemsSketchProxy;
 import io.trino.plugin.tpch.TpchPlugin;
 import io.trino.testing.MaterializedResult;
 import io.trino.testing.MaterializedRow;
+import io.trino.testing.QueryFailedException;
 import io.trino.testing.StandaloneQueryRunner;
 import org.apache.datasketches.frequencies.LongsSketch;
 import org.junit.jupiter.api.AfterAll;
@@ -235,4 +236,57 @@ public class LongItemsTest
 
         Assertions.assertEquals(5, value);
     }
+
+    @Test
+    public void testTopItems()
+    {
+        LongsSketch sketch1 = sketchWithValues(new long[] {1, 2, 2, 2, 3, 4});
+        LongsSketch sketch2 = sketchWithValues(new long[] {3, 4, 4, 5, 6, 6});
+        LongsSketch sketch3 = sketchWithValues(new long[] {7, 8, 8, 8, 8, 8});
+
+        String valuesString = arrayToValuesString(new String[] {
+                sketchToValueString(sketch1),
+                sketchToValueString(sketch2),
+                sketchToValueString(sketch3)
+        });
+
+        String query = "SELECT long_items_sketch_top_items(sketch, false, 1), long_items_sketch_top_items(sketch, false, 10, 4) " +
+                "FROM (SELECT long_items_sketch(x) AS sketch FROM " + valuesString + " AS W(x))";
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+        List<MaterializedRow> expected = List.of(new MaterializedRow(List.of(8L, 5L, 5L, 5L)));
+
+        Assertions.assertEquals(expected, result.get(0));
+        Assertions.assertEquals(expected, result.get(1));
+        Assertions.assertThrows(QueryFailedException.class, () -> runner.execute("SELECT long_items_sketch_top_items(long_items_sketch(x), false, -1) FROM " + valuesString + " AS W(x)"));
+    }
+
+    @Test
+    public void testTopItemsMatchesEstimates()
+    {
+        String query = "WITH data AS (SELECT long_items_sketch(custkey) AS sketch FROM tpch.tiny.orders), " +
+                "top AS (SELECT sketch, long_items_sketch_top_items(sketch, true) AS items FROM data) " +
+                "SELECT cardinality(items) > 0, " +
+                "transform(items, r -> r.item) = long_items_sketch_frequent_items(sketch, true), " +
+                "reverse(array_sort(transform(items, r -> r.estimate))) = transform(items, r -> r.estimate), " +
+                "all_match(items, r -> r.estimate = long_items_sketch_estimate(sketch, r.item) " +
+                "AND r.lower_bound = long_items_sketch_estimate_lb(sketch, r.item) " +
+                "AND r.upper_bound = long_items_sketch_estimate_ub(sketch, r.item)) FROM top";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(true, true, true, true), result);
+    }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, long_items_sketch_estimate(long_items_sketch(x), 1) FROM (VALUES (1, CAST(NULL AS BIGINT)), (2, 1)) AS W(g, x) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(0L, result.get(0).getField(1));
+        Assertions.assertEquals(1L, result.get(1).getField(1));
+    }
 }
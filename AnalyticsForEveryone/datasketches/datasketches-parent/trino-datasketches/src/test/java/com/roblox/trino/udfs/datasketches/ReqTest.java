@@ -0,0 +1,248 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.roblox.trino.udfs.TrinoUdfsPlugin;
+import io.trino.plugin.tpch.TpchPlugin;
+import io.trino.testing.MaterializedResult;
+import io.trino.testing.MaterializedRow;
+import io.trino.testing.QueryFailedException;
+import io.trino.testing.StandaloneQueryRunner;
+import org.apache.datasketches.req.ReqSketch;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.parallel.Execution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.trino.testing.TestingSession.testSessionBuilder;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
+
+@TestInstance(PER_CLASS)
+@Execution(CONCURRENT)
+public class ReqTest
+{
+    private StandaloneQueryRunner runner;
+
+    @BeforeAll
+    public void init()
+    {
+        runner = new StandaloneQueryRunner(testSessionBuilder().build());
+        runner.installPlugin(new TrinoUdfsPlugin());
+        runner.installPlugin(new TpchPlugin());
+        runner.createCatalog("tpch", "tpch");
+    }
+
+    @AfterAll
+    public void teardown()
+    {
+        runner.close();
+        runner = null;
+    }
+
+    private String arrayToValuesString(Object[] values)
+    {
+        StringBuilder out = new StringBuilder();
+        out.append("(VALUES ");
+        for (int i = 0; i < values.length; i++) {
+            out.append("(").append(values[i]).append(")");
+            if (i < values.length - 1) {
+                out.append(", ");
+            }
+        }
+        out.append(")");
+        return out.toString();
+    }
+
+    private ReqSketch sketchWithValues(double[] values, boolean highRankAccuracy)
+    {
+        ReqSketch sketch = ReqSketch.builder().setHighRankAccuracy(highRankAccuracy).build();
+        for (double value : values) {
+            sketch.update((float) value);
+        }
+        return sketch;
+    }
+
+    private String sketchToValueString(ReqSketch sketch)
+    {
+        byte[] serialized = sketch.toByteArray();
+        StringBuilder out = new StringBuilder();
+
+        for (byte b : serialized) {
+            out.append(String.format("%02X", b));
+        }
+
+        return "(CAST(X'" + out + "' AS VARBINARY))";
+    }
+
+    @Test
+    public void testQuantileOnSmallValues()
+    {
+        String valuesString = arrayToValuesString(new Integer[] {10, 5, 15, 10, 9});
+
+        MaterializedResult output = runner.execute("SELECT req_estimate_quantile(req_sketch(x), 0.5) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        double value = (double) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(10, value);
+    }
+
+    @Test
+    public void testQuantileOnSmallValuesArray()
+    {
+        String valuesString = arrayToValuesString(new Integer[] {10, 5, 15, 10, 9});
+
+        MaterializedResult output = runner.execute("SELECT req_estimate_quantile(req_sketch(x), ARRAY[0.1, 0.25, 0.5, 0.75, 0.9]) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        ArrayList<Double> value = (ArrayList<Double>) result.get(0).getFields().get(0);
+        ArrayList<Double> expected = new ArrayList<>(List.of(5.0, 9.0, 10.0, 10.0, 15.0));
+
+        Assertions.assertEquals(expected, value);
+    }
+
+    @Test
+    public void testQuantileOnSmallValuesWithKAndMode()
+    {
+        String valuesString = arrayToValuesString(new Integer[] {10, 5, 15, 10, 9});
+
+        MaterializedResult output = runner.execute("SELECT req_estimate_quantile(req_sketch(x, 20), 0.5), req_estimate_quantile(req_sketch(x, 20, false), 0.5) " +
+                "FROM " + valuesString + " AS W(x)");
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(10.0, 10.0), result);
+    }
+
+    @Test
+    public void testTailQuantileOnLargeValues()
+    {
+        // The 14985th smallest of the 15000 values is the p99.9
+        String query = "WITH data AS (SELECT req_sketch(totalprice) AS sketch FROM tpch.tiny.orders), " +
+                "exact AS (SELECT CAST(CAST(totalprice AS REAL) AS DOUBLE) AS p999 FROM tpch.tiny.orders ORDER BY totalprice OFFSET 14984 ROWS LIMIT 1) " +
+                "SELECT req_estimate_quantile_lb(sketch, 0.999), req_estimate_quantile_ub(sketch, 0.999), p999 FROM data, exact";
+
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        double lower = (double) result.get(0).getFields().get(0);
+        double upper = (double) result.get(0).getFields().get(1);
+        double expected = (double) result.get(0).getFields().get(2);
+
+        Assertions.assertTrue(expected >= lower && expected <= upper);
+    }
+
+    @Test
+    public void testTailRankBoundsTighterThanKll()
+    {
+        String query = "WITH data AS (SELECT req_sketch(orderkey) AS req, kll_floats_sketch(orderkey) AS kll, approx_percentile(orderkey, 0.9999) AS p9999 FROM tpch.sf1.orders) " +
+                "SELECT req_estimate_rank_ub(req, p9999) - req_estimate_rank_lb(req, p9999), kll_floats_estimate_rank_ub(kll, p9999) - kll_floats_estimate_rank_lb(kll, p9999) FROM data";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertTrue((double) result.get(0) < (double) result.get(1) / 100);
+    }
+
+    @Test
+    public void testQuantileArrayMatchesScalar()
+    {
+        String query = "WITH data AS (SELECT req_sketch(custkey) AS sketch, ARRAY[0.9, 0.1, 0.5, 0.5, 0.999, 0.0, 1.0, 0.25] AS q FROM tpch.tiny.orders GROUP BY 2) " +
+                "SELECT req_estimate_quantile(sketch, q) = transform(q, x -> req_estimate_quantile(sketch, x)), " +
+                "req_estimate_quantile_lb(sketch, q) = transform(q, x -> req_estimate_quantile_lb(sketch, x)), " +
+                "req_estimate_quantile_ub(sketch, q) = transform(q, x -> req_estimate_quantile_ub(sketch, x)) FROM data";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(true, true, true), result);
+    }
+
+    @Test
+    public void testRankOnSmallValues()
+    {
+        String valuesString = arrayToValuesString(new Integer[] {10, 5, 15, 10, 9});
+
+        MaterializedResult output = runner.execute("SELECT req_estimate_rank(req_sketch(x), 7), req_estimate_rank(req_sketch(x), ARRAY[3, 8, 13]) FROM " + valuesString + " AS W(x)");
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(0.2, result.get(0));
+        Assertions.assertEquals(List.of(0.0, 0.2, 0.8), result.get(1));
+    }
+
+    @Test
+    public void testRankOnSmallRealValues()
+    {
+        String valuesString = "(VALUES (REAL '10.0'), (REAL '5.0'), (REAL '15.0'), (REAL '10.0'), (REAL '9.0'))";
+
+        MaterializedResult output = runner.execute("SELECT req_estimate_rank(req_sketch(x), (REAL '7.0')) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        double value = (double) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(0.2, value);
+    }
+
+    @Test
+    public void testRankArrayMatchesScalar()
+    {
+        String query = "WITH data AS (SELECT req_sketch(custkey) AS sketch, ARRAY[1000, 1, 750, 750, 1500, 0, 200] AS v FROM tpch.tiny.orders GROUP BY 2) " +
+                "SELECT req_estimate_rank(sketch, v) = transform(v, x -> req_estimate_rank(sketch, x)), " +
+                "req_estimate_rank_lb(sketch, v) = transform(v, x -> req_estimate_rank_lb(sketch, x)), " +
+                "req_estimate_rank_ub(sketch, v) = transform(v, x -> req_estimate_rank_ub(sketch, x)) FROM data";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(true, true, true), result);
+    }
+
+    @Test
+    public void testQuantileOnSketches()
+    {
+        ReqSketch sketch1 = sketchWithValues(new double[] {1, 2, 2, 3, 4, 5, 5}, true);
+        ReqSketch sketch2 = sketchWithValues(new double[] {4, 4, 5, 6, 7, 8, 8}, true);
+        ReqSketch sketch3 = sketchWithValues(new double[] {9, 10, 10, 10, 11, 12}, true);
+
+        String valuesString = arrayToValuesString(new String[] {
+                sketchToValueString(sketch1),
+                sketchToValueString(sketch2),
+                sketchToValueString(sketch3)
+        });
+
+        String query = "SELECT req_estimate_quantile(req_sketch(x), 0.5), req_estimate_rank(req_sketch(x), 9) FROM " + valuesString + " AS W(x)";
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(5.0, 0.75), result);
+    }
+
+    @Test
+    public void testOnSketchesWithDifferentModes()
+    {
+        String valuesString = arrayToValuesString(new String[] {
+                sketchToValueString(sketchWithValues(new double[] {1, 2, 3}, true)),
+                sketchToValueString(sketchWithValues(new double[] {4, 5, 6}, false))
+        });
+
+        Assertions.assertThrows(QueryFailedException.class, () -> runner.execute("SELECT req_sketch(x) FROM " + valuesString + " AS W(x)"));
+    }
+
+    @Test
+    public void testGroupBy()
+    {
+        String query = "SELECT orderpriority, req_estimate_quantile(req_sketch(custkey), 1.0), max(custkey) FROM tpch.tiny.orders GROUP BY orderpriority";
+        for (MaterializedRow row : runner.execute(query).getMaterializedRows()) {
+            Assertions.assertEquals((double) (long) row.getField(2), row.getField(1));
+        }
+    }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, length(req_sketch(x)) FROM (VALUES (1, CAST(NULL AS DOUBLE)), (2, 1.0)) AS W(g, x) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(2, result.size());
+    }
+}
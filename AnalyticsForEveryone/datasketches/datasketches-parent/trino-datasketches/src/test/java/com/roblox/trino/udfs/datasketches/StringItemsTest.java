@@ -1,10 +1,14 @@
 package com.roblox.trino.udfs.datasketches;
 
 import com.roblox.trino.udfs.TrinoUdfsPlugin;
+import com.roblox.trino.udfs.datasketches.stringitems.StringItem;
 import com.roblox.trino.udfs.datasketches.stringitems.StringItemsSketchProxy;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 import io.trino.plugin.tpch.TpchPlugin;
 import io.trino.testing.MaterializedResult;
 import io.trino.testing.MaterializedRow;
+import io.trino.testing.QueryFailedException;
 import io.trino.testing.StandaloneQueryRunner;
 import org.apache.datasketches.common.ArrayOfStringsSerDe;
 import org.apache.datasketches.frequencies.ItemsSketch;
@@ -18,6 +22,8 @@ import org.junit.jupiter.api.parallel.Execution;
 import java.util.ArrayList;
 import java.util.List;
 
+import static io.trino.spi.type.VarcharType.VARCHAR;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static io.trino.testing.TestingSession.testSessionBuilder;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
@@ -159,6 +165,74 @@ public class StringItemsTest
         Assertions.assertEquals(5, value);
     }
 
+    @Test
+    public void testSerializedFormMatchesStringSketch()
+    {
+        ItemsSketch<String> stringSketch = new ItemsSketch<>(StringItemsSketchProxy.DEFAULT_MAP_SIZE);
+        StringItemsSketchProxy proxy = new StringItemsSketchProxy();
+        String[] items = new String[200];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = (i % 3 == 0 ? "\u00e9l\u00e8ve-" : i % 3 == 1 ? "\u30b2\u30fc\u30e0\ud83c\udfae-" : "") + (i % 10 == 0 ? "" : i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            String item = items[(i * i) % items.length];
+            stringSketch.update(item);
+            proxy.put(Slices.utf8Slice(item));
+        }
+        byte[] expected = stringSketch.toByteArray(new ArrayOfStringsSerDe());
+
+        Assertions.assertArrayEquals(expected, proxy.serialize().getBytes());
+        Assertions.assertArrayEquals(expected, new StringItemsSketchProxy(Slices.wrappedBuffer(expected)).serialize().getBytes());
+    }
+
+    @Test
+    public void testMalformedItemsMatchStringSketch()
+    {
+        byte[][] values = new byte[][] {
+                new byte[] {'a', (byte) 0xFE},
+                new byte[] {'a', (byte) 0xFF},
+                new byte[] {(byte) 0xC0, (byte) 0xAF},
+                "b".getBytes(UTF_8)
+        };
+        ItemsSketch<String> stringSketch = new ItemsSketch<>(StringItemsSketchProxy.DEFAULT_MAP_SIZE);
+        StringItemsSketchProxy proxy = new StringItemsSketchProxy();
+        for (byte[] value : values) {
+            stringSketch.update(new String(value, UTF_8));
+            proxy.put(Slices.wrappedBuffer(value));
+        }
+        byte[] expected = stringSketch.toByteArray(new ArrayOfStringsSerDe());
+
+        // Both invalid bytes decode to U+FFFD, so the first two values are counted as the same item
+        Assertions.assertEquals(2, proxy.getEstimate(Slices.wrappedBuffer(values[1])));
+        Assertions.assertArrayEquals(expected, proxy.serialize().getBytes());
+
+        StringItemsSketchProxy merged = new StringItemsSketchProxy();
+        merged.merge(new StringItemsSketchProxy(Slices.wrappedBuffer(expected)));
+        merged.merge(new StringItemsSketchProxy(Slices.wrappedBuffer(expected)));
+        Assertions.assertEquals(4, merged.getEstimate(Slices.wrappedBuffer(values[0])));
+        Assertions.assertEquals(2, merged.getEstimate(Slices.utf8Slice("b")));
+    }
+
+    @Test
+    public void testItemHashCodeMatchesString()
+    {
+        byte[][] values = new byte[][] {
+                "".getBytes(UTF_8),
+                "rbxassetid://1818".getBytes(UTF_8),
+                "\u00e9l\u00e8ve \u30b2\u30fc\u30e0 \ud83c\udfae".getBytes(UTF_8),
+                // Truncated, overlong, surrogate and out of range sequences
+                new byte[] {'a', (byte) 0xE3, (byte) 0x82},
+                new byte[] {(byte) 0xC0, (byte) 0xAF},
+                new byte[] {(byte) 0xED, (byte) 0xA0, (byte) 0x80, 'b'},
+                new byte[] {(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80},
+                new byte[] {(byte) 0xFF, 'c'}
+        };
+        for (byte[] value : values) {
+            Slice slice = Slices.wrappedBuffer(value);
+            Assertions.assertEquals(slice.toStringUtf8().hashCode(), new StringItem(slice).hashCode());
+        }
+    }
+
     @Test
     public void testFrequentItems()
     {
@@ -222,4 +296,57 @@ public class StringItemsTest
 
         Assertions.assertEquals(5, value);
     }
+
+    @Test
+    public void testTopItems()
+    {
+        ItemsSketch<String> sketch1 = sketchWithValues(new String[] {"a", "b", "b", "c", "c"});
+        ItemsSketch<String> sketch2 = sketchWithValues(new String[] {"c", "d", "d", "e"});
+        ItemsSketch<String> sketch3 = sketchWithValues(new String[] {"f", "g", "g", "g", "g", "g"});
+
+        String valuesString = arrayToValuesString(new String[] {
+                sketchToValueString(sketch1),
+                sketchToValueString(sketch2),
+                sketchToValueString(sketch3)
+        });
+
+        String query = "SELECT string_items_sketch_top_items(sketch, false, 2), string_items_sketch_top_items(sketch, false, 10, 3) " +
+                "FROM (SELECT string_items_sketch(x) AS sketch FROM " + valuesString + " AS W(x))";
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+        List<MaterializedRow> expected = List.of(new MaterializedRow(List.of("g", 5L, 5L, 5L)), new MaterializedRow(List.of("c", 3L, 3L, 3L)));
+
+        Assertions.assertEquals(expected, result.get(0));
+        Assertions.assertEquals(expected, result.get(1));
+        Assertions.assertThrows(QueryFailedException.class, () -> runner.execute("SELECT string_items_sketch_top_items(string_items_sketch(x), false, -1) FROM " + valuesString + " AS W(x)"));
+    }
+
+    @Test
+    public void testTopItemsMatchesEstimates()
+    {
+        String query = "WITH data AS (SELECT string_items_sketch(clerk) AS sketch FROM tpch.tiny.orders), " +
+                "top AS (SELECT sketch, string_items_sketch_top_items(sketch, true) AS items FROM data) " +
+                "SELECT cardinality(items) > 0, " +
+                "transform(items, r -> r.item) = string_items_sketch_frequent_items(sketch, true), " +
+                "reverse(array_sort(transform(items, r -> r.estimate))) = transform(items, r -> r.estimate), " +
+                "all_match(items, r -> r.estimate = string_items_sketch_estimate(sketch, r.item) " +
+                "AND r.lower_bound = string_items_sketch_estimate_lb(sketch, r.item) " +
+                "AND r.upper_bound = string_items_sketch_estimate_ub(sketch, r.item)) FROM top";
+
+        MaterializedResult output = runner.execute(query);
+        List<Object> result = output.getMaterializedRows().get(0).getFields();
+
+        Assertions.assertEquals(List.of(true, true, true, true), result);
+    }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, string_items_sketch_estimate(string_items_sketch(x), 'a') FROM (VALUES (1, CAST(NULL AS VARCHAR)), (2, 'a')) AS W(g, x) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(0L, result.get(0).getField(1));
+        Assertions.assertEquals(1L, result.get(1).getField(1));
+    }
 }
@@ -1,11 +1,25 @@
 package com.roblox.trino.udfs.datasketches;
 
 import com.roblox.trino.udfs.TrinoUdfsPlugin;
+import com.roblox.trino.udfs.datasketches.theta.ThetaAnotBProxy;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchEstimateFunctions;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchHeader;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchProxy;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchState;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchStateFactory;
+import com.roblox.trino.udfs.datasketches.theta.ThetaSketchStateSerializer;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 import io.trino.plugin.tpch.TpchPlugin;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
 import io.trino.testing.MaterializedResult;
 import io.trino.testing.MaterializedRow;
 import io.trino.testing.QueryFailedException;
 import io.trino.testing.StandaloneQueryRunner;
+import org.apache.datasketches.theta.SetOperation;
+import org.apache.datasketches.theta.Sketch;
+import org.apache.datasketches.theta.Union;
 import org.apache.datasketches.theta.UpdateSketch;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
@@ -14,8 +28,22 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.parallel.Execution;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
 import static io.trino.testing.TestingSession.testSessionBuilder;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
@@ -124,6 +152,25 @@ public class ThetaTest
         Assertions.assertEquals(4, value);
     }
 
+    @Test
+    public void testOnStringValuesMatchesDataSketches()
+    {
+        String[] values = new String[] {"apple", "banana", "", "\u65e5\u672c\u8a9e", "\u00e4\u00f6\u00fc", "apple"};
+        UpdateSketch expected = UpdateSketch.builder().build();
+        StringBuilder valuesString = new StringBuilder("(VALUES ");
+        for (int i = 0; i < values.length; i++) {
+            expected.update(values[i]);
+            valuesString.append(i == 0 ? "" : ", ").append("('").append(values[i]).append("')");
+        }
+        valuesString.append(")");
+
+        MaterializedResult output = runner.execute("SELECT theta_sketch(x) FROM " + valuesString + " AS W(x)");
+        List<MaterializedRow> result = output.getMaterializedRows();
+        byte[] value = (byte[]) result.get(0).getFields().get(0);
+
+        Assertions.assertArrayEquals(expected.compact().toByteArray(), value);
+    }
+
     @Test
     public void testOnSmallValuesWithK()
     {
@@ -243,6 +290,174 @@ public class ThetaTest
         Assertions.assertEquals(3, value);
     }
 
+    @Test
+    public void testUnionArray()
+    {
+        String query = "SELECT theta_count_distinct(theta_union(ARRAY[" +
+                sketchToValueString(sketchWithValues(new int[] {1, 2, 3, 4, 5})) + ", " +
+                sketchToValueString(sketchWithValues(new int[] {3, 4, 5, 6, 7, 8})) + ", " +
+                "NULL, " +
+                sketchToValueString(sketchWithValues(new int[] {4, 5, 9})) + "]))";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(9, value);
+    }
+
+    @Test
+    public void testUnionArrayWithK()
+    {
+        String query = "SELECT theta_count_distinct(theta_union(ARRAY[" +
+                sketchToValueString(sketchWithValues(new int[] {1, 2, 3, 4, 5}, 1024)) + ", " +
+                sketchToValueString(sketchWithValues(new int[] {3, 4, 5, 6, 7, 8}, 1024)) + "], 1024), 1024)";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(8, value);
+    }
+
+    @Test
+    public void testUnionArrayMatchesAggregation()
+    {
+        String query = "SELECT theta_union(array_agg(s)), theta_sketch(s) FROM (" +
+                "SELECT orderpriority, theta_sketch(custkey) AS s FROM tpch.tiny.orders GROUP BY orderpriority)";
+        MaterializedRow result = runner.execute(query).getMaterializedRows().get(0);
+
+        Assertions.assertArrayEquals((byte[]) result.getField(1), (byte[]) result.getField(0));
+    }
+
+    @Test
+    public void testIntersectionArray()
+    {
+        String query = "SELECT theta_count_distinct(theta_intersection(ARRAY[" +
+                sketchToValueString(sketchWithValues(new int[] {1, 2, 3, 4, 5})) + ", " +
+                sketchToValueString(sketchWithValues(new int[] {3, 4, 5, 6, 7, 8})) + ", " +
+                sketchToValueString(sketchWithValues(new int[] {4, 5, 9})) + "]))";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(2, value);
+    }
+
+    @Test
+    public void testIntersectionEmptyArray()
+    {
+        MaterializedResult output = runner.execute("SELECT theta_intersection(CAST(ARRAY[] AS ARRAY(VARBINARY)))");
+        List<MaterializedRow> result = output.getMaterializedRows();
+
+        Assertions.assertNull(result.get(0).getField(0));
+    }
+
+    @Test
+    public void testIntersectionAgg()
+    {
+        String valuesString = arrayToValuesString(new String[] {
+                sketchToValueString(sketchWithValues(new int[] {1, 2, 3, 4, 5})),
+                sketchToValueString(sketchWithValues(new int[] {3, 4, 5, 6, 7, 8})),
+                sketchToValueString(sketchWithValues(new int[] {4, 5, 9}))
+        });
+
+        String query = "SELECT theta_count_distinct(theta_intersection_agg(x)) FROM " + valuesString + " AS W(x)";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(2, value);
+    }
+
+    @Test
+    public void testIntersectionAggMatchesNestedIntersection()
+    {
+        String query = "SELECT theta_count_distinct(theta_intersection_agg(s)) FROM (" +
+                "SELECT orderpriority, theta_sketch(custkey) AS s FROM tpch.tiny.orders GROUP BY orderpriority)";
+        long value = (long) runner.execute(query).getMaterializedRows().get(0).getFields().get(0);
+
+        String exactQuery = "SELECT count(*) FROM (" +
+                "SELECT custkey FROM tpch.tiny.orders GROUP BY custkey HAVING count(DISTINCT orderpriority) = 5)";
+        long expected = (long) runner.execute(exactQuery).getMaterializedRows().get(0).getFields().get(0);
+
+        Assertions.assertEquals(expected, value);
+    }
+
+    @Test
+    public void testAnotB()
+    {
+        String a = sketchToValueString(sketchWithValues(new int[] {1, 2, 3, 4, 5, 6, 7, 8}));
+        String valuesString = "(VALUES " +
+                "(" + a + ", " + sketchToValueString(sketchWithValues(new int[] {1, 2})) + "), " +
+                "(" + a + ", " + sketchToValueString(sketchWithValues(new int[] {3, 9})) + "), " +
+                "(" + a + ", " + sketchToValueString(sketchWithValues(new int[] {8})) + "))";
+
+        String query = "SELECT theta_count_distinct(theta_anotb(x, y)) FROM " + valuesString + " AS W(x, y)";
+        MaterializedResult output = runner.execute(query);
+        List<MaterializedRow> result = output.getMaterializedRows();
+        long value = (long) result.get(0).getFields().get(0);
+
+        Assertions.assertEquals(4, value);
+    }
+
+    @Test
+    public void testAnotBMatchesExactDifference()
+    {
+        String query = "SELECT theta_count_distinct(theta_anotb(a.s, b.s)) FROM " +
+                "(SELECT theta_sketch(custkey) AS s FROM tpch.tiny.orders) a CROSS JOIN " +
+                "(SELECT orderpriority, theta_sketch(custkey) AS s FROM tpch.tiny.orders WHERE orderpriority IN ('1-URGENT', '2-HIGH') GROUP BY orderpriority) b";
+        long value = (long) runner.execute(query).getMaterializedRows().get(0).getFields().get(0);
+
+        String exactQuery = "SELECT count(DISTINCT custkey) FROM tpch.tiny.orders WHERE custkey NOT IN (" +
+                "SELECT custkey FROM tpch.tiny.orders WHERE orderpriority IN ('1-URGENT', '2-HIGH'))";
+        long expected = (long) runner.execute(exactQuery).getMaterializedRows().get(0).getFields().get(0);
+
+        Assertions.assertEquals(expected, value);
+    }
+
+    @Test
+    public void testAnotBWithDifferentA()
+    {
+        String valuesString = "(VALUES " +
+                "(" + sketchToValueString(sketchWithValues(new int[] {1, 2, 3})) + ", " + sketchToValueString(sketchWithValues(new int[] {1})) + "), " +
+                "(" + sketchToValueString(sketchWithValues(new int[] {4, 5, 6})) + ", " + sketchToValueString(sketchWithValues(new int[] {4})) + "))";
+
+        String query = "SELECT theta_anotb(x, y) FROM " + valuesString + " AS W(x, y)";
+        Assertions.assertThrows(QueryFailedException.class, () -> runner.execute(query));
+    }
+
+    @Test
+    public void testAnotBWithAOfSameSizeAndEnds()
+    {
+        // Both A sketches are exact with the same number of entries, and only differ by one member
+        int[] values = new int[4000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        int[] swapped = values.clone();
+        swapped[2000] = 10_000;
+        String b = sketchToValueString(sketchWithValues(new int[] {1}));
+        String valuesString = "(VALUES (" + sketchToValueString(sketchWithValues(values)) + ", " + b + "), " +
+                "(" + sketchToValueString(sketchWithValues(swapped)) + ", " + b + "))";
+
+        String query = "SELECT theta_anotb(x, y) FROM " + valuesString + " AS W(x, y)";
+        Assertions.assertThrows(QueryFailedException.class, () -> runner.execute(query));
+    }
+
+    @Test
+    public void testAnotBSizeFollowsTheDifference()
+    {
+        int[] values = new int[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        ThetaAnotBProxy difference = new ThetaAnotBProxy(Slices.wrappedBuffer(sketchWithValues(values).compact().toByteArray()));
+        long size = difference.getEstimatedSize();
+
+        difference.notB(Slices.wrappedBuffer(sketchWithValues(Arrays.copyOf(values, 900)).compact().toByteArray()));
+        Assertions.assertEquals(100, difference.getSketch().getRetainedEntries(true));
+        Assertions.assertEquals(size - 900L * Long.BYTES, difference.getEstimatedSize());
+    }
+
     @Test
     public void testOnSparkSketches()
     {
@@ -297,4 +512,170 @@ public class ThetaTest
 
         Assertions.assertEquals(3, value);
     }
+
+    @Test
+    public void testEstimateFromHeaderMatchesSketch()
+    {
+        for (int size : new int[] {0, 1, 10, 5000, 100000}) {
+            UpdateSketch sketch = UpdateSketch.builder().setNominalEntries(4096).build();
+            for (int i = 0; i < size; i++) {
+                sketch.update(i);
+            }
+            Union union = SetOperation.builder().setNominalEntries(4096).buildUnion();
+            union.union(sketch);
+            List<Slice> slices = List.of(
+                    Slices.wrappedBuffer(sketch.compact(true, null).toByteArray()),
+                    Slices.wrappedBuffer(sketch.compact(false, null).toByteArray()),
+                    Slices.wrappedBuffer(sketch.toByteArray()),
+                    Slices.wrappedBuffer(union.getResult().toByteArray()));
+            for (Slice slice : slices) {
+                // Smaller k than the sketch holds are estimated through a union, larger ones from the preamble
+                for (int k : new int[] {1024, 4096, 16384}) {
+                    Sketch expected = new ThetaSketchProxy(slice, k).getSketch();
+                    Assertions.assertEquals((long) expected.getEstimate(), ThetaSketchEstimateFunctions.thetaSketchEstimateWithK(slice, k));
+                    for (int numStdDev = 1; numStdDev <= 3; numStdDev++) {
+                        Assertions.assertEquals((long) expected.getUpperBound(numStdDev), ThetaSketchEstimateFunctions.thetaSketchUpperBoundWithK(slice, numStdDev, k));
+                        Assertions.assertEquals((long) expected.getLowerBound(numStdDev), ThetaSketchEstimateFunctions.thetaSketchLowerBoundWithK(slice, numStdDev, k));
+                    }
+                }
+            }
+            // An update sketch can hold more than k entries until it is rebuilt, those go through a union
+            boolean withinK = sketch.getRetainedEntries(true) <= 4096;
+            Assertions.assertEquals(withinK, ThetaSketchHeader.isReadable(slices.get(0), 4096));
+            Assertions.assertEquals(withinK, ThetaSketchHeader.isReadable(slices.get(1), 4096));
+            Assertions.assertTrue(ThetaSketchHeader.isReadable(slices.get(3), 4096));
+            Assertions.assertFalse(ThetaSketchHeader.isReadable(slices.get(2), 4096));
+        }
+    }
+
+    @Test
+    public void testUnionResultKeptUntilNextUpdate()
+    {
+        ThetaSketchProxy proxy = new ThetaSketchProxy();
+        for (int i = 0; i < 2; i++) {
+            Slice slice = Slices.wrappedBuffer(sketchWithValues(new int[] {i, i + 1}).compact().toByteArray());
+            proxy.union(new ThetaSketchProxy(slice, ThetaSketchProxy.DEFAULT_K));
+        }
+        Sketch result = proxy.getSketch();
+        Assertions.assertSame(result, proxy.getSketch());
+        Assertions.assertEquals(3, proxy.getEstimate());
+
+        proxy.put(10L);
+        Assertions.assertNotSame(result, proxy.getSketch());
+        Assertions.assertEquals(4, proxy.getEstimate());
+
+        result = proxy.getSketch();
+        proxy.union(new ThetaSketchProxy(Slices.wrappedBuffer(sketchWithValues(new int[] {20}).compact().toByteArray()), ThetaSketchProxy.DEFAULT_K));
+        Assertions.assertNotSame(result, proxy.getSketch());
+        Assertions.assertEquals(5, proxy.getEstimate());
+    }
+
+    @Test
+    public void testSketchStatsExportedToJmx()
+            throws Exception
+    {
+        SketchStats stats = SketchStats.THETA;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.roblox.trino.udfs.datasketches:type=SketchStats,name=theta");
+        // Other tests run concurrently, so the counters are only known to have grown by at least this test's operations
+        long merges = (long) server.getAttribute(name, "Merges");
+        long unionMaterializations = (long) server.getAttribute(name, "UnionMaterializations");
+        long sketchesSerialized = (long) server.getAttribute(name, "SketchesSerialized");
+        long sketchesDeserialized = (long) server.getAttribute(name, "SketchesDeserialized");
+        long deserializeFailures = (long) server.getAttribute(name, "DeserializeFailures");
+
+        ThetaSketchProxy proxy = new ThetaSketchProxy();
+        for (int i = 0; i < 3; i++) {
+            Slice slice = Slices.wrappedBuffer(sketchWithValues(new int[] {i, i + 1}).compact().toByteArray());
+            proxy.union(new ThetaSketchProxy(slice, ThetaSketchProxy.DEFAULT_K));
+        }
+        Assertions.assertEquals(4, proxy.getEstimate());
+
+        ThetaSketchStateSerializer serializer = new ThetaSketchStateSerializer();
+        ThetaSketchStateFactory factory = new ThetaSketchStateFactory();
+        ThetaSketchState state = factory.createSingleState();
+        state.setThetaSketchProxy(proxy);
+        BlockBuilder builder = VARBINARY.createBlockBuilder(null, 2);
+        serializer.serialize(state, builder);
+        VARBINARY.writeSlice(builder, Slices.wrappedBuffer(new byte[] {1, 2}));
+        Block block = builder.build();
+        serializer.deserialize(block, 0, factory.createSingleState());
+        ThetaSketchState failed = factory.createSingleState();
+        serializer.deserialize(block, 1, failed);
+        Assertions.assertNull(failed.getThetaSketchProxy());
+
+        Assertions.assertTrue(stats.getMerges() >= merges + 2);
+        Assertions.assertTrue(stats.getUnionMaterializations() >= unionMaterializations + 1);
+        Assertions.assertTrue(stats.getSketchesSerialized() >= sketchesSerialized + 1);
+        Assertions.assertTrue(stats.getSketchesDeserialized() >= sketchesDeserialized + 1);
+        Assertions.assertTrue(stats.getDeserializeFailures() >= deserializeFailures + 1);
+        Assertions.assertTrue((long) server.getAttribute(name, "DeserializeFailures") >= deserializeFailures + 1);
+    }
+
+    @Test
+    public void testFlightRecorderEvents()
+            throws Exception
+    {
+        Path file = Files.createTempFile("theta-events", ".jfr");
+        // Other tests run concurrently, so only the events of this thread are checked
+        try (Recording recording = new Recording()) {
+            recording.enable(SketchMergeEvent.class).with("minimumSize", "0");
+            recording.enable(SketchUnionMaterializationEvent.class).with("minimumSize", "0");
+            recording.enable(SketchSerializationEvent.class).with("minimumSize", "0");
+            recording.start();
+
+            ThetaSketchProxy proxy = new ThetaSketchProxy(1024);
+            for (int i = 0; i < 3; i++) {
+                ThetaSketchProxy other = new ThetaSketchProxy(1024);
+                for (int value = 0; value < 5000; value++) {
+                    other.put(i * 5000L + value);
+                }
+                proxy.union(other);
+            }
+            ThetaSketchState state = new ThetaSketchStateFactory().createSingleState();
+            state.setThetaSketchProxy(proxy);
+            new ThetaSketchStateSerializer().serialize(state, VARBINARY.createBlockBuilder(null, 1));
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getThread().getJavaThreadId() == Thread.currentThread().getId())
+                .collect(Collectors.toList());
+        Files.delete(file);
+
+        List<RecordedEvent> merges = eventsOfType(events, "SketchMerge");
+        Assertions.assertEquals(2, merges.size());
+        for (RecordedEvent merge : merges) {
+            Assertions.assertEquals("theta", merge.getString("family"));
+            Assertions.assertEquals(1024, merge.getLong("retainedEntries"));
+            Assertions.assertTrue(merge.getLong("bytes") > 0);
+        }
+        List<RecordedEvent> materializations = eventsOfType(events, "SketchUnionMaterialization");
+        Assertions.assertEquals(1, materializations.size());
+        Assertions.assertEquals(1024, materializations.get(0).getLong("retainedEntries"));
+        List<RecordedEvent> serializations = eventsOfType(events, "SketchSerialization");
+        Assertions.assertEquals(1, serializations.size());
+        Assertions.assertEquals(1024, serializations.get(0).getLong("retainedEntries"));
+        Assertions.assertTrue(serializations.get(0).getLong("bytes") > 1024 * Long.BYTES);
+    }
+
+    private static List<RecordedEvent> eventsOfType(List<RecordedEvent> events, String name)
+    {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.roblox.trino.udfs.datasketches." + name))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, theta_count_distinct(theta_sketch(x)) FROM (VALUES (1, CAST(NULL AS BIGINT)), (2, 1)) AS W(g, x) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(0L, result.get(0).getField(1));
+        Assertions.assertEquals(1L, result.get(1).getField(1));
+    }
 }
@@ -0,0 +1,189 @@
+package com.roblox.trino.udfs.datasketches;
+
+import com.roblox.trino.udfs.TrinoUdfsPlugin;
+import io.trino.plugin.tpch.TpchPlugin;
+import io.trino.testing.MaterializedResult;
+import io.trino.testing.MaterializedRow;
+import io.trino.testing.QueryFailedException;
+import io.trino.testing.StandaloneQueryRunner;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesUpdatableSketch;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesUpdatableSketchBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.parallel.Execution;
+
+import java.util.List;
+
+import static io.trino.testing.TestingSession.testSessionBuilder;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
+
+@TestInstance(PER_CLASS)
+@Execution(CONCURRENT)
+public class TupleTest
+{
+    private StandaloneQueryRunner runner;
+
+    @BeforeAll
+    public void init()
+    {
+        runner = new StandaloneQueryRunner(testSessionBuilder().build());
+        runner.installPlugin(new TrinoUdfsPlugin());
+        runner.installPlugin(new TpchPlugin());
+        runner.createCatalog("tpch", "tpch");
+    }
+
+    @AfterAll
+    public void teardown()
+    {
+        runner.close();
+        runner = null;
+    }
+
+    private ArrayOfDoublesUpdatableSketch sketchWithValues(String[] keys, double[] values)
+    {
+        ArrayOfDoublesUpdatableSketch sketch = new ArrayOfDoublesUpdatableSketchBuilder().build();
+        for (int i = 0; i < keys.length; i++) {
+            sketch.update(keys[i], new double[] {values[i]});
+        }
+        return sketch;
+    }
+
+    private String sketchToValueString(ArrayOfDoublesUpdatableSketch sketch)
+    {
+        byte[] serialized = sketch.compact().toByteArray();
+        StringBuilder out = new StringBuilder();
+
+        for (byte b : serialized) {
+            out.append(String.format("%02X", b));
+        }
+
+        return "(CAST(X'" + out + "' AS VARBINARY))";
+    }
+
+    @Test
+    public void testOnSmallValues()
+    {
+        String valuesString = "(VALUES ('a', 1.0), ('b', 2.0), ('a', 3.0), ('c', 0.5))";
+
+        MaterializedResult output = runner.execute("SELECT tuple_count_distinct(s), tuple_sum(s) FROM (SELECT tuple_sketch(x, y) AS s FROM " + valuesString + " AS W(x, y))");
+        List<MaterializedRow> result = output.getMaterializedRows();
+
+        Assertions.assertEquals(3L, result.get(0).getField(0));
+        Assertions.assertEquals(List.of(6.5), result.get(0).getField(1));
+    }
+
+    @Test
+    public void testOnSmallValuesArray()
+    {
+        String valuesString = "(VALUES (1, ARRAY[1.0, 10.0]), (2, ARRAY[2.0, NULL]), (1, ARRAY[3.0, 30.0]))";
+
+        MaterializedResult output = runner.execute("SELECT tuple_count_distinct(s), tuple_sum(s) FROM (SELECT tuple_sketch(x, y) AS s FROM " + valuesString + " AS W(x, y))");
+        List<MaterializedRow> result = output.getMaterializedRows();
+
+        Assertions.assertEquals(2L, result.get(0).getField(0));
+        Assertions.assertEquals(List.of(6.0, 40.0), result.get(0).getField(1));
+    }
+
+    @Test
+    public void testOnLargeValues()
+    {
+        String query = "SELECT tuple_count_distinct(s), tuple_sum(s)[1], tuple_sum(s)[2], exact_count, exact_sum, exact_orders FROM (" +
+                "SELECT tuple_sketch(custkey, ARRAY[totalprice, 1.0]) AS s, count(DISTINCT custkey) AS exact_count, sum(totalprice) AS exact_sum, count(*) AS exact_orders " +
+                "FROM tpch.tiny.orders)";
+        MaterializedRow result = runner.execute(query).getMaterializedRows().get(0);
+
+        // Fewer distinct customers than k, so the sketch holds every one of them
+        Assertions.assertEquals(result.getField(3), result.getField(0));
+        Assertions.assertEquals((double) result.getField(4), (double) result.getField(1), 1e-6 * (double) result.getField(4));
+        Assertions.assertEquals((double) (long) result.getField(5), (double) result.getField(2), 1e-9);
+    }
+
+    @Test
+    public void testOnSketches()
+    {
+        ArrayOfDoublesUpdatableSketch sketch1 = sketchWithValues(new String[] {"a", "b", "a"}, new double[] {1, 2, 3});
+        ArrayOfDoublesUpdatableSketch sketch2 = sketchWithValues(new String[] {"b", "c"}, new double[] {10, 5});
+
+        String valuesString = "(VALUES " + sketchToValueString(sketch1) + ", " + sketchToValueString(sketch2) + ")";
+
+        MaterializedResult output = runner.execute("SELECT tuple_count_distinct(s), tuple_sum(s) FROM (SELECT tuple_sketch(x) AS s FROM " + valuesString + " AS W(x))");
+        List<MaterializedRow> result = output.getMaterializedRows();
+
+        Assertions.assertEquals(3L, result.get(0).getField(0));
+        Assertions.assertEquals(List.of(21.0), result.get(0).getField(1));
+    }
+
+    @Test
+    public void testGroupBy()
+    {
+        String query = "SELECT tuple_count_distinct(tuple_sketch(s)), tuple_count_distinct(tuple_union(array_agg(s))), tuple_sum(tuple_sketch(s)), tuple_sum(tuple_union(array_agg(s))) FROM (" +
+                "SELECT orderpriority, tuple_sketch(custkey, totalprice) AS s FROM tpch.tiny.orders GROUP BY orderpriority)";
+        MaterializedRow result = runner.execute(query).getMaterializedRows().get(0);
+        long expected = (long) runner.execute("SELECT count(DISTINCT custkey) FROM tpch.tiny.orders").getMaterializedRows().get(0).getField(0);
+
+        Assertions.assertEquals(expected, result.getField(0));
+        Assertions.assertEquals(expected, result.getField(1));
+        Assertions.assertEquals(result.getField(2), result.getField(3));
+    }
+
+    @Test
+    public void testUnion()
+    {
+        ArrayOfDoublesUpdatableSketch sketch1 = sketchWithValues(new String[] {"a", "b"}, new double[] {1, 2});
+        ArrayOfDoublesUpdatableSketch sketch2 = sketchWithValues(new String[] {"b", "c"}, new double[] {10, 5});
+
+        String query = "SELECT tuple_sum(tuple_union(" + sketchToValueString(sketch1) + ", " + sketchToValueString(sketch2) + "))";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(List.of(18.0), result.get(0).getField(0));
+    }
+
+    @Test
+    public void testIntersection()
+    {
+        ArrayOfDoublesUpdatableSketch sketch1 = sketchWithValues(new String[] {"a", "b"}, new double[] {1, 2});
+        ArrayOfDoublesUpdatableSketch sketch2 = sketchWithValues(new String[] {"b", "c"}, new double[] {10, 5});
+
+        String query = "SELECT tuple_count_distinct(s), tuple_sum(s) FROM (SELECT tuple_intersection(" + sketchToValueString(sketch1) + ", " + sketchToValueString(sketch2) + ") AS s)";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(1L, result.get(0).getField(0));
+        Assertions.assertEquals(List.of(12.0), result.get(0).getField(1));
+    }
+
+    @Test
+    public void testIntersectionArray()
+    {
+        ArrayOfDoublesUpdatableSketch sketch1 = sketchWithValues(new String[] {"a", "b", "c"}, new double[] {1, 2, 3});
+        ArrayOfDoublesUpdatableSketch sketch2 = sketchWithValues(new String[] {"b", "c", "d"}, new double[] {10, 20, 30});
+        ArrayOfDoublesUpdatableSketch sketch3 = sketchWithValues(new String[] {"c", "d"}, new double[] {100, 200});
+
+        String query = "SELECT tuple_sum(tuple_intersection(ARRAY[" + sketchToValueString(sketch1) + ", NULL, " + sketchToValueString(sketch2) + ", " + sketchToValueString(sketch3) + "]))";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(List.of(123.0), result.get(0).getField(0));
+    }
+
+    @Test
+    public void testMismatchedMetrics()
+    {
+        String valuesString = "(VALUES (1, ARRAY[1.0, 10.0]), (2, ARRAY[2.0]))";
+
+        Assertions.assertThrows(QueryFailedException.class, () -> runner.execute("SELECT tuple_sketch(x, y) FROM " + valuesString + " AS W(x, y)"));
+    }
+
+    @Test
+    public void testGroupByWithOnlyNullValues()
+    {
+        // The partial state of the group without values is serialized as null, and must be skipped when combined
+        String query = "SELECT g, tuple_count_distinct(tuple_sketch(k, v)) FROM (VALUES (1, CAST(NULL AS BIGINT), DOUBLE '1.0'), (2, 1, DOUBLE '1.0')) AS W(g, k, v) GROUP BY g ORDER BY g";
+        List<MaterializedRow> result = runner.execute(query).getMaterializedRows();
+
+        Assertions.assertEquals(0L, result.get(0).getField(1));
+        Assertions.assertEquals(1L, result.get(1).getField(1));
+    }
+}